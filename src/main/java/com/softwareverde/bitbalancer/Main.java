@@ -4,7 +4,12 @@ import com.softwareverde.bitbalancer.configuration.Configuration;
 import com.softwareverde.bitbalancer.configuration.ConfigurationParser;
 import com.softwareverde.bitbalancer.configuration.NodeProperties;
 import com.softwareverde.bitbalancer.proxy.RpcProxyServer;
+import com.softwareverde.bitbalancer.proxy.node.selector.LeastOutstandingRequestsStrategy;
+import com.softwareverde.bitbalancer.proxy.node.selector.LoadBalancingStrategy;
+import com.softwareverde.bitbalancer.proxy.node.selector.PeakEwmaStrategy;
+import com.softwareverde.bitbalancer.proxy.node.selector.PowerOfTwoChoicesStrategy;
 import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connection.RpcConnectionPool;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BchdRpcConnector;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitcoinCoreRpcConnector;
@@ -92,6 +97,14 @@ public class Main {
                         } break;
                     }
                 }
+                if (bitcoinRpcConnector instanceof BitcoinCoreRpcConnector) {
+                    final Integer maxConnectionCount = nodeProperties.getMaxConnectionCount();
+                    if (maxConnectionCount > 0) {
+                        final RpcConnectionPool connectionPool = new RpcConnectionPool(host, port, nodeProperties.isSecure(), nodeProperties.getRpcUsername(), nodeProperties.getRpcPassword(), maxConnectionCount, nodeProperties.getConnectionIdleTimeoutMs());
+                        ((BitcoinCoreRpcConnector) bitcoinRpcConnector).setConnectionPool(connectionPool);
+                    }
+                }
+
                 final RpcConfiguration rpcConfiguration = new RpcConfiguration(name, bitcoinRpcConnector, preferenceOrder, maxTimeoutMs);
 
                 rpcConfigurations.add(rpcConfiguration);
@@ -106,10 +119,42 @@ public class Main {
             final Integer zmqPort = configuration.getZmqPort(notificationType);
             zmqConfiguration.setPort(notificationType, zmqPort);
         }
+        zmqConfiguration.setMaxQueuedMessageCount(configuration.getMaxQueuedZmqMessageCount());
+        zmqConfiguration.setMaxTransactionBatchCount(configuration.getMaxZmqTransactionBatchCount());
+        zmqConfiguration.setMaxTransactionBatchDurationMs(configuration.getMaxZmqTransactionBatchDurationMs());
 
         final Long blockTemplateCacheDuration = configuration.getBlockTemplateCacheDuration();
 
+        final LoadBalancingStrategy loadBalancingStrategy;
+        {
+            final String loadBalancingStrategyIdentifier = configuration.getLoadBalancingStrategyIdentifier();
+            switch (loadBalancingStrategyIdentifier) {
+                case LeastOutstandingRequestsStrategy.IDENTIFIER: {
+                    loadBalancingStrategy = new LeastOutstandingRequestsStrategy();
+                } break;
+
+                case PeakEwmaStrategy.IDENTIFIER: {
+                    loadBalancingStrategy = new PeakEwmaStrategy();
+                } break;
+
+                case PowerOfTwoChoicesStrategy.IDENTIFIER: {
+                    loadBalancingStrategy = new PowerOfTwoChoicesStrategy();
+                } break;
+
+                default: {
+                    loadBalancingStrategy = null;
+                }
+            }
+        }
+
         _rpcProxyServer = new RpcProxyServer(rpcPort, rpcConfigurations, zmqConfiguration, blockTemplateCacheDuration);
+        _rpcProxyServer.setMaxWorkerThreadCount(configuration.getMaxRpcThreadCount());
+        _rpcProxyServer.setMaxQueuedRequestCount(configuration.getMaxQueuedRpcRequestCount());
+        _rpcProxyServer.setMaxConnectionCount(configuration.getMaxRpcConnectionCount());
+        _rpcProxyServer.setLoadBalancingStrategy(loadBalancingStrategy);
+        _rpcProxyServer.setHedgeRequestPercentile(configuration.getHedgeRequestPercentile());
+        _rpcProxyServer.setResponseCacheMaxByteCount(configuration.getResponseCacheMaxByteCount());
+        _rpcProxyServer.setTemplateValidationQuorum(configuration.getTemplateValidationQuorum());
     }
 
     public void run() {
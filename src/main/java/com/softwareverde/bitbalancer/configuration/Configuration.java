@@ -11,14 +11,34 @@ public class Configuration {
     protected final List<NodeProperties> _nodeProperties;
     protected final HashMap<RpcNotificationType, Integer> _zmqPorts = new HashMap<>();
     protected final Long _blockTemplateCacheDuration;
+    protected final Integer _maxRpcThreadCount;
+    protected final Integer _maxQueuedRpcRequestCount;
+    protected final String _loadBalancingStrategyIdentifier;
+    protected final Double _hedgeRequestPercentile;
+    protected final Long _responseCacheMaxByteCount;
+    protected final Integer _templateValidationQuorum;
+    protected final Integer _maxQueuedZmqMessageCount;
+    protected final Integer _maxZmqTransactionBatchCount;
+    protected final Long _maxZmqTransactionBatchDurationMs;
+    protected final Integer _maxRpcConnectionCount;
 
-    protected Configuration(final Integer rpcPort, final List<NodeProperties> nodeProperties, final Map<RpcNotificationType, Integer> zmqPorts, final Long blockTemplateCacheDuration) {
+    protected Configuration(final Integer rpcPort, final List<NodeProperties> nodeProperties, final Map<RpcNotificationType, Integer> zmqPorts, final Long blockTemplateCacheDuration, final Integer maxRpcThreadCount, final Integer maxQueuedRpcRequestCount, final String loadBalancingStrategyIdentifier, final Double hedgeRequestPercentile, final Long responseCacheMaxByteCount, final Integer templateValidationQuorum, final Integer maxQueuedZmqMessageCount, final Integer maxZmqTransactionBatchCount, final Long maxZmqTransactionBatchDurationMs, final Integer maxRpcConnectionCount) {
         _rpcPort = rpcPort;
         _nodeProperties = nodeProperties;
         if (zmqPorts != null) {
             _zmqPorts.putAll(zmqPorts);
         }
         _blockTemplateCacheDuration = blockTemplateCacheDuration;
+        _maxRpcThreadCount = maxRpcThreadCount;
+        _maxQueuedRpcRequestCount = maxQueuedRpcRequestCount;
+        _loadBalancingStrategyIdentifier = loadBalancingStrategyIdentifier;
+        _hedgeRequestPercentile = hedgeRequestPercentile;
+        _responseCacheMaxByteCount = responseCacheMaxByteCount;
+        _templateValidationQuorum = templateValidationQuorum;
+        _maxQueuedZmqMessageCount = maxQueuedZmqMessageCount;
+        _maxZmqTransactionBatchCount = maxZmqTransactionBatchCount;
+        _maxZmqTransactionBatchDurationMs = maxZmqTransactionBatchDurationMs;
+        _maxRpcConnectionCount = maxRpcConnectionCount;
     }
 
     public Integer getRpcPort() {
@@ -36,4 +56,44 @@ public class Configuration {
     public Long getBlockTemplateCacheDuration() {
         return _blockTemplateCacheDuration;
     }
+
+    public Integer getMaxRpcThreadCount() {
+        return _maxRpcThreadCount;
+    }
+
+    public Integer getMaxQueuedRpcRequestCount() {
+        return _maxQueuedRpcRequestCount;
+    }
+
+    public Integer getMaxRpcConnectionCount() {
+        return _maxRpcConnectionCount;
+    }
+
+    public String getLoadBalancingStrategyIdentifier() {
+        return _loadBalancingStrategyIdentifier;
+    }
+
+    public Double getHedgeRequestPercentile() {
+        return _hedgeRequestPercentile;
+    }
+
+    public Long getResponseCacheMaxByteCount() {
+        return _responseCacheMaxByteCount;
+    }
+
+    public Integer getTemplateValidationQuorum() {
+        return _templateValidationQuorum;
+    }
+
+    public Integer getMaxQueuedZmqMessageCount() {
+        return _maxQueuedZmqMessageCount;
+    }
+
+    public Integer getMaxZmqTransactionBatchCount() {
+        return _maxZmqTransactionBatchCount;
+    }
+
+    public Long getMaxZmqTransactionBatchDurationMs() {
+        return _maxZmqTransactionBatchDurationMs;
+    }
 }
@@ -1,9 +1,16 @@
 package com.softwareverde.bitbalancer.configuration;
 
 import com.softwareverde.bitbalancer.Main;
+import com.softwareverde.bitbalancer.proxy.cache.ResponseCache;
+import com.softwareverde.bitbalancer.proxy.http.NioHttpServer;
+import com.softwareverde.bitbalancer.proxy.node.selector.LeastOutstandingRequestsStrategy;
+import com.softwareverde.bitbalancer.proxy.node.selector.PeakEwmaStrategy;
+import com.softwareverde.bitbalancer.proxy.node.selector.PowerOfTwoChoicesStrategy;
+import com.softwareverde.bitbalancer.proxy.rpc.connection.RpcConnectionPool;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BchdRpcConnector;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitcoinCoreRpcConnector;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitcoinVerdeRpcConnector;
+import com.softwareverde.bitbalancer.proxy.zmq.ZmqNotificationPublisherThread;
 import com.softwareverde.bitcoin.rpc.RpcNotificationType;
 import com.softwareverde.constable.list.mutable.MutableList;
 import com.softwareverde.json.Json;
@@ -46,6 +53,8 @@ public class ConfigurationParser {
             final String rpcUsername = nodeJson.getString("rpcUsername");
             final String rpcPassword = nodeJson.getString("rpcPassword");
             final Long maxTimeoutMs = nodeJson.getLong("maxTimeoutMs");
+            final Integer maxConnectionCount = nodeJson.get("maxConnectionCount", RpcConnectionPool.Defaults.MAX_CONNECTION_COUNT);
+            final Long connectionIdleTimeoutMs = nodeJson.get("connectionIdleTimeoutMs", RpcConnectionPool.Defaults.IDLE_TIMEOUT_MS);
 
             final Map<RpcNotificationType, Integer> nodeZmqPorts;
             { // Parse Node ZMQ ports...
@@ -76,7 +85,7 @@ public class ConfigurationParser {
                 }
             }
 
-            final NodeProperties nodeProperties = new NodeProperties(name, host, port, isSecure, rpcUsername, rpcPassword, nodeZmqPorts, connectorIdentifier, (maxTimeoutMs < 1L ? null : maxTimeoutMs));
+            final NodeProperties nodeProperties = new NodeProperties(name, host, port, isSecure, rpcUsername, rpcPassword, nodeZmqPorts, connectorIdentifier, (maxTimeoutMs < 1L ? null : maxTimeoutMs), maxConnectionCount, connectionIdleTimeoutMs);
             nodePropertiesList.add(nodeProperties);
         }
 
@@ -94,8 +103,34 @@ public class ConfigurationParser {
         }
 
         final Long blockTemplateCacheDuration = json.getOrNull("cacheTemplateDuration", Json.Types.LONG);
+        final Integer maxRpcThreadCount = json.get("maxRpcThreadCount", NioHttpServer.Defaults.MAX_WORKER_THREAD_COUNT);
+        final Integer maxQueuedRpcRequestCount = json.get("maxQueuedRpcRequestCount", NioHttpServer.Defaults.MAX_QUEUED_REQUEST_COUNT);
+        final Integer maxRpcConnectionCount = json.get("maxRpcConnectionCount", NioHttpServer.Defaults.MAX_CONNECTION_COUNT);
+
+        final String loadBalancingStrategyIdentifier;
+        { // Parse the load balancing strategy identifier...
+            final String identifier = json.get("loadBalancingStrategy", "NONE").toUpperCase();
+            switch (identifier) {
+                case LeastOutstandingRequestsStrategy.IDENTIFIER:
+                case PeakEwmaStrategy.IDENTIFIER:
+                case PowerOfTwoChoicesStrategy.IDENTIFIER: {
+                    loadBalancingStrategyIdentifier = identifier;
+                } break;
+
+                default: {
+                    loadBalancingStrategyIdentifier = "NONE";
+                }
+            }
+        }
+
+        final Double hedgeRequestPercentile = json.get("hedgeRequestPercentile", 0D);
+        final Long responseCacheMaxByteCount = json.get("responseCacheMaxByteCount", ResponseCache.Defaults.MAX_BYTE_COUNT);
+        final Integer templateValidationQuorum = json.get("templateValidationQuorum", 0);
+        final Integer maxQueuedZmqMessageCount = json.get("maxQueuedZmqMessageCount", ZmqNotificationPublisherThread.Defaults.MAX_QUEUED_MESSAGE_COUNT);
+        final Integer maxZmqTransactionBatchCount = json.get("maxZmqTransactionBatchCount", ZmqNotificationPublisherThread.Defaults.MAX_BATCH_COUNT);
+        final Long maxZmqTransactionBatchDurationMs = json.get("maxZmqTransactionBatchDurationMs", ZmqNotificationPublisherThread.Defaults.MAX_BATCH_DURATION_MS);
 
-        return new Configuration(rpcPort, nodePropertiesList, serverZmqPorts, blockTemplateCacheDuration);
+        return new Configuration(rpcPort, nodePropertiesList, serverZmqPorts, blockTemplateCacheDuration, maxRpcThreadCount, maxQueuedRpcRequestCount, loadBalancingStrategyIdentifier, ((hedgeRequestPercentile > 0D) ? hedgeRequestPercentile : null), responseCacheMaxByteCount, ((templateValidationQuorum > 0) ? templateValidationQuorum : null), Math.max(1, maxQueuedZmqMessageCount), Math.max(0, maxZmqTransactionBatchCount), Math.max(1L, maxZmqTransactionBatchDurationMs), Math.max(1, maxRpcConnectionCount));
     }
 
     public Configuration parseConfigurationFile(final String fileName) {
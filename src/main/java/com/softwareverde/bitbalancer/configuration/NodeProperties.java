@@ -15,8 +15,10 @@ public class NodeProperties {
     protected final Map<RpcNotificationType, Integer> _zmqPorts;
     protected final String _connectorIdentifier;
     protected final Long _maxTimeoutMs;
+    protected final Integer _maxConnectionCount;
+    protected final Long _connectionIdleTimeoutMs;
 
-    public NodeProperties(final String name, final String host, final Integer port, final Boolean isSecure, final String rpcUsername, final String rpcPassword, final Map<RpcNotificationType, Integer> zmqPorts, final String connectorIdentifier, final Long maxTimeoutMs) {
+    public NodeProperties(final String name, final String host, final Integer port, final Boolean isSecure, final String rpcUsername, final String rpcPassword, final Map<RpcNotificationType, Integer> zmqPorts, final String connectorIdentifier, final Long maxTimeoutMs, final Integer maxConnectionCount, final Long connectionIdleTimeoutMs) {
         _name = name;
         _host = host;
         _port = port;
@@ -24,6 +26,8 @@ public class NodeProperties {
         _rpcUsername = rpcUsername;
         _rpcPassword = rpcPassword;
         _maxTimeoutMs = maxTimeoutMs;
+        _maxConnectionCount = maxConnectionCount;
+        _connectionIdleTimeoutMs = connectionIdleTimeoutMs;
 
         if ( (zmqPorts != null) && (! zmqPorts.isEmpty()) ) {
             _zmqPorts = new HashMap<>(0);
@@ -69,4 +73,12 @@ public class NodeProperties {
     public Long getMaxTimeoutMs() {
         return _maxTimeoutMs;
     }
+
+    public Integer getMaxConnectionCount() {
+        return _maxConnectionCount;
+    }
+
+    public Long getConnectionIdleTimeoutMs() {
+        return _connectionIdleTimeoutMs;
+    }
 }
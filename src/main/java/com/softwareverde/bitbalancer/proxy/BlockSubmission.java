@@ -0,0 +1,254 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.block.Block;
+import com.softwareverde.bitcoin.rpc.core.MutableRequest;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.timer.NanoTimer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Submits a block to every node concurrently and reports success as soon as the first node accepts it.
+ *  Submission to the remaining nodes continues in the background; once every node has responded, the outcome is logged
+ *  and reported to the Callback.  Each node's submission latency, byte count, and outcome is recorded to its
+ *  NodeStatistics.
+ *  If the block's serialized (hex) form is provided, the submitblock request is rendered once and forwarded as-is to
+ *  every node, rather than each node's connector re-serializing the (potentially multi-megabyte) block; nodes that do
+ *  not accept a raw JSON-RPC request fall back to the connector's submitBlock.
+ */
+public class BlockSubmission {
+    public interface Callback {
+        /**
+         * Invoked once every node has responded to (or failed) the submission.
+         */
+        void onComplete(BlockSubmission blockSubmission);
+    }
+
+    protected static final byte[] PAYLOAD_PREFIX_BYTES = "{\"jsonrpc\":\"1.0\",\"id\":\"bitbalancer\",\"method\":\"submitblock\",\"params\":[".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] PAYLOAD_SUFFIX_BYTES = "]}".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] ERROR_KEY = "error".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] RESULT_KEY = "result".getBytes(StandardCharsets.UTF_8);
+    protected static final String DUPLICATE_RESULT = "\"duplicate\""; // The node already has the block (i.e. it was relayed by a peer that accepted it).
+
+    /**
+     * Renders a submitblock request whose hexdata is the quoted hex string within the range of the provided bytes.
+     */
+    public static byte[] createPayload(final byte[] bytes, final long quotedBlockHexRange) {
+        final int startIndex = JsonScanner.getStartIndex(quotedBlockHexRange);
+        final int byteCount = (JsonScanner.getEndIndex(quotedBlockHexRange) - startIndex);
+
+        final byte[] payload = new byte[PAYLOAD_PREFIX_BYTES.length + byteCount + PAYLOAD_SUFFIX_BYTES.length];
+        System.arraycopy(PAYLOAD_PREFIX_BYTES, 0, payload, 0, PAYLOAD_PREFIX_BYTES.length);
+        System.arraycopy(bytes, startIndex, payload, PAYLOAD_PREFIX_BYTES.length, byteCount);
+        System.arraycopy(PAYLOAD_SUFFIX_BYTES, 0, payload, (PAYLOAD_PREFIX_BYTES.length + byteCount), PAYLOAD_SUFFIX_BYTES.length);
+        return payload;
+    }
+
+    protected final ExecutorService _executorService;
+    protected final Block _block;
+    protected final byte[] _payload;
+    protected final Sha256Hash _blockHash;
+    protected final Callback _callback;
+    protected final NanoTimer _nanoTimer = new NanoTimer();
+
+    protected int _pendingCount = 0;
+    protected int _acceptCount = 0;
+    protected int _rejectCount = 0;
+    protected int _failureCount = 0;
+    protected Double _firstAcceptMs = null;
+
+    protected Monitor _createMonitor(final RpcConfiguration rpcConfiguration) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        final Monitor monitor = bitcoinRpcConnector.getMonitor();
+        final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+        if (maxTimeoutMs != null) {
+            monitor.setMaxDurationMs(maxTimeoutMs);
+        }
+        return monitor;
+    }
+
+    /**
+     * Forwards the pre-rendered submitblock request to the node.
+     *  Returns null if the node did not respond with a successful JSON-RPC response, in which case the block should be
+     *  submitted via the connector instead.
+     */
+    protected Boolean _forwardPayload(final RpcConfiguration rpcConfiguration) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+
+        final MutableRequest request = new MutableRequest();
+        request.setMethod(HttpMethod.POST);
+        request.setRawPostData(_payload);
+
+        final Response response = bitcoinRpcConnector.handleRequest(request, _createMonitor(rpcConfiguration));
+        final byte[] content = (response != null ? response.getContent() : null);
+        if (content == null) { return null; }
+
+        final long errorRange = JsonScanner.findMember(content, 0, content.length, ERROR_KEY);
+        if ( (errorRange == JsonScanner.NOT_FOUND) || (! JsonScanner.isLiteral(content, errorRange, "null")) ) { return null; }
+
+        final long resultRange = JsonScanner.findMember(content, 0, content.length, RESULT_KEY);
+        if (resultRange == JsonScanner.NOT_FOUND) { return null; }
+        if (JsonScanner.isLiteral(content, resultRange, "null")) { return true; }
+        if (JsonScanner.isLiteral(content, resultRange, DUPLICATE_RESULT)) { return true; }
+
+        Logger.debug("Block " + _blockHash + " rejected by " + rpcConfiguration + ": " + JsonScanner.toString(content, resultRange));
+        return false;
+    }
+
+    protected void _submitBlock(final RpcConfiguration rpcConfiguration) {
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        Boolean wasAccepted = null;
+        try {
+            if (_payload != null) {
+                wasAccepted = _forwardPayload(rpcConfiguration);
+            }
+
+            if (wasAccepted == null) {
+                final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+                wasAccepted = bitcoinRpcConnector.submitBlock(_block, _createMonitor(rpcConfiguration));
+            }
+        }
+        catch (final Exception exception) {
+            Logger.debug("Error submitting block " + _blockHash + " to " + rpcConfiguration + ".", exception);
+        }
+        nanoTimer.stop();
+
+        final Double durationMs = nanoTimer.getMillisecondsElapsed();
+        final NodeStatistics nodeStatistics = rpcConfiguration.getNodeStatistics();
+        nodeStatistics.onBlockSubmitted(durationMs.longValue(), wasAccepted, (_payload != null ? (long) _payload.length : null));
+
+        _onSubmitted(rpcConfiguration, wasAccepted, durationMs);
+    }
+
+    protected void _onSubmitted(final RpcConfiguration rpcConfiguration, final Boolean wasAccepted, final Double durationMs) {
+        final boolean isComplete;
+        synchronized (this) {
+            if (wasAccepted == null) {
+                Logger.info("Block " + _blockHash + " submission to " + rpcConfiguration + " failed after " + durationMs + "ms.");
+                _failureCount += 1;
+            }
+            else if (wasAccepted) {
+                Logger.info("Block " + _blockHash + " accepted by " + rpcConfiguration + " in " + durationMs + "ms.");
+                _acceptCount += 1;
+
+                if (_firstAcceptMs == null) {
+                    _nanoTimer.stop();
+                    _firstAcceptMs = _nanoTimer.getMillisecondsElapsed();
+                }
+            }
+            else {
+                Logger.info("Block " + _blockHash + " rejected by " + rpcConfiguration + " in " + durationMs + "ms.");
+                _rejectCount += 1;
+            }
+
+            _pendingCount -= 1;
+            isComplete = (_pendingCount < 1);
+            this.notifyAll();
+        }
+
+        if (isComplete) {
+            _onComplete();
+        }
+    }
+
+    protected void _onComplete() {
+        Logger.info("Block " + _blockHash + " accepted by " + _acceptCount + " nodes, rejected by " + _rejectCount + " nodes, failed by " + _failureCount + " nodes.");
+
+        if (_callback != null) {
+            _callback.onComplete(this);
+        }
+    }
+
+    public BlockSubmission(final ExecutorService executorService, final Block block, final Callback callback) {
+        this(executorService, block, null, callback);
+    }
+
+    /**
+     * @param payload   The submitblock request rendered by createPayload, or null if the block's serialized form is unavailable.
+     */
+    public BlockSubmission(final ExecutorService executorService, final Block block, final byte[] payload, final Callback callback) {
+        _executorService = executorService;
+        _block = block;
+        _payload = payload;
+        _blockHash = block.getHash();
+        _callback = callback;
+    }
+
+    /**
+     * Submits the block to every provided node and blocks until the first node accepts it or every node has responded.
+     *  Returns true if any node accepted the block.
+     */
+    public Boolean execute(final List<RpcConfiguration> rpcConfigurations) {
+        synchronized (this) {
+            _nanoTimer.start();
+
+            for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+                _pendingCount += 1;
+                try {
+                    _executorService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            _submitBlock(rpcConfiguration);
+                        }
+                    });
+                }
+                catch (final RejectedExecutionException exception) {
+                    Logger.warn("Unable to schedule submission of block " + _blockHash + " to " + rpcConfiguration + ".");
+                    _pendingCount -= 1;
+                    _failureCount += 1;
+                }
+            }
+
+            if (_pendingCount < 1) {
+                _onComplete();
+                return false;
+            }
+
+            try {
+                while ( (_acceptCount < 1) && (_pendingCount > 0) ) {
+                    this.wait();
+                }
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            return (_acceptCount > 0);
+        }
+    }
+
+    public Sha256Hash getBlockHash() {
+        return _blockHash;
+    }
+
+    public synchronized Integer getAcceptCount() {
+        return _acceptCount;
+    }
+
+    public synchronized Integer getRejectCount() {
+        return _rejectCount;
+    }
+
+    public synchronized Integer getFailureCount() {
+        return _failureCount;
+    }
+
+    /**
+     * Returns the duration from submission until the first node accepted the block, or null if no node accepted it.
+     */
+    public synchronized Double getFirstAcceptMs() {
+        return _firstAcceptMs;
+    }
+}
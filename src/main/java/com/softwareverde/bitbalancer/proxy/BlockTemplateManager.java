@@ -1,148 +1,199 @@
 package com.softwareverde.bitbalancer.proxy;
 
+import com.softwareverde.bitbalancer.proxy.cache.PrerenderedResponse;
+import com.softwareverde.bitbalancer.proxy.cache.SingleFlight;
 import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelector;
 import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
 import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
 import com.softwareverde.bitcoin.rpc.BlockTemplate;
-import com.softwareverde.bitcoin.rpc.monitor.Monitor;
-import com.softwareverde.bitcoin.server.database.BatchRunner;
+import com.softwareverde.bitcoin.transaction.Transaction;
+import com.softwareverde.bitcoin.transaction.input.TransactionInput;
 import com.softwareverde.bitcoin.util.Util;
 import com.softwareverde.constable.list.List;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
 import com.softwareverde.util.Container;
 import com.softwareverde.util.timer.NanoTimer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class BlockTemplateManager {
-    protected final NodeSelector _nodeSelector;
+    public static class Defaults {
+        public static final Long MAX_REUSED_VALIDATION_AGE_MS = 60000L;
+        public static final Integer MAX_CONCURRENT_VALIDATION_COUNT = 32;
+    }
 
-    protected BlockTemplate _onGetBlockTemplateFailure() {
-        boolean wasSuccessful = true;
-        int bestValidCount = 0;
-        RpcConfiguration bestRpcConfiguration = null;
+    /**
+     * The most recent fully-validated template's transaction set, and the nodes that have considered it (or a subset of
+     *  it) valid.
+     */
+    protected static class TemplateValidation {
+        public final Sha256Hash previousBlockHash;
+        public final Set<Sha256Hash> transactionHashes;
+        public final Long validatedAtMs;
+        public final Set<RpcConfiguration> validatingRpcConfigurations;
+
+        public TemplateValidation(final Sha256Hash previousBlockHash, final Set<Sha256Hash> transactionHashes, final Long validatedAtMs, final Set<RpcConfiguration> validatingRpcConfigurations) {
+            this.previousBlockHash = previousBlockHash;
+            this.transactionHashes = transactionHashes;
+            this.validatedAtMs = validatedAtMs;
+            this.validatingRpcConfigurations = validatingRpcConfigurations;
+        }
+    }
 
-        final ConcurrentHashMap<RpcConfiguration, BlockTemplate> blockTemplates = new ConcurrentHashMap<>();
-        final ConcurrentHashMap<RpcConfiguration, AtomicInteger> countOfValidBlockTemplates = new ConcurrentHashMap<>();
+    protected static Set<Sha256Hash> _getTransactionHashes(final BlockTemplate blockTemplate) {
+        final List<Transaction> transactions = blockTemplate.getTransactions();
+        final HashSet<Sha256Hash> transactionHashes = new HashSet<>(transactions.getCount());
+        for (final Transaction transaction : transactions) {
+            transactionHashes.add(transaction.getHash());
+        }
+        return transactionHashes;
+    }
 
-        final List<RpcConfiguration> rpcConfigurations = _nodeSelector.getNodes();
+    /**
+     * Returns the number of nodes whose ChainHeight is not behind the best ChainHeight; only these nodes may validate
+     *  a template.
+     */
+    protected static Integer _getUpToDateNodeCount(final List<RpcConfiguration> rpcConfigurations, final ChainHeight bestChainHeight) {
+        int upToDateNodeCount = 0;
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            if (! bestChainHeight.isBetterThan(chainHeight)) {
+                upToDateNodeCount += 1;
+            }
+        }
+        return upToDateNodeCount;
+    }
 
-        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+    public interface LongPollCallback {
+        /**
+         * Invoked with the response for the new template, or null if no template is available.
+         */
+        void onBlockTemplateResponse(PrerenderedResponse blockTemplateResponse);
+    }
 
-        try {
-            final BatchRunner<RpcConfiguration> batchRunner = new BatchRunner<>(1, true);
-
-            { // Get block templates from each of the nodes...
-                batchRunner.run(rpcConfigurations, new BatchRunner.Batch<RpcConfiguration>() {
-                    @Override
-                    public void run(final List<RpcConfiguration> batch) {
-                        final RpcConfiguration rpcConfiguration = batch.get(0); // Workaround for non-specialization of BatchRunner of size 1.
-                        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-
-                        final Monitor monitor = bitcoinRpcConnector.getMonitor();
-                        final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
-                        if (maxTimeoutMs != null) {
-                            monitor.setMaxDurationMs(maxTimeoutMs);
-                        }
-
-                        final NanoTimer nanoTimer = new NanoTimer();
-                        nanoTimer.start();
-                        final BlockTemplate blockTemplate = bitcoinRpcConnector.getBlockTemplate(monitor);
-                        nanoTimer.stop();
-                        Logger.debug("Template acquired from " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
-
-                        if (blockTemplate != null) {
-                            blockTemplates.put(rpcConfiguration, blockTemplate);
-                        }
-
-                        countOfValidBlockTemplates.put(rpcConfiguration, new AtomicInteger(0));
-
-                        if (blockTemplate == null) {
-                            Logger.debug("Failed to obtain template from " + rpcConfiguration + " in " + monitor.getDurationMs() + "ms.");
-                        }
-                        else {
-                            Logger.info("Obtained template (height=" + blockTemplate.getBlockHeight() + ") from " + rpcConfiguration + " in " + monitor.getDurationMs() + "ms.");
-                        }
-                    }
-                });
-            }
+    /**
+     * Renders the getblocktemplate response for the template, so that it may be sent to multiple requests.
+     *  If longPollId is provided, it replaces the template's longpollid.
+     */
+    protected static PrerenderedResponse _renderBlockTemplate(final BlockTemplate blockTemplate, final String longPollId, final Boolean shouldCompress) {
+        final Json blockTemplateJson = blockTemplate.toJson();
+        if (longPollId != null) {
+            blockTemplateJson.put("longpollid", longPollId);
+        }
 
-            { // Validate each of the templates against each of the nodes...
-                for (final RpcConfiguration rpcConfigurationForTemplate : rpcConfigurations) {
-                    final BlockTemplate blockTemplate = blockTemplates.get(rpcConfigurationForTemplate);
-                    if (blockTemplate == null) { continue; }
-
-                    batchRunner.run(rpcConfigurations, new BatchRunner.Batch<RpcConfiguration>() {
-                        @Override
-                        public void run(final List<RpcConfiguration> batch) {
-                            final RpcConfiguration rpcConfigurationForValidation = batch.get(0); // Workaround for non-specialization of BatchRunner of size 1.
-                            final BitBalancerRpcConnector bitcoinRpcConnectorForValidation = rpcConfigurationForValidation.getBitcoinRpcConnector();
-
-                            final Monitor monitor = bitcoinRpcConnectorForValidation.getMonitor();
-                            final Long maxTimeoutMs = rpcConfigurationForValidation.getMaxTimeoutMs();
-                            if (maxTimeoutMs != null) {
-                                monitor.setMaxDurationMs(maxTimeoutMs);
-                            }
-
-                            final ChainHeight chainHeight = rpcConfigurationForValidation.getChainHeight();
-                            final boolean isNodeBehind = bestChainHeight.isBetterThan(chainHeight);
-                            if (isNodeBehind) {
-                                Logger.debug("Skipping template validation template from " + rpcConfigurationForTemplate + " with " + rpcConfigurationForValidation + "; node is behind on ChainHeight: " + chainHeight);
-                                return;
-                            }
-
-                            final Boolean isValid = bitcoinRpcConnectorForValidation.validateBlockTemplate(blockTemplate, monitor);
-
-                            if (isValid != null) {
-                                Logger.debug("Validated template from " + rpcConfigurationForTemplate + " with " + rpcConfigurationForValidation + " in " + monitor.getDurationMs() + "ms. (" + (isValid ? "VALID" : "INVALID") + ")");
-                            }
-                            else {
-                                Logger.debug("Template validation not supported by " + rpcConfigurationForValidation + ".");
-                            }
-
-                            if (Util.coalesce(isValid, true)) {
-                                final AtomicInteger currentIsValidCount = countOfValidBlockTemplates.get(rpcConfigurationForTemplate);
-                                currentIsValidCount.incrementAndGet();
-                            }
-                        }
-                    });
-                }
+        final String resultString = blockTemplateJson.toString();
+        return new PrerenderedResponse(resultString.getBytes(StandardCharsets.UTF_8), shouldCompress);
+    }
+
+    protected final NodeSelector _nodeSelector;
+    protected final SingleFlight<ChainHeight, BlockTemplate> _inFlightBlockTemplateRequests = new SingleFlight<>(); // Keyed by the best ChainHeight at the time of the request.
+    protected volatile TemplateValidation _templateValidation = null;
+    protected volatile Long _maxReusedValidationAgeMs = Defaults.MAX_REUSED_VALIDATION_AGE_MS;
+    protected volatile Integer _validationQuorum = null; // Null requires every up-to-date node to validate the template.
+    protected final ExecutorService _validationExecutorService;
+
+    /**
+     * Returns true if the template shares its parent with the previously validated template (validated within the
+     *  configured duration), and every one of its transactions was within the validated template.
+     *  Since a subset of a valid template is only valid if it retains each of its transactions' in-template parents, the
+     *  template must also not spend the outputs of any validated transaction that it omits.
+     *  Any template with a transaction that was not validated (e.g. one that extends the validated template) is
+     *  revalidated in full; a template proposal is always validated as a whole block, so validation cannot be incremental.
+     */
+    protected Boolean _canReuseValidation(final TemplateValidation templateValidation, final BlockTemplate blockTemplate, final Set<Sha256Hash> transactionHashes) {
+        if (templateValidation == null) { return false; }
+        if (! Util.areEqual(templateValidation.previousBlockHash, blockTemplate.getPreviousBlockHash())) { return false; }
+
+        final long validationAgeMs = (System.currentTimeMillis() - templateValidation.validatedAtMs);
+        if (validationAgeMs > _maxReusedValidationAgeMs) { return false; }
+
+        for (final Sha256Hash transactionHash : transactionHashes) {
+            if (! templateValidation.transactionHashes.contains(transactionHash)) {
+                Logger.debug("Template contains transaction " + transactionHash + " that was not validated.");
+                return false;
             }
+        }
 
-            for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
-                final AtomicInteger countOfValidBlockTemplate = countOfValidBlockTemplates.get(rpcConfiguration);
-                final int validCount = countOfValidBlockTemplate.get();
-                if (validCount > bestValidCount) {
-                    bestRpcConfiguration = rpcConfiguration;
-                    bestValidCount = validCount;
+        if (transactionHashes.size() < templateValidation.transactionHashes.size()) {
+            for (final Transaction transaction : blockTemplate.getTransactions()) {
+                for (final TransactionInput transactionInput : transaction.getTransactionInputs()) {
+                    final Sha256Hash previousTransactionHash = transactionInput.getPreviousOutputTransactionHash();
+                    final boolean wasOmitted = ( templateValidation.transactionHashes.contains(previousTransactionHash) && (! transactionHashes.contains(previousTransactionHash)) );
+                    if (wasOmitted) {
+                        Logger.debug("Template omits transaction " + previousTransactionHash + " spent by " + transaction.getHash() + ".");
+                        return false;
+                    }
                 }
             }
-            if (bestValidCount < 1) {
-                wasSuccessful = false;
-            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Obtains a template from each up-to-date node and returns the template considered valid by the most nodes.
+     *  Fetches and validations are scheduled on the validation ExecutorService as soon as they are possible; the search
+     *  ends early once a template is considered valid by the quorum (or, without a quorum, by every up-to-date node).
+     */
+    protected BlockTemplate _onGetBlockTemplateFailure() {
+        final List<RpcConfiguration> rpcConfigurations = _nodeSelector.getNodes();
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+
+        final Integer validationQuorum = _validationQuorum;
+        final int upToDateNodeCount = Math.max(1, _getUpToDateNodeCount(rpcConfigurations, bestChainHeight));
+        final int winningValidCount = (validationQuorum != null ? Math.min(validationQuorum, upToDateNodeCount) : upToDateNodeCount);
+        final TemplateCrossValidation templateCrossValidation = new TemplateCrossValidation(_validationExecutorService, bestChainHeight, winningValidCount);
+
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        final BlockTemplate blockTemplate;
+        try {
+            blockTemplate = templateCrossValidation.execute(rpcConfigurations);
         }
         catch (final Exception exception) {
             Logger.warn(exception);
-            wasSuccessful = false;
+            Logger.warn("No valid templates found.");
+            return null;
         }
+        nanoTimer.stop();
 
-        if (! wasSuccessful) {
+        if (blockTemplate == null) {
             Logger.warn("No valid templates found.");
             return null;
         }
 
-        final BlockTemplate blockTemplate = blockTemplates.get(bestRpcConfiguration);
-        Logger.info("Block template from " + bestRpcConfiguration + " considered valid by " + bestValidCount + " nodes.");
+        Logger.info("Block template from " + templateCrossValidation.getBestRpcConfiguration() + " considered valid by " + templateCrossValidation.getBestValidCount() + " nodes in " + nanoTimer.getMillisecondsElapsed() + "ms.");
         return blockTemplate;
     }
 
     public BlockTemplateManager(final NodeSelector nodeSelector) {
         _nodeSelector = nodeSelector;
+
+        final ThreadPoolExecutor validationExecutorService = new ThreadPoolExecutor(Defaults.MAX_CONCURRENT_VALIDATION_COUNT, Defaults.MAX_CONCURRENT_VALIDATION_COUNT, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("BlockTemplateManager - Validation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        validationExecutorService.allowCoreThreadTimeOut(true);
+        _validationExecutorService = validationExecutorService;
     }
 
-    public BlockTemplate getBlockTemplate() {
+    protected BlockTemplate _getBlockTemplate() {
         final RpcConfiguration bestRpcConfiguration = _nodeSelector.selectBestNode();
         final BitBalancerRpcConnector bestBitcoinRpcConnector = bestRpcConfiguration.getBitcoinRpcConnector();
 
@@ -163,65 +214,110 @@ public class BlockTemplateManager {
 
         final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
 
-        final AtomicInteger invalidCount = new AtomicInteger(0);
-        final AtomicInteger skipCount = new AtomicInteger(0);
-        final AtomicInteger validCount = new AtomicInteger(0);
-        try {
-            final BatchRunner<RpcConfiguration> batchRunner = new BatchRunner<>(1, true);
-            batchRunner.run(rpcConfigurations, new BatchRunner.Batch<RpcConfiguration>() {
-                @Override
-                public void run(final List<RpcConfiguration> rpcConfigurations) throws Exception {
-                    final NanoTimer nanoTimer = new NanoTimer();
-
-                    final RpcConfiguration rpcConfiguration = rpcConfigurations.get(0); // Workaround for non-specialization of BatchRunner of size 1.
-                    final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-
-                    final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
-                    final boolean isNodeBehind = bestChainHeight.isBetterThan(chainHeight);
-                    if (isNodeBehind) {
-                        Logger.debug("Skipping template validation template for " + rpcConfiguration + " with " + bestRpcConfiguration + " template; node is behind on ChainHeight: " + chainHeight);
-                        skipCount.incrementAndGet();
-                        return;
-                    }
+        final TemplateValidation previousTemplateValidation = _templateValidation;
+        final Set<Sha256Hash> transactionHashes = _getTransactionHashes(blockTemplate);
+        final boolean isReusingValidation = _canReuseValidation(previousTemplateValidation, blockTemplate, transactionHashes);
 
-                    final Monitor monitor = bitcoinRpcConnector.getMonitor();
-                    final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
-                    if (maxTimeoutMs != null) {
-                        monitor.setMaxDurationMs(maxTimeoutMs);
-                    }
+        final Set<RpcConfiguration> validatingRpcConfigurations = ConcurrentHashMap.newKeySet();
+        if (isReusingValidation) { // Nodes that validated a superset of the template count toward the quorum without revalidating...
+            validatingRpcConfigurations.addAll(previousTemplateValidation.validatingRpcConfigurations);
+            Logger.debug("Reusing template validation from " + previousTemplateValidation.validatingRpcConfigurations.size() + " nodes.");
+        }
 
-                    nanoTimer.start();
-                    final Boolean isValid = bitcoinRpcConnector.validateBlockTemplate(blockTemplate, monitor);
-                    nanoTimer.stop();
+        final Integer validationQuorum = _validationQuorum;
+        final int upToDateNodeCount = Math.max(1, _getUpToDateNodeCount(rpcConfigurations, bestChainHeight));
+        final int requiredValidCount = (validationQuorum != null ? Math.min(validationQuorum, upToDateNodeCount) : upToDateNodeCount);
+        final TemplateValidationQuorum templateValidationQuorum = new TemplateValidationQuorum(_validationExecutorService, blockTemplate, bestRpcConfiguration, bestChainHeight, requiredValidCount, validatingRpcConfigurations);
 
-                    if (isValid == null) {
-                        Logger.debug("Template validation not supported by " + rpcConfiguration + ".");
-                        skipCount.incrementAndGet();
-                        return;
-                    }
+        final NanoTimer validationTimer = new NanoTimer();
+        validationTimer.start();
+        final TemplateValidationQuorum.Outcome outcome = templateValidationQuorum.execute(rpcConfigurations);
+        validationTimer.stop();
 
-                    if (! isValid) {
-                        Logger.debug("Template considered invalid by: " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
-                        invalidCount.incrementAndGet();
-                        return;
-                    }
-
-                    Logger.debug("Validated template from " + bestRpcConfiguration + " with " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
-                    validCount.incrementAndGet();
-                }
-            });
+        final Long blockHeight = blockTemplate.getBlockHeight();
+        if (outcome == TemplateValidationQuorum.Outcome.INVALID) {
+            Logger.warn("Block template for height " + blockHeight + " considered invalid by " + templateValidationQuorum.getInvalidCount() + " nodes.");
+            _templateValidation = null;
+            return _onGetBlockTemplateFailure();
         }
-        catch (final Exception exception) {
-            Logger.warn(exception);
+
+        if (outcome == TemplateValidationQuorum.Outcome.NO_QUORUM) {
+            Logger.info("Block template for height " + blockHeight + " considered valid by only " + templateValidationQuorum.getValidCount() + " of " + requiredValidCount + " required nodes; " + templateValidationQuorum.getSkipCount() + " nodes did not validate.");
         }
 
-        final Long blockHeight = blockTemplate.getBlockHeight();
-        if (invalidCount.get() > 0) {
-            Logger.warn("Block template for height " + blockHeight + " considered invalid by " + invalidCount.get() + " nodes.");
-            return _onGetBlockTemplateFailure();
+        if (isReusingValidation) {
+            _templateValidation = new TemplateValidation(previousTemplateValidation.previousBlockHash, previousTemplateValidation.transactionHashes, previousTemplateValidation.validatedAtMs, validatingRpcConfigurations);
+        }
+        else {
+            _templateValidation = new TemplateValidation(blockTemplate.getPreviousBlockHash(), transactionHashes, System.currentTimeMillis(), validatingRpcConfigurations);
         }
 
-        Logger.info("Block template for height " + blockHeight + " considered valid by all nodes.");
+        Logger.info("Block template for height " + blockHeight + " considered valid by " + templateValidationQuorum.getValidCount() + " nodes in " + validationTimer.getMillisecondsElapsed() + "ms." + (isReusingValidation ? " (Reused prior validation.)" : ""));
         return blockTemplate;
     }
+
+    /**
+     * Returns a block template from the best node that has been validated by the other nodes.
+     *  Concurrent calls made at the same best ChainHeight share a single template request (and its validation); a call
+     *  made after the best ChainHeight changes never receives a template requested before the change.
+     */
+    public BlockTemplate getBlockTemplate() {
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+        final SingleFlight.Result<BlockTemplate> result = _inFlightBlockTemplateRequests.execute(bestChainHeight, new SingleFlight.Call<BlockTemplate>() {
+            @Override
+            public BlockTemplate run() {
+                return _getBlockTemplate();
+            }
+        });
+
+        if (result.wasShared) {
+            Logger.debug("Shared in-flight block template request.");
+        }
+        return result.value;
+    }
+
+    /**
+     * Returns the getblocktemplate response for the template returned by getBlockTemplate, or null if no template is
+     *  available.
+     */
+    public PrerenderedResponse getBlockTemplateResponse() {
+        final BlockTemplate blockTemplate = this.getBlockTemplate();
+        if (blockTemplate == null) { return null; }
+
+        return _renderBlockTemplate(blockTemplate, null, false);
+    }
+
+    /**
+     * Waits (without blocking) for a template newer than the one identified by longPollId (BIP22).
+     *  Returns true if the request was parked, in which case the callback is invoked once a new template is available;
+     *  returns false if the request should be answered immediately, e.g. if longPollId does not identify the current
+     *  template or long-polling is not supported.
+     */
+    public Boolean waitForBlockTemplate(final String longPollId, final LongPollCallback callback) {
+        return false;
+    }
+
+    /**
+     * Sets the number of nodes that must consider a template valid before it is returned; validation ends early once the
+     *  quorum is reached, and any remaining validations are canceled.  A null quorum (the default) requires every
+     *  up-to-date node.  A template is rejected as soon as any node considers it invalid, regardless of the quorum.
+     */
+    public void setValidationQuorum(final Integer validationQuorum) {
+        _validationQuorum = validationQuorum;
+    }
+
+    /**
+     * Sets the maximum duration since a template's last full validation before a template whose transactions are a subset
+     *  of it must be revalidated.
+     */
+    public void setMaxReusedValidationAgeMs(final Long maxReusedValidationAgeMs) {
+        _maxReusedValidationAgeMs = maxReusedValidationAgeMs;
+    }
+
+    /**
+     * Returns the number of getBlockTemplate calls that were answered by another call's in-flight template request.
+     */
+    public Long getCoalescedRequestCount() {
+        return _inFlightBlockTemplateRequests.getSharedCount();
+    }
 }
@@ -1,5 +1,7 @@
 package com.softwareverde.bitbalancer.proxy;
 
+import com.softwareverde.bitbalancer.proxy.cache.PrerenderedResponse;
+import com.softwareverde.bitbalancer.proxy.cache.SingleFlight;
 import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelector;
 import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitcoinVerdeRpcConnector;
@@ -12,24 +14,194 @@ import com.softwareverde.bitcoin.block.validator.difficulty.AsertDifficultyCalcu
 import com.softwareverde.bitcoin.block.validator.difficulty.AsertReferenceBlock;
 import com.softwareverde.bitcoin.rpc.BlockTemplate;
 import com.softwareverde.bitcoin.server.main.BitcoinConstants;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
 import com.softwareverde.util.type.time.SystemTime;
 
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves block templates from a cache that is refreshed in the background.
+ *  Reads are lock-free; while a refresh is in-flight, callers receive the previous template (or the empty template
+ *  generated for a new block).  Only a cold cache blocks: concurrent cold misses share a single request, and callers
+ *  that wait longer than the configured duration receive the empty template instead.
+ *  Each cached template is tagged with a BIP22 longpollid; long-poll requests are parked without holding a thread and
+ *  are completed when a new block's template (or, after the refresh interval, a refreshed template) is cached, or with
+ *  the current template once they have waited the maximum duration.  The number of parked long-polls is limited; once
+ *  reached, long-poll requests are answered immediately.  Long-polls are completed on a separate thread pool so that
+ *  rendering their responses does not delay the chain-head thread.
+ */
 public class CachingBlockTemplateManager extends BlockTemplateManager {
+    protected static class ChainHead {
+        public final BlockHeader blockHeader;
+        public final Sha256Hash blockHash;
+        public final Long blockHeight;
+
+        public ChainHead(final BlockHeader blockHeader, final Long blockHeight) {
+            this(blockHeader, (blockHeader != null ? blockHeader.getHash() : null), blockHeight);
+        }
+
+        /**
+         * Creates a ChainHead for a block whose header may not yet be known (i.e. it was announced only by its hash).
+         */
+        public ChainHead(final BlockHeader blockHeader, final Sha256Hash blockHash, final Long blockHeight) {
+            this.blockHeader = blockHeader;
+            this.blockHash = blockHash;
+            this.blockHeight = blockHeight;
+        }
+    }
+
+    /**
+     * A template and its rendered getblocktemplate response, which is rendered once when the template is cached.
+     *  Each CachedBlockTemplate is a distinct generation, identified to long-polling clients by its longPollId.
+     */
+    protected static class CachedBlockTemplate {
+        public final BlockTemplate blockTemplate;
+        public final String longPollId;
+        public final PrerenderedResponse response;
+
+        public CachedBlockTemplate(final BlockTemplate blockTemplate, final String longPollId, final Boolean shouldCompress) {
+            this.blockTemplate = blockTemplate;
+            this.longPollId = longPollId;
+            this.response = _renderBlockTemplate(blockTemplate, longPollId, shouldCompress);
+        }
+    }
+
+    protected static class LongPoll {
+        public final LongPollCallback callback;
+        public final Sha256Hash previousBlockHash;
+        public final Long parkedAtMs;
+
+        public LongPoll(final LongPollCallback callback, final Sha256Hash previousBlockHash, final Long parkedAtMs) {
+            this.callback = callback;
+            this.previousBlockHash = previousBlockHash;
+            this.parkedAtMs = parkedAtMs;
+        }
+    }
+
     protected final SystemTime _systemTime = new SystemTime();
+    protected final AsertDifficultyCalculator _asertDifficultyCalculator = new AsertDifficultyCalculator();
+    protected volatile AsertReferenceBlock _asertReferenceBlock = null; // Loaded once, on first use.
 
-    protected Long _newBlockTemplatePeriodMs = 10000L;
+    protected final ExecutorService _chainHeadExecutorService; // Applies new chain heads (and their empty templates) in order, off of the notification thread.
+    protected final ExecutorService _longPollExecutorService; // Completes long-polls, off of the chain-head and refresh threads.
+    protected final AtomicLong _emptyBlockTemplateCount = new AtomicLong(0L);
+    protected final AtomicLong _totalEmptyBlockTemplateDelayUs = new AtomicLong(0L);
+    protected volatile Long _lastEmptyBlockTemplateDelayUs = null;
+
+    protected volatile Long _newBlockTemplatePeriodMs = 10000L;
+    protected volatile Long _coldMissMaxWaitMs = 5000L;
     protected Thread _updateThread = null;
 
     protected final AtomicBoolean _getBlockTemplatePin = new AtomicBoolean(false);
     protected Thread _getBlockTemplateThread = null;
 
-    protected BlockTemplate _cachedBlockTemplate = null;
+    protected final AtomicReference<CachedBlockTemplate> _cachedBlockTemplate = new AtomicReference<>(null);
+    protected final SingleFlight<ChainHeight, CachedBlockTemplate> _coldMissRequests = new SingleFlight<>(); // Keyed by the best ChainHeight at the time of the request.
+
+    protected volatile ChainHead _chainHead = null;
 
-    protected BlockHeader _currentHeadBlockHeader = null;
-    protected Long _currentHeadBlockHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT.getBlockHeight();
+    protected final AtomicLong _longPollGeneration = new AtomicLong(0L);
+    protected final LinkedList<LongPoll> _longPolls = new LinkedList<>(); // Synchronized on itself.
+    protected volatile Long _longPollRefreshIntervalMs = 60000L;
+    protected volatile Long _longPollMaxWaitMs = 120000L;
+    protected volatile Integer _maxLongPollCount = 4096;
+
+    /**
+     * Returns a new long-poll id for the template: its parent's hash followed by the generation number.
+     */
+    protected String _createLongPollId(final BlockTemplate blockTemplate) {
+        final Sha256Hash previousBlockHash = blockTemplate.getPreviousBlockHash();
+        return ((previousBlockHash != null ? previousBlockHash.toString() : "") + _longPollGeneration.incrementAndGet());
+    }
+
+    protected CachedBlockTemplate _createCachedBlockTemplate(final BlockTemplate blockTemplate, final Boolean shouldCompress) {
+        return new CachedBlockTemplate(blockTemplate, _createLongPollId(blockTemplate), shouldCompress);
+    }
+
+    /**
+     * Invokes each long-poll's callback with the response on the long-poll ExecutorService.
+     */
+    protected void _completeLongPolls(final LinkedList<LongPoll> longPolls, final PrerenderedResponse response) {
+        for (final LongPoll longPoll : longPolls) {
+            final Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    longPoll.callback.onBlockTemplateResponse(response);
+                }
+            };
+
+            try {
+                _longPollExecutorService.execute(runnable);
+            }
+            catch (final RejectedExecutionException exception) {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * Completes the long-polls that have waited at least the maximum duration with the current template.
+     */
+    protected void _completeExpiredLongPolls() {
+        final long nowMs = System.currentTimeMillis();
+
+        final LinkedList<LongPoll> expiredLongPolls = new LinkedList<>();
+        synchronized (_longPolls) {
+            final Iterator<LongPoll> iterator = _longPolls.iterator();
+            while (iterator.hasNext()) {
+                final LongPoll longPoll = iterator.next();
+                if ((nowMs - longPoll.parkedAtMs) >= _longPollMaxWaitMs) {
+                    iterator.remove();
+                    expiredLongPolls.add(longPoll);
+                }
+            }
+        }
+        if (expiredLongPolls.isEmpty()) { return; }
+
+        Logger.debug("Completing " + expiredLongPolls.size() + " expired long-polls.");
+        final CachedBlockTemplate cachedBlockTemplate = _cachedBlockTemplate.get();
+        _completeLongPolls(expiredLongPolls, (cachedBlockTemplate != null ? cachedBlockTemplate.response : null));
+    }
+
+    /**
+     * Completes the long-polls that the newly cached template satisfies: those waiting on a different parent, and those
+     *  that have waited at least the refresh interval (since the template's transactions have since been refreshed).
+     */
+    protected void _onBlockTemplateCached(final CachedBlockTemplate cachedBlockTemplate) {
+        final Sha256Hash previousBlockHash = cachedBlockTemplate.blockTemplate.getPreviousBlockHash();
+        final long nowMs = System.currentTimeMillis();
+
+        final LinkedList<LongPoll> completedLongPolls = new LinkedList<>();
+        synchronized (_longPolls) {
+            final Iterator<LongPoll> iterator = _longPolls.iterator();
+            while (iterator.hasNext()) {
+                final LongPoll longPoll = iterator.next();
+                final boolean hasNewParent = (! Util.areEqual(longPoll.previousBlockHash, previousBlockHash));
+                final boolean hasRefreshed = ((nowMs - longPoll.parkedAtMs) >= _longPollRefreshIntervalMs);
+                if (hasNewParent || hasRefreshed) {
+                    iterator.remove();
+                    completedLongPolls.add(longPoll);
+                }
+            }
+        }
+
+        if (completedLongPolls.isEmpty()) { return; }
+
+        Logger.debug("Completing " + completedLongPolls.size() + " long-polls.");
+        _completeLongPolls(completedLongPolls, cachedBlockTemplate.response);
+    }
 
     protected void _updateCachedBlockTemplateAsync() {
         synchronized (_getBlockTemplatePin) {
@@ -39,28 +211,63 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
     }
 
     protected BlockTemplate _generateEmptyBlock() {
-        if ( (_currentHeadBlockHeader == null) || (_currentHeadBlockHeight == null) ) { return null; }
-        final Long blockHeight = _currentHeadBlockHeight;
+        return _generateEmptyBlock(_chainHead);
+    }
+
+    protected BlockTemplate _generateEmptyBlock(final ChainHead chainHead) {
+        if ( (chainHead == null) || (chainHead.blockHeader == null) || (chainHead.blockHeight == null) ) { return null; }
+        final BlockHeader headBlockHeader = chainHead.blockHeader;
+        final Long blockHeight = chainHead.blockHeight;
 
         final Difficulty difficulty;
         {
-            final AsertDifficultyCalculator asertDifficultyCalculator = new AsertDifficultyCalculator();
-            final AsertReferenceBlock asertReferenceBlock = BitcoinConstants.getAsertReferenceBlock();
-            final Long previousBlockTimestamp = _currentHeadBlockHeader.getTimestamp();
+            AsertReferenceBlock asertReferenceBlock = _asertReferenceBlock;
+            if (asertReferenceBlock == null) {
+                asertReferenceBlock = BitcoinConstants.getAsertReferenceBlock();
+                _asertReferenceBlock = asertReferenceBlock;
+            }
+            final Long previousBlockTimestamp = headBlockHeader.getTimestamp();
 
-            difficulty = asertDifficultyCalculator.computeAsertTarget(asertReferenceBlock, previousBlockTimestamp, blockHeight);
+            difficulty = _asertDifficultyCalculator.computeAsertTarget(asertReferenceBlock, previousBlockTimestamp, blockHeight);
         }
 
         final MutableBlock block = new MutableBlock();
         block.setVersion(BlockHeader.VERSION);
         block.setDifficulty(difficulty);
-        block.setPreviousBlockHash(_currentHeadBlockHeader.getHash());
+        block.setPreviousBlockHash(chainHead.blockHash);
         block.setTimestamp(_systemTime.getCurrentTimeInSeconds());
         block.setNonce(0L);
 
         return BitcoinVerdeRpcConnector.toBlockTemplate(block, blockHeight, _systemTime);
     }
 
+    /**
+     * Caches the empty template for the new chain head, completes the long-polls waiting on the previous head, and
+     *  requests a full template.  notificationNanoTime is the System.nanoTime() at which the block notification was received.
+     *  Must be called from the chain-head thread.
+     */
+    protected void _applyChainHead(final ChainHead chainHead, final Long notificationNanoTime) {
+        _chainHead = chainHead;
+
+        final BlockTemplate blockTemplate = _generateEmptyBlock(chainHead);
+        final CachedBlockTemplate cachedBlockTemplate = (blockTemplate != null ? _createCachedBlockTemplate(blockTemplate, true) : null);
+        _cachedBlockTemplate.set(cachedBlockTemplate);
+        if (cachedBlockTemplate != null) {
+            if (notificationNanoTime != null) {
+                final long delayUs = ((System.nanoTime() - notificationNanoTime) / 1000L);
+                _lastEmptyBlockTemplateDelayUs = delayUs;
+                _totalEmptyBlockTemplateDelayUs.addAndGet(delayUs);
+                _emptyBlockTemplateCount.incrementAndGet();
+                Logger.debug("Empty template for height " + chainHead.blockHeight + " servable " + delayUs + "us after block notification.");
+            }
+
+            Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
+            _onBlockTemplateCached(cachedBlockTemplate);
+        }
+
+        _updateCachedBlockTemplateAsync();
+    }
+
     protected void _createUpdateThread() {
         _updateThread = new Thread(new Runnable() {
             @Override
@@ -69,6 +276,7 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
                 try {
                     while (! thread.isInterrupted()) {
                         _updateCachedBlockTemplateAsync();
+                        _completeExpiredLongPolls(); // Expired long-polls are therefore completed within one poll period...
 
                         Thread.sleep(_newBlockTemplatePeriodMs);
                     }
@@ -93,11 +301,24 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
                 try {
                     while (! thread.isInterrupted()) {
                         _getBlockTemplatePin.set(false);
-                        _cachedBlockTemplate = CachingBlockTemplateManager.super.getBlockTemplate();
 
-                        final BlockTemplate blockTemplate = _cachedBlockTemplate;
-                        if (blockTemplate != null) {
-                            Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
+                        // The previous template continues to be served while the refresh is in-flight.  If the cache is
+                        //  replaced in the meantime (e.g. by a new block's empty template), the refreshed template is
+                        //  stale and is discarded; the replacement has already requested another refresh.
+                        final CachedBlockTemplate previousCachedBlockTemplate = _cachedBlockTemplate.get();
+                        final BlockTemplate blockTemplate = CachingBlockTemplateManager.super.getBlockTemplate();
+                        if (blockTemplate == null) {
+                            Logger.debug("Unable to refresh cached template; retaining previous template.");
+                        }
+                        else {
+                            final CachedBlockTemplate cachedBlockTemplate = _createCachedBlockTemplate(blockTemplate, true);
+                            if (_cachedBlockTemplate.compareAndSet(previousCachedBlockTemplate, cachedBlockTemplate)) {
+                                Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
+                                _onBlockTemplateCached(cachedBlockTemplate);
+                            }
+                            else {
+                                Logger.debug("Discarding refreshed template; cached template was replaced during the refresh.");
+                            }
                         }
 
                         synchronized (_getBlockTemplatePin) {
@@ -141,42 +362,198 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
 
     public CachingBlockTemplateManager(final NodeSelector nodeSelector) {
         super(nodeSelector);
+
+        final ThreadPoolExecutor chainHeadExecutorService = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("CachingBlockTemplateManager - Chain Head");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        chainHeadExecutorService.allowCoreThreadTimeOut(true);
+        _chainHeadExecutorService = chainHeadExecutorService;
+
+        final ThreadPoolExecutor longPollExecutorService = new ThreadPoolExecutor(4, 4, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("CachingBlockTemplateManager - Long Poll");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        longPollExecutorService.allowCoreThreadTimeOut(true);
+        _longPollExecutorService = longPollExecutorService;
     }
 
-    protected void onNewBlock(final BlockHeader blockHeader, final ChainHeight chainHeight) {
-        _currentHeadBlockHeader = blockHeader;
-        _currentHeadBlockHeight = chainHeight.getBlockHeight();
-        _cachedBlockTemplate = _generateEmptyBlock();
+    /**
+     * Serves an empty template for the block as soon as its header is received (e.g. via a ZMQ block notification),
+     *  before the node's ChainHeight is requested.  The block's height is derived from the current chain head, so the
+     *  header is ignored unless it extends the current chain head (or is the header of the current chain head, if the
+     *  chain head was announced only by its hash); onNewBlock handles all other cases.
+     *  notificationNanoTime is the System.nanoTime() at which the notification was received.
+     */
+    protected void onNewBlockHeader(final BlockHeader blockHeader, final Long notificationNanoTime) {
+        _chainHeadExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ChainHead chainHead = _chainHead;
+                if ( (chainHead == null) || (chainHead.blockHash == null) || (chainHead.blockHeight == null) ) { return; }
 
-        final BlockTemplate blockTemplate = _cachedBlockTemplate;
-        if (blockTemplate != null) {
-            Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
-        }
+                if ( (chainHead.blockHeader == null) && Util.areEqual(chainHead.blockHash, blockHeader.getHash()) ) { // The block's hash was announced before its header...
+                    _applyChainHead(new ChainHead(blockHeader, chainHead.blockHeight), notificationNanoTime);
+                    return;
+                }
 
-        _updateCachedBlockTemplateAsync();
+                if (! Util.areEqual(chainHead.blockHash, blockHeader.getPreviousBlockHash())) { return; }
+
+                _applyChainHead(new ChainHead(blockHeader, (chainHead.blockHeight + 1L)), notificationNanoTime);
+            }
+        });
     }
 
-    @Override
-    public synchronized BlockTemplate getBlockTemplate() {
-        if (_cachedBlockTemplate == null) {
-            _updateCachedBlockTemplateAsync();
+    /**
+     * Applies the block as the new chain head.  The blockHeader may be null if the block was announced only by its hash,
+     *  in which case the block's hash is taken from the chainHeight, if known.
+     *  If the block is already the chain head (e.g. its header was applied via onNewBlockHeader), or if the blockHeader is
+     *  null and the chain head is already at the block's height, the cached template is kept and only a refresh is requested.
+     */
+    protected void onNewBlock(final BlockHeader blockHeader, final ChainHeight chainHeight, final Long notificationNanoTime) {
+        _chainHeadExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ChainHead chainHead = _chainHead;
+                final Sha256Hash blockHash = (blockHeader != null ? blockHeader.getHash() : chainHeight.getBlockHash());
+                if ( (chainHead != null) && Util.areEqual(chainHead.blockHeight, chainHeight.getBlockHeight()) ) {
+                    if (blockHeader == null) { // Without the header an empty template cannot be generated, so the cached template is kept...
+                        if ( (blockHash != null) && (! Util.areEqual(chainHead.blockHash, blockHash)) ) {
+                            _chainHead = new ChainHead(null, blockHash, chainHeight.getBlockHeight()); // Applied via onNewBlockHeader once the header is received.
+                        }
+                        _updateCachedBlockTemplateAsync();
+                        return;
+                    }
+
+                    if ( (chainHead.blockHeader != null) && Util.areEqual(chainHead.blockHash, blockHash) ) { // The empty template was already served via onNewBlockHeader...
+                        _updateCachedBlockTemplateAsync();
+                        return;
+                    }
+                }
+
+                _applyChainHead(new ChainHead(blockHeader, blockHash, chainHeight.getBlockHeight()), notificationNanoTime);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached template, loading it if the cache is cold; returns null if no template is available.
+     */
+    protected CachedBlockTemplate _getCachedBlockTemplate() {
+        final CachedBlockTemplate cachedBlockTemplate = _cachedBlockTemplate.get();
+        if (cachedBlockTemplate != null) {
+            return cachedBlockTemplate;
+        }
+
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+        final SingleFlight.Result<CachedBlockTemplate> result = _coldMissRequests.execute(bestChainHeight, new SingleFlight.Call<CachedBlockTemplate>() {
+            @Override
+            public CachedBlockTemplate run() {
+                Logger.debug("Synchronously loading block template.");
+                final BlockTemplate blockTemplate = CachingBlockTemplateManager.super.getBlockTemplate();
+                if (blockTemplate == null) { return null; }
 
-            Logger.debug("Synchronously loading block template.");
-            final BlockTemplate blockTemplate = CachingBlockTemplateManager.super.getBlockTemplate();
-            if (blockTemplate != null) {
                 final Block block = blockTemplate.toBlock();
                 if (block != null) {
-                    _currentHeadBlockHeader = new ImmutableBlockHeader(block); // Keep only the blockHeader...
-                    _currentHeadBlockHeight = blockTemplate.getBlockHeight();
+                    _chainHead = new ChainHead(new ImmutableBlockHeader(block), blockTemplate.getBlockHeight()); // Keep only the blockHeader...
+                }
+
+                final CachedBlockTemplate loadedBlockTemplate = _createCachedBlockTemplate(blockTemplate, true);
+                if (_cachedBlockTemplate.compareAndSet(null, loadedBlockTemplate)) {
+                    Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
+                    _onBlockTemplateCached(loadedBlockTemplate);
                 }
+                return loadedBlockTemplate;
+            }
+        }, _coldMissMaxWaitMs);
+
+        if (result.value != null) {
+            return result.value;
+        }
 
-                _cachedBlockTemplate = blockTemplate;
-                Logger.debug("Cached template has " + blockTemplate.getTransactionCount() + " transactions.");
+        final CachedBlockTemplate populatedBlockTemplate = _cachedBlockTemplate.get(); // The cache may have been populated while waiting...
+        if (populatedBlockTemplate != null) {
+            return populatedBlockTemplate;
+        }
+
+        Logger.debug("Block template unavailable; serving empty template.");
+        final BlockTemplate emptyBlockTemplate = _generateEmptyBlock();
+        if (emptyBlockTemplate == null) { return null; }
+        return _createCachedBlockTemplate(emptyBlockTemplate, false);
+    }
+
+    @Override
+    public BlockTemplate getBlockTemplate() {
+        final CachedBlockTemplate cachedBlockTemplate = _getCachedBlockTemplate();
+        return (cachedBlockTemplate != null ? cachedBlockTemplate.blockTemplate : null);
+    }
+
+    /**
+     * Returns the cached template's response, which was rendered (and compressed) once when the template was cached.
+     */
+    @Override
+    public PrerenderedResponse getBlockTemplateResponse() {
+        final CachedBlockTemplate cachedBlockTemplate = _getCachedBlockTemplate();
+        return (cachedBlockTemplate != null ? cachedBlockTemplate.response : null);
+    }
+
+    /**
+     * Parks the request until a template newer than the one identified by longPollId is cached (or the maximum wait
+     *  elapses); no thread is held while parked.  Requests with an unknown or outdated longPollId, and requests received
+     *  while the maximum number of long-polls are parked, are answered immediately.
+     */
+    @Override
+    public Boolean waitForBlockTemplate(final String longPollId, final LongPollCallback callback) {
+        synchronized (_longPolls) { // Templates are cached before waking long-polls, so a concurrently cached template either fails this check or wakes this long-poll.
+            final CachedBlockTemplate cachedBlockTemplate = _cachedBlockTemplate.get();
+            if ( (cachedBlockTemplate == null) || (! Util.areEqual(cachedBlockTemplate.longPollId, longPollId)) ) { return false; }
+            if (_longPolls.size() >= _maxLongPollCount) {
+                Logger.debug("Maximum long-poll count reached; answering long-poll immediately.");
+                return false;
             }
-            return blockTemplate;
+
+            _longPolls.add(new LongPoll(callback, cachedBlockTemplate.blockTemplate.getPreviousBlockHash(), System.currentTimeMillis()));
         }
+        return true;
+    }
+
+    /**
+     * Returns the number of empty templates served in response to block notifications.
+     */
+    public Long getEmptyBlockTemplateCount() {
+        return _emptyBlockTemplateCount.get();
+    }
 
-        return _cachedBlockTemplate;
+    /**
+     * Returns the delay between the most recent block notification and its empty template becoming servable, in microseconds.
+     */
+    public Long getLastEmptyBlockTemplateDelayUs() {
+        return _lastEmptyBlockTemplateDelayUs;
+    }
+
+    /**
+     * Returns the average delay between a block notification and its empty template becoming servable, in microseconds.
+     */
+    public Long getAverageEmptyBlockTemplateDelayUs() {
+        final long count = _emptyBlockTemplateCount.get();
+        if (count < 1L) { return null; }
+        return (_totalEmptyBlockTemplateDelayUs.get() / count);
+    }
+
+    public Integer getLongPollCount() {
+        synchronized (_longPolls) {
+            return _longPolls.size();
+        }
     }
 
     public void updateBlockTemplate() {
@@ -187,6 +564,35 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
         _newBlockTemplatePeriodMs = pollPeriodInMs;
     }
 
+    /**
+     * Sets the minimum duration a long-poll waits before it is completed by a template with the same parent (i.e. one
+     *  whose transactions were refreshed); a template with a new parent always completes long-polls.
+     */
+    public void setLongPollRefreshIntervalMs(final Long longPollRefreshIntervalMs) {
+        _longPollRefreshIntervalMs = longPollRefreshIntervalMs;
+    }
+
+    /**
+     * Sets the maximum duration a long-poll is parked before it is completed with the current template.
+     */
+    public void setLongPollMaxWaitMs(final Long longPollMaxWaitMs) {
+        _longPollMaxWaitMs = longPollMaxWaitMs;
+    }
+
+    /**
+     * Sets the maximum number of parked long-polls.
+     */
+    public void setMaxLongPollCount(final Integer maxLongPollCount) {
+        _maxLongPollCount = maxLongPollCount;
+    }
+
+    /**
+     * Sets the maximum duration a caller waits for another caller's in-flight template request while the cache is empty.
+     */
+    public void setColdMissMaxWaitMs(final Long coldMissMaxWaitMs) {
+        _coldMissMaxWaitMs = coldMissMaxWaitMs;
+    }
+
     public synchronized void start() {
         if (_updateThread != null) {
             _stopUpdateThread();
@@ -204,5 +610,14 @@ public class CachingBlockTemplateManager extends BlockTemplateManager {
     public void stop() {
         _stopGetBlockTemplateThread();
         _stopUpdateThread();
+
+        final LinkedList<LongPoll> longPolls;
+        synchronized (_longPolls) {
+            longPolls = new LinkedList<>(_longPolls);
+            _longPolls.clear();
+        }
+
+        final CachedBlockTemplate cachedBlockTemplate = _cachedBlockTemplate.get();
+        _completeLongPolls(longPolls, (cachedBlockTemplate != null ? cachedBlockTemplate.response : null));
     }
 }
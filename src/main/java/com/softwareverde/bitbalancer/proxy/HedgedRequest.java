@@ -0,0 +1,183 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Container;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A request sent to a primary node that is also sent to a secondary (hedge) node if the primary has not responded
+ *  within the hedge delay.
+ *  The primary request is executed on the calling thread; the hedged request is executed by the provided executor.
+ *  The first successful response is returned and the other request is canceled via its Monitor.
+ *  The RequestHandler may use HedgedRequest::wasCanceled to distinguish a canceled request from a failed one.
+ */
+public class HedgedRequest {
+    public interface RequestHandler {
+        Response sendRequest(RpcConfiguration rpcConfiguration, Monitor monitor, HedgedRequest hedgedRequest);
+    }
+
+    public static class Result {
+        public final RpcConfiguration rpcConfiguration;
+        public final Response response;
+        public final Boolean isSuccessful;
+        public final String errorString;
+
+        public Result(final RpcConfiguration rpcConfiguration, final Response response, final Boolean isSuccessful, final String errorString) {
+            this.rpcConfiguration = rpcConfiguration;
+            this.response = response;
+            this.isSuccessful = isSuccessful;
+            this.errorString = errorString;
+        }
+    }
+
+    protected static final int HEDGE_PENDING = 0;
+    protected static final int HEDGE_SENT = 1;
+    protected static final int HEDGE_CANCELED = 2;
+
+    protected final RpcConfiguration _primaryRpcConfiguration;
+    protected final RpcConfiguration _hedgeRpcConfiguration;
+    protected final RequestHandler _requestHandler;
+    protected final Monitor _primaryMonitor;
+    protected final Monitor _hedgeMonitor;
+    protected final AtomicInteger _hedgeState = new AtomicInteger(HEDGE_PENDING);
+    protected volatile Boolean _wasPrimaryCanceled = false;
+    protected volatile Boolean _wasHedgeCanceled = false;
+
+    // Guarded by this...
+    protected Result _successfulResult = null;
+    protected Result _primaryResult = null;
+    protected int _pendingRequestCount = 1;
+
+    protected static Monitor _newMonitor(final RpcConfiguration rpcConfiguration) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        final Monitor monitor = bitcoinRpcConnector.getMonitor();
+        final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+        if (maxTimeoutMs != null) {
+            monitor.setMaxDurationMs(maxTimeoutMs);
+        }
+        return monitor;
+    }
+
+    protected Result _send(final RpcConfiguration rpcConfiguration, final Monitor monitor) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        final Response response = _requestHandler.sendRequest(rpcConfiguration, monitor, this);
+
+        final Container<String> errorStringContainer = new Container<>();
+        final Boolean isSuccessful = bitcoinRpcConnector.isSuccessfulResponse(response, errorStringContainer);
+        return new Result(rpcConfiguration, response, isSuccessful, errorStringContainer.value);
+    }
+
+    /**
+     * Cancels the request using the provided Monitor.
+     *  The request is marked as canceled before the Monitor is canceled, so that it is known once the request returns.
+     */
+    protected void _cancel(final Monitor monitor) {
+        if (monitor == _primaryMonitor) {
+            _wasPrimaryCanceled = true;
+        }
+        else {
+            _wasHedgeCanceled = true;
+        }
+        monitor.cancel();
+    }
+
+    protected synchronized void _onResult(final Result result, final Monitor otherMonitor) {
+        _pendingRequestCount -= 1;
+
+        if ( result.isSuccessful && (_successfulResult == null) ) {
+            _successfulResult = result;
+            _cancel(otherMonitor);
+        }
+
+        this.notifyAll();
+    }
+
+    protected void _sendHedgedRequest() {
+        synchronized (this) {
+            if (! _hedgeState.compareAndSet(HEDGE_PENDING, HEDGE_SENT)) { return; }
+            _pendingRequestCount += 1;
+        }
+
+        Logger.debug("Hedging request to " + _primaryRpcConfiguration + " with " + _hedgeRpcConfiguration + ".");
+        final Result result = _send(_hedgeRpcConfiguration, _hedgeMonitor);
+        _onResult(result, _primaryMonitor);
+    }
+
+    public HedgedRequest(final RpcConfiguration primaryRpcConfiguration, final RpcConfiguration hedgeRpcConfiguration, final RequestHandler requestHandler) {
+        _primaryRpcConfiguration = primaryRpcConfiguration;
+        _hedgeRpcConfiguration = hedgeRpcConfiguration;
+        _requestHandler = requestHandler;
+        _primaryMonitor = _newMonitor(primaryRpcConfiguration);
+        _hedgeMonitor = _newMonitor(hedgeRpcConfiguration);
+    }
+
+    /**
+     * Sends the request to the primary node, and to the hedge node after hedgeDelayMs if the primary has not yet responded.
+     *  Returns the first successful Result, or the primary's Result if neither request was successful.
+     */
+    public Result execute(final ScheduledExecutorService executorService, final Long hedgeDelayMs) {
+        final ScheduledFuture<?> hedgeFuture = executorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                _sendHedgedRequest();
+            }
+        }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+
+        final Result primaryResult = _send(_primaryRpcConfiguration, _primaryMonitor);
+        _onResult(primaryResult, _hedgeMonitor);
+
+        synchronized (this) {
+            _primaryResult = primaryResult;
+
+            if (_hedgeState.compareAndSet(HEDGE_PENDING, HEDGE_CANCELED)) {
+                hedgeFuture.cancel(false);
+            }
+
+            while ( (_successfulResult == null) && (_pendingRequestCount > 0) ) {
+                try {
+                    this.wait();
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    _cancel(_hedgeMonitor);
+                    break;
+                }
+            }
+
+            if (_successfulResult != null) {
+                return _successfulResult;
+            }
+
+            return _primaryResult;
+        }
+    }
+
+    /**
+     * Returns true if the request was also sent to the hedge node.
+     */
+    public Boolean wasHedged() {
+        return (_hedgeState.get() == HEDGE_SENT);
+    }
+
+    /**
+     * Returns true if the request using the provided Monitor was canceled by this HedgedRequest (i.e. it lost to the
+     *  other request), in which case its response does not reflect the health of its node.
+     */
+    public Boolean wasCanceled(final Monitor monitor) {
+        if (monitor == _primaryMonitor) { return _wasPrimaryCanceled; }
+        if (monitor == _hedgeMonitor) { return _wasHedgeCanceled; }
+        return false;
+    }
+
+    public RpcConfiguration getHedgeRpcConfiguration() {
+        return _hedgeRpcConfiguration;
+    }
+}
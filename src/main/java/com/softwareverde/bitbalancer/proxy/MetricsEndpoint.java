@@ -0,0 +1,49 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Exposes the proxy's runtime metrics as a single JSON object.
+ *  Each registered MetricsSource is rendered under its own key.
+ */
+public class MetricsEndpoint implements Servlet {
+    public interface MetricsSource {
+        Json getMetrics();
+    }
+
+    protected final ConcurrentSkipListMap<String, MetricsSource> _metricsSources = new ConcurrentSkipListMap<>();
+
+    public MetricsEndpoint() { }
+
+    public void addMetricsSource(final String name, final MetricsSource metricsSource) {
+        _metricsSources.put(name, metricsSource);
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        final Json metricsJson = new Json(false);
+        for (final Map.Entry<String, MetricsSource> entry : _metricsSources.entrySet()) {
+            final String name = entry.getKey();
+            final MetricsSource metricsSource = entry.getValue();
+            try {
+                metricsJson.put(name, metricsSource.getMetrics());
+            }
+            catch (final Exception exception) {
+                Logger.debug("Unable to collect metrics for " + name + ".", exception);
+                metricsJson.put(name, null);
+            }
+        }
+
+        final Response response = new Response();
+        response.setCode(Response.Codes.OK);
+        response.setContent(metricsJson.toString());
+        return response;
+    }
+}
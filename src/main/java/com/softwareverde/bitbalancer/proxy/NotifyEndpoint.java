@@ -9,11 +9,14 @@ import com.softwareverde.constable.bytearray.MutableByteArray;
 import com.softwareverde.constable.list.List;
 import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.http.HttpMethod;
-import com.softwareverde.http.querystring.PostParameters;
 import com.softwareverde.http.server.servlet.Servlet;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.logging.Logger;
+import com.softwareverde.util.StringUtil;
+
+import java.net.URLDecoder;
+import java.util.HashMap;
 
 public class NotifyEndpoint implements Servlet {
     public interface Context {
@@ -22,6 +25,32 @@ public class NotifyEndpoint implements Servlet {
         void relayNotification(RpcNotification notification);
     }
 
+    /**
+     * Parses the application/x-www-form-urlencoded request body.
+     *  The raw body is used (rather than the server's PostParameters) so that the endpoint behaves identically under any
+     *  HTTP front end.
+     */
+    protected static HashMap<String, String> _parsePostParameters(final byte[] rawPostData) {
+        final HashMap<String, String> postParameters = new HashMap<>();
+        if (rawPostData == null) { return postParameters; }
+
+        final String postDataString = StringUtil.bytesToString(rawPostData);
+        for (final String keyValuePair : postDataString.split("&")) {
+            if (keyValuePair.isEmpty()) { continue; }
+
+            final int separatorIndex = keyValuePair.indexOf('=');
+            final String key = (separatorIndex < 0 ? keyValuePair : keyValuePair.substring(0, separatorIndex));
+            final String value = (separatorIndex < 0 ? "" : keyValuePair.substring(separatorIndex + 1));
+            try {
+                postParameters.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+            catch (final Exception exception) {
+                Logger.debug("Unable to decode post parameter: " + keyValuePair);
+            }
+        }
+        return postParameters;
+    }
+
     protected final Context _context;
     protected final RpcNotificationType _notificationType;
     protected final Integer _requiredDataLength;
@@ -45,10 +74,10 @@ public class NotifyEndpoint implements Servlet {
             return errorResponse;
         }
 
-        final PostParameters postParameters = request.getPostParameters();
-        final String nodeHost = postParameters.get("nodeHost");
-        final String nodeName = postParameters.get("nodeName");
-        final String blockHash = postParameters.get("blockHash");
+        final HashMap<String, String> postParameters = _parsePostParameters(request.getRawPostData());
+        final String nodeHost = Util.coalesce(postParameters.get("nodeHost"), "");
+        final String nodeName = Util.coalesce(postParameters.get("nodeName"), "");
+        final String blockHash = Util.coalesce(postParameters.get("blockHash"), "");
 
         final ByteArray postData;
         {
@@ -1,30 +1,52 @@
 package com.softwareverde.bitbalancer.proxy;
 
+import com.softwareverde.bitbalancer.proxy.cache.PrerenderedResponse;
+import com.softwareverde.bitbalancer.proxy.cache.ResponseCache;
+import com.softwareverde.bitbalancer.proxy.cache.SingleFlight;
+import com.softwareverde.bitbalancer.proxy.http.DeferredResponse;
+import com.softwareverde.bitbalancer.proxy.http.EncodedResponse;
+import com.softwareverde.bitbalancer.proxy.http.HttpRequest;
 import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelector;
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.JsonRpcEnvelope;
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import com.softwareverde.bitbalancer.proxy.rpc.LatencySampleWindow;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
 import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connection.RpcConnectionPool;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
 import com.softwareverde.bitbalancer.proxy.zmq.ZmqConfiguration;
 import com.softwareverde.bitcoin.block.Block;
 import com.softwareverde.bitcoin.block.BlockInflater;
-import com.softwareverde.bitcoin.rpc.BlockTemplate;
 import com.softwareverde.bitcoin.rpc.RpcNotificationType;
 import com.softwareverde.bitcoin.rpc.core.zmq.ZmqMessageTypeConverter;
-import com.softwareverde.bitcoin.server.database.BatchRunner;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
 import com.softwareverde.constable.bytearray.ByteArray;
 import com.softwareverde.constable.bytearray.MutableByteArray;
 import com.softwareverde.constable.list.List;
 import com.softwareverde.constable.list.mutable.MutableList;
-import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.http.server.servlet.Servlet;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
 import com.softwareverde.util.Container;
-import com.softwareverde.util.StringUtil;
+import com.softwareverde.util.Util;
 import com.softwareverde.util.timer.NanoTimer;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class RpcProxyHandler implements Servlet {
     public enum Method {
@@ -41,123 +63,388 @@ public class RpcProxyHandler implements Servlet {
 
         public String getValue() { return _value; }
 
-        public static Method fromString(final String value) {
-            for (final Method method : Method.values()) {
-                final String methodValue = method.getValue();
-                if (methodValue.equalsIgnoreCase(value)) {
-                    return method;
-                }
+        protected static byte _toLowerCase(final byte b) {
+            return ( ((b >= 'A') && (b <= 'Z')) ? (byte) (b + ('a' - 'A')) : b );
+        }
+
+        protected static int _hash(final byte[] bytes, final int startIndex, final int endIndex, final int seed) {
+            int hash = seed;
+            for (int i = startIndex; i < endIndex; ++i) {
+                hash = ((hash ^ _toLowerCase(bytes[i])) * 0x01000193); // FNV-1a
             }
+            return (hash ^ (hash >>> 16));
+        }
 
+        /**
+         * Returns the first seed that maps every Method to a distinct slot of a table of tableSize, or null if none exists.
+         */
+        protected static Integer _findPerfectHashSeed(final byte[][] methodValues, final int tableSize) {
+            for (int seed = 1; seed < 4096; ++seed) {
+                final boolean[] isSlotUsed = new boolean[tableSize];
+                boolean hasCollision = false;
+                for (final byte[] methodValue : methodValues) {
+                    final int slot = (_hash(methodValue, 0, methodValue.length, seed) & (tableSize - 1));
+                    if (isSlotUsed[slot]) {
+                        hasCollision = true;
+                        break;
+                    }
+                    isSlotUsed[slot] = true;
+                }
+
+                if (! hasCollision) { return seed; }
+            }
             return null;
         }
+
+        protected static final Method[] LOOKUP_TABLE; // Indexed by the seeded hash of the method name; each Method occupies its own slot.
+        protected static final byte[][] LOOKUP_TABLE_VALUES;
+        protected static final int LOOKUP_HASH_SEED;
+        static {
+            final Method[] methods = Method.values();
+            final byte[][] methodValues = new byte[methods.length][];
+            for (int i = 0; i < methods.length; ++i) {
+                methodValues[i] = methods[i].getValue().getBytes(StandardCharsets.US_ASCII);
+            }
+
+            int tableSize = Integer.highestOneBit(Math.max(1, methods.length) * 4);
+            Integer seed = _findPerfectHashSeed(methodValues, tableSize);
+            while (seed == null) {
+                tableSize *= 2;
+                seed = _findPerfectHashSeed(methodValues, tableSize);
+            }
+
+            LOOKUP_HASH_SEED = seed;
+            LOOKUP_TABLE = new Method[tableSize];
+            LOOKUP_TABLE_VALUES = new byte[tableSize][];
+            for (int i = 0; i < methods.length; ++i) {
+                final int slot = (_hash(methodValues[i], 0, methodValues[i].length, seed) & (tableSize - 1));
+                LOOKUP_TABLE[slot] = methods[i];
+                LOOKUP_TABLE_VALUES[slot] = methodValues[i];
+            }
+        }
+
+        /**
+         * Returns the Method named (case-insensitively) by the bytes between startIndex and endIndex, or null.
+         *  The lookup is a single probe of a perfect hash table and does not allocate.
+         */
+        public static Method fromBytes(final byte[] bytes, final int startIndex, final int endIndex) {
+            final int slot = (_hash(bytes, startIndex, endIndex, LOOKUP_HASH_SEED) & (LOOKUP_TABLE.length - 1));
+            final byte[] methodValue = LOOKUP_TABLE_VALUES[slot];
+            if ( (methodValue == null) || (methodValue.length != (endIndex - startIndex)) ) { return null; }
+
+            for (int i = 0; i < methodValue.length; ++i) {
+                if (_toLowerCase(bytes[startIndex + i]) != methodValue[i]) { return null; }
+            }
+            return LOOKUP_TABLE[slot];
+        }
     }
 
+    /**
+     * Read-only methods whose result is the same from any node at the best ChainHeight.
+     *  These requests are distributed via NodeSelector::selectLoadBalancedNode; all other requests are routed by hierarchy.
+     */
+    protected static final HashSet<String> LOAD_BALANCED_METHODS = new HashSet<>();
+    static {
+        LOAD_BALANCED_METHODS.add("getbestblockhash");
+        LOAD_BALANCED_METHODS.add("getblock");
+        LOAD_BALANCED_METHODS.add("getblockchaininfo");
+        LOAD_BALANCED_METHODS.add("getblockcount");
+        LOAD_BALANCED_METHODS.add("getblockhash");
+        LOAD_BALANCED_METHODS.add("getblockheader");
+        LOAD_BALANCED_METHODS.add("getblockstats");
+        LOAD_BALANCED_METHODS.add("getchaintips");
+        LOAD_BALANCED_METHODS.add("getdifficulty");
+        LOAD_BALANCED_METHODS.add("getrawtransaction");
+        LOAD_BALANCED_METHODS.add("gettxout");
+        LOAD_BALANCED_METHODS.add("gettxoutproof");
+        LOAD_BALANCED_METHODS.add("verifytxoutproof");
+        LOAD_BALANCED_METHODS.add("decoderawtransaction");
+        LOAD_BALANCED_METHODS.add("decodescript");
+        LOAD_BALANCED_METHODS.add("validateaddress");
+    }
+
+    protected static final Integer MIN_HEDGE_SAMPLE_COUNT = 32; // The number of latency samples required before a method is hedged.
+    protected static final Integer MAX_CONCURRENT_HEDGED_REQUEST_COUNT = 16; // Hedges beyond this limit are delayed until a thread is available.
+    protected static final Integer MAX_CONCURRENT_BLOCK_SUBMISSION_COUNT = 16; // Submissions beyond this limit are delayed until a thread is available.
+    protected static final byte[] LONG_POLL_ID_KEY = "longpollid".getBytes(StandardCharsets.UTF_8);
+
     protected final ZmqConfiguration _zmqConfiguration;
     protected final NodeSelector _nodeSelector;
     protected final BlockTemplateManager _blockTemplateManager;
+    protected final ConcurrentHashMap<String, LatencySampleWindow> _methodLatencies = new ConcurrentHashMap<>();
+    protected final ScheduledExecutorService _hedgeExecutorService;
+    protected volatile Double _hedgePercentile = null;
+    protected final ExecutorService _blockSubmissionExecutorService;
+    protected final AtomicLong _blockSubmissionCount = new AtomicLong(0L);
+    protected volatile BlockSubmission _lastBlockSubmission = null; // The most recent submission to have completed on every node.
+    protected final SingleFlight<String, Response> _inFlightRequests = new SingleFlight<>(); // Keyed by method and params.
+    protected volatile ResponseCache _responseCache = null;
+
+    protected static int _getHexValue(final byte b) {
+        if ( (b >= '0') && (b <= '9') ) { return (b - '0'); }
+        if ( (b >= 'a') && (b <= 'f') ) { return (b - 'a' + 10); }
+        if ( (b >= 'A') && (b <= 'F') ) { return (b - 'A' + 10); }
+        return -1;
+    }
+
+    /**
+     * Decodes the quoted hex string within the range directly from the request bytes, or returns null if it is invalid.
+     */
+    protected static ByteArray _decodeHexString(final byte[] bytes, final long range) {
+        if (range == JsonScanner.NOT_FOUND) { return null; }
+
+        final int startIndex = (JsonScanner.getStartIndex(range) + 1);
+        final int endIndex = (JsonScanner.getEndIndex(range) - 1);
+        if ( (endIndex < startIndex) || (bytes[startIndex - 1] != '"') || (((endIndex - startIndex) % 2) != 0) ) { return null; }
+
+        final byte[] decodedBytes = new byte[(endIndex - startIndex) / 2];
+        for (int i = 0; i < decodedBytes.length; ++i) {
+            final int highNibble = _getHexValue(bytes[startIndex + (i * 2)]);
+            final int lowNibble = _getHexValue(bytes[startIndex + (i * 2) + 1]);
+            if ( (highNibble < 0) || (lowNibble < 0) ) { return null; }
+            decodedBytes[i] = (byte) ((highNibble << 4) | lowNibble);
+        }
+        return MutableByteArray.wrap(decodedBytes);
+    }
+
+    /**
+     * Submits the block to every node concurrently and returns once the first node accepts it (or every node rejects it).
+     *  Submission to the remaining nodes continues in the background.
+     *  The submitblock payload, if provided, is forwarded to each node instead of re-serializing the block per node.
+     */
+    protected Boolean _submitBlockToAllNodes(final Block block, final byte[] submitBlockPayload) {
+        final List<RpcConfiguration> rpcConfigurations = _nodeSelector.getNodes();
+        final BlockSubmission blockSubmission = new BlockSubmission(_blockSubmissionExecutorService, block, submitBlockPayload, new BlockSubmission.Callback() {
+            @Override
+            public void onComplete(final BlockSubmission blockSubmission) {
+                _lastBlockSubmission = blockSubmission;
+            }
+        });
 
-    protected Boolean _submitBlockToAllNodes(final Block block) {
-        final AtomicInteger acceptCount = new AtomicInteger(0);
-        final AtomicInteger rejectCount = new AtomicInteger(0);
+        _blockSubmissionCount.incrementAndGet();
+        final Boolean wasAccepted = blockSubmission.execute(rpcConfigurations);
+        if (wasAccepted) {
+            Logger.info("Block " + blockSubmission.getBlockHash() + " accepted in " + blockSubmission.getFirstAcceptMs() + "ms; propagating to remaining nodes.");
+        }
+        return wasAccepted;
+    }
+
+    /**
+     * Returns true if the response indicates the node itself failed (i.e. it was unreachable or did not respond), as
+     *  opposed to the node returning an error for the request.
+     */
+    protected static Boolean _isNodeFailure(final Response response) {
+        if (response == null) { return true; }
+
+        final Integer responseCode = response.getCode();
+        if (Util.areEqual(RpcConnectionPool.NODE_UNAVAILABLE_RESPONSE_CODE, responseCode)) { return true; }
+        return ( Util.areEqual(502, responseCode) || Util.areEqual(504, responseCode) );
+    }
+
+    protected LatencySampleWindow _getLatencySampleWindow(final String methodKey) {
+        final LatencySampleWindow latencySampleWindow = _methodLatencies.get(methodKey);
+        if (latencySampleWindow != null) { return latencySampleWindow; }
+
+        return _methodLatencies.computeIfAbsent(methodKey, new Function<String, LatencySampleWindow>() {
+            @Override
+            public LatencySampleWindow apply(final String methodKey) {
+                return new LatencySampleWindow();
+            }
+        });
+    }
 
-        final Sha256Hash blockHash = block.getHash();
+    /**
+     * Returns the duration to wait for a response before hedging the request to another node, or null if the request
+     *  should not be hedged.
+     */
+    protected Long _getHedgeDelayMs(final LatencySampleWindow latencySampleWindow) {
+        final Double hedgePercentile = _hedgePercentile;
+        if (hedgePercentile == null) { return null; }
+        if (latencySampleWindow.getSampleCount() < MIN_HEDGE_SAMPLE_COUNT) { return null; }
 
+        final Long percentileLatencyMs = latencySampleWindow.getPercentileMs(hedgePercentile);
+        if (percentileLatencyMs == null) { return null; }
+
+        return Math.max(1L, percentileLatencyMs);
+    }
+
+    /**
+     * Sends the request to the node, recording the node's statistics and, if successful, the method's latency.
+     *  If monitor is null then the connector's default Monitor is used.
+     *  If the request is part of a HedgedRequest and was canceled because the other request won, the node's latency and
+     *  health are not recorded, since the response reflects the cancellation rather than the node.
+     */
+    protected Response _sendRequest(final RpcConfiguration rpcConfiguration, final Request request, final Monitor monitor, final HedgedRequest hedgedRequest, final String rawMethod, final LatencySampleWindow latencySampleWindow) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        Logger.debug("Routing: " + rawMethod + " to " + rpcConfiguration + ".");
+
+        final NodeStatistics nodeStatistics = rpcConfiguration.getNodeStatistics();
+        final NanoTimer nanoTimer = new NanoTimer();
+        final long requestStartNanos = System.nanoTime();
+        nodeStatistics.onRequestStart();
+        nanoTimer.start();
+        final Response response;
         try {
-            final List<RpcConfiguration> rpcConfigurations = _nodeSelector.getNodes();
-            final BatchRunner<RpcConfiguration> batchRunner = new BatchRunner<>(1, true);
-            batchRunner.run(rpcConfigurations, new BatchRunner.Batch<RpcConfiguration>() {
-                @Override
-                public void run(final List<RpcConfiguration> batchItems) throws Exception {
-                    final RpcConfiguration rpcConfiguration = batchItems.get(0);
-                    final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-
-                    final Boolean wasSuccess = bitcoinRpcConnector.submitBlock(block);
-                    if (wasSuccess) {
-                        Logger.info("Block " + blockHash + " accepted by " + rpcConfiguration + ".");
-                        acceptCount.incrementAndGet();
-                    }
-                    else {
-                        Logger.info("Block " + blockHash + " rejected by " + rpcConfiguration + ".");
-                        rejectCount.incrementAndGet();
-                    }
-                }
-            });
+            response = (monitor != null ? bitcoinRpcConnector.handleRequest(request, monitor) : bitcoinRpcConnector.handleRequest(request));
+        }
+        finally {
+            nanoTimer.stop();
+            final boolean wasCanceled = ( (hedgedRequest != null) && hedgedRequest.wasCanceled(monitor) );
+            nodeStatistics.onRequestEnd(wasCanceled ? null : (System.nanoTime() - requestStartNanos));
+        }
+
+        if ( (hedgedRequest != null) && hedgedRequest.wasCanceled(monitor) ) {
+            Logger.debug("Request for " + rawMethod + " to " + rpcConfiguration + " canceled after " + nanoTimer.getMillisecondsElapsed() + "ms.");
+            return response;
+        }
+
+        Logger.debug("Response received for " + rawMethod + " from " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
+
+        final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+        if (_isNodeFailure(response)) {
+            nodeHealth.onRequestFailure();
         }
-        catch (final Exception exception) {
-            Logger.warn("Error submitting block.", exception);
+        else {
+            nodeHealth.onRequestSuccess();
         }
 
-        Logger.info("Block " + blockHash + " accepted by " + acceptCount.get() + " nodes, rejected by " + rejectCount.get() + " nodes.");
-        return (acceptCount.get() > 0);
+        if (latencySampleWindow != null) {
+            final Boolean isSuccessfulResponse = bitcoinRpcConnector.isSuccessfulResponse(response, new Container<String>());
+            if (isSuccessfulResponse) {
+                latencySampleWindow.addSample(nanoTimer.getMillisecondsElapsed().longValue());
+            }
+        }
+
+        return response;
     }
 
     public RpcProxyHandler(final NodeSelector nodeSelector, final BlockTemplateManager blockTemplateManager, final ZmqConfiguration zmqConfiguration) {
         _nodeSelector = nodeSelector;
         _blockTemplateManager = blockTemplateManager;
         _zmqConfiguration = zmqConfiguration;
+
+        final ScheduledThreadPoolExecutor hedgeExecutorService = new ScheduledThreadPoolExecutor(MAX_CONCURRENT_HEDGED_REQUEST_COUNT, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("RpcProxyHandler - Hedge");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        hedgeExecutorService.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        hedgeExecutorService.allowCoreThreadTimeOut(true);
+        hedgeExecutorService.setRemoveOnCancelPolicy(true);
+        _hedgeExecutorService = hedgeExecutorService;
+
+        final ThreadPoolExecutor blockSubmissionExecutorService = new ThreadPoolExecutor(MAX_CONCURRENT_BLOCK_SUBMISSION_COUNT, MAX_CONCURRENT_BLOCK_SUBMISSION_COUNT, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("RpcProxyHandler - Submit Block");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        blockSubmissionExecutorService.allowCoreThreadTimeOut(true);
+        _blockSubmissionExecutorService = blockSubmissionExecutorService;
+    }
+
+    /**
+     * Enables hedging of read-only requests: if a node has not responded within the provided percentile (0-100) of the
+     *  method's recent latencies, the request is also sent to the next node and the first successful response is used.
+     *  A null percentile disables hedging.
+     */
+    public void setHedgePercentile(final Double hedgePercentile) {
+        _hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Sets the cache used for responses to idempotent read-only methods.
+     *  A null ResponseCache disables response caching.
+     */
+    public void setResponseCache(final ResponseCache responseCache) {
+        _responseCache = responseCache;
+    }
+
+    /**
+     * Returns the number of read-only requests that were answered with the response of an identical in-flight request.
+     */
+    public Long getCoalescedRequestCount() {
+        return _inFlightRequests.getSharedCount();
+    }
+
+    /**
+     * Returns the number of blocks submitted via submitblock.
+     */
+    public Long getBlockSubmissionCount() {
+        return _blockSubmissionCount.get();
+    }
+
+    /**
+     * Returns the most recent block submission to have completed on every node, or null if none has completed.
+     */
+    public BlockSubmission getLastBlockSubmission() {
+        return _lastBlockSubmission;
     }
 
     @Override
     public Response onRequest(final Request request) {
-        final Long requestId;
-        final String rawMethod;
+        final JsonRpcEnvelope requestEnvelope = JsonRpcEnvelope.parse(request.getRawPostData());
+        final Long requestId = requestEnvelope.getIdAsLong();
+        final String rawMethod = requestEnvelope.getMethodName();
         final Method method;
-        final Json requestJson;
-        { // Parse the method from the request object...
-            final MutableByteArray rawPostData = MutableByteArray.wrap(request.getRawPostData());
-            requestJson = Json.parse(StringUtil.bytesToString(rawPostData.unwrap()));
-            requestId = requestJson.getLong("id");
-            rawMethod = requestJson.getString("method");
-            method = Method.fromString(rawMethod);
+        { // Resolve the method without copying the request...
+            final long methodNameRange = requestEnvelope.getMethodNameRange();
+            method = (methodNameRange != JsonScanner.NOT_FOUND ? Method.fromBytes(requestEnvelope.getBytes(), JsonScanner.getStartIndex(methodNameRange), JsonScanner.getEndIndex(methodNameRange)) : null);
         }
 
         Logger.debug("Routing: " + rawMethod);
 
         if (method == Method.GET_BLOCK_TEMPLATE) {
+            final byte[] idBytes = requestEnvelope.getIdBytes();
+            final String acceptEncoding = ((request instanceof HttpRequest) ? ((HttpRequest) request).getHeaderValue("Accept-Encoding") : null);
+
+            final String longPollId = _getLongPollId(requestEnvelope);
+            if (longPollId != null) { // Park the request until a newer template is available (BIP22)...
+                final DeferredResponse deferredResponse = new DeferredResponse();
+                final Boolean isWaiting = _blockTemplateManager.waitForBlockTemplate(longPollId, new BlockTemplateManager.LongPollCallback() {
+                    @Override
+                    public void onBlockTemplateResponse(final PrerenderedResponse blockTemplateResponse) {
+                        deferredResponse.complete(_toBlockTemplateResponse(blockTemplateResponse, idBytes, requestId, acceptEncoding));
+                    }
+                });
+                if (isWaiting) {
+                    Logger.debug("Long-polling block template: " + longPollId);
+                    return deferredResponse;
+                }
+            }
+
             final NanoTimer nanoTimer = new NanoTimer();
             nanoTimer.start();
-            final BlockTemplate blockTemplate = _blockTemplateManager.getBlockTemplate();
+            final PrerenderedResponse blockTemplateResponse = _blockTemplateManager.getBlockTemplateResponse();
             nanoTimer.stop();
             Logger.info("Block template acquired in " + nanoTimer.getMillisecondsElapsed() + "ms.");
 
-            final Response response = new Response();
-
-            final Json responseJson = new Json();
-            responseJson.put("id", requestId);
-
-            if (blockTemplate == null) {
-                response.setCode(Response.Codes.SERVER_ERROR);
-                responseJson.put("code", Integer.MIN_VALUE);
-                responseJson.put("error", "No valid templates found.");
-                responseJson.put("result", null);
-            }
-            else {
-                response.setCode(Response.Codes.OK);
-                responseJson.put("error", null);
-                responseJson.put("result", blockTemplate);
-            }
-
-            response.setContent(responseJson.toString());
-            return response;
+            return _toBlockTemplateResponse(blockTemplateResponse, idBytes, requestId, acceptEncoding);
         }
         else if (method == Method.SUBMIT_BLOCK) {
             Logger.debug("Block submitted.");
             final String resultString;
             {
-                final Json paramsJson = requestJson.get("params");
                 final BlockInflater blockInflater = new BlockInflater();
-                final String blockDataString = paramsJson.getString(0); // hexdata
-                // final String dummyData = paramsJson.getString(1); // dummy
-                final ByteArray blockData = ByteArray.fromHexString(blockDataString);
+                final long blockDataRange = JsonScanner.findElement(requestEnvelope.getBytes(), requestEnvelope.getParamsRange(), 0); // hexdata
+                // final long dummyDataRange = JsonScanner.findElement(requestEnvelope.getBytes(), requestEnvelope.getParamsRange(), 1); // dummy
+                final ByteArray blockData = _decodeHexString(requestEnvelope.getBytes(), blockDataRange);
                 final Block block = (blockData != null ? blockInflater.fromBytes(blockData) : null);
 
                 if (block == null) {
-                    Logger.debug("Block failed to decode: " + blockDataString);
+                    Logger.debug("Block failed to decode: " + (blockDataRange != JsonScanner.NOT_FOUND ? (JsonScanner.getEndIndex(blockDataRange) - JsonScanner.getStartIndex(blockDataRange)) : 0) + " bytes of hexdata.");
                     resultString = "Block decode failed";
                 }
                 else {
-                    final Boolean wasValid = _submitBlockToAllNodes(block);
+                    final byte[] submitBlockPayload = BlockSubmission.createPayload(requestEnvelope.getBytes(), blockDataRange); // The hexdata was validated by its decoding.
+                    final Boolean wasValid = _submitBlockToAllNodes(block, submitBlockPayload);
                     resultString = (wasValid ? null : "rejected");
                 }
             }
@@ -206,29 +493,123 @@ public class RpcProxyHandler implements Servlet {
             return response;
         }
 
+        final String methodKey = (rawMethod != null ? rawMethod.toLowerCase() : "");
+        final boolean isLoadBalanced = LOAD_BALANCED_METHODS.contains(methodKey);
+        final LatencySampleWindow latencySampleWindow = (isLoadBalanced ? _getLatencySampleWindow(methodKey) : null);
+        final Long hedgeDelayMs = (latencySampleWindow != null ? _getHedgeDelayMs(latencySampleWindow) : null);
+
+        final byte[] rawPostData = requestEnvelope.getBytes();
+        final long paramsRange = requestEnvelope.getParamsRange();
+        final String requestKey = (isLoadBalanced ? ResponseCache.getCacheKey(methodKey, rawPostData, paramsRange) : null); // Identifies requests with the same result; null if the request is not read-only.
+        final byte[] requestIdBytes = (requestKey != null ? requestEnvelope.getIdBytes() : null);
+
+        final ResponseCache responseCache = _responseCache;
+        final ResponseCache.CachePolicy cachePolicy = ( (responseCache != null) && (requestKey != null) ? ResponseCache.getCachePolicy(methodKey, rawPostData, paramsRange) : ResponseCache.CachePolicy.NONE);
+        final Long chainTipGeneration = (cachePolicy != ResponseCache.CachePolicy.NONE ? responseCache.getChainTipGeneration() : null);
+
+        if (cachePolicy != ResponseCache.CachePolicy.NONE) {
+            final byte[] cachedContent = responseCache.get(requestKey, requestIdBytes);
+            if (cachedContent != null) {
+                Logger.debug("Cached response for " + rawMethod + ".");
+
+                final Response response = new Response();
+                response.setCode(Response.Codes.OK);
+                response.setContent(cachedContent);
+                return response;
+            }
+        }
+
+        final SingleFlight.Call<Response> forwardRequestCall = new SingleFlight.Call<Response>() {
+            @Override
+            public Response run() {
+                final Container<Boolean> wasSuccessfulContainer = new Container<>();
+                final Response response = _forwardRequest(request, rawMethod, isLoadBalanced, latencySampleWindow, hedgeDelayMs, wasSuccessfulContainer);
+                if ( Util.coalesce(wasSuccessfulContainer.value, false) && (cachePolicy != ResponseCache.CachePolicy.NONE) ) {
+                    responseCache.put(requestKey, methodKey, cachePolicy, chainTipGeneration, response.getContent(), requestIdBytes);
+                }
+                return response;
+            }
+        };
+
+        if (requestKey == null) {
+            return forwardRequestCall.run();
+        }
+
+        { // Share the upstream call of any identical request that is already in-flight...
+            final SingleFlight.Result<Response> result = _inFlightRequests.execute(requestKey, forwardRequestCall);
+            if (! result.wasShared) {
+                return result.value;
+            }
+
+            final Response sharedResponse = _toSharedResponse(result.value, requestIdBytes);
+            if (sharedResponse != null) {
+                Logger.debug("Coalesced response for " + rawMethod + ".");
+                return sharedResponse;
+            }
+        }
+
+        return forwardRequestCall.run();
+    }
+
+    /**
+     * Returns the load-balanced node to hedge a request with, or null if every node at the best ChainHeight is excluded.
+     *  A lagging node is never selected, since its response may be stale.
+     */
+    protected RpcConfiguration _selectHedgeNode(final List<RpcConfiguration> excludedConfigurations) {
+        final RpcConfiguration rpcConfiguration = _nodeSelector.selectLoadBalancedNode(excludedConfigurations);
+        if (rpcConfiguration == null) { return null; }
+
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+        if ( (bestChainHeight != null) && bestChainHeight.isBetterThan(rpcConfiguration.getChainHeight()) ) { return null; }
+
+        return rpcConfiguration;
+    }
+
+    /**
+     * Sends the request to the best (or load-balanced) node, failing over to the next node until a successful response
+     *  is received.  If no node responds successfully, the first node's response is returned.
+     */
+    protected Response _forwardRequest(final Request request, final String rawMethod, final Boolean isLoadBalanced, final LatencySampleWindow latencySampleWindow, final Long hedgeDelayMs, final Container<Boolean> wasSuccessfulContainer) {
+        final HedgedRequest.RequestHandler requestHandler = new HedgedRequest.RequestHandler() {
+            @Override
+            public Response sendRequest(final RpcConfiguration rpcConfiguration, final Monitor monitor, final HedgedRequest hedgedRequest) {
+                return _sendRequest(rpcConfiguration, request, monitor, hedgedRequest, rawMethod, latencySampleWindow);
+            }
+        };
+
         final MutableList<RpcConfiguration> attemptedConfigurations = new MutableList<>();
         Response defaultResponse = null;
         while (true) {
-            final NanoTimer nanoTimer = new NanoTimer();
-
-            final RpcConfiguration rpcConfiguration = _nodeSelector.selectBestNode(attemptedConfigurations);
+            final RpcConfiguration rpcConfiguration = (isLoadBalanced ? _nodeSelector.selectLoadBalancedNode(attemptedConfigurations) : _nodeSelector.selectBestNode(attemptedConfigurations));
             if (rpcConfiguration == null) { break; } // Break if no viable nodes remain...
 
             // Prevent trying the same node multiple times with the same request.
             attemptedConfigurations.add(rpcConfiguration);
 
-            final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-            Logger.debug("Routing: " + rawMethod + " to " + rpcConfiguration + ".");
-
-            nanoTimer.start();
-            final Response response = bitcoinRpcConnector.handleRequest(request);
-            nanoTimer.stop();
+            final RpcConfiguration hedgeRpcConfiguration = (hedgeDelayMs != null ? _selectHedgeNode(attemptedConfigurations) : null);
 
+            final Response response;
+            final Boolean responseWasSuccessful;
             final Container<String> errorStringContainer = new Container<>();
-            final Boolean responseWasSuccessful = bitcoinRpcConnector.isSuccessfulResponse(response, errorStringContainer);
-            Logger.debug("Response received for " + rawMethod + " from " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
+            if (hedgeRpcConfiguration != null) {
+                final HedgedRequest hedgedRequest = new HedgedRequest(rpcConfiguration, hedgeRpcConfiguration, requestHandler);
+                final HedgedRequest.Result result = hedgedRequest.execute(_hedgeExecutorService, hedgeDelayMs);
+                if (hedgedRequest.wasHedged()) {
+                    attemptedConfigurations.add(hedgeRpcConfiguration);
+                }
+
+                response = result.response;
+                responseWasSuccessful = result.isSuccessful;
+                errorStringContainer.value = result.errorString;
+            }
+            else {
+                final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+                response = _sendRequest(rpcConfiguration, request, null, null, rawMethod, latencySampleWindow);
+                responseWasSuccessful = bitcoinRpcConnector.isSuccessfulResponse(response, errorStringContainer);
+            }
 
             if (responseWasSuccessful) {
+                wasSuccessfulContainer.value = true;
                 return response;
             }
 
@@ -247,4 +628,74 @@ public class RpcProxyHandler implements Servlet {
         errorResponse.setContent("No viable node connection found.");
         return errorResponse;
     }
+
+    /**
+     * Returns the "longpollid" of the getblocktemplate request's template_request parameter, or null if not provided.
+     */
+    protected static String _getLongPollId(final JsonRpcEnvelope requestEnvelope) {
+        final byte[] bytes = requestEnvelope.getBytes();
+        final long templateRequestRange = JsonScanner.findElement(bytes, requestEnvelope.getParamsRange(), 0);
+        if (templateRequestRange == JsonScanner.NOT_FOUND) { return null; }
+
+        final long longPollIdRange = JsonScanner.findMember(bytes, JsonScanner.getStartIndex(templateRequestRange), JsonScanner.getEndIndex(templateRequestRange), LONG_POLL_ID_KEY);
+        if (longPollIdRange == JsonScanner.NOT_FOUND) { return null; }
+
+        final int startIndex = JsonScanner.getStartIndex(longPollIdRange);
+        final int endIndex = JsonScanner.getEndIndex(longPollIdRange);
+        if ( ((endIndex - startIndex) < 2) || (bytes[startIndex] != '"') ) { return null; }
+
+        return JsonScanner.toString(bytes, JsonScanner.toRange((startIndex + 1), (endIndex - 1)));
+    }
+
+    /**
+     * Returns the getblocktemplate response with the request's id spliced into the pre-rendered template, gzip-encoded if
+     *  accepted.  A null blockTemplateResponse results in an error response.
+     */
+    protected static Response _toBlockTemplateResponse(final PrerenderedResponse blockTemplateResponse, final byte[] idBytes, final Long requestId, final String acceptEncoding) {
+        if (blockTemplateResponse == null) {
+            final Response response = new Response();
+
+            final Json responseJson = new Json();
+            responseJson.put("id", requestId);
+
+            response.setCode(Response.Codes.SERVER_ERROR);
+            responseJson.put("code", Integer.MIN_VALUE);
+            responseJson.put("error", "No valid templates found.");
+            responseJson.put("result", null);
+
+            response.setContent(responseJson.toString());
+            return response;
+        }
+
+        final byte[] gzipBytes = (PrerenderedResponse.acceptsGzip(acceptEncoding) ? blockTemplateResponse.getGzipBytes(idBytes) : null);
+
+        final Response response;
+        if (gzipBytes != null) {
+            response = new EncodedResponse(PrerenderedResponse.CONTENT_ENCODING_GZIP);
+            response.setContent(gzipBytes);
+        }
+        else {
+            response = new Response();
+            response.setContent(blockTemplateResponse.getBytes(idBytes));
+        }
+        response.setCode(Response.Codes.OK);
+        return response;
+    }
+
+    /**
+     * Returns a copy of a response produced for another (identical) request, with its id replaced by idBytes.
+     *  Returns null if the response has no id to replace.
+     */
+    protected static Response _toSharedResponse(final Response response, final byte[] idBytes) {
+        if (response == null) { return null; }
+
+        final byte[] content = response.getContent();
+        final long idRange = JsonScanner.findMember(content, "id");
+        if (idRange == JsonScanner.NOT_FOUND) { return null; }
+
+        final Response sharedResponse = new Response();
+        sharedResponse.setCode(response.getCode());
+        sharedResponse.setContent(JsonScanner.replaceValue(content, idRange, idBytes));
+        return sharedResponse;
+    }
 }
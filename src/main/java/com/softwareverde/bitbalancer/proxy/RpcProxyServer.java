@@ -1,10 +1,20 @@
 package com.softwareverde.bitbalancer.proxy;
 
-import com.softwareverde.bitbalancer.proxy.node.selector.HashMapNodeSelector;
+import com.softwareverde.bitbalancer.proxy.cache.ResponseCache;
+import com.softwareverde.bitbalancer.proxy.http.NioHttpServer;
+import com.softwareverde.bitbalancer.proxy.node.ChainHeightMonitor;
+import com.softwareverde.bitbalancer.proxy.node.NodeHealthMonitor;
+import com.softwareverde.bitbalancer.proxy.node.selector.LoadBalancingStrategy;
 import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelector;
+import com.softwareverde.bitbalancer.proxy.node.selector.RankedNodeSelector;
 import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.HeaderIndex;
+import com.softwareverde.bitbalancer.proxy.rpc.LatencyHistogram;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
 import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitbalancer.proxy.zmq.RecentNotificationSet;
 import com.softwareverde.bitbalancer.proxy.zmq.ZmqConfiguration;
 import com.softwareverde.bitbalancer.proxy.zmq.ZmqNotificationPublisherThread;
 import com.softwareverde.bitcoin.block.header.BlockHeader;
@@ -13,45 +23,104 @@ import com.softwareverde.bitcoin.rpc.RpcNotification;
 import com.softwareverde.bitcoin.rpc.RpcNotificationCallback;
 import com.softwareverde.bitcoin.rpc.RpcNotificationType;
 import com.softwareverde.bitcoin.util.StringUtil;
-import com.softwareverde.concurrent.service.SleepyService;
 import com.softwareverde.constable.bytearray.ByteArray;
 import com.softwareverde.constable.list.List;
 import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
-import com.softwareverde.http.server.HttpServer;
-import com.softwareverde.http.server.endpoint.Endpoint;
+import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
-import com.softwareverde.util.CircleBuffer;
 import com.softwareverde.util.HexUtil;
 import com.softwareverde.util.Util;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RpcProxyServer {
     protected final Integer _port;
-    protected final HttpServer _httpServer;
+    protected final NioHttpServer _httpServer;
     protected final List<RpcConfiguration> _rpcConfigurations;
     protected final NodeSelector _nodeSelector;
     protected final BlockTemplateManager _blockTemplateManager;
+    protected final RpcProxyHandler _rpcProxyHandler;
 
     protected final ConcurrentHashMap<RpcNotificationType, ZmqNotificationPublisherThread> _zmqPublisherThreads = new ConcurrentHashMap<>();
-    protected final CircleBuffer<RpcNotification> _recentNotifications = new CircleBuffer<>(32);
+    protected final RecentNotificationSet _recentNotifications = new RecentNotificationSet();
 
-    protected final SleepyService _chainWorkMonitor;
+    protected final ChainHeightMonitor _chainHeightMonitor;
+    protected final NodeHealthMonitor _nodeHealthMonitor;
+    protected final MetricsEndpoint _metricsEndpoint;
+    protected final HeaderIndex _headerIndex = new HeaderIndex();
+    protected final AtomicReference<ChainHeight> _bestChainHeight = new AtomicReference<>(ChainHeight.UNKNOWN_CHAIN_HEIGHT);
+    protected volatile ResponseCache _responseCache = null;
 
     /**
      * Adds the Notification to the _recentNotifications set.
      *  Returns true if the Notification did not already exist within the _recentNotifications set.
      */
     protected Boolean _registerRecentNotification(final RpcNotification notification) {
-        synchronized (_recentNotifications) {
-            for (final RpcNotification recentNotification : _recentNotifications) {
-                if (Util.areEqual(recentNotification, notification)) {
-                    return false;
-                }
-            }
+        return _recentNotifications.add(notification);
+    }
+
+    protected static Json _toJson(final LatencyHistogram latencyHistogram) {
+        final Json bucketsJson = new Json(true);
+        final int bucketCount = latencyHistogram.getBucketCount();
+        for (int i = 0; i < bucketCount; ++i) {
+            final Json bucketJson = new Json(false);
+            bucketJson.put("maxMs", latencyHistogram.getBucketUpperBoundMs(i));
+            bucketJson.put("count", latencyHistogram.getBucketSampleCount(i));
+            bucketsJson.add(bucketJson);
+        }
+
+        final Json histogramJson = new Json(false);
+        histogramJson.put("sampleCount", latencyHistogram.getSampleCount());
+        histogramJson.put("averageMs", latencyHistogram.getAverageLatencyMs());
+        histogramJson.put("maxMs", latencyHistogram.getMaxLatencyMs());
+        histogramJson.put("buckets", bucketsJson);
+        return histogramJson;
+    }
 
-            _recentNotifications.push(notification);
-            return true;
+    protected Json _getNodeMetrics() {
+        final Json nodesJson = new Json(true);
+        for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+            final NodeStatistics nodeStatistics = rpcConfiguration.getNodeStatistics();
+
+            final Json nodeJson = new Json(false);
+            nodeJson.put("name", rpcConfiguration.toString());
+            nodeJson.put("host", rpcConfiguration.getHost());
+            nodeJson.put("port", rpcConfiguration.getPort());
+            nodeJson.put("hierarchy", rpcConfiguration.getHierarchy());
+            nodeJson.put("blockHeight", chainHeight.getBlockHeight());
+            nodeJson.put("state", nodeHealth.getState().toString());
+            nodeJson.put("ejectionReason", nodeHealth.getEjectionReason());
+            nodeJson.put("ejectionCount", nodeHealth.getEjectionCount());
+            nodeJson.put("consecutiveFailureCount", nodeHealth.getConsecutiveFailureCount());
+            nodeJson.put("errorRate", nodeHealth.getErrorRate());
+            nodeJson.put("outstandingRequestCount", nodeStatistics.getOutstandingRequestCount());
+            nodeJson.put("peakEwmaLatencyMs", nodeStatistics.getPeakEwmaLatencyMs());
+            nodeJson.put("acceptedBlockCount", nodeStatistics.getAcceptedBlockCount());
+            nodeJson.put("rejectedBlockCount", nodeStatistics.getRejectedBlockCount());
+            nodeJson.put("failedBlockSubmissionCount", nodeStatistics.getFailedBlockSubmissionCount());
+            nodeJson.put("submittedBlockByteCount", nodeStatistics.getSubmittedBlockByteCount());
+            nodeJson.put("blockSubmissionLatency", _toJson(nodeStatistics.getBlockSubmissionLatencyHistogram()));
+            nodesJson.add(nodeJson);
+        }
+        return nodesJson;
+    }
+
+    /**
+     * Invoked whenever any node's ChainHeight changes; invalidates chain-tip-dependent cached responses if the best
+     *  ChainHeight changed.
+     */
+    protected void _onChainHeightChanged() {
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+        final ChainHeight previousBestChainHeight = _bestChainHeight.getAndSet(bestChainHeight);
+        if (Util.areEqual(previousBestChainHeight, bestChainHeight)) { return; }
+
+        final ResponseCache responseCache = _responseCache;
+        if (responseCache != null) {
+            Logger.debug("Chain tip changed (" + bestChainHeight + "); invalidating cached responses.");
+            responseCache.onChainTipChanged();
         }
     }
 
@@ -63,44 +132,70 @@ public class RpcProxyServer {
         }
     }
 
+    protected void _refreshBlockTemplate() {
+        // Refresh the block template after a ChainHeight update to ensure new nodes agree on the cached template.
+        if (_blockTemplateManager instanceof CachingBlockTemplateManager) {
+            Logger.debug("ChainHeight updated for at least one node; refreshing template.");
+            ((CachingBlockTemplateManager) _blockTemplateManager).updateBlockTemplate();
+        }
+    }
+
     /**
-     * Refreshes all nodes' chainHeights that fall below `bestChainHeight`.
+     * Requests a refresh of all nodes' chainHeights that fall below `bestChainHeight`.
+     *  The lagging nodes are polled concurrently by the _chainHeightMonitor, which refreshes the template once any
+     *  node's ChainHeight was updated.
      */
     protected void _updateChainHeights(final ChainHeight bestChainHeight) {
-        boolean chainHeightWasUpdated = false;
         if (bestChainHeight != null) {
-            for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
-                final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
-
-                if (bestChainHeight.isBetterThan(chainHeight)) {
-                    final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-                    final ChainHeight newChainHeight = bitcoinRpcConnector.getChainHeight();
-                    if ( (newChainHeight != null) && newChainHeight.isBetterThan(chainHeight) ) {
-                        Logger.debug("Updating chainHeight for " + rpcConfiguration + ": " + newChainHeight);
-                        rpcConfiguration.setChainHeight(newChainHeight);
-                        chainHeightWasUpdated = true;
-                    }
-                }
-            }
+            _chainHeightMonitor.requestRefresh();
         }
         else {
-            chainHeightWasUpdated = true; // bestChainHeight can be null during http hook notification...
+            _refreshBlockTemplate(); // bestChainHeight can be null during http hook notification...
         }
+    }
 
-        if (chainHeightWasUpdated) {
-            // Refresh the block template after a ChainHeight update to ensure new nodes agree on the cached template.
-            if (_blockTemplateManager instanceof CachingBlockTemplateManager) {
-                Logger.debug("ChainHeight updated for at least one node; refreshing template.");
-                ((CachingBlockTemplateManager) _blockTemplateManager).updateBlockTemplate();
-            }
+    /**
+     * Resolves the ChainHeight of the notified block from the HeaderIndex.
+     *  If the block cannot be resolved locally (i.e. its parent is not indexed), the node's ChainHeight is requested via
+     *  RPC and reconciled into the HeaderIndex, so that subsequent blocks (and other nodes' notifications of this block)
+     *  are resolved locally.  The node's ChainHeight is only indexed if the node's best block is the notified block,
+     *  since the node may have already advanced (or reorged) past it.
+     */
+    protected ChainHeight _resolveChainHeight(final RpcConfiguration rpcConfiguration, final RpcNotification notification, final BlockHeader blockHeader) {
+        final Sha256Hash blockHash;
+        if (blockHeader != null) {
+            final ChainHeight chainHeight = _headerIndex.addHeader(blockHeader);
+            if (chainHeight != null) { return chainHeight; }
+
+            blockHash = blockHeader.getHash();
+        }
+        else if ( Util.areEqual(RpcNotificationType.BLOCK_HASH, notification.rpcNotificationType) && (notification.payload.getByteCount() >= Sha256Hash.BYTE_COUNT) ) {
+            blockHash = Sha256Hash.copyOf(notification.payload.getBytes(0, Sha256Hash.BYTE_COUNT));
+
+            final ChainHeight chainHeight = _headerIndex.getChainHeight(blockHash);
+            if (chainHeight != null) { return chainHeight; }
+        }
+        else {
+            blockHash = null;
         }
-    }
 
-    protected void _onBlockNotification(final RpcConfiguration rpcConfiguration, final RpcNotification notification, final BlockHeader blockHeader) {
-        // Update the node's ChainWork...
         Logger.trace("Requesting chainHeight for " + rpcConfiguration + " after " + notification.rpcNotificationType + " notification.");
         final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
         final ChainHeight chainHeight = bitcoinRpcConnector.getChainHeight();
+        if ( (chainHeight != null) && (blockHash != null) ) {
+            if (Util.areEqual(blockHash, chainHeight.getBlockHash())) {
+                _headerIndex.putChainHeight(blockHash, chainHeight);
+            }
+            else {
+                Logger.debug("Not indexing chainHeight for " + blockHash + "; " + rpcConfiguration + " reported best block " + chainHeight.getBlockHash() + ".");
+            }
+        }
+        return chainHeight;
+    }
+
+    protected void _onBlockNotification(final RpcConfiguration rpcConfiguration, final RpcNotification notification, final BlockHeader blockHeader, final Long notificationNanoTime) {
+        // Update the node's ChainWork...
+        final ChainHeight chainHeight = _resolveChainHeight(rpcConfiguration, notification, blockHeader);
         if (chainHeight != null) {
             final ChainHeight previousBestChainHeight = _nodeSelector.getBestChainHeight();
 
@@ -109,7 +204,7 @@ public class RpcProxyServer {
 
             if (chainHeight.isBetterThan(previousBestChainHeight)) {
                 if (_blockTemplateManager instanceof CachingBlockTemplateManager) {
-                    ((CachingBlockTemplateManager) _blockTemplateManager).onNewBlock(blockHeader, chainHeight);
+                    ((CachingBlockTemplateManager) _blockTemplateManager).onNewBlock(blockHeader, chainHeight, notificationNanoTime);
                 }
 
                 Logger.debug("New best block detected (" + chainHeight + "). Refreshing all nodes' chainHeights.");
@@ -131,6 +226,7 @@ public class RpcProxyServer {
         final RpcNotificationCallback callback = new RpcNotificationCallback() {
             @Override
             public void onNewNotification(final RpcNotification notification) {
+                final long notificationNanoTime = System.nanoTime();
                 Logger.trace("Notification from " + rpcConfiguration + ": " + notification.rpcNotificationType);
 
                 BlockHeader blockHeader = null;
@@ -138,11 +234,16 @@ public class RpcProxyServer {
                 if (hasBlockHashEndpoint) {
                     if (Util.areEqual(RpcNotificationType.BLOCK_HASH, notification.rpcNotificationType)) {
                         shouldUpdateChainHeight = true;
+
+                        if ( hasBlockEndpoint && (notification.payload.getByteCount() >= Sha256Hash.BYTE_COUNT) ) { // The header may have already been received via the BLOCK notification...
+                            final Sha256Hash blockHash = Sha256Hash.copyOf(notification.payload.getBytes(0, Sha256Hash.BYTE_COUNT));
+                            blockHeader = _headerIndex.getBlockHeader(blockHash);
+                        }
                     }
                 }
-                else if (hasBlockEndpoint) {
+                if (hasBlockEndpoint) {
                     if (Util.areEqual(RpcNotificationType.BLOCK, notification.rpcNotificationType)) {
-                        shouldUpdateChainHeight = true;
+                        shouldUpdateChainHeight = (! hasBlockHashEndpoint); // When both are supported, the node's ChainHeight is updated upon BLOCK_HASH...
 
                         final String blockHeaderHexString = StringUtil.bytesToString(
                             notification.payload.getBytes(0, (BlockHeaderInflater.BLOCK_HEADER_BYTE_COUNT * 2))
@@ -150,11 +251,17 @@ public class RpcProxyServer {
                         final ByteArray blockHeaderBytes = ByteArray.fromHexString(blockHeaderHexString);
                         final BlockHeaderInflater blockHeaderInflater = new BlockHeaderInflater();
                         blockHeader = blockHeaderInflater.fromBytes(blockHeaderBytes);
-                    }
-                }
 
-                if (shouldUpdateChainHeight) {
-                    _onBlockNotification(rpcConfiguration, notification, blockHeader);
+                        if (blockHeader != null) {
+                            if (! shouldUpdateChainHeight) {
+                                _headerIndex.addHeader(blockHeader); // Index the header so that the BLOCK_HASH notification is resolved locally (and its header is known)...
+                            }
+
+                            if (_blockTemplateManager instanceof CachingBlockTemplateManager) { // Serve an empty template before any RPC round-trip...
+                                ((CachingBlockTemplateManager) _blockTemplateManager).onNewBlockHeader(blockHeader, notificationNanoTime);
+                            }
+                        }
+                    }
                 }
 
                 final Boolean isUniqueNotification = _registerRecentNotification(notification);
@@ -162,6 +269,10 @@ public class RpcProxyServer {
                     Logger.trace("Relaying: " + notification.rpcNotificationType + " " + HexUtil.toHexString(notification.payload.getBytes(0, Sha256Hash.BYTE_COUNT)) + " +" + (notification.payload.getByteCount() - Sha256Hash.BYTE_COUNT) + " from " + rpcConfiguration);
                     _relayNotification(notification);
                 }
+
+                if (shouldUpdateChainHeight) { // Updated after relaying, since it may require an RPC round-trip...
+                    _onBlockNotification(rpcConfiguration, notification, blockHeader, notificationNanoTime);
+                }
             }
         };
 
@@ -171,7 +282,7 @@ public class RpcProxyServer {
     public RpcProxyServer(final Integer port, final List<RpcConfiguration> rpcConfigurations, final ZmqConfiguration zmqConfiguration, final Long blockTemplateCacheDuration) {
         _port = port;
         _rpcConfigurations = rpcConfigurations.asConst();
-        _nodeSelector = new HashMapNodeSelector(_rpcConfigurations);
+        _nodeSelector = new RankedNodeSelector(_rpcConfigurations);
 
         if (Util.coalesce(blockTemplateCacheDuration) > 0L) {
             final CachingBlockTemplateManager blockTemplateManager = new CachingBlockTemplateManager(_nodeSelector);
@@ -182,8 +293,25 @@ public class RpcProxyServer {
             _blockTemplateManager = new BlockTemplateManager(_nodeSelector);
         }
 
+        // Constructed before subscribing to notifications, since block notifications request refreshes from the monitor...
+        _chainHeightMonitor = new ChainHeightMonitor(_nodeSelector);
+        _chainHeightMonitor.setCallback(new ChainHeightMonitor.Callback() {
+            @Override
+            public void onChainHeightsUpdated() {
+                _refreshBlockTemplate();
+            }
+        });
+
+        final RpcConfiguration.ChainHeightCallback chainHeightCallback = new RpcConfiguration.ChainHeightCallback() {
+            @Override
+            public void onChainHeightChanged(final RpcConfiguration rpcConfiguration, final ChainHeight chainHeight) {
+                _onChainHeightChanged();
+            }
+        };
+
         for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
             rpcConfiguration.setChainHeight(ChainHeight.UNKNOWN_CHAIN_HEIGHT);
+            rpcConfiguration.addChainHeightCallback(chainHeightCallback);
             _subscribeToNotifications(rpcConfiguration);
         }
         for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
@@ -197,7 +325,8 @@ public class RpcProxyServer {
         if (zmqConfiguration != null) {
             for (final RpcNotificationType zmqNotificationType : zmqConfiguration.getSupportedMessageTypes()) {
                 final Integer zmqPort = zmqConfiguration.getPort(zmqNotificationType);
-                final ZmqNotificationPublisherThread zmqNotificationPublisherThread = ZmqNotificationPublisherThread.newZmqNotificationPublisherThread(zmqNotificationType, "*", zmqPort);
+                final ZmqNotificationPublisherThread zmqNotificationPublisherThread = ZmqNotificationPublisherThread.newZmqNotificationPublisherThread(zmqNotificationType, "*", zmqPort, zmqConfiguration.getMaxQueuedMessageCount());
+                zmqNotificationPublisherThread.setBatching(zmqConfiguration.getMaxTransactionBatchCount(), zmqConfiguration.getMaxTransactionBatchDurationMs());
                 _zmqPublisherThreads.put(zmqNotificationType, zmqNotificationPublisherThread);
             }
         }
@@ -205,16 +334,6 @@ public class RpcProxyServer {
             zmqNotificationPublisherThread.start();
         }
 
-        final Endpoint rpcProxyEndpoint;
-        {
-
-            rpcProxyEndpoint = new Endpoint(
-                new RpcProxyHandler(_nodeSelector, _blockTemplateManager, zmqConfiguration)
-            );
-            rpcProxyEndpoint.setPath("/");
-            rpcProxyEndpoint.setStrictPathEnabled(true);
-        }
-
         final NotifyEndpoint.Context notifyContext = new NotifyEndpoint.Context() {
             @Override
             public RpcConfiguration getBestRpcConfiguration() {
@@ -238,94 +357,208 @@ public class RpcProxyServer {
             }
         };
 
-        final Endpoint blockNotifyEndpoint;
-        {
-            blockNotifyEndpoint = new Endpoint(
-                new NotifyEndpoint(RpcNotificationType.BLOCK, notifyContext)
-            );
-            blockNotifyEndpoint.setPath("/api/v1/publish/block/raw");
-            blockNotifyEndpoint.setStrictPathEnabled(true);
-        }
-
-        final Endpoint blockHashNotifyEndpoint;
-        {
-            blockHashNotifyEndpoint = new Endpoint(
-                new NotifyEndpoint(RpcNotificationType.BLOCK_HASH, notifyContext, Sha256Hash.BYTE_COUNT)
-            );
-            blockHashNotifyEndpoint.setPath("/api/v1/publish/block/hash");
-            blockHashNotifyEndpoint.setStrictPathEnabled(true);
-        }
+        _rpcProxyHandler = new RpcProxyHandler(_nodeSelector, _blockTemplateManager, zmqConfiguration);
+        _nodeHealthMonitor = new NodeHealthMonitor(_rpcConfigurations);
 
-        final Endpoint transactionNotifyEndpoint;
-        {
-            transactionNotifyEndpoint = new Endpoint(
-                new NotifyEndpoint(RpcNotificationType.TRANSACTION, notifyContext)
-            );
-            transactionNotifyEndpoint.setPath("/api/v1/publish/transaction/raw");
-            transactionNotifyEndpoint.setStrictPathEnabled(true);
-        }
-
-        final Endpoint transactionHashNotifyEndpoint;
-        {
-            transactionHashNotifyEndpoint = new Endpoint(
-                new NotifyEndpoint(RpcNotificationType.TRANSACTION_HASH, notifyContext, Sha256Hash.BYTE_COUNT)
-            );
-            transactionHashNotifyEndpoint.setPath("/api/v1/publish/transaction/hash");
-            transactionHashNotifyEndpoint.setStrictPathEnabled(true);
-        }
+        _metricsEndpoint = new MetricsEndpoint();
+        _metricsEndpoint.addMetricsSource("nodes", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                return _getNodeMetrics();
+            }
+        });
 
-        _httpServer = new HttpServer();
-        _httpServer.setPort(_port);
-        _httpServer.enableEncryption(false);
-        _httpServer.redirectToTls(false);
-        _httpServer.addEndpoint(rpcProxyEndpoint);
-        _httpServer.addEndpoint(blockNotifyEndpoint);
-        _httpServer.addEndpoint(blockHashNotifyEndpoint);
-        _httpServer.addEndpoint(transactionNotifyEndpoint);
-        _httpServer.addEndpoint(transactionHashNotifyEndpoint);
-
-        _chainWorkMonitor = new SleepyService() {
+        _metricsEndpoint.addMetricsSource("requestCoalescing", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final Json coalescingJson = new Json(false);
+                coalescingJson.put("coalescedRequestCount", _rpcProxyHandler.getCoalescedRequestCount());
+                coalescingJson.put("coalescedBlockTemplateRequestCount", _blockTemplateManager.getCoalescedRequestCount());
+                return coalescingJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("blockSubmission", new MetricsEndpoint.MetricsSource() {
             @Override
-            protected void _onStart() { }
+            public Json getMetrics() {
+                final Json blockSubmissionJson = new Json(false);
+                blockSubmissionJson.put("count", _rpcProxyHandler.getBlockSubmissionCount());
+
+                final BlockSubmission lastBlockSubmission = _rpcProxyHandler.getLastBlockSubmission();
+                if (lastBlockSubmission != null) {
+                    final Json lastBlockSubmissionJson = new Json(false);
+                    lastBlockSubmissionJson.put("blockHash", lastBlockSubmission.getBlockHash().toString());
+                    lastBlockSubmissionJson.put("firstAcceptMs", lastBlockSubmission.getFirstAcceptMs());
+                    lastBlockSubmissionJson.put("acceptCount", lastBlockSubmission.getAcceptCount());
+                    lastBlockSubmissionJson.put("rejectCount", lastBlockSubmission.getRejectCount());
+                    lastBlockSubmissionJson.put("failureCount", lastBlockSubmission.getFailureCount());
+                    blockSubmissionJson.put("last", lastBlockSubmissionJson);
+                }
+                return blockSubmissionJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("longPoll", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                if (! (_blockTemplateManager instanceof CachingBlockTemplateManager)) { return null; }
 
+                final Json longPollJson = new Json(false);
+                longPollJson.put("waitingCount", ((CachingBlockTemplateManager) _blockTemplateManager).getLongPollCount());
+                return longPollJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("emptyBlockTemplate", new MetricsEndpoint.MetricsSource() {
             @Override
-            protected Boolean _run() {
-                final ChainHeight bestChainHeight;
-                {
-                    final RpcConfiguration bestRpcConfiguration = _nodeSelector.selectBestNode();
-                    bestChainHeight = bestRpcConfiguration.getChainHeight();
+            public Json getMetrics() {
+                if (! (_blockTemplateManager instanceof CachingBlockTemplateManager)) { return null; }
+
+                final CachingBlockTemplateManager cachingBlockTemplateManager = (CachingBlockTemplateManager) _blockTemplateManager;
+                final Json emptyBlockTemplateJson = new Json(false);
+                emptyBlockTemplateJson.put("count", cachingBlockTemplateManager.getEmptyBlockTemplateCount());
+                emptyBlockTemplateJson.put("lastNotificationToTemplateUs", cachingBlockTemplateManager.getLastEmptyBlockTemplateDelayUs());
+                emptyBlockTemplateJson.put("averageNotificationToTemplateUs", cachingBlockTemplateManager.getAverageEmptyBlockTemplateDelayUs());
+                return emptyBlockTemplateJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("chainHeightRefresh", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final Json chainHeightRefreshJson = new Json(false);
+                chainHeightRefreshJson.put("refreshCount", _chainHeightMonitor.getRefreshCount());
+                chainHeightRefreshJson.put("requestedRefreshCount", _chainHeightMonitor.getRequestedRefreshCount());
+                return chainHeightRefreshJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("headerIndex", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final Json headerIndexJson = new Json(false);
+                headerIndexJson.put("headerCount", _headerIndex.getHeaderCount());
+                headerIndexJson.put("localUpdateCount", _headerIndex.getLocalUpdateCount());
+                headerIndexJson.put("reconciliationCount", _headerIndex.getReconciliationCount());
+                return headerIndexJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("zmq", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final Json publishersJson = new Json(true);
+                for (final ZmqNotificationPublisherThread zmqNotificationPublisherThread : _zmqPublisherThreads.values()) {
+                    final Json publisherJson = new Json(false);
+                    publisherJson.put("type", zmqNotificationPublisherThread.getMessageType().toString());
+                    publisherJson.put("port", zmqNotificationPublisherThread.getPort());
+                    publisherJson.put("queueDepth", zmqNotificationPublisherThread.getQueueDepth());
+                    publisherJson.put("queueCapacity", zmqNotificationPublisherThread.getQueueCapacity());
+                    publisherJson.put("queuedCount", zmqNotificationPublisherThread.getQueuedMessageCount());
+                    publisherJson.put("sentCount", zmqNotificationPublisherThread.getSentMessageCount());
+                    publisherJson.put("droppedCount", zmqNotificationPublisherThread.getDroppedMessageCount());
+                    publisherJson.put("sendRate", zmqNotificationPublisherThread.getSendRate());
+                    publisherJson.put("sentBatchCount", zmqNotificationPublisherThread.getSentBatchCount());
+                    publisherJson.put("batchedCount", zmqNotificationPublisherThread.getBatchedMessageCount());
+                    publishersJson.add(publisherJson);
                 }
+                return publishersJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("notificationDeduplication", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final Json deduplicationJson = new Json(false);
+                deduplicationJson.put("count", _recentNotifications.getCount());
+                deduplicationJson.put("uniqueCount", _recentNotifications.getUniqueCount());
+                deduplicationJson.put("duplicateCount", _recentNotifications.getDuplicateCount());
+                deduplicationJson.put("rotationCount", _recentNotifications.getRotationCount());
+                return deduplicationJson;
+            }
+        });
+        _metricsEndpoint.addMetricsSource("responseCache", new MetricsEndpoint.MetricsSource() {
+            @Override
+            public Json getMetrics() {
+                final ResponseCache responseCache = _responseCache;
+                if (responseCache == null) { return null; }
+
+                final Json cacheJson = new Json(false);
+                cacheJson.put("hitCount", responseCache.getHitCount());
+                cacheJson.put("missCount", responseCache.getMissCount());
+                cacheJson.put("hitRatio", responseCache.getHitRatio());
+                cacheJson.put("entryCount", responseCache.getEntryCount());
+                cacheJson.put("byteCount", responseCache.getByteCount());
+                return cacheJson;
+            }
+        });
 
-                for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
-                    final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+        _httpServer = new NioHttpServer();
+        _httpServer.setPort(_port);
+        _httpServer.addEndpoint("/", _rpcProxyHandler);
+        _httpServer.addEndpoint("/api/v1/publish/block/raw", new NotifyEndpoint(RpcNotificationType.BLOCK, notifyContext));
+        _httpServer.addEndpoint("/api/v1/publish/block/hash", new NotifyEndpoint(RpcNotificationType.BLOCK_HASH, notifyContext, Sha256Hash.BYTE_COUNT));
+        _httpServer.addEndpoint("/api/v1/publish/transaction/raw", new NotifyEndpoint(RpcNotificationType.TRANSACTION, notifyContext));
+        _httpServer.addEndpoint("/api/v1/publish/transaction/hash", new NotifyEndpoint(RpcNotificationType.TRANSACTION_HASH, notifyContext, Sha256Hash.BYTE_COUNT));
+        _httpServer.addEndpoint("/api/v1/metrics", _metricsEndpoint);
+    }
 
-                    if (bestChainHeight.isBetterThan(chainHeight)) {
-                        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
-                        final ChainHeight newChainHeight = bitcoinRpcConnector.getChainHeight();
-                        if ( (newChainHeight != null) && newChainHeight.isBetterThan(chainHeight) ) {
-                            Logger.debug("Updating chainHeight for " + rpcConfiguration + ": " + newChainHeight);
-                            rpcConfiguration.setChainHeight(newChainHeight);
-                        }
-                    }
-                }
+    /**
+     * Sets the maximum number of requests processed concurrently.
+     *  Must be set before the server is started.
+     */
+    public void setMaxWorkerThreadCount(final Integer maxWorkerThreadCount) {
+        _httpServer.setMaxWorkerThreadCount(maxWorkerThreadCount);
+    }
 
-                try {
-                    Thread.sleep(15000L);
-                    return true;
-                }
-                catch (final Exception Exception) {
-                    return false;
-                }
-            }
+    /**
+     * Sets the maximum number of requests waiting for a worker before new requests are rejected.
+     *  Must be set before the server is started.
+     */
+    public void setMaxQueuedRequestCount(final Integer maxQueuedRequestCount) {
+        _httpServer.setMaxQueuedRequestCount(maxQueuedRequestCount);
+    }
 
-            @Override
-            protected void _onSleep() { }
-        };
+    /**
+     * Sets the maximum number of simultaneously open client connections; additional connections are rejected.
+     */
+    public void setMaxConnectionCount(final Integer maxConnectionCount) {
+        _httpServer.setMaxConnectionCount(maxConnectionCount);
+    }
+
+    /**
+     * Sets the strategy used to distribute read-only RPC requests across the nodes at the best ChainHeight.
+     *  A null strategy routes every request to the best node by hierarchy.
+     */
+    public void setLoadBalancingStrategy(final LoadBalancingStrategy loadBalancingStrategy) {
+        if (_nodeSelector instanceof RankedNodeSelector) {
+            ((RankedNodeSelector) _nodeSelector).setLoadBalancingStrategy(loadBalancingStrategy);
+        }
+    }
+
+    /**
+     * Sets the percentile (0-100) of a read-only method's recent latencies after which the request is also sent to
+     *  another node.  A null value disables request hedging.
+     */
+    public void setHedgeRequestPercentile(final Double hedgeRequestPercentile) {
+        _rpcProxyHandler.setHedgePercentile(hedgeRequestPercentile);
+    }
+
+    /**
+     * Enables caching of responses to idempotent read-only requests, bounded to approximately maxByteCount bytes.
+     *  A null or non-positive value disables the cache.  Must be set before the server is started.
+     */
+    public void setResponseCacheMaxByteCount(final Long maxByteCount) {
+        final ResponseCache responseCache = ( (maxByteCount != null) && (maxByteCount > 0L) ? new ResponseCache(maxByteCount) : null );
+        _responseCache = responseCache;
+        _rpcProxyHandler.setResponseCache(responseCache);
+    }
+
+    /**
+     * Sets the number of up-to-date nodes that must consider a block template valid before it is served.
+     *  A null value requires every up-to-date node.
+     */
+    public void setTemplateValidationQuorum(final Integer templateValidationQuorum) {
+        _blockTemplateManager.setValidationQuorum(templateValidationQuorum);
     }
 
     public void start() {
         _httpServer.start();
-        _chainWorkMonitor.start();
+        _chainHeightMonitor.start();
+        _nodeHealthMonitor.start();
         if (_blockTemplateManager instanceof CachingBlockTemplateManager) {
             ((CachingBlockTemplateManager) _blockTemplateManager).start();
         }
@@ -333,7 +566,8 @@ public class RpcProxyServer {
 
     public void stop() {
         _httpServer.stop();
-        _chainWorkMonitor.stop();
+        _chainHeightMonitor.stop();
+        _nodeHealthMonitor.stop();
         if (_blockTemplateManager instanceof CachingBlockTemplateManager) {
             ((CachingBlockTemplateManager) _blockTemplateManager).stop();
         }
@@ -0,0 +1,247 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.BlockTemplate;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.timer.NanoTimer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Obtains a block template from each up-to-date node and validates each template against every up-to-date node, in
+ *  order to find the template considered valid by the most nodes.
+ *  Every fetch and validation is an independent task on the (bounded) ExecutorService; a template's validations are
+ *  scheduled as soon as that template is received rather than after every template has been received.  Once any
+ *  template is considered valid by winningValidCount nodes, no further tasks are started and in-flight requests are
+ *  canceled via their Monitors.
+ */
+public class TemplateCrossValidation {
+    protected final ExecutorService _executorService;
+    protected final ChainHeight _bestChainHeight;
+    protected final Integer _winningValidCount;
+
+    protected final HashMap<RpcConfiguration, BlockTemplate> _blockTemplates = new HashMap<>();
+    protected final HashMap<RpcConfiguration, Integer> _validCounts = new HashMap<>(); // Keyed by the node that provided the template.
+    protected final HashSet<Monitor> _inFlightMonitors = new HashSet<>();
+    protected int _pendingTaskCount = 0;
+    protected RpcConfiguration _bestRpcConfiguration = null;
+    protected int _bestValidCount = 0;
+    protected Boolean _isComplete = false;
+
+    protected Monitor _createMonitor(final RpcConfiguration rpcConfiguration) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        final Monitor monitor = bitcoinRpcConnector.getMonitor();
+        final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+        if (maxTimeoutMs != null) {
+            monitor.setMaxDurationMs(maxTimeoutMs);
+        }
+        return monitor;
+    }
+
+    /**
+     * Schedules the task, unless the outcome is already known.
+     *  Must be called while synchronized on this instance.
+     */
+    protected void _schedule(final Runnable runnable) {
+        if (_isComplete) { return; }
+
+        _pendingTaskCount += 1;
+        try {
+            _executorService.execute(runnable);
+        }
+        catch (final RejectedExecutionException exception) {
+            Logger.debug("Unable to schedule template cross-validation task.");
+            _pendingTaskCount -= 1;
+        }
+    }
+
+    /**
+     * Marks a task as finished, and completes the cross-validation once no tasks remain.
+     *  Must be called while synchronized on this instance.
+     */
+    protected void _onTaskFinished() {
+        _pendingTaskCount -= 1;
+        if (_pendingTaskCount < 1) {
+            _isComplete = true;
+        }
+        this.notifyAll();
+    }
+
+    protected void _fetchBlockTemplate(final RpcConfiguration rpcConfiguration, final List<RpcConfiguration> validatingRpcConfigurations) {
+        final Monitor monitor;
+        synchronized (this) {
+            if (_isComplete) {
+                _onTaskFinished();
+                return;
+            }
+
+            monitor = _createMonitor(rpcConfiguration);
+            _inFlightMonitors.add(monitor);
+        }
+
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        BlockTemplate blockTemplate = null;
+        try {
+            blockTemplate = bitcoinRpcConnector.getBlockTemplate(monitor);
+        }
+        catch (final Exception exception) {
+            Logger.debug("Unable to obtain template from " + rpcConfiguration + ".", exception);
+        }
+
+        synchronized (this) {
+            _inFlightMonitors.remove(monitor);
+
+            if (blockTemplate == null) {
+                Logger.debug("Failed to obtain template from " + rpcConfiguration + " in " + monitor.getDurationMs() + "ms.");
+            }
+            else if (! _isComplete) {
+                Logger.info("Obtained template (height=" + blockTemplate.getBlockHeight() + ") from " + rpcConfiguration + " in " + monitor.getDurationMs() + "ms.");
+                _blockTemplates.put(rpcConfiguration, blockTemplate);
+                _validCounts.put(rpcConfiguration, 0);
+
+                final BlockTemplate fetchedBlockTemplate = blockTemplate;
+                for (final RpcConfiguration rpcConfigurationForValidation : validatingRpcConfigurations) {
+                    _schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            _validateBlockTemplate(rpcConfiguration, fetchedBlockTemplate, rpcConfigurationForValidation);
+                        }
+                    });
+                }
+            }
+
+            _onTaskFinished();
+        }
+    }
+
+    protected void _validateBlockTemplate(final RpcConfiguration rpcConfigurationForTemplate, final BlockTemplate blockTemplate, final RpcConfiguration rpcConfigurationForValidation) {
+        final Monitor monitor;
+        synchronized (this) {
+            if (_isComplete) {
+                _onTaskFinished();
+                return;
+            }
+
+            monitor = _createMonitor(rpcConfigurationForValidation);
+            _inFlightMonitors.add(monitor);
+        }
+
+        final BitBalancerRpcConnector bitcoinRpcConnectorForValidation = rpcConfigurationForValidation.getBitcoinRpcConnector();
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        Boolean isValid = null;
+        try {
+            isValid = bitcoinRpcConnectorForValidation.validateBlockTemplate(blockTemplate, monitor);
+        }
+        catch (final Exception exception) {
+            Logger.debug("Template validation failed with " + rpcConfigurationForValidation + ".", exception);
+        }
+        nanoTimer.stop();
+
+        synchronized (this) {
+            _inFlightMonitors.remove(monitor);
+
+            if (! _isComplete) {
+                if (isValid != null) {
+                    final NodeStatistics nodeStatistics = rpcConfigurationForValidation.getNodeStatistics();
+                    nodeStatistics.onTemplateValidated(nanoTimer.getMillisecondsElapsed().longValue());
+                    Logger.debug("Validated template from " + rpcConfigurationForTemplate + " with " + rpcConfigurationForValidation + " in " + monitor.getDurationMs() + "ms. (" + (isValid ? "VALID" : "INVALID") + ")");
+                }
+                else {
+                    Logger.debug("Template validation not supported by " + rpcConfigurationForValidation + ".");
+                }
+
+                if ( (isValid == null) || isValid ) {
+                    final int validCount = (_validCounts.get(rpcConfigurationForTemplate) + 1);
+                    _validCounts.put(rpcConfigurationForTemplate, validCount);
+
+                    if (validCount > _bestValidCount) {
+                        _bestRpcConfiguration = rpcConfigurationForTemplate;
+                        _bestValidCount = validCount;
+                    }
+
+                    if (validCount >= _winningValidCount) {
+                        Logger.debug("Template from " + rpcConfigurationForTemplate + " reached " + validCount + " validations; ending cross-validation.");
+                        _isComplete = true;
+                    }
+                }
+            }
+
+            _onTaskFinished();
+        }
+    }
+
+    /**
+     * @param winningValidCount The number of nodes that must consider a template valid for it to be selected without waiting for the remaining validations.
+     */
+    public TemplateCrossValidation(final ExecutorService executorService, final ChainHeight bestChainHeight, final Integer winningValidCount) {
+        _executorService = executorService;
+        _bestChainHeight = bestChainHeight;
+        _winningValidCount = winningValidCount;
+    }
+
+    /**
+     * Cross-validates the templates of the provided nodes and blocks until the best template is known.
+     *  Nodes behind the best ChainHeight neither provide nor validate templates.
+     *  Returns null if no template was considered valid by any node.
+     */
+    public BlockTemplate execute(final List<RpcConfiguration> rpcConfigurations) {
+        final MutableList<RpcConfiguration> upToDateRpcConfigurations = new MutableList<>();
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            if (_bestChainHeight.isBetterThan(chainHeight)) {
+                Logger.debug("Skipping template cross-validation with " + rpcConfiguration + "; node is behind on ChainHeight: " + chainHeight);
+                continue;
+            }
+            upToDateRpcConfigurations.add(rpcConfiguration);
+        }
+
+        synchronized (this) {
+            for (final RpcConfiguration rpcConfiguration : upToDateRpcConfigurations) {
+                _schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        _fetchBlockTemplate(rpcConfiguration, upToDateRpcConfigurations);
+                    }
+                });
+            }
+            if (_pendingTaskCount < 1) {
+                _isComplete = true;
+            }
+
+            try {
+                while (! _isComplete) {
+                    this.wait();
+                }
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                _isComplete = true;
+            }
+
+            for (final Monitor monitor : _inFlightMonitors) {
+                monitor.cancel();
+            }
+
+            if (_bestRpcConfiguration == null) { return null; }
+            return _blockTemplates.get(_bestRpcConfiguration);
+        }
+    }
+
+    public synchronized RpcConfiguration getBestRpcConfiguration() {
+        return _bestRpcConfiguration;
+    }
+
+    public synchronized Integer getBestValidCount() {
+        return _bestValidCount;
+    }
+}
@@ -0,0 +1,223 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.BlockTemplate;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
+import com.softwareverde.util.timer.NanoTimer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Validates a block template with a set of nodes until a quorum of them consider it valid.
+ *  Nodes are asked in order of their historical validation duration (unmeasured nodes first, so that every node is
+ *  eventually measured).  Only as many validations as are still required to reach the quorum, plus one spare so that a
+ *  single straggler cannot stall the quorum, are in-flight at once; a validation that does not produce a verdict (the node
+ *  is behind, does not support validation, or fails) is replaced by the next node.  The first invalid verdict ends the
+ *  validation.  Once the outcome is known, any in-flight validations are canceled via their Monitors.
+ */
+public class TemplateValidationQuorum {
+    public enum Outcome {
+        VALID,      // The quorum was reached.
+        INVALID,    // A node considered the template invalid.
+        NO_QUORUM   // Every node was asked without reaching the quorum, but none considered the template invalid.
+    }
+
+    protected static final Integer SPARE_VALIDATION_COUNT = 1;
+
+    protected static final Comparator<RpcConfiguration> VALIDATION_DURATION_COMPARATOR = new Comparator<RpcConfiguration>() {
+        @Override
+        public int compare(final RpcConfiguration rpcConfiguration0, final RpcConfiguration rpcConfiguration1) {
+            final Double validationMs0 = Util.coalesce(rpcConfiguration0.getNodeStatistics().getTemplateValidationMs(), 0D);
+            final Double validationMs1 = Util.coalesce(rpcConfiguration1.getNodeStatistics().getTemplateValidationMs(), 0D);
+            return validationMs0.compareTo(validationMs1);
+        }
+    };
+
+    protected final ExecutorService _executorService;
+    protected final BlockTemplate _blockTemplate;
+    protected final RpcConfiguration _templateRpcConfiguration;
+    protected final ChainHeight _bestChainHeight;
+    protected final Integer _requiredValidCount;
+    protected final Set<RpcConfiguration> _validatingRpcConfigurations;
+
+    protected final LinkedList<RpcConfiguration> _pendingRpcConfigurations = new LinkedList<>();
+    protected final HashMap<RpcConfiguration, Monitor> _inFlightMonitors = new HashMap<>();
+    protected int _validCount = 0;
+    protected int _invalidCount = 0;
+    protected int _skipCount = 0;
+    protected Outcome _outcome = null;
+
+    /**
+     * Starts validations until enough are in-flight to reach the quorum, or no nodes remain.
+     *  Must be called while synchronized on this instance.
+     */
+    protected void _startValidations() {
+        while ( (_outcome == null) && ((_validCount + _inFlightMonitors.size()) < (_requiredValidCount + SPARE_VALIDATION_COUNT)) && (! _pendingRpcConfigurations.isEmpty()) ) {
+            final RpcConfiguration rpcConfiguration = _pendingRpcConfigurations.removeFirst();
+
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            if (_bestChainHeight.isBetterThan(chainHeight)) {
+                Logger.debug("Skipping template validation for " + rpcConfiguration + " with " + _templateRpcConfiguration + " template; node is behind on ChainHeight: " + chainHeight);
+                _skipCount += 1;
+                continue;
+            }
+
+            final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+            final Monitor monitor = bitcoinRpcConnector.getMonitor();
+            final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+            if (maxTimeoutMs != null) {
+                monitor.setMaxDurationMs(maxTimeoutMs);
+            }
+
+            _inFlightMonitors.put(rpcConfiguration, monitor);
+            try {
+                _executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        _validate(rpcConfiguration, monitor);
+                    }
+                });
+            }
+            catch (final RejectedExecutionException exception) {
+                Logger.debug("Unable to schedule template validation with " + rpcConfiguration + ".");
+                _inFlightMonitors.remove(rpcConfiguration);
+                _skipCount += 1;
+            }
+        }
+
+        if (_outcome == null) {
+            if (_validCount >= _requiredValidCount) {
+                _outcome = Outcome.VALID;
+            }
+            else if ( _inFlightMonitors.isEmpty() && _pendingRpcConfigurations.isEmpty() ) {
+                _outcome = Outcome.NO_QUORUM;
+            }
+        }
+    }
+
+    protected void _validate(final RpcConfiguration rpcConfiguration, final Monitor monitor) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        Boolean isValid = null;
+        try {
+            isValid = bitcoinRpcConnector.validateBlockTemplate(_blockTemplate, monitor);
+        }
+        catch (final Exception exception) {
+            Logger.debug("Template validation failed with " + rpcConfiguration + ".", exception);
+        }
+        nanoTimer.stop();
+
+        synchronized (this) {
+            _inFlightMonitors.remove(rpcConfiguration);
+            if (_outcome != null) { // The validation was canceled; its verdict is meaningless, and its duration is only a lower bound of the node's validation time.
+                rpcConfiguration.getNodeStatistics().onTemplateValidationCanceled(nanoTimer.getMillisecondsElapsed().longValue());
+                return;
+            }
+
+            if (isValid == null) {
+                Logger.debug("Template validation not supported by " + rpcConfiguration + ".");
+                _skipCount += 1;
+            }
+            else {
+                final NodeStatistics nodeStatistics = rpcConfiguration.getNodeStatistics();
+                nodeStatistics.onTemplateValidated(nanoTimer.getMillisecondsElapsed().longValue());
+
+                if (isValid) {
+                    Logger.debug("Validated template from " + _templateRpcConfiguration + " with " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
+                    _validatingRpcConfigurations.add(rpcConfiguration);
+                    _validCount += 1;
+                }
+                else {
+                    Logger.debug("Template considered invalid by: " + rpcConfiguration + " in " + nanoTimer.getMillisecondsElapsed() + "ms.");
+                    _invalidCount += 1;
+                    _outcome = Outcome.INVALID;
+                }
+            }
+
+            _startValidations();
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * @param requiredValidCount    The number of valid verdicts that constitutes a quorum; nodes in validatingRpcConfigurations are not re-validated.
+     * @param validatingRpcConfigurations   The (thread-safe) set of nodes that consider the template valid; nodes that validate the template are added to it.
+     */
+    public TemplateValidationQuorum(final ExecutorService executorService, final BlockTemplate blockTemplate, final RpcConfiguration templateRpcConfiguration, final ChainHeight bestChainHeight, final Integer requiredValidCount, final Set<RpcConfiguration> validatingRpcConfigurations) {
+        _executorService = executorService;
+        _blockTemplate = blockTemplate;
+        _templateRpcConfiguration = templateRpcConfiguration;
+        _bestChainHeight = bestChainHeight;
+        _requiredValidCount = requiredValidCount;
+        _validatingRpcConfigurations = validatingRpcConfigurations;
+    }
+
+    /**
+     * Validates the template with the provided nodes and blocks until the outcome is known.
+     */
+    public Outcome execute(final List<RpcConfiguration> rpcConfigurations) {
+        final ArrayList<RpcConfiguration> sortedRpcConfigurations = new ArrayList<>(rpcConfigurations.getCount());
+        int reusedValidCount = 0;
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            if (_validatingRpcConfigurations.contains(rpcConfiguration)) {
+                reusedValidCount += 1;
+                continue;
+            }
+            sortedRpcConfigurations.add(rpcConfiguration);
+        }
+        Collections.sort(sortedRpcConfigurations, VALIDATION_DURATION_COMPARATOR); // Stable; unmeasured nodes retain their hierarchical order.
+
+        synchronized (this) {
+            _validCount = reusedValidCount;
+            _pendingRpcConfigurations.addAll(sortedRpcConfigurations);
+            _startValidations();
+
+            try {
+                while (_outcome == null) {
+                    this.wait();
+                }
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                if (_outcome == null) {
+                    _outcome = Outcome.NO_QUORUM;
+                }
+            }
+
+            for (final Map.Entry<RpcConfiguration, Monitor> entry : _inFlightMonitors.entrySet()) {
+                Logger.debug("Canceling template validation with " + entry.getKey() + ".");
+                entry.getValue().cancel();
+            }
+
+            return _outcome;
+        }
+    }
+
+    public synchronized Integer getValidCount() {
+        return _validCount;
+    }
+
+    public synchronized Integer getInvalidCount() {
+        return _invalidCount;
+    }
+
+    public synchronized Integer getSkipCount() {
+        return _skipCount;
+    }
+}
@@ -0,0 +1,188 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import com.softwareverde.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A JSON-RPC success response rendered once and shared by every request for the same result.
+ *  The "id" member is rendered last, so a request's id is spliced in by appending it to the rendered prefix rather than
+ *  by re-serializing the result.  The gzip form is likewise compressed once: the prefix is compressed and flushed to a
+ *  byte boundary, and each request's id is appended as an uncompressed (stored) final deflate block, followed by the
+ *  trailer's CRC32, which is resumed from the prefix's CRC32 rather than recomputed.
+ */
+public class PrerenderedResponse {
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+
+    protected static final byte[] RESULT_PREFIX_BYTES = "{\"result\":".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] ID_PREFIX_BYTES = ",\"error\":null,\"id\":".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] SUFFIX_BYTES = "}".getBytes(StandardCharsets.UTF_8);
+
+    protected static final byte[] GZIP_HEADER_BYTES = new byte[]{ 0x1F, (byte) 0x8B, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xFF };
+    protected static final Integer MAX_STORED_BLOCK_BYTE_COUNT = 65535;
+
+    protected static final int[] CRC32_TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; ++i) {
+            int value = i;
+            for (int j = 0; j < 8; ++j) {
+                value = (((value & 1) != 0) ? ((value >>> 1) ^ 0xEDB88320) : (value >>> 1));
+            }
+            CRC32_TABLE[i] = value;
+        }
+    }
+
+    /**
+     * Continues the CRC32 (as returned by CRC32.getValue()) of preceding bytes over the provided bytes.
+     */
+    protected static int _updateCrc32(final int crc32, final byte[] bytes) {
+        int state = (~crc32);
+        for (final byte b : bytes) {
+            state = (CRC32_TABLE[(state ^ b) & 0xFF] ^ (state >>> 8));
+        }
+        return (~state);
+    }
+
+    protected static void _writeIntLittleEndian(final byte[] destination, final int index, final int value) {
+        destination[index] = (byte) value;
+        destination[index + 1] = (byte) (value >>> 8);
+        destination[index + 2] = (byte) (value >>> 16);
+        destination[index + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Returns the raw deflate encoding of the bytes, ending at a byte boundary without a final block.
+     */
+    protected static byte[] _deflateWithoutFinalBlock(final byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream((bytes.length / 4) + 64);
+            final byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                final int byteCount = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                byteArrayOutputStream.write(buffer, 0, byteCount);
+                if ( (byteCount < buffer.length) && deflater.needsInput() ) { break; }
+            }
+            return byteArrayOutputStream.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns true if the Accept-Encoding header value permits gzip.
+     */
+    public static Boolean acceptsGzip(final String acceptEncoding) {
+        final String value = Util.coalesce(acceptEncoding, "").toLowerCase();
+        for (final String encoding : value.split(",")) {
+            final String[] parameters = encoding.trim().split(";");
+            if (! Util.areEqual(CONTENT_ENCODING_GZIP, parameters[0].trim())) { continue; }
+
+            for (int i = 1; i < parameters.length; ++i) {
+                final String parameter = parameters[i].replace(" ", "");
+                if (parameter.startsWith("q=0") && (! parameter.matches("q=0\\.0*[1-9].*"))) { return false; } // q=0 rejects the encoding.
+            }
+            return true;
+        }
+        return false;
+    }
+
+    protected final byte[] _prefixBytes;
+    protected final byte[] _gzipPrefixBytes;
+    protected final int _prefixCrc32;
+
+    /**
+     * @param resultBytes The serialized JSON result.
+     * @param shouldCompress    If true, the gzip form is also rendered; otherwise getGzipBytes returns null.
+     */
+    public PrerenderedResponse(final byte[] resultBytes, final Boolean shouldCompress) {
+        _prefixBytes = new byte[RESULT_PREFIX_BYTES.length + resultBytes.length + ID_PREFIX_BYTES.length];
+        System.arraycopy(RESULT_PREFIX_BYTES, 0, _prefixBytes, 0, RESULT_PREFIX_BYTES.length);
+        System.arraycopy(resultBytes, 0, _prefixBytes, RESULT_PREFIX_BYTES.length, resultBytes.length);
+        System.arraycopy(ID_PREFIX_BYTES, 0, _prefixBytes, (RESULT_PREFIX_BYTES.length + resultBytes.length), ID_PREFIX_BYTES.length);
+
+        if (shouldCompress) {
+            final byte[] deflatedPrefixBytes = _deflateWithoutFinalBlock(_prefixBytes);
+            _gzipPrefixBytes = new byte[GZIP_HEADER_BYTES.length + deflatedPrefixBytes.length];
+            System.arraycopy(GZIP_HEADER_BYTES, 0, _gzipPrefixBytes, 0, GZIP_HEADER_BYTES.length);
+            System.arraycopy(deflatedPrefixBytes, 0, _gzipPrefixBytes, GZIP_HEADER_BYTES.length, deflatedPrefixBytes.length);
+
+            final CRC32 crc32 = new CRC32();
+            crc32.update(_prefixBytes);
+            _prefixCrc32 = (int) crc32.getValue();
+        }
+        else {
+            _gzipPrefixBytes = null;
+            _prefixCrc32 = 0;
+        }
+    }
+
+    /**
+     * Returns the response with the provided serialized id.
+     */
+    public byte[] getBytes(final byte[] idBytes) {
+        final byte[] bytes = new byte[_prefixBytes.length + idBytes.length + SUFFIX_BYTES.length];
+        System.arraycopy(_prefixBytes, 0, bytes, 0, _prefixBytes.length);
+        System.arraycopy(idBytes, 0, bytes, _prefixBytes.length, idBytes.length);
+        System.arraycopy(SUFFIX_BYTES, 0, bytes, (_prefixBytes.length + idBytes.length), SUFFIX_BYTES.length);
+        return bytes;
+    }
+
+    /**
+     * Returns the gzip-encoded response with the provided serialized id, or null if the gzip form was not rendered.
+     */
+    public byte[] getGzipBytes(final byte[] idBytes) {
+        if (_gzipPrefixBytes == null) { return null; }
+
+        final byte[] tailBytes = new byte[idBytes.length + SUFFIX_BYTES.length];
+        System.arraycopy(idBytes, 0, tailBytes, 0, idBytes.length);
+        System.arraycopy(SUFFIX_BYTES, 0, tailBytes, idBytes.length, SUFFIX_BYTES.length);
+
+        final int storedBlockCount = Math.max(1, ((tailBytes.length + MAX_STORED_BLOCK_BYTE_COUNT - 1) / MAX_STORED_BLOCK_BYTE_COUNT));
+        final byte[] bytes = new byte[_gzipPrefixBytes.length + (storedBlockCount * 5) + tailBytes.length + 8];
+        System.arraycopy(_gzipPrefixBytes, 0, bytes, 0, _gzipPrefixBytes.length);
+
+        int index = _gzipPrefixBytes.length;
+        int tailIndex = 0;
+        for (int i = 0; i < storedBlockCount; ++i) {
+            final int byteCount = Math.min(MAX_STORED_BLOCK_BYTE_COUNT, (tailBytes.length - tailIndex));
+            final boolean isFinalBlock = (i == (storedBlockCount - 1));
+
+            bytes[index] = (byte) (isFinalBlock ? 0x01 : 0x00); // BFINAL, BTYPE=00 (stored)
+            bytes[index + 1] = (byte) byteCount;
+            bytes[index + 2] = (byte) (byteCount >>> 8);
+            bytes[index + 3] = (byte) ~byteCount;
+            bytes[index + 4] = (byte) ((~byteCount) >>> 8);
+            index += 5;
+
+            System.arraycopy(tailBytes, tailIndex, bytes, index, byteCount);
+            index += byteCount;
+            tailIndex += byteCount;
+        }
+
+        _writeIntLittleEndian(bytes, index, _updateCrc32(_prefixCrc32, tailBytes));
+        _writeIntLittleEndian(bytes, (index + 4), (_prefixBytes.length + tailBytes.length)); // ISIZE is modulo 2^32.
+        return bytes;
+    }
+
+    /**
+     * Returns the size of the rendered response, excluding its id.
+     */
+    public Integer getByteCount() {
+        return _prefixBytes.length;
+    }
+
+    /**
+     * Returns the size of the gzip-encoded response, excluding its id, or null if the gzip form was not rendered.
+     */
+    public Integer getGzipByteCount() {
+        if (_gzipPrefixBytes == null) { return null; }
+        return _gzipPrefixBytes.length;
+    }
+}
@@ -0,0 +1,329 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import com.softwareverde.util.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process cache of successful responses to idempotent JSON-RPC methods, keyed by method and params.
+ *  Entries that depend upon the chain tip (CachePolicy.CHAIN_TIP) are invalidated whenever the tip changes; entries
+ *  for immutable data (e.g. a raw block by hash) are retained until their (long) TTL expires.
+ *  The cache is bounded by the total size of its entries and is split into independently locked segments; the byte
+ *  budget is shared by all segments, so a single entry may use up to the whole budget, and each segment evicts its
+ *  least-recently-used entries when the budget is exceeded.
+ *  Responses are stored with their "id" removed so that a cached response can be returned to any request.
+ */
+public class ResponseCache {
+    public enum CachePolicy {
+        NONE, CHAIN_TIP, IMMUTABLE
+    }
+
+    public static class Defaults {
+        public static final Long MAX_BYTE_COUNT = (32L * 1024L * 1024L);
+        public static final Long CHAIN_TIP_TTL_MS = 30000L; // Guards against a missed tip notification.
+        public static final Long IMMUTABLE_TTL_MS = (60L * 60L * 1000L);
+    }
+
+    protected static final Integer SEGMENT_COUNT = 16;
+    protected static final Integer MAX_PARAMS_BYTE_COUNT = 1024;
+
+    protected static final byte[] ID_KEY = "id".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] RESULT_KEY = "result".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] BLOCK_HASH_KEY = "blockhash".getBytes(StandardCharsets.UTF_8);
+
+    protected static class CachedResponse {
+        public final byte[] prefix; // The response bytes preceding the id value.
+        public final byte[] suffix; // The response bytes following the id value.
+        public final Long chainTipGeneration; // Null if the response does not depend upon the chain tip.
+        public final Long expiresAtMs;
+
+        public CachedResponse(final byte[] prefix, final byte[] suffix, final Long chainTipGeneration, final Long expiresAtMs) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.chainTipGeneration = chainTipGeneration;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        public int getByteCount() {
+            return (this.prefix.length + this.suffix.length);
+        }
+    }
+
+    protected static class Segment {
+        protected final LinkedHashMap<String, CachedResponse> _cachedResponses = new LinkedHashMap<>(16, 0.75F, true);
+        protected final AtomicLong _totalByteCount; // The byte count of the whole cache, shared by all segments.
+        protected long _byteCount = 0L;
+
+        protected void _remove(final String key) {
+            final CachedResponse cachedResponse = _cachedResponses.remove(key);
+            if (cachedResponse != null) {
+                final long byteCount = (key.length() + cachedResponse.getByteCount());
+                _byteCount -= byteCount;
+                _totalByteCount.addAndGet(-byteCount);
+            }
+        }
+
+        public Segment(final AtomicLong totalByteCount) {
+            _totalByteCount = totalByteCount;
+        }
+
+        public synchronized CachedResponse get(final String key, final long chainTipGeneration, final long now) {
+            final CachedResponse cachedResponse = _cachedResponses.get(key);
+            if (cachedResponse == null) { return null; }
+
+            final boolean isExpired = (now >= cachedResponse.expiresAtMs);
+            final boolean isStale = ( (cachedResponse.chainTipGeneration != null) && (cachedResponse.chainTipGeneration != chainTipGeneration) );
+            if (isExpired || isStale) {
+                _remove(key);
+                return null;
+            }
+
+            return cachedResponse;
+        }
+
+        public synchronized void put(final String key, final CachedResponse cachedResponse) {
+            final long byteCount = (key.length() + cachedResponse.getByteCount());
+
+            _remove(key);
+            _cachedResponses.put(key, cachedResponse);
+            _byteCount += byteCount;
+            _totalByteCount.addAndGet(byteCount);
+        }
+
+        /**
+         * Removes the least-recently-used entry, other than the entry for retainedKey.
+         *  Returns false if the segment has no such entry.
+         */
+        public synchronized boolean removeEldestEntry(final String retainedKey) {
+            for (final String key : _cachedResponses.keySet()) {
+                if (Util.areEqual(retainedKey, key)) { continue; }
+
+                _remove(key);
+                return true;
+            }
+            return false;
+        }
+
+        public synchronized int getEntryCount() {
+            return _cachedResponses.size();
+        }
+
+        public synchronized long getByteCount() {
+            return _byteCount;
+        }
+    }
+
+    /**
+     * Returns how the response to the provided method and params may be cached.
+     *  methodKey must be lowercase; paramsRange is the JsonScanner range of the params within requestBytes.
+     */
+    public static CachePolicy getCachePolicy(final String methodKey, final byte[] requestBytes, final long paramsRange) {
+        switch (methodKey) {
+            case "getblock": {
+                // Raw (verbosity 0) blocks never change; verbose blocks include confirmations and nextblockhash.
+                final long verbosityRange = JsonScanner.findElement(requestBytes, paramsRange, 1);
+                final boolean isRaw = ( JsonScanner.isLiteral(requestBytes, verbosityRange, "0") || JsonScanner.isLiteral(requestBytes, verbosityRange, "false") );
+                return (isRaw ? CachePolicy.IMMUTABLE : CachePolicy.CHAIN_TIP);
+            }
+
+            case "getblockheader": {
+                final long verboseRange = JsonScanner.findElement(requestBytes, paramsRange, 1);
+                final boolean isRaw = JsonScanner.isLiteral(requestBytes, verboseRange, "false");
+                return (isRaw ? CachePolicy.IMMUTABLE : CachePolicy.CHAIN_TIP);
+            }
+
+            case "getbestblockhash":
+            case "getblockchaininfo":
+            case "getblockcount":
+            case "getblockhash":
+            case "getdifficulty":
+            case "getrawtransaction": {
+                return CachePolicy.CHAIN_TIP;
+            }
+
+            default: {
+                return CachePolicy.NONE;
+            }
+        }
+    }
+
+    /**
+     * Returns the cache key for the request, or null if the request should not be cached.
+     */
+    public static String getCacheKey(final String methodKey, final byte[] requestBytes, final long paramsRange) {
+        if (paramsRange == JsonScanner.NOT_FOUND) { return methodKey; }
+
+        final int paramsByteCount = (JsonScanner.getEndIndex(paramsRange) - JsonScanner.getStartIndex(paramsRange));
+        if (paramsByteCount > MAX_PARAMS_BYTE_COUNT) { return null; }
+
+        return (methodKey + " " + JsonScanner.toString(requestBytes, paramsRange));
+    }
+
+    /**
+     * Returns true if the response may be cached.
+     *  Only confirmed transactions are cached for getrawtransaction; confirmed verbose transactions include a blockhash.
+     */
+    protected static boolean _isCacheableResponse(final String methodKey, final byte[] responseBytes) {
+        if (! "getrawtransaction".equals(methodKey)) { return true; }
+
+        final long resultRange = JsonScanner.findMember(responseBytes, 0, responseBytes.length, RESULT_KEY);
+        if (resultRange == JsonScanner.NOT_FOUND) { return false; }
+
+        final long blockHashRange = JsonScanner.findMember(responseBytes, JsonScanner.getStartIndex(resultRange), JsonScanner.getEndIndex(resultRange), BLOCK_HASH_KEY);
+        return (blockHashRange != JsonScanner.NOT_FOUND);
+    }
+
+    protected static boolean _rangeEquals(final byte[] bytes, final long range, final byte[] expectedBytes) {
+        final int startIndex = JsonScanner.getStartIndex(range);
+        final int length = (JsonScanner.getEndIndex(range) - startIndex);
+        if (length != expectedBytes.length) { return false; }
+
+        for (int i = 0; i < length; ++i) {
+            if (bytes[startIndex + i] != expectedBytes[i]) { return false; }
+        }
+        return true;
+    }
+
+    protected final Long _maxByteCount;
+    protected final AtomicLong _byteCount = new AtomicLong(0L);
+    protected final Segment[] _segments;
+    protected final AtomicLong _chainTipGeneration = new AtomicLong(0L);
+    protected final AtomicLong _hitCount = new AtomicLong(0L);
+    protected final AtomicLong _missCount = new AtomicLong(0L);
+
+    protected static int _getSegmentIndex(final String key) {
+        final int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1));
+    }
+
+    protected Segment _getSegment(final String key) {
+        return _segments[_getSegmentIndex(key)];
+    }
+
+    /**
+     * Evicts least-recently-used entries until the cache is within its budget.
+     *  Entries are evicted from the segment of retainedKey first, and then from the other segments in turn; the entry
+     *  for retainedKey is never evicted.
+     */
+    protected void _evict(final String retainedKey) {
+        final int segmentIndex = _getSegmentIndex(retainedKey);
+
+        int exhaustedSegmentCount = 0;
+        while ( (_byteCount.get() > _maxByteCount) && (exhaustedSegmentCount < SEGMENT_COUNT) ) {
+            final Segment segment = _segments[(segmentIndex + exhaustedSegmentCount) % SEGMENT_COUNT];
+            if (! segment.removeEldestEntry(retainedKey)) {
+                exhaustedSegmentCount += 1;
+            }
+        }
+    }
+
+    public ResponseCache() {
+        this(Defaults.MAX_BYTE_COUNT);
+    }
+
+    public ResponseCache(final Long maxByteCount) {
+        _maxByteCount = maxByteCount;
+        _segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; ++i) {
+            _segments[i] = new Segment(_byteCount);
+        }
+    }
+
+    /**
+     * Returns the current chain tip generation.
+     *  The generation should be captured before the upstream request is sent and provided to ResponseCache::put, so that
+     *  a response that was in-flight during a tip change is not cached as current.
+     */
+    public Long getChainTipGeneration() {
+        return _chainTipGeneration.get();
+    }
+
+    /**
+     * Invalidates all entries that depend upon the chain tip.
+     */
+    public void onChainTipChanged() {
+        _chainTipGeneration.incrementAndGet();
+    }
+
+    /**
+     * Returns the cached response content with the provided (serialized) id, or null if the response is not cached.
+     */
+    public byte[] get(final String key, final byte[] idBytes) {
+        final Segment segment = _getSegment(key);
+        final CachedResponse cachedResponse = segment.get(key, _chainTipGeneration.get(), System.currentTimeMillis());
+        if (cachedResponse == null) {
+            _missCount.incrementAndGet();
+            return null;
+        }
+
+        _hitCount.incrementAndGet();
+
+        final byte[] content = new byte[cachedResponse.prefix.length + idBytes.length + cachedResponse.suffix.length];
+        System.arraycopy(cachedResponse.prefix, 0, content, 0, cachedResponse.prefix.length);
+        System.arraycopy(idBytes, 0, content, cachedResponse.prefix.length, idBytes.length);
+        System.arraycopy(cachedResponse.suffix, 0, content, (cachedResponse.prefix.length + idBytes.length), cachedResponse.suffix.length);
+        return content;
+    }
+
+    /**
+     * Caches the successful response content.
+     *  idBytes is the serialized id of the request that produced the response; the response is not cached if its id does
+     *  not match.
+     */
+    public void put(final String key, final String methodKey, final CachePolicy cachePolicy, final Long chainTipGeneration, final byte[] responseBytes, final byte[] idBytes) {
+        if ( (cachePolicy == CachePolicy.NONE) || (responseBytes == null) ) { return; }
+        if ( (cachePolicy == CachePolicy.CHAIN_TIP) && (! Util.areEqual(chainTipGeneration, _chainTipGeneration.get())) ) { return; } // The tip changed while the request was in-flight.
+        if (! _isCacheableResponse(methodKey, responseBytes)) { return; }
+
+        final long idRange = JsonScanner.findMember(responseBytes, 0, responseBytes.length, ID_KEY);
+        if (idRange == JsonScanner.NOT_FOUND) { return; }
+        if (! _rangeEquals(responseBytes, idRange, idBytes)) { return; }
+
+        final int idStartIndex = JsonScanner.getStartIndex(idRange);
+        final int idEndIndex = JsonScanner.getEndIndex(idRange);
+
+        final byte[] prefix = new byte[idStartIndex];
+        System.arraycopy(responseBytes, 0, prefix, 0, idStartIndex);
+        final byte[] suffix = new byte[responseBytes.length - idEndIndex];
+        System.arraycopy(responseBytes, idEndIndex, suffix, 0, suffix.length);
+
+        final boolean isImmutable = (cachePolicy == CachePolicy.IMMUTABLE);
+        final long expiresAtMs = (System.currentTimeMillis() + (isImmutable ? Defaults.IMMUTABLE_TTL_MS : Defaults.CHAIN_TIP_TTL_MS));
+        final CachedResponse cachedResponse = new CachedResponse(prefix, suffix, (isImmutable ? null : chainTipGeneration), expiresAtMs);
+        if ((key.length() + cachedResponse.getByteCount()) > _maxByteCount) { return; }
+
+        final Segment segment = _getSegment(key);
+        segment.put(key, cachedResponse);
+        _evict(key);
+    }
+
+    public Long getHitCount() {
+        return _hitCount.get();
+    }
+
+    public Long getMissCount() {
+        return _missCount.get();
+    }
+
+    public Double getHitRatio() {
+        final long hitCount = _hitCount.get();
+        final long requestCount = (hitCount + _missCount.get());
+        if (requestCount == 0L) { return 0D; }
+        return (hitCount / (double) requestCount);
+    }
+
+    public Integer getEntryCount() {
+        int entryCount = 0;
+        for (final Segment segment : _segments) {
+            entryCount += segment.getEntryCount();
+        }
+        return entryCount;
+    }
+
+    public Long getByteCount() {
+        return _byteCount.get();
+    }
+}
@@ -0,0 +1,111 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent invocations of identical calls.
+ *  The first caller for a key executes the call; callers that arrive while that call is in-flight wait for it and share
+ *  its result instead of executing the call themselves.  The key is released as soon as the call completes, so a
+ *  result is never shared with callers that arrive after it was produced.
+ *  If the executing call throws, the exception is propagated to its caller and the waiting callers receive null.
+ *  Waiting callers may bound their wait; a caller whose wait expires receives null while the call continues.
+ */
+public class SingleFlight<K, V> {
+    public interface Call<V> {
+        V run();
+    }
+
+    public static class Result<V> {
+        public final V value;
+        public final Boolean wasShared; // True if the value was produced by another caller's call.
+
+        public Result(final V value, final Boolean wasShared) {
+            this.value = value;
+            this.wasShared = wasShared;
+        }
+    }
+
+    protected static class Flight<V> {
+        public final CountDownLatch completionLatch = new CountDownLatch(1);
+        public volatile V value = null;
+    }
+
+    protected final ConcurrentHashMap<K, Flight<V>> _flights = new ConcurrentHashMap<>();
+    protected final AtomicLong _executedCount = new AtomicLong(0L);
+    protected final AtomicLong _sharedCount = new AtomicLong(0L);
+    protected final AtomicLong _expiredCount = new AtomicLong(0L);
+
+    public Result<V> execute(final K key, final Call<V> call) {
+        return this.execute(key, call, null);
+    }
+
+    /**
+     * Executes the call, or waits at most maxWaitMs for the identical in-flight call.
+     *  A null maxWaitMs waits indefinitely.  The executing caller is never bounded.
+     */
+    public Result<V> execute(final K key, final Call<V> call, final Long maxWaitMs) {
+        final Flight<V> flight = new Flight<>();
+        final Flight<V> inFlight = _flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            try {
+                if (maxWaitMs == null) {
+                    inFlight.completionLatch.await();
+                }
+                else if (! inFlight.completionLatch.await(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    _expiredCount.incrementAndGet();
+                    Logger.debug("Timed out waiting for in-flight call: " + key);
+                    return new Result<>(null, true);
+                }
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                Logger.debug("Interrupted while waiting for in-flight call: " + key);
+                return new Result<>(null, true);
+            }
+
+            _sharedCount.incrementAndGet();
+            return new Result<>(inFlight.value, true);
+        }
+
+        _executedCount.incrementAndGet();
+        try {
+            flight.value = call.run();
+        }
+        finally {
+            _flights.remove(key, flight);
+            flight.completionLatch.countDown();
+        }
+
+        return new Result<>(flight.value, false);
+    }
+
+    /**
+     * Returns the number of calls that were executed.
+     */
+    public Long getExecutedCount() {
+        return _executedCount.get();
+    }
+
+    /**
+     * Returns the number of callers that received the result of another caller's call.
+     */
+    public Long getSharedCount() {
+        return _sharedCount.get();
+    }
+
+    /**
+     * Returns the number of callers whose wait for another caller's call expired.
+     */
+    public Long getExpiredCount() {
+        return _expiredCount.get();
+    }
+
+    public Integer getInFlightCount() {
+        return _flights.size();
+    }
+}
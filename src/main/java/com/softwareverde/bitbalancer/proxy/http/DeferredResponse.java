@@ -0,0 +1,55 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.http.server.servlet.response.Response;
+
+/**
+ * A Response that is completed later, by another thread, with the actual Response.
+ *  Returning a DeferredResponse from a Servlet releases the NioHttpServer's worker thread; the connection remains open
+ *  (without holding a thread) until complete is invoked.
+ */
+public class DeferredResponse extends Response {
+    public interface CompletionCallback {
+        void onComplete(Response response);
+    }
+
+    protected CompletionCallback _completionCallback = null;
+    protected Response _response = null;
+
+    /**
+     * Completes the DeferredResponse; subsequent invocations are ignored.
+     *  Returns false if the DeferredResponse was already complete.
+     */
+    public Boolean complete(final Response response) {
+        final CompletionCallback completionCallback;
+        synchronized (this) {
+            if (_response != null) { return false; }
+
+            _response = response;
+            completionCallback = _completionCallback;
+        }
+
+        if (completionCallback != null) {
+            completionCallback.onComplete(response);
+        }
+        return true;
+    }
+
+    public synchronized Boolean isComplete() {
+        return (_response != null);
+    }
+
+    /**
+     * Sets the callback invoked once the DeferredResponse is complete; if already complete, the callback is invoked immediately.
+     */
+    public void setCompletionCallback(final CompletionCallback completionCallback) {
+        final Response response;
+        synchronized (this) {
+            _completionCallback = completionCallback;
+            response = _response;
+        }
+
+        if (response != null) {
+            completionCallback.onComplete(response);
+        }
+    }
+}
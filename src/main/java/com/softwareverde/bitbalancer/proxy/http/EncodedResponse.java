@@ -0,0 +1,18 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.http.server.servlet.response.Response;
+
+/**
+ * A Response whose content is already encoded (e.g. gzip); the NioHttpServer declares the encoding via Content-Encoding.
+ */
+public class EncodedResponse extends Response {
+    protected final String _contentEncoding;
+
+    public EncodedResponse(final String contentEncoding) {
+        _contentEncoding = contentEncoding;
+    }
+
+    public String getContentEncoding() {
+        return _contentEncoding;
+    }
+}
@@ -0,0 +1,356 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.util.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * The per-socket state of a NioHttpServer connection.
+ *  All methods are invoked from the server's selector thread.
+ *  Only one request per connection is processed at a time; reading is suspended while a request is in-flight so that
+ *  pipelined responses are always written in order.
+ *  The read buffer grows only as bytes are received (never to the declared Content-Length in advance), and is
+ *  shrunk back to its initial size after each request.
+ */
+class HttpConnection {
+    public static class ParsedRequest {
+        public final String method;
+        public final String path;
+        public final Map<String, String> headers;
+        public final byte[] body;
+        public final Boolean keepAlive;
+
+        public ParsedRequest(final String method, final String path, final Map<String, String> headers, final byte[] body, final Boolean keepAlive) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    public static class MalformedRequestException extends Exception {
+        public final Integer responseCode;
+
+        public MalformedRequestException(final Integer responseCode, final String message) {
+            super(message);
+            this.responseCode = responseCode;
+        }
+    }
+
+    protected static final byte[] CONTINUE_RESPONSE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    protected static final Integer MAX_HEADER_BYTE_COUNT = (64 * 1024);
+    protected static final Integer INITIAL_BUFFER_BYTE_COUNT = 4096;
+    protected static final Integer READ_BYTE_COUNT = 4096; // The minimum free space available to each read.
+
+    protected static int _indexOfHeaderTerminator(final byte[] bytes, final int startIndex, final int byteCount) {
+        for (int i = Math.max(3, startIndex); i < byteCount; ++i) {
+            if ( (bytes[i - 3] == '\r') && (bytes[i - 2] == '\n') && (bytes[i - 1] == '\r') && (bytes[i] == '\n') ) {
+                return (i + 1);
+            }
+        }
+        return -1;
+    }
+
+    protected final SocketChannel _socketChannel;
+    protected final SelectionKey _selectionKey;
+    protected final Integer _maxRequestByteCount;
+    protected final LinkedList<ByteBuffer> _writeQueue = new LinkedList<>();
+
+    protected byte[] _buffer = new byte[INITIAL_BUFFER_BYTE_COUNT];
+    protected int _bufferByteCount = 0;
+    protected int _scannedByteCount = 0;
+
+    protected long _lastActivityMs;
+    protected Long _requestStartMs = null; // The time the first byte of the current (incomplete) request was received.
+
+    protected String _requestMethod = null;
+    protected String _requestPath = null;
+    protected Map<String, String> _requestHeaders = null;
+    protected Boolean _requestKeepAlive = false;
+    protected int _headerByteCount = -1;
+    protected int _contentLength = 0;
+    protected Boolean _hasSentContinue = false;
+
+    protected Boolean _isRequestInFlight = false;
+    protected Boolean _shouldCloseAfterWrite = false;
+
+    protected void _ensureCapacity(final int byteCount) {
+        if (_buffer.length >= byteCount) { return; }
+
+        int newLength = _buffer.length;
+        while (newLength < byteCount) {
+            newLength *= 2;
+        }
+
+        if (_headerByteCount >= 0) { // Once the request's size is known, do not grow beyond it...
+            newLength = Math.max(byteCount, Math.min(newLength, (_headerByteCount + _contentLength)));
+        }
+
+        final byte[] buffer = new byte[newLength];
+        System.arraycopy(_buffer, 0, buffer, 0, _bufferByteCount);
+        _buffer = buffer;
+    }
+
+    /**
+     * Replaces the buffer with one of its initial size (or the size of the remaining pipelined bytes, if larger), so
+     *  that a large request's buffer is not retained by an idle connection.
+     */
+    protected void _shrinkBuffer() {
+        if (_buffer.length <= INITIAL_BUFFER_BYTE_COUNT) { return; }
+
+        final byte[] buffer = new byte[Math.max(INITIAL_BUFFER_BYTE_COUNT, _bufferByteCount)];
+        System.arraycopy(_buffer, 0, buffer, 0, _bufferByteCount);
+        _buffer = buffer;
+    }
+
+    protected void _resetRequestState() {
+        _requestMethod = null;
+        _requestPath = null;
+        _requestHeaders = null;
+        _requestKeepAlive = false;
+        _headerByteCount = -1;
+        _contentLength = 0;
+        _hasSentContinue = false;
+        _scannedByteCount = 0;
+    }
+
+    protected void _parseHeaders(final int headerByteCount) throws MalformedRequestException {
+        final String headerString = new String(_buffer, 0, headerByteCount, StandardCharsets.ISO_8859_1);
+        final String[] lines = headerString.split("\r\n");
+        if (lines.length < 1) {
+            throw new MalformedRequestException(400, "Missing request line.");
+        }
+
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3) {
+            throw new MalformedRequestException(400, "Malformed request line.");
+        }
+
+        final String method = requestLine[0].toUpperCase();
+        final String rawPath = requestLine[1];
+        final String protocol = requestLine[2].toUpperCase();
+
+        final HashMap<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; ++i) {
+            final String line = lines[i];
+            final int separatorIndex = line.indexOf(':');
+            if (separatorIndex < 1) { continue; }
+
+            final String key = line.substring(0, separatorIndex).trim().toLowerCase();
+            final String value = line.substring(separatorIndex + 1).trim();
+            headers.put(key, value);
+        }
+
+        if (headers.containsKey("transfer-encoding")) {
+            throw new MalformedRequestException(501, "Transfer-Encoding is not supported.");
+        }
+
+        int contentLength = 0;
+        final String contentLengthString = headers.get("content-length");
+        if (contentLengthString != null) {
+            final Long contentLengthLong = Util.parseLong(contentLengthString);
+            if ( (contentLengthLong == null) || (contentLengthLong < 0L) ) {
+                throw new MalformedRequestException(400, "Invalid Content-Length.");
+            }
+            if (contentLengthLong > _maxRequestByteCount) {
+                throw new MalformedRequestException(413, "Request too large.");
+            }
+            contentLength = contentLengthLong.intValue();
+        }
+
+        final String connectionHeader = Util.coalesce(headers.get("connection"), "").toLowerCase();
+        final boolean keepAlive;
+        if (Util.areEqual("HTTP/1.0", protocol)) {
+            keepAlive = connectionHeader.contains("keep-alive");
+        }
+        else {
+            keepAlive = (! connectionHeader.contains("close"));
+        }
+
+        final int queryStringIndex = rawPath.indexOf('?');
+        _requestMethod = method;
+        _requestPath = (queryStringIndex < 0 ? rawPath : rawPath.substring(0, queryStringIndex));
+        _requestHeaders = headers;
+        _requestKeepAlive = keepAlive;
+        _headerByteCount = headerByteCount;
+        _contentLength = contentLength;
+    }
+
+    protected void _queueWrite(final ByteBuffer byteBuffer) {
+        if (_writeQueue.isEmpty()) {
+            _lastActivityMs = System.currentTimeMillis(); // The write timeout begins once the response is queued.
+        }
+        _writeQueue.add(byteBuffer);
+        _selectionKey.interestOps(_selectionKey.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    public HttpConnection(final SocketChannel socketChannel, final SelectionKey selectionKey, final Integer maxRequestByteCount) {
+        _socketChannel = socketChannel;
+        _selectionKey = selectionKey;
+        _maxRequestByteCount = maxRequestByteCount;
+        _lastActivityMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Reads any available bytes from the socket.
+     *  Returns false if the remote end closed the connection.
+     */
+    public Boolean read() throws IOException {
+        _ensureCapacity(_bufferByteCount + READ_BYTE_COUNT);
+
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(_buffer, _bufferByteCount, (_buffer.length - _bufferByteCount));
+        final int byteCount = _socketChannel.read(byteBuffer);
+        if (byteCount < 0) { return false; }
+
+        if (byteCount > 0) {
+            _lastActivityMs = System.currentTimeMillis();
+            if (_requestStartMs == null) {
+                _requestStartMs = _lastActivityMs;
+            }
+        }
+
+        _bufferByteCount += byteCount;
+        return true;
+    }
+
+    /**
+     * Returns the next complete request within the buffer, or null if more data is required.
+     *  Requests that are too large or malformed throw a MalformedRequestException.
+     */
+    public ParsedRequest parseRequest() throws MalformedRequestException {
+        if (_headerByteCount < 0) {
+            final int headerTerminatorIndex = _indexOfHeaderTerminator(_buffer, _scannedByteCount, _bufferByteCount);
+            _scannedByteCount = _bufferByteCount;
+            if (headerTerminatorIndex < 0) {
+                if (_bufferByteCount > MAX_HEADER_BYTE_COUNT) {
+                    throw new MalformedRequestException(431, "Request headers too large.");
+                }
+                return null;
+            }
+
+            _parseHeaders(headerTerminatorIndex);
+        }
+
+        final int requestByteCount = (_headerByteCount + _contentLength);
+        if (_bufferByteCount < requestByteCount) {
+            if ( (! _hasSentContinue) && Util.areEqual("100-continue", Util.coalesce(_requestHeaders.get("expect"), "").toLowerCase()) ) {
+                _hasSentContinue = true;
+                _queueWrite(ByteBuffer.wrap(CONTINUE_RESPONSE));
+            }
+
+            return null;
+        }
+
+        final byte[] body = new byte[_contentLength];
+        System.arraycopy(_buffer, _headerByteCount, body, 0, _contentLength);
+
+        final ParsedRequest parsedRequest = new ParsedRequest(_requestMethod, _requestPath, _requestHeaders, body, _requestKeepAlive);
+
+        { // Retain any pipelined bytes for the next request...
+            final int remainingByteCount = (_bufferByteCount - requestByteCount);
+            System.arraycopy(_buffer, requestByteCount, _buffer, 0, remainingByteCount);
+            _bufferByteCount = remainingByteCount;
+        }
+        _shrinkBuffer();
+        _resetRequestState();
+        _requestStartMs = (_bufferByteCount > 0 ? System.currentTimeMillis() : null);
+
+        return parsedRequest;
+    }
+
+    public void setRequestInFlight(final Boolean isRequestInFlight) {
+        _isRequestInFlight = isRequestInFlight;
+
+        final int interestOps = _selectionKey.interestOps();
+        if (isRequestInFlight) {
+            _selectionKey.interestOps(interestOps & (~ SelectionKey.OP_READ));
+        }
+        else {
+            _selectionKey.interestOps(interestOps | SelectionKey.OP_READ);
+        }
+    }
+
+    public Boolean isRequestInFlight() {
+        return _isRequestInFlight;
+    }
+
+    /**
+     * Returns true if the connection should be closed because it has been idle (i.e. between requests) for at least
+     *  idleTimeoutMs, or because its current request has not been completely received within readTimeoutMs of its
+     *  first byte, or because its pending response has not been accepted by the client within readTimeoutMs.
+     *  Otherwise, connections with a request in-flight (e.g. a parked long-poll) do not expire.
+     */
+    public Boolean isExpired(final Long nowMs, final Long idleTimeoutMs, final Long readTimeoutMs) {
+        if (! _writeQueue.isEmpty()) {
+            return ((nowMs - _lastActivityMs) >= readTimeoutMs);
+        }
+        if (_isRequestInFlight) { return false; }
+
+        final Long requestStartMs = _requestStartMs;
+        if (requestStartMs != null) {
+            return ((nowMs - requestStartMs) >= readTimeoutMs);
+        }
+
+        return ((nowMs - _lastActivityMs) >= idleTimeoutMs);
+    }
+
+    public Boolean hasBufferedBytes() {
+        return (_bufferByteCount > 0);
+    }
+
+    public void writeResponse(final ByteBuffer[] responseBuffers, final Boolean shouldClose) {
+        _shouldCloseAfterWrite = shouldClose;
+        for (final ByteBuffer byteBuffer : responseBuffers) {
+            _queueWrite(byteBuffer);
+        }
+    }
+
+    /**
+     * Writes as much of the pending response data as the socket will accept, via a single gathering write.
+     *  Returns true once all pending data has been written.
+     */
+    public Boolean flush() throws IOException {
+        if (! _writeQueue.isEmpty()) {
+            final ByteBuffer[] byteBuffers = _writeQueue.toArray(new ByteBuffer[_writeQueue.size()]);
+            final long byteCount = _socketChannel.write(byteBuffers);
+            if (byteCount > 0L) {
+                _lastActivityMs = System.currentTimeMillis();
+            }
+
+            while ( (! _writeQueue.isEmpty()) && (! _writeQueue.peek().hasRemaining()) ) {
+                _writeQueue.poll();
+            }
+            if (! _writeQueue.isEmpty()) { return false; }
+        }
+
+        _selectionKey.interestOps(_selectionKey.interestOps() & (~ SelectionKey.OP_WRITE));
+        _lastActivityMs = System.currentTimeMillis(); // The idle period begins once the response has been written.
+        return true;
+    }
+
+    public Boolean shouldCloseAfterWrite() {
+        return _shouldCloseAfterWrite;
+    }
+
+    /**
+     * Closes the connection.  Returns false if the connection was already closed.
+     */
+    public Boolean close() {
+        if (! _socketChannel.isOpen()) { return false; }
+
+        _selectionKey.cancel();
+        try {
+            _socketChannel.close();
+        }
+        catch (final Exception exception) { }
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.bitcoin.rpc.core.MutableRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Request received by the NioHttpServer.
+ *  Header keys are normalized to lowercase.
+ */
+public class HttpRequest extends MutableRequest {
+    protected final String _path;
+    protected final HashMap<String, String> _headerValues = new HashMap<>();
+
+    public HttpRequest(final String path, final Map<String, String> headers) {
+        _path = path;
+        if (headers != null) {
+            _headerValues.putAll(headers);
+        }
+    }
+
+    public String getPath() {
+        return _path;
+    }
+
+    public String getHeaderValue(final String key) {
+        return _headerValues.get(key.toLowerCase());
+    }
+}
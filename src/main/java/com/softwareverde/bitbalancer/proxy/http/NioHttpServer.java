@@ -0,0 +1,481 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.StringUtil;
+import com.softwareverde.util.Util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single-selector HTTP/1.1 server.
+ *  Connections are multiplexed on one selector thread, so idle and slow (e.g. uploading) clients do not consume a thread.
+ *  Complete requests are dispatched to a bounded worker pool; once the pool and its queue are exhausted, requests are
+ *  rejected immediately with a 503 instead of accumulating threads.
+ *  The number of open connections is limited; connections beyond the limit are rejected with a 503 and closed.
+ *  Connections that are idle between requests, or that do not deliver a complete request (or accept their response)
+ *  in time, are closed.
+ */
+public class NioHttpServer {
+    public static class Defaults {
+        public static final Integer MAX_WORKER_THREAD_COUNT = 64;
+        public static final Integer MAX_QUEUED_REQUEST_COUNT = 4096;
+        public static final Integer MAX_REQUEST_BYTE_COUNT = (128 * 1024 * 1024);
+        public static final Integer MAX_CONNECTION_COUNT = 1024;
+        public static final Long IDLE_TIMEOUT_MS = 60000L;
+        public static final Long READ_TIMEOUT_MS = 30000L;
+    }
+
+    protected static final Long EXPIRATION_CHECK_INTERVAL_MS = 1000L;
+    protected static final byte[] SERVER_BUSY_RESPONSE = "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    protected static String _getReasonPhrase(final Integer responseCode) {
+        switch (Util.coalesce(responseCode, 500)) {
+            case 200: return "OK";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Internal Server Error";
+        }
+    }
+
+    /**
+     * Returns the response's header and body as separate buffers; the body is wrapped rather than copied so that large
+     *  responses are written to the socket directly from the upstream response's array.
+     */
+    protected static ByteBuffer[] _serializeResponse(final Integer responseCode, final byte[] content, final Boolean keepAlive) {
+        return _serializeResponse(responseCode, content, null, keepAlive);
+    }
+
+    /**
+     * Returns the response's header and body as separate buffers; a non-null contentEncoding is declared via Content-Encoding.
+     */
+    protected static ByteBuffer[] _serializeResponse(final Integer responseCode, final byte[] content, final String contentEncoding, final Boolean keepAlive) {
+        final byte[] body = Util.coalesce(content, new byte[0]);
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("HTTP/1.1 ");
+        stringBuilder.append(responseCode);
+        stringBuilder.append(" ");
+        stringBuilder.append(_getReasonPhrase(responseCode));
+        stringBuilder.append("\r\nContent-Type: application/json\r\n");
+        if (contentEncoding != null) {
+            stringBuilder.append("Content-Encoding: ");
+            stringBuilder.append(contentEncoding);
+            stringBuilder.append("\r\nVary: Accept-Encoding\r\n");
+        }
+        stringBuilder.append("Content-Length: ");
+        stringBuilder.append(body.length);
+        stringBuilder.append(keepAlive ? "\r\nConnection: keep-alive\r\n\r\n" : "\r\nConnection: close\r\n\r\n");
+
+        final byte[] headerBytes = stringBuilder.toString().getBytes(StandardCharsets.US_ASCII);
+        return new ByteBuffer[]{ ByteBuffer.wrap(headerBytes), ByteBuffer.wrap(body) };
+    }
+
+    protected final ConcurrentHashMap<String, Servlet> _servlets = new ConcurrentHashMap<>();
+    protected final ConcurrentLinkedQueue<Runnable> _selectorTasks = new ConcurrentLinkedQueue<>();
+
+    protected Integer _port;
+    protected Integer _maxWorkerThreadCount = Defaults.MAX_WORKER_THREAD_COUNT;
+    protected Integer _maxQueuedRequestCount = Defaults.MAX_QUEUED_REQUEST_COUNT;
+    protected Integer _maxRequestByteCount = Defaults.MAX_REQUEST_BYTE_COUNT;
+    protected Integer _maxConnectionCount = Defaults.MAX_CONNECTION_COUNT;
+    protected Long _idleTimeoutMs = Defaults.IDLE_TIMEOUT_MS;
+    protected Long _readTimeoutMs = Defaults.READ_TIMEOUT_MS;
+
+    // Accessed only by the selector thread...
+    protected int _connectionCount = 0;
+    protected long _lastExpirationCheckMs = 0L;
+    protected volatile Integer _openConnectionCount = 0;
+
+    protected Selector _selector;
+    protected ServerSocketChannel _serverSocketChannel;
+    protected ThreadPoolExecutor _workerThreadPool;
+    protected Thread _selectorThread;
+
+    protected void _runOnSelectorThread(final Runnable runnable) {
+        _selectorTasks.add(runnable);
+        final Selector selector = _selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    protected void _closeConnection(final HttpConnection httpConnection) {
+        if (httpConnection.close()) {
+            _connectionCount -= 1;
+            _openConnectionCount = _connectionCount;
+        }
+    }
+
+    protected void _closeExpiredConnections() {
+        final long nowMs = System.currentTimeMillis();
+        if ((nowMs - _lastExpirationCheckMs) < EXPIRATION_CHECK_INTERVAL_MS) { return; }
+        _lastExpirationCheckMs = nowMs;
+
+        for (final SelectionKey selectionKey : _selector.keys()) {
+            final Object attachment = selectionKey.attachment();
+            if (! (attachment instanceof HttpConnection)) { continue; }
+
+            final HttpConnection httpConnection = (HttpConnection) attachment;
+            if (httpConnection.isExpired(nowMs, _idleTimeoutMs, _readTimeoutMs)) {
+                Logger.debug("Closing expired connection.");
+                _closeConnection(httpConnection);
+            }
+        }
+    }
+
+    protected void _completeRequest(final HttpConnection httpConnection, final Integer responseCode, final byte[] content, final String contentEncoding, final Boolean keepAlive) {
+        final ByteBuffer[] responseBytes = _serializeResponse(responseCode, content, contentEncoding, keepAlive);
+        _runOnSelectorThread(new Runnable() {
+            @Override
+            public void run() {
+                if (! httpConnection._selectionKey.isValid()) { return; }
+
+                httpConnection.writeResponse(responseBytes, (! keepAlive));
+                _onWritable(httpConnection);
+            }
+        });
+    }
+
+    protected void _completeRequest(final HttpConnection httpConnection, final Response response, final Boolean keepAlive) {
+        if (response == null) {
+            _completeRequest(httpConnection, Response.Codes.SERVER_ERROR, null, null, keepAlive);
+            return;
+        }
+
+        final String contentEncoding = ((response instanceof EncodedResponse) ? ((EncodedResponse) response).getContentEncoding() : null);
+        _completeRequest(httpConnection, response.getCode(), response.getContent(), contentEncoding, keepAlive);
+    }
+
+    protected void _dispatchRequest(final HttpConnection httpConnection, final HttpConnection.ParsedRequest parsedRequest) {
+        httpConnection.setRequestInFlight(true); // Reading resumes once the response has been written...
+
+        final Servlet servlet = _servlets.get(parsedRequest.path);
+        if (servlet == null) {
+            httpConnection.writeResponse(_serializeResponse(Response.Codes.NOT_FOUND, StringUtil.stringToBytes("Not found."), parsedRequest.keepAlive), (! parsedRequest.keepAlive));
+            return;
+        }
+
+        final HttpMethod httpMethod;
+        try {
+            httpMethod = HttpMethod.valueOf(parsedRequest.method);
+        }
+        catch (final Exception exception) {
+            httpConnection.writeResponse(_serializeResponse(405, StringUtil.stringToBytes("Method not allowed."), false), true);
+            return;
+        }
+
+        final HttpRequest request = new HttpRequest(parsedRequest.path, parsedRequest.headers);
+        request.setMethod(httpMethod);
+        request.setRawPostData(parsedRequest.body);
+
+        try {
+            _workerThreadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Response response = null;
+                    try {
+                        response = servlet.onRequest(request);
+                    }
+                    catch (final Exception exception) {
+                        Logger.warn("Error handling request for " + parsedRequest.path + ".", exception);
+                    }
+
+                    if (response instanceof DeferredResponse) { // Release the worker thread; the response is written once completed...
+                        ((DeferredResponse) response).setCompletionCallback(new DeferredResponse.CompletionCallback() {
+                            @Override
+                            public void onComplete(final Response completedResponse) {
+                                _completeRequest(httpConnection, completedResponse, parsedRequest.keepAlive);
+                            }
+                        });
+                        return;
+                    }
+
+                    _completeRequest(httpConnection, response, parsedRequest.keepAlive);
+                }
+            });
+        }
+        catch (final RejectedExecutionException exception) {
+            Logger.debug("Request queue full; rejecting request for " + parsedRequest.path + ".");
+            httpConnection.writeResponse(_serializeResponse(503, StringUtil.stringToBytes("Server busy."), parsedRequest.keepAlive), (! parsedRequest.keepAlive));
+        }
+    }
+
+    protected void _processBufferedRequests(final HttpConnection httpConnection) {
+        if (httpConnection.isRequestInFlight()) { return; }
+
+        final HttpConnection.ParsedRequest parsedRequest;
+        try {
+            parsedRequest = httpConnection.parseRequest();
+        }
+        catch (final HttpConnection.MalformedRequestException exception) {
+            Logger.debug("Rejecting request: " + exception.getMessage());
+            httpConnection.writeResponse(_serializeResponse(exception.responseCode, StringUtil.stringToBytes(exception.getMessage()), false), true);
+            httpConnection.setRequestInFlight(true); // Stop reading; the connection is closed once the error is written.
+            return;
+        }
+        if (parsedRequest == null) { return; }
+
+        _dispatchRequest(httpConnection, parsedRequest);
+    }
+
+    protected void _onAcceptable() throws IOException {
+        final SocketChannel socketChannel = _serverSocketChannel.accept();
+        if (socketChannel == null) { return; }
+
+        socketChannel.configureBlocking(false);
+
+        if (_connectionCount >= _maxConnectionCount) {
+            Logger.debug("Connection limit reached; rejecting connection.");
+            try {
+                socketChannel.write(ByteBuffer.wrap(SERVER_BUSY_RESPONSE)); // Best-effort...
+            }
+            catch (final IOException exception) { }
+            socketChannel.close();
+            return;
+        }
+
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        final SelectionKey selectionKey = socketChannel.register(_selector, SelectionKey.OP_READ);
+        final HttpConnection httpConnection = new HttpConnection(socketChannel, selectionKey, _maxRequestByteCount);
+        selectionKey.attach(httpConnection);
+        _connectionCount += 1;
+        _openConnectionCount = _connectionCount;
+    }
+
+    protected void _onReadable(final HttpConnection httpConnection) {
+        try {
+            final Boolean isOpen = httpConnection.read();
+            if (! isOpen) {
+                _closeConnection(httpConnection);
+                return;
+            }
+
+            _processBufferedRequests(httpConnection);
+        }
+        catch (final IOException exception) {
+            _closeConnection(httpConnection);
+        }
+    }
+
+    protected void _onWritable(final HttpConnection httpConnection) {
+        try {
+            final Boolean isComplete = httpConnection.flush();
+            if (! isComplete) { return; }
+
+            if (httpConnection.shouldCloseAfterWrite()) {
+                _closeConnection(httpConnection);
+                return;
+            }
+
+            if (httpConnection.isRequestInFlight()) {
+                httpConnection.setRequestInFlight(false);
+
+                if (httpConnection.hasBufferedBytes()) {
+                    _processBufferedRequests(httpConnection); // Pipelined request...
+                }
+            }
+        }
+        catch (final IOException exception) {
+            _closeConnection(httpConnection);
+        }
+    }
+
+    protected void _closeAllChannels() {
+        try {
+            for (final SelectionKey selectionKey : _selector.keys()) {
+                final Object attachment = selectionKey.attachment();
+                if (attachment instanceof HttpConnection) {
+                    ((HttpConnection) attachment).close();
+                }
+            }
+            _serverSocketChannel.close();
+            _selector.close();
+        }
+        catch (final Exception exception) {
+            Logger.debug(exception);
+        }
+    }
+
+    protected void _runSelectorLoop() {
+        final Thread thread = Thread.currentThread();
+        while (! thread.isInterrupted()) {
+            try {
+                _selector.select(EXPIRATION_CHECK_INTERVAL_MS);
+
+                while (true) {
+                    final Runnable runnable = _selectorTasks.poll();
+                    if (runnable == null) { break; }
+                    runnable.run();
+                }
+
+                final Iterator<SelectionKey> iterator = _selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    final SelectionKey selectionKey = iterator.next();
+                    iterator.remove();
+
+                    if (! selectionKey.isValid()) { continue; }
+
+                    if (selectionKey.isAcceptable()) {
+                        _onAcceptable();
+                        continue;
+                    }
+
+                    final HttpConnection httpConnection = (HttpConnection) selectionKey.attachment();
+                    if (selectionKey.isWritable()) {
+                        _onWritable(httpConnection);
+                    }
+                    if (selectionKey.isValid() && selectionKey.isReadable()) {
+                        _onReadable(httpConnection);
+                    }
+                }
+
+                _closeExpiredConnections();
+            }
+            catch (final Exception exception) {
+                if (! _selector.isOpen()) { break; }
+                Logger.debug(exception);
+            }
+        }
+
+        _closeAllChannels();
+    }
+
+    public NioHttpServer() { }
+
+    public void setPort(final Integer port) {
+        _port = port;
+    }
+
+    public void setMaxWorkerThreadCount(final Integer maxWorkerThreadCount) {
+        _maxWorkerThreadCount = maxWorkerThreadCount;
+    }
+
+    public void setMaxQueuedRequestCount(final Integer maxQueuedRequestCount) {
+        _maxQueuedRequestCount = maxQueuedRequestCount;
+    }
+
+    public void setMaxRequestByteCount(final Integer maxRequestByteCount) {
+        _maxRequestByteCount = maxRequestByteCount;
+    }
+
+    /**
+     * Sets the maximum number of simultaneously open connections.
+     */
+    public void setMaxConnectionCount(final Integer maxConnectionCount) {
+        _maxConnectionCount = maxConnectionCount;
+    }
+
+    /**
+     * Sets the duration a connection may remain idle between requests before it is closed.
+     */
+    public void setIdleTimeoutMs(final Long idleTimeoutMs) {
+        _idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Sets the duration within which a request must be completely received (measured from its first byte), and within
+     *  which a pending response must be accepted by the client, before the connection is closed.
+     */
+    public void setReadTimeoutMs(final Long readTimeoutMs) {
+        _readTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Registers the servlet for the exact (strict) path provided.
+     */
+    public void addEndpoint(final String path, final Servlet servlet) {
+        _servlets.put(path, servlet);
+    }
+
+    public Integer getPort() {
+        return _port;
+    }
+
+    public Integer getConnectionCount() {
+        return _openConnectionCount;
+    }
+
+    public synchronized Boolean start() {
+        if (_selectorThread != null) { return true; }
+
+        try {
+            _selector = Selector.open();
+            _serverSocketChannel = ServerSocketChannel.open();
+            _serverSocketChannel.configureBlocking(false);
+            _serverSocketChannel.bind(new InetSocketAddress(_port));
+            _port = ((InetSocketAddress) _serverSocketChannel.getLocalAddress()).getPort(); // Resolves an ephemeral (0) port...
+            _serverSocketChannel.register(_selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to bind to port " + _port + ".", exception);
+            return false;
+        }
+
+        final AtomicInteger workerThreadIndex = new AtomicInteger(0);
+        _workerThreadPool = new ThreadPoolExecutor(_maxWorkerThreadCount, _maxWorkerThreadCount, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(_maxQueuedRequestCount), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("RPC Worker - " + workerThreadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        _workerThreadPool.allowCoreThreadTimeOut(true);
+
+        _selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _runSelectorLoop();
+            }
+        });
+        _selectorThread.setName("RPC Selector - " + _port);
+        _selectorThread.setDaemon(true);
+        _selectorThread.start();
+
+        return true;
+    }
+
+    public synchronized void stop() {
+        if (_selectorThread == null) { return; }
+
+        try {
+            _selectorThread.interrupt();
+            _selector.wakeup();
+            _selectorThread.join(5000L);
+        }
+        catch (final Exception exception) {
+            Logger.warn(exception);
+        }
+
+        _workerThreadPool.shutdown();
+        _selectorThread = null;
+    }
+}
@@ -0,0 +1,293 @@
+package com.softwareverde.bitbalancer.proxy.node;
+
+import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelector;
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.RpcNotificationType;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.concurrent.service.SleepyService;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Refreshes the ChainHeight of nodes that fall behind the best ChainHeight.
+ *  Each refresh polls the lagging nodes concurrently, each with its own deadline, so a slow node does not delay the
+ *  others.  Refreshes are requested by block notifications and also run periodically; requests made while a refresh is
+ *  running are coalesced into a single subsequent refresh.
+ *  A requested refresh skips nodes that announce their own blocks, since their ChainHeight is updated upon their own
+ *  notification; a periodic refresh polls every lagging node in order to reconcile nodes that missed a notification.
+ *  The period is adaptive: FAST_PERIOD_MS shortly after a new tip, once a new block is expected, and while nodes that
+ *  disagree on the chain tip are converging; SLOW_PERIOD_MS otherwise.  A node that stays behind without progress for
+ *  RECENT_TIP_DURATION_MS is no longer considered converging.  Periodic refreshes shortly after a new tip and once a new
+ *  block is expected also poll the up-to-date nodes, so that a new tip is discovered even if no node announces it.
+ */
+public class ChainHeightMonitor extends SleepyService {
+    public static final Long FAST_PERIOD_MS = 1000L;
+    public static final Long SLOW_PERIOD_MS = 15000L;
+    public static final Long REFRESH_TIMEOUT_MS = 5000L;
+    public static final Long RECENT_TIP_DURATION_MS = 30000L; // The duration after a new tip during which nodes are expected to converge.
+    public static final Long EXPECTED_BLOCK_INTERVAL_MS = 600000L;
+    public static final Long EXPECTED_BLOCK_WINDOW_MS = 60000L; // The duration before the expected block interval elapses from which a new block is expected.
+
+    public interface Callback {
+        /**
+         * Invoked after a refresh that updated the ChainHeight of at least one node.
+         */
+        void onChainHeightsUpdated();
+    }
+
+    /**
+     * Returns true if the node announces its own new blocks.
+     */
+    public static Boolean receivesBlockNotifications(final RpcConfiguration rpcConfiguration) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        if (! bitcoinRpcConnector.supportsNotifications()) { return false; }
+
+        return (bitcoinRpcConnector.supportsNotification(RpcNotificationType.BLOCK) || bitcoinRpcConnector.supportsNotification(RpcNotificationType.BLOCK_HASH));
+    }
+
+    protected final NodeSelector _nodeSelector;
+    protected final ExecutorService _executorService;
+    protected final Object _mutex = new Object();
+    protected volatile Callback _callback = null;
+
+    protected Boolean _isRefreshRequested = false;
+    protected ChainHeight _bestChainHeight = null;
+    protected Long _bestChainHeightChangedAtMs = 0L;
+    protected Boolean _isTipDisagreed = false;
+    protected Long _tipDisagreementChangedAtMs = 0L; // The time at which nodes began to disagree or a lagging node last progressed.
+    protected Long _refreshCount = 0L;
+    protected Long _requestedRefreshCount = 0L;
+
+    /**
+     * Records the time at which the best ChainHeight changed.
+     *  Must be called while synchronized on _mutex.
+     */
+    protected void _updateBestChainHeight(final ChainHeight bestChainHeight) {
+        if (Util.areEqual(_bestChainHeight, bestChainHeight)) { return; }
+
+        _bestChainHeight = bestChainHeight;
+        _bestChainHeightChangedAtMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns true shortly after a new tip or once a new block is expected.
+     */
+    protected Boolean _isNewTipExpected() {
+        synchronized (_mutex) {
+            final long tipAgeMs = (System.currentTimeMillis() - _bestChainHeightChangedAtMs);
+            if (tipAgeMs < RECENT_TIP_DURATION_MS) { return true; }
+            return (tipAgeMs >= (EXPECTED_BLOCK_INTERVAL_MS - EXPECTED_BLOCK_WINDOW_MS));
+        }
+    }
+
+    protected Long _getPeriodMs() {
+        synchronized (_mutex) {
+            final long disagreementAgeMs = (System.currentTimeMillis() - _tipDisagreementChangedAtMs);
+            if ( _isTipDisagreed && (disagreementAgeMs < RECENT_TIP_DURATION_MS) ) { return FAST_PERIOD_MS; }
+            if (_isNewTipExpected()) { return FAST_PERIOD_MS; }
+
+            return SLOW_PERIOD_MS;
+        }
+    }
+
+    protected Boolean _refreshChainHeight(final RpcConfiguration rpcConfiguration, final ChainHeight chainHeight) {
+        final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+        final Monitor monitor = bitcoinRpcConnector.getMonitor();
+        final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+        monitor.setMaxDurationMs(maxTimeoutMs != null ? Math.min(maxTimeoutMs, REFRESH_TIMEOUT_MS) : REFRESH_TIMEOUT_MS);
+
+        final ChainHeight newChainHeight = bitcoinRpcConnector.getChainHeight(monitor);
+        if (newChainHeight == null) {
+            Logger.debug("Unable to refresh chainHeight for " + rpcConfiguration + ".");
+            return false;
+        }
+        if (! newChainHeight.isBetterThan(chainHeight)) { return false; }
+
+        Logger.debug("Updating chainHeight for " + rpcConfiguration + ": " + newChainHeight);
+        rpcConfiguration.setChainHeight(newChainHeight);
+        return true;
+    }
+
+    /**
+     * Concurrently refreshes the ChainHeight of every available node behind the best ChainHeight (and, if
+     *  includeUpToDateNodes is set, every other available node) and blocks until each refresh has completed or reached
+     *  its deadline.
+     *  Returns true if the ChainHeight of at least one node was updated.
+     */
+    protected Boolean _refreshChainHeights(final Boolean includeNotifyingNodes, final Boolean includeUpToDateNodes) {
+        final ChainHeight bestChainHeight = _nodeSelector.getBestChainHeight();
+
+        boolean isTipDisagreed = false;
+        final MutableList<RpcConfiguration> refreshedRpcConfigurations = new MutableList<>();
+        for (final RpcConfiguration rpcConfiguration : _nodeSelector.getNodes()) {
+            final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+            if (! nodeHealth.isAvailable()) { continue; } // Ejected nodes are probed by the NodeHealthMonitor...
+
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            final boolean isLagging = bestChainHeight.isBetterThan(chainHeight);
+            if (isLagging) {
+                isTipDisagreed = true;
+            }
+            else if (! includeUpToDateNodes) { continue; }
+
+            refreshedRpcConfigurations.add(rpcConfiguration);
+        }
+
+        synchronized (_mutex) {
+            if (isTipDisagreed && (! _isTipDisagreed)) {
+                _tipDisagreementChangedAtMs = System.currentTimeMillis();
+            }
+            _updateBestChainHeight(bestChainHeight);
+            _isTipDisagreed = isTipDisagreed;
+        }
+
+        final AtomicBoolean chainHeightWasUpdated = new AtomicBoolean(false);
+        final CountDownLatch countDownLatch = new CountDownLatch(refreshedRpcConfigurations.getCount());
+        for (final RpcConfiguration rpcConfiguration : refreshedRpcConfigurations) {
+            if ( (! includeNotifyingNodes) && receivesBlockNotifications(rpcConfiguration) ) {
+                countDownLatch.countDown();
+                continue;
+            }
+
+            final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
+            try {
+                _executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (_refreshChainHeight(rpcConfiguration, chainHeight)) {
+                                chainHeightWasUpdated.set(true);
+                            }
+                        }
+                        catch (final Exception exception) {
+                            Logger.debug("Unable to refresh chainHeight for " + rpcConfiguration + ".", exception);
+                        }
+                        finally {
+                            countDownLatch.countDown();
+                        }
+                    }
+                });
+            }
+            catch (final RejectedExecutionException exception) {
+                Logger.debug("Unable to schedule chainHeight refresh for " + rpcConfiguration + ".");
+                countDownLatch.countDown();
+            }
+        }
+
+        try {
+            countDownLatch.await((REFRESH_TIMEOUT_MS * 2L), TimeUnit.MILLISECONDS); // Each refresh is bounded by its own deadline; this is only a safeguard.
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (_mutex) {
+            if (chainHeightWasUpdated.get()) {
+                _tipDisagreementChangedAtMs = System.currentTimeMillis();
+            }
+            _refreshCount += 1L;
+        }
+
+        return chainHeightWasUpdated.get();
+    }
+
+    public ChainHeightMonitor(final NodeSelector nodeSelector) {
+        _nodeSelector = nodeSelector;
+
+        final int nodeCount = Math.max(1, nodeSelector.getNodes().getCount());
+        final ThreadPoolExecutor executorService = new ThreadPoolExecutor(nodeCount, nodeCount, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("ChainHeightMonitor - Refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executorService.allowCoreThreadTimeOut(true);
+        _executorService = executorService;
+    }
+
+    public void setCallback(final Callback callback) {
+        _callback = callback;
+    }
+
+    /**
+     * Requests that lagging nodes be refreshed as soon as possible.
+     *  Requests made while a refresh is running are coalesced into a single subsequent refresh.
+     */
+    public void requestRefresh() {
+        synchronized (_mutex) {
+            _isRefreshRequested = true;
+            _requestedRefreshCount += 1L;
+            _mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of refreshes performed.
+     */
+    public Long getRefreshCount() {
+        synchronized (_mutex) {
+            return _refreshCount;
+        }
+    }
+
+    /**
+     * Returns the number of refreshes requested; requests exceeding getRefreshCount were coalesced.
+     */
+    public Long getRequestedRefreshCount() {
+        synchronized (_mutex) {
+            return _requestedRefreshCount;
+        }
+    }
+
+    @Override
+    protected void _onStart() { }
+
+    @Override
+    protected Boolean _run() {
+        final boolean wasRequested;
+        final Long periodMs = _getPeriodMs();
+        try {
+            synchronized (_mutex) {
+                if (! _isRefreshRequested) {
+                    _mutex.wait(periodMs);
+                }
+                wasRequested = _isRefreshRequested;
+                _isRefreshRequested = false;
+            }
+        }
+        catch (final InterruptedException exception) {
+            return false;
+        }
+
+        final boolean isPeriodicRefresh = (! wasRequested);
+        final boolean isTipExpected = _isNewTipExpected(); // Poll up-to-date nodes in case the new tip is not announced; lagging nodes alone do not warrant it.
+        final Boolean chainHeightWasUpdated = _refreshChainHeights(isPeriodicRefresh, (isPeriodicRefresh && isTipExpected));
+        if (chainHeightWasUpdated) {
+            final Callback callback = _callback;
+            if (callback != null) {
+                callback.onChainHeightsUpdated();
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    protected void _onSleep() { }
+}
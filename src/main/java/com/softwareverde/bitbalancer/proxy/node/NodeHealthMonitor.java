@@ -0,0 +1,125 @@
+package com.softwareverde.bitbalancer.proxy.node;
+
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.concurrent.service.SleepyService;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Probes ejected nodes so that they may be re-admitted, and ejects nodes whose latency is an outlier compared to their
+ *  peers.
+ *  A node is a latency outlier if its peak-EWMA latency exceeds OUTLIER_LATENCY_FACTOR times the median of the
+ *  available nodes that are receiving traffic (and MIN_OUTLIER_LATENCY_MS).  Only nodes with at least
+ *  MIN_OUTLIER_SAMPLE_COUNT recent latency samples are compared, since an idle node's latency decays toward zero; if
+ *  fewer than MIN_OUTLIER_NODE_COUNT nodes qualify, no node is ejected.  No more than half of the nodes are ever
+ *  ejected as outliers.
+ */
+public class NodeHealthMonitor extends SleepyService {
+    public static final Long PERIOD_MS = 1000L;
+    public static final Long PROBE_TIMEOUT_MS = 5000L;
+    public static final Double OUTLIER_LATENCY_FACTOR = 5D;
+    public static final Double MIN_OUTLIER_LATENCY_MS = 250D;
+    public static final Double MIN_OUTLIER_SAMPLE_COUNT = 10D;
+    public static final Integer MIN_OUTLIER_NODE_COUNT = 3;
+
+    protected final List<RpcConfiguration> _rpcConfigurations;
+
+    protected void _probeEjectedNodes() {
+        for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
+            final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+            if (! nodeHealth.isProbeDue()) { continue; }
+
+            final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+            final Monitor monitor = bitcoinRpcConnector.getMonitor();
+            final Long maxTimeoutMs = rpcConfiguration.getMaxTimeoutMs();
+            monitor.setMaxDurationMs(maxTimeoutMs != null ? Math.min(maxTimeoutMs, PROBE_TIMEOUT_MS) : PROBE_TIMEOUT_MS);
+
+            final ChainHeight chainHeight = bitcoinRpcConnector.getChainHeight(monitor);
+            if (chainHeight == null) {
+                Logger.debug("Probe of ejected node " + rpcConfiguration + " failed.");
+                nodeHealth.onProbeFailure();
+                continue;
+            }
+
+            Logger.info("Probe of ejected node " + rpcConfiguration + " succeeded; re-admitting on trial.");
+            rpcConfiguration.setChainHeight(chainHeight);
+            nodeHealth.onProbeSuccess();
+        }
+    }
+
+    protected static Boolean _hasRecentLatencySamples(final RpcConfiguration rpcConfiguration) {
+        return (rpcConfiguration.getNodeStatistics().getRecentLatencySampleCount() >= MIN_OUTLIER_SAMPLE_COUNT);
+    }
+
+    protected void _ejectLatencyOutliers() {
+        final int nodeCount = _rpcConfigurations.getCount();
+        if (nodeCount < MIN_OUTLIER_NODE_COUNT) { return; } // An outlier cannot be meaningfully determined with fewer nodes...
+
+        int ejectedNodeCount = 0;
+        final ArrayList<Double> latencies = new ArrayList<>(nodeCount);
+        for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
+            final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+            if (! nodeHealth.isAvailable()) {
+                ejectedNodeCount += 1;
+                continue;
+            }
+
+            if (! _hasRecentLatencySamples(rpcConfiguration)) { continue; } // Not receiving traffic; its latency is stale...
+
+            latencies.add(rpcConfiguration.getNodeStatistics().getPeakEwmaLatencyMs());
+        }
+        if (latencies.size() < MIN_OUTLIER_NODE_COUNT) { return; }
+
+        Collections.sort(latencies);
+        final double medianLatencyMs = latencies.get(latencies.size() / 2);
+        final double outlierLatencyMs = Math.max(MIN_OUTLIER_LATENCY_MS, (medianLatencyMs * OUTLIER_LATENCY_FACTOR));
+
+        for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
+            if ((ejectedNodeCount + 1) > (nodeCount / 2)) { break; }
+
+            final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+            if (nodeHealth.getState() != NodeHealth.State.CLOSED) { continue; }
+            if (! _hasRecentLatencySamples(rpcConfiguration)) { continue; }
+
+            final double latencyMs = rpcConfiguration.getNodeStatistics().getPeakEwmaLatencyMs();
+            if (latencyMs <= outlierLatencyMs) { continue; }
+
+            final String reason = ("Latency outlier: " + Math.round(latencyMs) + "ms (median " + Math.round(medianLatencyMs) + "ms).");
+            if (nodeHealth.eject(reason)) {
+                Logger.info("Ejected " + rpcConfiguration + ": " + reason);
+                ejectedNodeCount += 1;
+            }
+        }
+    }
+
+    public NodeHealthMonitor(final List<RpcConfiguration> rpcConfigurations) {
+        _rpcConfigurations = rpcConfigurations.asConst();
+    }
+
+    @Override
+    protected void _onStart() { }
+
+    @Override
+    protected Boolean _run() {
+        _probeEjectedNodes();
+        _ejectLatencyOutliers();
+
+        try {
+            Thread.sleep(PERIOD_MS);
+            return true;
+        }
+        catch (final Exception exception) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void _onSleep() { }
+}
@@ -1,6 +1,7 @@
 package com.softwareverde.bitbalancer.proxy.node.selector;
 
 import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
 import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
 import com.softwareverde.bitcoin.rpc.RpcNotificationType;
@@ -22,7 +23,18 @@ public class HashMapNodeSelector implements NodeSelector {
         return _selectBestRpcConfiguration(null, excludedConfigurations);
     }
 
+    /**
+     * Selects the best node, preferring nodes that have not been ejected by their NodeHealth.
+     *  Ejected nodes are only selected if no other node is eligible.
+     */
     protected RpcConfiguration _selectBestRpcConfiguration(final RpcNotificationType requiredNotificationType, final List<RpcConfiguration> excludedConfigurations) {
+        final RpcConfiguration bestAvailableRpcConfiguration = _selectBestRpcConfiguration(requiredNotificationType, excludedConfigurations, true);
+        if (bestAvailableRpcConfiguration != null) { return bestAvailableRpcConfiguration; }
+
+        return _selectBestRpcConfiguration(requiredNotificationType, excludedConfigurations, false);
+    }
+
+    protected RpcConfiguration _selectBestRpcConfiguration(final RpcNotificationType requiredNotificationType, final List<RpcConfiguration> excludedConfigurations, final Boolean requireAvailable) {
         int bestHierarchy = Integer.MAX_VALUE;
         ChainHeight bestChainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
         RpcConfiguration bestRpcConfiguration = null;
@@ -30,6 +42,11 @@ public class HashMapNodeSelector implements NodeSelector {
         for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
             final ChainHeight chainHeight = rpcConfiguration.getChainHeight();
 
+            if (requireAvailable) {
+                final NodeHealth nodeHealth = rpcConfiguration.getNodeHealth();
+                if (! nodeHealth.isAvailable()) { continue; }
+            }
+
             if (requiredNotificationType != null) {
                 final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
                 final boolean hasNotificationType = bitcoinRpcConnector.supportsNotification(requiredNotificationType);
@@ -91,6 +108,11 @@ public class HashMapNodeSelector implements NodeSelector {
         return _selectBestRpcConfiguration(requiredNotificationType);
     }
 
+    @Override
+    public RpcConfiguration selectLoadBalancedNode(final List<RpcConfiguration> excludedConfiguration) {
+        return this.selectBestNode(excludedConfiguration);
+    }
+
     @Override
     public List<RpcConfiguration> getNodes() {
         return _rpcConfigurations;
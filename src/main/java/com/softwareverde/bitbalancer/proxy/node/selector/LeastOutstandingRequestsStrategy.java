@@ -0,0 +1,30 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.constable.list.List;
+
+/**
+ * Selects the candidate with the fewest in-flight requests; ties are resolved by preference order.
+ */
+public class LeastOutstandingRequestsStrategy implements LoadBalancingStrategy {
+    public static final String IDENTIFIER = "LEAST_OUTSTANDING_REQUESTS";
+
+    @Override
+    public RpcConfiguration select(final RpcConfiguration[] rpcConfigurations, final int candidateCount, final List<RpcConfiguration> excludedConfigurations) {
+        RpcConfiguration selectedRpcConfiguration = null;
+        int selectedOutstandingRequestCount = Integer.MAX_VALUE;
+
+        for (int i = 0; i < candidateCount; ++i) {
+            final RpcConfiguration rpcConfiguration = rpcConfigurations[i];
+            if ( (excludedConfigurations != null) && excludedConfigurations.contains(rpcConfiguration) ) { continue; }
+
+            final int outstandingRequestCount = rpcConfiguration.getNodeStatistics().getOutstandingRequestCount();
+            if (outstandingRequestCount < selectedOutstandingRequestCount) {
+                selectedRpcConfiguration = rpcConfiguration;
+                selectedOutstandingRequestCount = outstandingRequestCount;
+            }
+        }
+
+        return selectedRpcConfiguration;
+    }
+}
@@ -0,0 +1,13 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.constable.list.List;
+
+public interface LoadBalancingStrategy {
+    /**
+     * Selects one of the first candidateCount entries of rpcConfigurations, skipping those within excludedConfigurations.
+     *  The candidates are ordered by preference.
+     *  Returns null if every candidate is excluded.
+     */
+    RpcConfiguration select(RpcConfiguration[] rpcConfigurations, int candidateCount, List<RpcConfiguration> excludedConfigurations);
+}
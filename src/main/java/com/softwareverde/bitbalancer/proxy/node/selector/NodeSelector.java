@@ -9,6 +9,12 @@ public interface NodeSelector {
     RpcConfiguration selectBestNode();
     RpcConfiguration selectBestNode(List<RpcConfiguration> excludedConfiguration);
     RpcConfiguration selectBestNode(RpcNotificationType requiredNotificationType);
+
+    /**
+     * Selects a node at the best ChainHeight for a read-only request, spreading load across all equally-synced nodes.
+     *  Implementations without a LoadBalancingStrategy behave the same as NodeSelector::selectBestNode.
+     */
+    RpcConfiguration selectLoadBalancedNode(List<RpcConfiguration> excludedConfiguration);
     List<RpcConfiguration> getNodes();
 
     ChainHeight getBestChainHeight();
@@ -0,0 +1,30 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.constable.list.List;
+
+/**
+ * Selects the candidate with the lowest peak-EWMA latency weighted by its in-flight request count.
+ */
+public class PeakEwmaStrategy implements LoadBalancingStrategy {
+    public static final String IDENTIFIER = "PEAK_EWMA";
+
+    @Override
+    public RpcConfiguration select(final RpcConfiguration[] rpcConfigurations, final int candidateCount, final List<RpcConfiguration> excludedConfigurations) {
+        RpcConfiguration selectedRpcConfiguration = null;
+        double selectedLoadCost = Double.MAX_VALUE;
+
+        for (int i = 0; i < candidateCount; ++i) {
+            final RpcConfiguration rpcConfiguration = rpcConfigurations[i];
+            if ( (excludedConfigurations != null) && excludedConfigurations.contains(rpcConfiguration) ) { continue; }
+
+            final double loadCost = rpcConfiguration.getNodeStatistics().getLoadCost();
+            if ( (selectedRpcConfiguration == null) || (loadCost < selectedLoadCost) ) {
+                selectedRpcConfiguration = rpcConfiguration;
+                selectedLoadCost = loadCost;
+            }
+        }
+
+        return selectedRpcConfiguration;
+    }
+}
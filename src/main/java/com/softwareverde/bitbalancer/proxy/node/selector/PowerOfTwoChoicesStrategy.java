@@ -0,0 +1,54 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.constable.list.List;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selects two candidates at random and uses the one with the lower peak-EWMA load cost.
+ *  Compared to always choosing the global minimum, this avoids herding every concurrent request onto the same node
+ *  between statistics updates.
+ */
+public class PowerOfTwoChoicesStrategy implements LoadBalancingStrategy {
+    public static final String IDENTIFIER = "POWER_OF_TWO_CHOICES";
+
+    protected static RpcConfiguration _getEligibleCandidate(final RpcConfiguration[] rpcConfigurations, final int candidateCount, final List<RpcConfiguration> excludedConfigurations, final int eligibleIndex) {
+        int index = 0;
+        for (int i = 0; i < candidateCount; ++i) {
+            final RpcConfiguration rpcConfiguration = rpcConfigurations[i];
+            if ( (excludedConfigurations != null) && excludedConfigurations.contains(rpcConfiguration) ) { continue; }
+
+            if (index == eligibleIndex) {
+                return rpcConfiguration;
+            }
+            index += 1;
+        }
+        return null;
+    }
+
+    @Override
+    public RpcConfiguration select(final RpcConfiguration[] rpcConfigurations, final int candidateCount, final List<RpcConfiguration> excludedConfigurations) {
+        int eligibleCount = 0;
+        for (int i = 0; i < candidateCount; ++i) {
+            if ( (excludedConfigurations != null) && excludedConfigurations.contains(rpcConfigurations[i]) ) { continue; }
+            eligibleCount += 1;
+        }
+
+        if (eligibleCount == 0) { return null; }
+        if (eligibleCount == 1) {
+            return _getEligibleCandidate(rpcConfigurations, candidateCount, excludedConfigurations, 0);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int index0 = random.nextInt(eligibleCount);
+        final int index1 = ((index0 + 1 + random.nextInt(eligibleCount - 1)) % eligibleCount); // Always distinct from index0.
+
+        final RpcConfiguration rpcConfiguration0 = _getEligibleCandidate(rpcConfigurations, candidateCount, excludedConfigurations, index0);
+        final RpcConfiguration rpcConfiguration1 = _getEligibleCandidate(rpcConfigurations, candidateCount, excludedConfigurations, index1);
+
+        final double loadCost0 = rpcConfiguration0.getNodeStatistics().getLoadCost();
+        final double loadCost1 = rpcConfiguration1.getNodeStatistics().getLoadCost();
+        return (loadCost1 < loadCost0 ? rpcConfiguration1 : rpcConfiguration0);
+    }
+}
@@ -0,0 +1,234 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
+import com.softwareverde.bitcoin.rpc.RpcNotificationType;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * A NodeSelector that maintains an immutable, ranked snapshot of its nodes.
+ *  Nodes are ranked by availability (ejected nodes last), then by ChainHeight (descending), and then by hierarchy
+ *  (ascending).  Ejected nodes are therefore only selected when no available node remains.
+ *  The snapshot is only rebuilt when a node's ChainHeight or NodeHealth state changes, and is published atomically;
+ *  selection is then a lock-free read of the first eligible entry.  Excluded nodes are located by their rank within the
+ *  snapshot, so selecting among n nodes while excluding k of them takes O(n + k) rather than O(n * k).
+ */
+public class RankedNodeSelector implements NodeSelector {
+    protected static class RankedNode {
+        public final RpcConfiguration rpcConfiguration;
+        public final ChainHeight chainHeight; // Captured once so that a concurrent update cannot change the ordering mid-sort.
+        public final Integer hierarchy;
+        public final Boolean isAvailable;
+
+        public RankedNode(final RpcConfiguration rpcConfiguration) {
+            this.rpcConfiguration = rpcConfiguration;
+            this.chainHeight = rpcConfiguration.getChainHeight();
+            this.hierarchy = Util.coalesce(rpcConfiguration.getHierarchy(), Integer.MAX_VALUE);
+            this.isAvailable = rpcConfiguration.getNodeHealth().isAvailable();
+        }
+    }
+
+    protected static final Comparator<RankedNode> RANK_COMPARATOR = new Comparator<RankedNode>() {
+        @Override
+        public int compare(final RankedNode rankedNode0, final RankedNode rankedNode1) {
+            final int availabilityComparison = rankedNode1.isAvailable.compareTo(rankedNode0.isAvailable);
+            if (availabilityComparison != 0) { return availabilityComparison; }
+
+            final int chainHeightComparison = ChainHeight.COMPARATOR.compare(rankedNode1.chainHeight, rankedNode0.chainHeight);
+            if (chainHeightComparison != 0) { return chainHeightComparison; }
+
+            return rankedNode0.hierarchy.compareTo(rankedNode1.hierarchy);
+        }
+    };
+
+    protected static class Snapshot {
+        public final RpcConfiguration[] rankedRpcConfigurations;
+        public final ChainHeight bestChainHeight;
+        public final Integer bestChainHeightNodeCount; // The number of leading available rankedRpcConfigurations sharing the same ChainHeight.
+        public final RpcConfiguration[] bestRpcConfigurationsByNotificationType; // Indexed by RpcNotificationType::ordinal.
+        public final IdentityHashMap<RpcConfiguration, Integer> rankIndexes; // The index of each node within rankedRpcConfigurations; never modified once published.
+
+        public Snapshot(final RpcConfiguration[] rankedRpcConfigurations, final ChainHeight bestChainHeight, final Integer bestChainHeightNodeCount, final RpcConfiguration[] bestRpcConfigurationsByNotificationType) {
+            this.rankedRpcConfigurations = rankedRpcConfigurations;
+            this.rankIndexes = new IdentityHashMap<>(rankedRpcConfigurations.length);
+            for (int i = 0; i < rankedRpcConfigurations.length; ++i) {
+                this.rankIndexes.put(rankedRpcConfigurations[i], i);
+            }
+            this.bestChainHeight = bestChainHeight;
+            this.bestChainHeightNodeCount = bestChainHeightNodeCount;
+            this.bestRpcConfigurationsByNotificationType = bestRpcConfigurationsByNotificationType;
+        }
+    }
+
+    /**
+     * Returns the highest-ranked node of the snapshot that is not within excludedConfigurations, or null if every node is
+     *  excluded.
+     */
+    protected static RpcConfiguration _selectBestNode(final Snapshot snapshot, final List<RpcConfiguration> excludedConfigurations) {
+        final RpcConfiguration[] rankedRpcConfigurations = snapshot.rankedRpcConfigurations;
+        if ( (excludedConfigurations == null) || excludedConfigurations.isEmpty() ) {
+            return (rankedRpcConfigurations.length > 0 ? rankedRpcConfigurations[0] : null);
+        }
+
+        final boolean[] isExcluded = new boolean[rankedRpcConfigurations.length];
+        for (final RpcConfiguration excludedConfiguration : excludedConfigurations) {
+            final Integer rankIndex = snapshot.rankIndexes.get(excludedConfiguration);
+            if (rankIndex != null) {
+                isExcluded[rankIndex] = true;
+            }
+        }
+
+        for (int i = 0; i < rankedRpcConfigurations.length; ++i) {
+            if (! isExcluded[i]) {
+                return rankedRpcConfigurations[i];
+            }
+        }
+        return null;
+    }
+
+    protected final List<RpcConfiguration> _rpcConfigurations;
+    protected volatile Snapshot _snapshot;
+    protected volatile LoadBalancingStrategy _loadBalancingStrategy = null;
+
+    protected synchronized void _rebuildSnapshot() {
+        final int nodeCount = _rpcConfigurations.getCount();
+        final RankedNode[] rankedNodes = new RankedNode[nodeCount];
+        for (int i = 0; i < nodeCount; ++i) {
+            rankedNodes[i] = new RankedNode(_rpcConfigurations.get(i));
+        }
+        Arrays.sort(rankedNodes, RANK_COMPARATOR);
+
+        final RpcConfiguration[] sortedRpcConfigurations = new RpcConfiguration[nodeCount];
+        for (int i = 0; i < nodeCount; ++i) {
+            sortedRpcConfigurations[i] = rankedNodes[i].rpcConfiguration;
+        }
+
+        ChainHeight bestChainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
+        for (final RankedNode rankedNode : rankedNodes) {
+            if (rankedNode.chainHeight.isBetterThan(bestChainHeight)) {
+                bestChainHeight = rankedNode.chainHeight;
+            }
+        }
+
+        int bestChainHeightNodeCount = 0;
+        if ( (nodeCount > 0) && rankedNodes[0].isAvailable ) {
+            final ChainHeight leadingChainHeight = rankedNodes[0].chainHeight;
+            while ( (bestChainHeightNodeCount < nodeCount) && rankedNodes[bestChainHeightNodeCount].isAvailable && Util.areEqual(leadingChainHeight, rankedNodes[bestChainHeightNodeCount].chainHeight) ) {
+                bestChainHeightNodeCount += 1;
+            }
+        }
+
+        final RpcNotificationType[] notificationTypes = RpcNotificationType.values();
+        final RpcConfiguration[] bestRpcConfigurationsByNotificationType = new RpcConfiguration[notificationTypes.length];
+        for (final RpcNotificationType notificationType : notificationTypes) {
+            for (final RpcConfiguration rpcConfiguration : sortedRpcConfigurations) {
+                final BitBalancerRpcConnector bitcoinRpcConnector = rpcConfiguration.getBitcoinRpcConnector();
+                if (bitcoinRpcConnector.supportsNotification(notificationType)) {
+                    bestRpcConfigurationsByNotificationType[notificationType.ordinal()] = rpcConfiguration;
+                    break;
+                }
+            }
+        }
+
+        _snapshot = new Snapshot(sortedRpcConfigurations, bestChainHeight, bestChainHeightNodeCount, bestRpcConfigurationsByNotificationType);
+    }
+
+    public RankedNodeSelector(final List<RpcConfiguration> rpcConfigurations) {
+        _rpcConfigurations = rpcConfigurations.asConst();
+
+        final RpcConfiguration.ChainHeightCallback chainHeightCallback = new RpcConfiguration.ChainHeightCallback() {
+            @Override
+            public void onChainHeightChanged(final RpcConfiguration rpcConfiguration, final ChainHeight chainHeight) {
+                _rebuildSnapshot();
+            }
+        };
+        final NodeHealth.StateCallback nodeHealthCallback = new NodeHealth.StateCallback() {
+            @Override
+            public void onStateChanged(final NodeHealth nodeHealth, final NodeHealth.State state) {
+                _rebuildSnapshot();
+            }
+        };
+        for (final RpcConfiguration rpcConfiguration : _rpcConfigurations) {
+            rpcConfiguration.addChainHeightCallback(chainHeightCallback);
+            rpcConfiguration.getNodeHealth().addStateCallback(nodeHealthCallback);
+        }
+
+        _rebuildSnapshot();
+    }
+
+    @Override
+    public RpcConfiguration selectBestNode() {
+        final Snapshot snapshot = _snapshot;
+        if (snapshot.rankedRpcConfigurations.length == 0) {
+            Logger.debug("No node available.");
+            return null;
+        }
+
+        return snapshot.rankedRpcConfigurations[0];
+    }
+
+    @Override
+    public RpcConfiguration selectBestNode(final List<RpcConfiguration> excludedConfiguration) {
+        final Snapshot snapshot = _snapshot;
+        final RpcConfiguration rpcConfiguration = _selectBestNode(snapshot, excludedConfiguration);
+        if (rpcConfiguration == null) {
+            Logger.debug("No node available.");
+        }
+        return rpcConfiguration;
+    }
+
+    @Override
+    public RpcConfiguration selectBestNode(final RpcNotificationType requiredNotificationType) {
+        final Snapshot snapshot = _snapshot;
+        return snapshot.bestRpcConfigurationsByNotificationType[requiredNotificationType.ordinal()];
+    }
+
+    /**
+     * Applies the LoadBalancingStrategy across the nodes at the best ChainHeight.
+     *  If no strategy is set, or every node at the best ChainHeight is excluded, the next node by rank is selected.
+     */
+    @Override
+    public RpcConfiguration selectLoadBalancedNode(final List<RpcConfiguration> excludedConfiguration) {
+        final LoadBalancingStrategy loadBalancingStrategy = _loadBalancingStrategy;
+        if (loadBalancingStrategy != null) {
+            final Snapshot snapshot = _snapshot;
+            final RpcConfiguration rpcConfiguration = loadBalancingStrategy.select(snapshot.rankedRpcConfigurations, snapshot.bestChainHeightNodeCount, excludedConfiguration);
+            if (rpcConfiguration != null) {
+                return rpcConfiguration;
+            }
+        }
+
+        return this.selectBestNode(excludedConfiguration);
+    }
+
+    /**
+     * Sets the strategy used to distribute read-only requests across the nodes at the best ChainHeight.
+     *  A null strategy (the default) always selects the best node by hierarchy.
+     */
+    public void setLoadBalancingStrategy(final LoadBalancingStrategy loadBalancingStrategy) {
+        _loadBalancingStrategy = loadBalancingStrategy;
+    }
+
+    public LoadBalancingStrategy getLoadBalancingStrategy() {
+        return _loadBalancingStrategy;
+    }
+
+    @Override
+    public List<RpcConfiguration> getNodes() {
+        return _rpcConfigurations;
+    }
+
+    @Override
+    public ChainHeight getBestChainHeight() {
+        final Snapshot snapshot = _snapshot;
+        return snapshot.bestChainHeight;
+    }
+}
@@ -51,10 +51,20 @@ public class ChainHeight implements Comparable<ChainHeight> {
 
     protected final Long _blockHeight;
     protected final ChainWork _chainWork;
+    protected final Sha256Hash _blockHash;
 
     public ChainHeight(final Long blockHeight, final ChainWork chainWork) {
+        this(blockHeight, chainWork, null);
+    }
+
+    /**
+     * Creates a ChainHeight for the block with the provided hash.
+     *  The blockHash is informational; it is not considered when comparing ChainHeights.
+     */
+    public ChainHeight(final Long blockHeight, final ChainWork chainWork, final Sha256Hash blockHash) {
         _blockHeight = blockHeight;
         _chainWork = chainWork;
+        _blockHash = blockHash;
     }
 
     public Long getBlockHeight() {
@@ -65,6 +75,13 @@ public class ChainHeight implements Comparable<ChainHeight> {
         return _chainWork;
     }
 
+    /**
+     * Returns the hash of the block at this ChainHeight, or null if it is unknown.
+     */
+    public Sha256Hash getBlockHash() {
+        return _blockHash;
+    }
+
     public Boolean isBetterThan(final ChainHeight chainHeight) {
         return (COMPARATOR.compare(this, chainHeight) > 0);
     }
@@ -0,0 +1,118 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import com.softwareverde.bitcoin.block.header.BlockHeader;
+import com.softwareverde.bitcoin.block.header.difficulty.Difficulty;
+import com.softwareverde.bitcoin.block.header.difficulty.work.ChainWork;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory index of the ChainHeight of recently announced blocks, keyed by block hash.
+ *  A header whose parent is indexed is resolved locally: its height is the parent's height plus one, and its ChainWork
+ *  is the parent's ChainWork plus the work of the header's Difficulty.  Headers whose parent is unknown cannot be
+ *  resolved locally; their ChainHeight must be obtained via RPC and reconciled into the index via putChainHeight.
+ *  The headers themselves are also retained (including those that could not be resolved), so that a block announced
+ *  only by its hash (i.e. a BLOCK_HASH notification) can be matched to a previously announced header.
+ *  Only the most recent entries are retained, since only the chain tip (and its competing forks) is relevant.
+ */
+public class HeaderIndex {
+    public static final Integer DEFAULT_MAX_HEADER_COUNT = 1024;
+
+    protected final Integer _maxHeaderCount;
+    protected final LinkedHashMap<Sha256Hash, ChainHeight> _chainHeights;
+    protected final LinkedHashMap<Sha256Hash, BlockHeader> _blockHeaders;
+    protected long _localUpdateCount = 0L;
+    protected long _reconciliationCount = 0L;
+
+    public HeaderIndex() {
+        this(DEFAULT_MAX_HEADER_COUNT);
+    }
+
+    public HeaderIndex(final Integer maxHeaderCount) {
+        _maxHeaderCount = maxHeaderCount;
+        _chainHeights = new LinkedHashMap<Sha256Hash, ChainHeight>(16, 0.75F, false) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Sha256Hash, ChainHeight> eldestEntry) {
+                return (this.size() > _maxHeaderCount);
+            }
+        };
+        _blockHeaders = new LinkedHashMap<Sha256Hash, BlockHeader>(16, 0.75F, false) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Sha256Hash, BlockHeader> eldestEntry) {
+                return (this.size() > _maxHeaderCount);
+            }
+        };
+    }
+
+    /**
+     * Indexes the header and returns its ChainHeight.
+     *  Returns null if the header's parent is not indexed, in which case only the header itself is retained.
+     */
+    public synchronized ChainHeight addHeader(final BlockHeader blockHeader) {
+        final Sha256Hash blockHash = blockHeader.getHash();
+        _blockHeaders.put(blockHash, blockHeader);
+
+        final ChainHeight existingChainHeight = _chainHeights.get(blockHash);
+        if (existingChainHeight != null) { return existingChainHeight; }
+
+        final ChainHeight parentChainHeight = _chainHeights.get(blockHeader.getPreviousBlockHash());
+        if (parentChainHeight == null) { return null; }
+
+        final ChainWork parentChainWork = parentChainHeight.getChainWork();
+        final ChainWork chainWork;
+        if (parentChainWork != null) {
+            final Difficulty difficulty = blockHeader.getDifficulty();
+            chainWork = ChainWork.add(parentChainWork, difficulty.calculateWork());
+        }
+        else {
+            chainWork = null; // The node does not expose its ChainWork; ChainHeights are compared by blockHeight alone.
+        }
+
+        final ChainHeight chainHeight = new ChainHeight((parentChainHeight.getBlockHeight() + 1L), chainWork, blockHash);
+        _chainHeights.put(blockHash, chainHeight);
+        _localUpdateCount += 1L;
+        return chainHeight;
+    }
+
+    /**
+     * Returns the indexed ChainHeight of the block, or null if the block is not indexed.
+     */
+    public synchronized ChainHeight getChainHeight(final Sha256Hash blockHash) {
+        return _chainHeights.get(blockHash);
+    }
+
+    /**
+     * Returns the header of the block, or null if the block's header has not been added.
+     */
+    public synchronized BlockHeader getBlockHeader(final Sha256Hash blockHash) {
+        return _blockHeaders.get(blockHash);
+    }
+
+    /**
+     * Indexes the ChainHeight of the block as reported by a node (i.e. via RPC).
+     */
+    public synchronized void putChainHeight(final Sha256Hash blockHash, final ChainHeight chainHeight) {
+        _chainHeights.put(blockHash, chainHeight);
+        _reconciliationCount += 1L;
+    }
+
+    public synchronized Integer getHeaderCount() {
+        return _chainHeights.size();
+    }
+
+    /**
+     * Returns the number of ChainHeights computed locally from headers.
+     */
+    public synchronized Long getLocalUpdateCount() {
+        return _localUpdateCount;
+    }
+
+    /**
+     * Returns the number of ChainHeights obtained via RPC.
+     */
+    public synchronized Long getReconciliationCount() {
+        return _reconciliationCount;
+    }
+}
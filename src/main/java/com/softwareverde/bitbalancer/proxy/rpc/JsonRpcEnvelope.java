@@ -0,0 +1,141 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import com.softwareverde.util.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The locations of the "id", "method", and "params" members of a serialized JSON-RPC request.
+ *  The request is scanned once, in-place; member values are only copied when requested.
+ *  Escape sequences within the method name are not decoded.
+ */
+public class JsonRpcEnvelope {
+    public static final byte[] NULL_ID_BYTES = "null".getBytes(StandardCharsets.UTF_8);
+
+    protected static final byte[] ID_KEY = "id".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] METHOD_KEY = "method".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] PARAMS_KEY = "params".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Scans the top-level members of the request.
+     *  Members that are absent (or a request that is not a JSON object) result in JsonScanner.NOT_FOUND ranges.
+     */
+    public static JsonRpcEnvelope parse(final byte[] requestBytes) {
+        final byte[] bytes = Util.coalesce(requestBytes, new byte[0]);
+        final int endIndex = bytes.length;
+
+        long idRange = JsonScanner.NOT_FOUND;
+        long methodRange = JsonScanner.NOT_FOUND;
+        long paramsRange = JsonScanner.NOT_FOUND;
+
+        int i = JsonScanner.skipWhitespace(bytes, 0, endIndex);
+        if ( (i < endIndex) && (bytes[i] == '{') ) {
+            i += 1;
+            while (true) {
+                i = JsonScanner.skipWhitespace(bytes, i, endIndex);
+                if ( (i >= endIndex) || (bytes[i] != '"') ) { break; }
+
+                final int keyStartIndex = i;
+                final int keyEndIndex = JsonScanner.skipValue(bytes, i, endIndex);
+                if (keyEndIndex < 0) { break; }
+
+                i = JsonScanner.skipWhitespace(bytes, keyEndIndex, endIndex);
+                if ( (i >= endIndex) || (bytes[i] != ':') ) { break; }
+                i = JsonScanner.skipWhitespace(bytes, (i + 1), endIndex);
+
+                final int valueEndIndex = JsonScanner.skipValue(bytes, i, endIndex);
+                if (valueEndIndex < 0) { break; }
+
+                final long valueRange = JsonScanner.toRange(i, valueEndIndex);
+                if (JsonScanner._isKey(bytes, keyStartIndex, keyEndIndex, ID_KEY)) {
+                    idRange = valueRange;
+                }
+                else if (JsonScanner._isKey(bytes, keyStartIndex, keyEndIndex, METHOD_KEY)) {
+                    methodRange = valueRange;
+                }
+                else if (JsonScanner._isKey(bytes, keyStartIndex, keyEndIndex, PARAMS_KEY)) {
+                    paramsRange = valueRange;
+                }
+
+                i = JsonScanner.skipWhitespace(bytes, valueEndIndex, endIndex);
+                if ( (i >= endIndex) || (bytes[i] != ',') ) { break; }
+                i += 1;
+            }
+        }
+
+        return new JsonRpcEnvelope(bytes, idRange, methodRange, paramsRange);
+    }
+
+    protected final byte[] _bytes;
+    protected final long _idRange;
+    protected final long _methodRange;
+    protected final long _paramsRange;
+
+    protected JsonRpcEnvelope(final byte[] bytes, final long idRange, final long methodRange, final long paramsRange) {
+        _bytes = bytes;
+        _idRange = idRange;
+        _methodRange = methodRange;
+        _paramsRange = paramsRange;
+    }
+
+    public byte[] getBytes() {
+        return _bytes;
+    }
+
+    public long getIdRange() {
+        return _idRange;
+    }
+
+    /**
+     * Returns the range of the method name, excluding its quotes, or JsonScanner.NOT_FOUND if the method is not a string.
+     */
+    public long getMethodNameRange() {
+        if (_methodRange == JsonScanner.NOT_FOUND) { return JsonScanner.NOT_FOUND; }
+
+        final int startIndex = JsonScanner.getStartIndex(_methodRange);
+        final int endIndex = JsonScanner.getEndIndex(_methodRange);
+        if ( ((endIndex - startIndex) < 2) || (_bytes[startIndex] != '"') ) { return JsonScanner.NOT_FOUND; }
+
+        return JsonScanner.toRange((startIndex + 1), (endIndex - 1));
+    }
+
+    public long getParamsRange() {
+        return _paramsRange;
+    }
+
+    /**
+     * Returns the serialized id (e.g. 1 or "abc"), or the literal null if the request has no id.
+     */
+    public byte[] getIdBytes() {
+        if (_idRange == JsonScanner.NOT_FOUND) { return NULL_ID_BYTES; }
+        return Arrays.copyOfRange(_bytes, JsonScanner.getStartIndex(_idRange), JsonScanner.getEndIndex(_idRange));
+    }
+
+    /**
+     * Returns the id if it is an integer (or a string containing an integer), otherwise null.
+     */
+    public Long getIdAsLong() {
+        if (_idRange == JsonScanner.NOT_FOUND) { return null; }
+
+        final boolean isQuoted = (_bytes[JsonScanner.getStartIndex(_idRange)] == '"');
+        final int startIndex = (JsonScanner.getStartIndex(_idRange) + (isQuoted ? 1 : 0));
+        final int endIndex = (JsonScanner.getEndIndex(_idRange) - (isQuoted ? 1 : 0));
+        if (startIndex >= endIndex) { return null; }
+        final boolean isNegative = (_bytes[startIndex] == '-');
+        final int digitStartIndex = (isNegative ? (startIndex + 1) : startIndex);
+        if ( (digitStartIndex >= endIndex) || ((endIndex - digitStartIndex) > 18) ) { return null; }
+
+        long value = 0L;
+        for (int i = digitStartIndex; i < endIndex; ++i) {
+            final byte b = _bytes[i];
+            if ( (b < '0') || (b > '9') ) { return null; }
+            value = ((value * 10L) + (b - '0'));
+        }
+        return (isNegative ? -value : value);
+    }
+
+    public String getMethodName() {
+        return JsonScanner.toString(_bytes, this.getMethodNameRange());
+    }
+}
@@ -0,0 +1,226 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Locates values within serialized JSON without parsing it into a tree.
+ *  Offsets are returned as a long with the start index in the upper 32 bits and the (exclusive) end index in the lower
+ *  32 bits; NOT_FOUND is returned when the value does not exist or the JSON is malformed.
+ */
+public class JsonScanner {
+    public static final long NOT_FOUND = -1L;
+
+    public static long toRange(final int startIndex, final int endIndex) {
+        return ((((long) startIndex) << 32) | (endIndex & 0xFFFFFFFFL));
+    }
+
+    public static int getStartIndex(final long range) {
+        return (int) (range >>> 32);
+    }
+
+    public static int getEndIndex(final long range) {
+        return (int) range;
+    }
+
+    protected static boolean _isWhitespace(final byte b) {
+        return ( (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t') );
+    }
+
+    public static int skipWhitespace(final byte[] bytes, final int index, final int endIndex) {
+        int i = index;
+        while ( (i < endIndex) && _isWhitespace(bytes[i]) ) {
+            i += 1;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index after the string beginning at index (which must be a double-quote), or -1 if unterminated.
+     */
+    protected static int _skipString(final byte[] bytes, final int index, final int endIndex) {
+        int i = (index + 1);
+        while (i < endIndex) {
+            final byte b = bytes[i];
+            if (b == '\\') {
+                i += 2;
+                continue;
+            }
+            if (b == '"') {
+                return (i + 1);
+            }
+            i += 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index after the value beginning at index, or -1 if the value is malformed or unterminated.
+     */
+    public static int skipValue(final byte[] bytes, final int index, final int endIndex) {
+        if (index >= endIndex) { return -1; }
+
+        final byte firstByte = bytes[index];
+        if (firstByte == '"') {
+            return _skipString(bytes, index, endIndex);
+        }
+
+        if ( (firstByte == '{') || (firstByte == '[') ) {
+            int depth = 0;
+            int i = index;
+            while (i < endIndex) {
+                final byte b = bytes[i];
+                if (b == '"') {
+                    i = _skipString(bytes, i, endIndex);
+                    if (i < 0) { return -1; }
+                    continue;
+                }
+
+                if ( (b == '{') || (b == '[') ) {
+                    depth += 1;
+                }
+                else if ( (b == '}') || (b == ']') ) {
+                    depth -= 1;
+                    if (depth == 0) {
+                        return (i + 1);
+                    }
+                }
+                i += 1;
+            }
+            return -1;
+        }
+
+        // Numbers and literals (true, false, null)...
+        int i = index;
+        while (i < endIndex) {
+            final byte b = bytes[i];
+            if ( (b == ',') || (b == '}') || (b == ']') || _isWhitespace(b) ) { break; }
+            i += 1;
+        }
+        return (i > index ? i : -1);
+    }
+
+    /**
+     * Returns true if the bytes between startIndex and endIndex are the quoted key (the key must not require escaping).
+     */
+    protected static boolean _isKey(final byte[] bytes, final int startIndex, final int endIndex, final byte[] key) {
+        if ((endIndex - startIndex) != (key.length + 2)) { return false; }
+        for (int i = 0; i < key.length; ++i) {
+            if (bytes[startIndex + 1 + i] != key[i]) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the range of the value of the top-level object's member named key.
+     */
+    public static long findMember(final byte[] bytes, final int startIndex, final int endIndex, final String key) {
+        return JsonScanner.findMember(bytes, startIndex, endIndex, key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long findMember(final byte[] bytes, final int startIndex, final int endIndex, final byte[] key) {
+        if (bytes == null) { return NOT_FOUND; }
+
+        int i = skipWhitespace(bytes, startIndex, endIndex);
+        if ( (i >= endIndex) || (bytes[i] != '{') ) { return NOT_FOUND; }
+        i += 1;
+
+        while (true) {
+            i = skipWhitespace(bytes, i, endIndex);
+            if ( (i >= endIndex) || (bytes[i] == '}') ) { return NOT_FOUND; }
+            if (bytes[i] != '"') { return NOT_FOUND; }
+
+            final int keyStartIndex = i;
+            final int keyEndIndex = _skipString(bytes, i, endIndex);
+            if (keyEndIndex < 0) { return NOT_FOUND; }
+
+            i = skipWhitespace(bytes, keyEndIndex, endIndex);
+            if ( (i >= endIndex) || (bytes[i] != ':') ) { return NOT_FOUND; }
+            i = skipWhitespace(bytes, (i + 1), endIndex);
+
+            final int valueEndIndex = skipValue(bytes, i, endIndex);
+            if (valueEndIndex < 0) { return NOT_FOUND; }
+
+            if (_isKey(bytes, keyStartIndex, keyEndIndex, key)) {
+                return toRange(i, valueEndIndex);
+            }
+
+            i = skipWhitespace(bytes, valueEndIndex, endIndex);
+            if ( (i < endIndex) && (bytes[i] == ',') ) {
+                i += 1;
+            }
+        }
+    }
+
+    public static long findMember(final byte[] bytes, final String key) {
+        if (bytes == null) { return NOT_FOUND; }
+        return JsonScanner.findMember(bytes, 0, bytes.length, key);
+    }
+
+    /**
+     * Returns the range of the element at elementIndex of the array within the provided range.
+     */
+    public static long findElement(final byte[] bytes, final long arrayRange, final int elementIndex) {
+        if (arrayRange == NOT_FOUND) { return NOT_FOUND; }
+
+        final int endIndex = getEndIndex(arrayRange);
+        int i = skipWhitespace(bytes, getStartIndex(arrayRange), endIndex);
+        if ( (i >= endIndex) || (bytes[i] != '[') ) { return NOT_FOUND; }
+        i += 1;
+
+        int index = 0;
+        while (true) {
+            i = skipWhitespace(bytes, i, endIndex);
+            if ( (i >= endIndex) || (bytes[i] == ']') ) { return NOT_FOUND; }
+
+            final int valueEndIndex = skipValue(bytes, i, endIndex);
+            if (valueEndIndex < 0) { return NOT_FOUND; }
+
+            if (index == elementIndex) {
+                return toRange(i, valueEndIndex);
+            }
+
+            index += 1;
+            i = skipWhitespace(bytes, valueEndIndex, endIndex);
+            if ( (i < endIndex) && (bytes[i] == ',') ) {
+                i += 1;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of bytes with the value within the provided range replaced by replacementBytes.
+     */
+    public static byte[] replaceValue(final byte[] bytes, final long range, final byte[] replacementBytes) {
+        final int startIndex = getStartIndex(range);
+        final int endIndex = getEndIndex(range);
+
+        final byte[] newBytes = new byte[startIndex + replacementBytes.length + (bytes.length - endIndex)];
+        System.arraycopy(bytes, 0, newBytes, 0, startIndex);
+        System.arraycopy(replacementBytes, 0, newBytes, startIndex, replacementBytes.length);
+        System.arraycopy(bytes, endIndex, newBytes, (startIndex + replacementBytes.length), (bytes.length - endIndex));
+        return newBytes;
+    }
+
+    public static String toString(final byte[] bytes, final long range) {
+        if (range == NOT_FOUND) { return null; }
+
+        final int startIndex = getStartIndex(range);
+        return new String(bytes, startIndex, (getEndIndex(range) - startIndex), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns true if the value within the range is exactly the provided (unescaped) literal, e.g. "null" or "false".
+     */
+    public static boolean isLiteral(final byte[] bytes, final long range, final String literal) {
+        if (range == NOT_FOUND) { return false; }
+
+        final int startIndex = getStartIndex(range);
+        final int length = (getEndIndex(range) - startIndex);
+        if (length != literal.length()) { return false; }
+
+        for (int i = 0; i < length; ++i) {
+            if (bytes[startIndex + i] != literal.charAt(i)) { return false; }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+/**
+ * Counts latency samples within fixed, roughly exponential buckets.
+ *  Unlike LatencySampleWindow, every sample is retained (as a count), so rare slow samples remain visible.
+ *  The final bucket has no upper bound.
+ */
+public class LatencyHistogram {
+    protected static final long[] BUCKET_UPPER_BOUNDS_MS = new long[]{ 1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1000L, 2000L, 5000L, 10000L };
+
+    protected final long[] _bucketCounts = new long[BUCKET_UPPER_BOUNDS_MS.length + 1];
+    protected long _sampleCount = 0L;
+    protected long _totalLatencyMs = 0L;
+    protected long _maxLatencyMs = 0L;
+
+    public LatencyHistogram() { }
+
+    public synchronized void addSample(final Long latencyMs) {
+        int bucketIndex = BUCKET_UPPER_BOUNDS_MS.length;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; ++i) {
+            if (latencyMs <= BUCKET_UPPER_BOUNDS_MS[i]) {
+                bucketIndex = i;
+                break;
+            }
+        }
+
+        _bucketCounts[bucketIndex] += 1L;
+        _sampleCount += 1L;
+        _totalLatencyMs += latencyMs;
+        _maxLatencyMs = Math.max(_maxLatencyMs, latencyMs);
+    }
+
+    /**
+     * Returns the number of buckets, including the final unbounded bucket.
+     */
+    public Integer getBucketCount() {
+        return _bucketCounts.length;
+    }
+
+    /**
+     * Returns the inclusive upper bound of the bucket, or null for the final unbounded bucket.
+     */
+    public Long getBucketUpperBoundMs(final Integer bucketIndex) {
+        if (bucketIndex >= BUCKET_UPPER_BOUNDS_MS.length) { return null; }
+        return BUCKET_UPPER_BOUNDS_MS[bucketIndex];
+    }
+
+    public synchronized Long getBucketSampleCount(final Integer bucketIndex) {
+        return _bucketCounts[bucketIndex];
+    }
+
+    public synchronized Long getSampleCount() {
+        return _sampleCount;
+    }
+
+    /**
+     * Returns the mean of all samples, or null if there are no samples.
+     */
+    public synchronized Double getAverageLatencyMs() {
+        if (_sampleCount == 0L) { return null; }
+        return (_totalLatencyMs / (double) _sampleCount);
+    }
+
+    public synchronized Long getMaxLatencyMs() {
+        return _maxLatencyMs;
+    }
+}
@@ -0,0 +1,56 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import java.util.Arrays;
+
+/**
+ * Retains the most recent latency samples and calculates percentiles over them.
+ *  The sorted view of the samples is only rebuilt after RESORT_SAMPLE_COUNT new samples have been added, so percentile
+ *  lookups are cheap enough to be performed for every request.
+ */
+public class LatencySampleWindow {
+    public static final Integer DEFAULT_SAMPLE_COUNT = 256;
+    protected static final Integer RESORT_SAMPLE_COUNT = 16;
+
+    protected final long[] _samples;
+    protected int _nextSampleIndex = 0;
+    protected int _sampleCount = 0;
+
+    protected long[] _sortedSamples = new long[0];
+    protected int _unsortedSampleCount = 0;
+
+    public LatencySampleWindow() {
+        this(DEFAULT_SAMPLE_COUNT);
+    }
+
+    public LatencySampleWindow(final Integer maxSampleCount) {
+        _samples = new long[Math.max(1, maxSampleCount)];
+    }
+
+    public synchronized void addSample(final Long latencyMs) {
+        _samples[_nextSampleIndex] = latencyMs;
+        _nextSampleIndex = ((_nextSampleIndex + 1) % _samples.length);
+        _sampleCount = Math.min(_samples.length, (_sampleCount + 1));
+        _unsortedSampleCount += 1;
+    }
+
+    public synchronized Integer getSampleCount() {
+        return _sampleCount;
+    }
+
+    /**
+     * Returns the latency at the provided percentile (0-100) of the retained samples, or null if there are no samples.
+     */
+    public synchronized Long getPercentileMs(final Double percentile) {
+        if (_sampleCount == 0) { return null; }
+
+        if ( (_unsortedSampleCount >= RESORT_SAMPLE_COUNT) || (_sortedSamples.length == 0) ) {
+            _sortedSamples = Arrays.copyOf(_samples, _sampleCount);
+            Arrays.sort(_sortedSamples);
+            _unsortedSampleCount = 0;
+        }
+
+        final double boundedPercentile = Math.max(0D, Math.min(100D, percentile));
+        final int index = (int) Math.ceil((boundedPercentile / 100D) * _sortedSamples.length) - 1;
+        return _sortedSamples[Math.max(0, index)];
+    }
+}
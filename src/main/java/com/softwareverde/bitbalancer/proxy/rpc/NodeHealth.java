@@ -0,0 +1,210 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A per-node circuit breaker.
+ *  CLOSED: the node is healthy and selectable.
+ *  OPEN: the node has been ejected; it is not selected (unless no other node is available) until a background probe
+ *  succeeds after the ejection period.
+ *  HALF_OPEN: the probe succeeded and the node is selectable on trial; the next request outcome closes or re-opens it.
+ *  Each consecutive ejection doubles the ejection period, up to MAX_EJECTION_DURATION_MS.
+ */
+public class NodeHealth {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface StateCallback {
+        void onStateChanged(NodeHealth nodeHealth, State state);
+    }
+
+    public static class Defaults {
+        public static final Integer CONSECUTIVE_FAILURE_THRESHOLD = 5;
+        public static final Double ERROR_RATE_THRESHOLD = 0.5D;
+        public static final Integer OUTCOME_WINDOW_SIZE = 20;
+        public static final Integer MIN_OUTCOME_COUNT = 10; // The number of outcomes required before the error rate is considered.
+        public static final Long BASE_EJECTION_DURATION_MS = 5000L;
+        public static final Long MAX_EJECTION_DURATION_MS = 300000L;
+    }
+
+    protected final CopyOnWriteArrayList<StateCallback> _stateCallbacks = new CopyOnWriteArrayList<>();
+    protected final boolean[] _outcomeWasFailure = new boolean[Defaults.OUTCOME_WINDOW_SIZE];
+
+    protected volatile State _state = State.CLOSED;
+
+    // Guarded by this...
+    protected int _nextOutcomeIndex = 0;
+    protected int _outcomeCount = 0;
+    protected int _windowFailureCount = 0;
+    protected int _consecutiveFailureCount = 0;
+    protected int _consecutiveEjectionCount = 0;
+    protected long _ejectionCount = 0L;
+    protected long _ejectedUntilMs = 0L;
+    protected String _ejectionReason = null;
+
+    protected void _recordOutcome(final boolean wasFailure) {
+        if (_outcomeCount == _outcomeWasFailure.length) {
+            if (_outcomeWasFailure[_nextOutcomeIndex]) {
+                _windowFailureCount -= 1;
+            }
+        }
+        else {
+            _outcomeCount += 1;
+        }
+
+        _outcomeWasFailure[_nextOutcomeIndex] = wasFailure;
+        _nextOutcomeIndex = ((_nextOutcomeIndex + 1) % _outcomeWasFailure.length);
+        if (wasFailure) {
+            _windowFailureCount += 1;
+            _consecutiveFailureCount += 1;
+        }
+        else {
+            _consecutiveFailureCount = 0;
+        }
+    }
+
+    protected void _resetOutcomes() {
+        _nextOutcomeIndex = 0;
+        _outcomeCount = 0;
+        _windowFailureCount = 0;
+        _consecutiveFailureCount = 0;
+    }
+
+    protected double _getErrorRate() {
+        if (_outcomeCount == 0) { return 0D; }
+        return (_windowFailureCount / (double) _outcomeCount);
+    }
+
+    /**
+     * Sets the time of the next probe, backing off exponentially with each consecutive ejection or failed probe.
+     *  Must be invoked while synchronized.
+     */
+    protected void _scheduleProbe() {
+        final long ejectionDurationMs = Math.min(Defaults.MAX_EJECTION_DURATION_MS, (Defaults.BASE_EJECTION_DURATION_MS << Math.min(_consecutiveEjectionCount, 16)));
+        _ejectedUntilMs = (System.currentTimeMillis() + ejectionDurationMs);
+        _consecutiveEjectionCount += 1;
+    }
+
+    /**
+     * Opens the circuit.  Must be invoked while synchronized.
+     */
+    protected void _open(final String reason) {
+        _state = State.OPEN;
+        _ejectionReason = reason;
+        _ejectionCount += 1L;
+        _scheduleProbe();
+        _resetOutcomes();
+    }
+
+    protected void _notifyStateChanged(final State state) {
+        for (final StateCallback stateCallback : _stateCallbacks) {
+            stateCallback.onStateChanged(this, state);
+        }
+    }
+
+    public NodeHealth() { }
+
+    public void onRequestSuccess() {
+        final State newState;
+        synchronized (this) {
+            _recordOutcome(false);
+            if (_state != State.HALF_OPEN) { return; }
+
+            _state = State.CLOSED;
+            _consecutiveEjectionCount = 0;
+            _ejectionReason = null;
+            newState = _state;
+        }
+        _notifyStateChanged(newState);
+    }
+
+    public void onRequestFailure() {
+        final State newState;
+        synchronized (this) {
+            _recordOutcome(true);
+
+            if (_state == State.HALF_OPEN) {
+                _open("Trial request failed.");
+            }
+            else if (_state == State.CLOSED) {
+                if (_consecutiveFailureCount >= Defaults.CONSECUTIVE_FAILURE_THRESHOLD) {
+                    _open(_consecutiveFailureCount + " consecutive failures.");
+                }
+                else if ( (_outcomeCount >= Defaults.MIN_OUTCOME_COUNT) && (_getErrorRate() >= Defaults.ERROR_RATE_THRESHOLD) ) {
+                    _open("Error rate of " + Math.round(_getErrorRate() * 100D) + "%.");
+                }
+                else { return; }
+            }
+            else { return; }
+
+            newState = _state;
+        }
+        _notifyStateChanged(newState);
+    }
+
+    /**
+     * Ejects the node regardless of its recent outcomes (e.g. because its latency is an outlier).
+     *  Returns false if the node was already ejected.
+     */
+    public Boolean eject(final String reason) {
+        synchronized (this) {
+            if (_state == State.OPEN) { return false; }
+            _open(reason);
+        }
+        _notifyStateChanged(State.OPEN);
+        return true;
+    }
+
+    /**
+     * Returns true if the node is ejected and its ejection period has elapsed.
+     */
+    public synchronized Boolean isProbeDue() {
+        return ( (_state == State.OPEN) && (System.currentTimeMillis() >= _ejectedUntilMs) );
+    }
+
+    public void onProbeSuccess() {
+        synchronized (this) {
+            if (_state != State.OPEN) { return; }
+            _state = State.HALF_OPEN;
+        }
+        _notifyStateChanged(State.HALF_OPEN);
+    }
+
+    public synchronized void onProbeFailure() {
+        if (_state != State.OPEN) { return; }
+        _scheduleProbe();
+    }
+
+    public Boolean isAvailable() {
+        return (_state != State.OPEN);
+    }
+
+    public State getState() {
+        return _state;
+    }
+
+    public synchronized Integer getConsecutiveFailureCount() {
+        return _consecutiveFailureCount;
+    }
+
+    public synchronized Double getErrorRate() {
+        return _getErrorRate();
+    }
+
+    public synchronized Long getEjectionCount() {
+        return _ejectionCount;
+    }
+
+    public synchronized String getEjectionReason() {
+        return _ejectionReason;
+    }
+
+    public void addStateCallback(final StateCallback stateCallback) {
+        _stateCallbacks.add(stateCallback);
+    }
+
+    public void removeStateCallback(final StateCallback stateCallback) {
+        _stateCallbacks.remove(stateCallback);
+    }
+}
@@ -0,0 +1,182 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks a node's outstanding request count and its peak-EWMA response latency.
+ *  The peak-EWMA immediately adopts any latency greater than its current value and otherwise decays exponentially
+ *  toward new observations, so a node that suddenly becomes slow is penalized right away but recovers gradually.
+ */
+public class NodeStatistics {
+    public static final Long DECAY_PERIOD_NANOS = 10000000000L; // 10 seconds.
+
+    /**
+     * The cost of a node that has outstanding requests but no latency samples yet.
+     *  This prevents every request from being routed to an unmeasured node at once.
+     */
+    protected static final Double UNMEASURED_PENALTY = (Double.MAX_VALUE / 2D);
+    protected static final Double TEMPLATE_VALIDATION_SMOOTHING_FACTOR = 0.3D; // The weight of each new template validation duration.
+
+    protected final AtomicInteger _outstandingRequestCount = new AtomicInteger(0);
+
+    protected double _ewmaLatencyNanos = 0D;
+    protected double _recentSampleCount = 0D; // The number of latency observations, decayed at the same rate as the EWMA.
+    protected long _lastUpdateTimeNanos = System.nanoTime();
+    protected Double _templateValidationMs = null; // Excluded from the EWMA; validation is much slower than other requests.
+
+    protected final LatencyHistogram _blockSubmissionLatencyHistogram = new LatencyHistogram(); // Excluded from the EWMA; a slow submission risks orphaning the block.
+    protected final AtomicInteger _acceptedBlockCount = new AtomicInteger(0);
+    protected final AtomicInteger _rejectedBlockCount = new AtomicInteger(0);
+    protected final AtomicInteger _failedBlockSubmissionCount = new AtomicInteger(0);
+    protected final AtomicLong _submittedBlockByteCount = new AtomicLong(0L);
+
+    /**
+     * Decays the current EWMA toward the provided observation and returns the updated EWMA.
+     */
+    protected synchronized double _observe(final double latencyNanos) {
+        final long now = System.nanoTime();
+        final long elapsedNanos = Math.max(0L, (now - _lastUpdateTimeNanos));
+        _lastUpdateTimeNanos = now;
+
+        final double weight = Math.exp(-elapsedNanos / DECAY_PERIOD_NANOS.doubleValue());
+        _recentSampleCount = ((_recentSampleCount * weight) + 1D);
+
+        if (latencyNanos > _ewmaLatencyNanos) {
+            _ewmaLatencyNanos = latencyNanos;
+        }
+        else {
+            _ewmaLatencyNanos = ((_ewmaLatencyNanos * weight) + (latencyNanos * (1D - weight)));
+        }
+
+        return _ewmaLatencyNanos;
+    }
+
+    /**
+     * Returns the current EWMA decayed by the time elapsed since the last observation.
+     *  The EWMA itself is not updated, so reading it does not affect how subsequent observations are weighted.
+     */
+    protected synchronized double _getDecayedLatencyNanos() {
+        final long elapsedNanos = Math.max(0L, (System.nanoTime() - _lastUpdateTimeNanos));
+        return (_ewmaLatencyNanos * Math.exp(-elapsedNanos / DECAY_PERIOD_NANOS.doubleValue()));
+    }
+
+    public NodeStatistics() { }
+
+    public void onRequestStart() {
+        _outstandingRequestCount.incrementAndGet();
+    }
+
+    public void onRequestEnd(final Long durationNanos) {
+        _outstandingRequestCount.decrementAndGet();
+        if (durationNanos != null) {
+            _observe(durationNanos.doubleValue());
+        }
+    }
+
+    public Integer getOutstandingRequestCount() {
+        return _outstandingRequestCount.get();
+    }
+
+    /**
+     * Returns the decayed peak-EWMA latency; the value decays toward zero while the node is idle.
+     */
+    public Double getPeakEwmaLatencyMs() {
+        return (_getDecayedLatencyNanos() / 1000000D);
+    }
+
+    /**
+     * Returns the number of latency observations made recently; each observation's contribution decays toward zero
+     *  at the same rate as the peak-EWMA latency.
+     */
+    public synchronized Double getRecentLatencySampleCount() {
+        final long elapsedNanos = Math.max(0L, (System.nanoTime() - _lastUpdateTimeNanos));
+        return (_recentSampleCount * Math.exp(-elapsedNanos / DECAY_PERIOD_NANOS.doubleValue()));
+    }
+
+    /**
+     * Returns the node's expected cost of servicing an additional request.
+     *  Lower is better.
+     */
+    public Double getLoadCost() {
+        final int outstandingRequestCount = _outstandingRequestCount.get();
+        final double ewmaLatencyNanos = _getDecayedLatencyNanos();
+        if ( (ewmaLatencyNanos == 0D) && (outstandingRequestCount > 0) ) {
+            return UNMEASURED_PENALTY + outstandingRequestCount;
+        }
+
+        return (ewmaLatencyNanos * (outstandingRequestCount + 1));
+    }
+
+    public synchronized void onTemplateValidated(final Long durationMs) {
+        if (_templateValidationMs == null) {
+            _templateValidationMs = durationMs.doubleValue();
+        }
+        else {
+            _templateValidationMs = ((_templateValidationMs * (1D - TEMPLATE_VALIDATION_SMOOTHING_FACTOR)) + (durationMs * TEMPLATE_VALIDATION_SMOOTHING_FACTOR));
+        }
+    }
+
+    /**
+     * Records the elapsed duration of a template validation that was canceled before completing.
+     *  The duration is only a lower bound of the node's validation time, so it is recorded only if it raises the estimate.
+     */
+    public synchronized void onTemplateValidationCanceled(final Long elapsedMs) {
+        if ( (_templateValidationMs != null) && (elapsedMs <= _templateValidationMs) ) { return; }
+        onTemplateValidated(elapsedMs);
+    }
+
+    /**
+     * Returns the exponentially-weighted average duration of the node's template validations, or null if none have completed.
+     */
+    public synchronized Double getTemplateValidationMs() {
+        return _templateValidationMs;
+    }
+
+    /**
+     * Records a block submission to the node.
+     *  A null wasAccepted indicates the submission failed without a response; a null byteCount indicates the size of
+     *  the submission is unknown.
+     */
+    public void onBlockSubmitted(final Long durationMs, final Boolean wasAccepted, final Long byteCount) {
+        if (byteCount != null) {
+            _submittedBlockByteCount.addAndGet(byteCount);
+        }
+
+        if (wasAccepted == null) {
+            _failedBlockSubmissionCount.incrementAndGet();
+            return;
+        }
+
+        _blockSubmissionLatencyHistogram.addSample(durationMs);
+        if (wasAccepted) {
+            _acceptedBlockCount.incrementAndGet();
+        }
+        else {
+            _rejectedBlockCount.incrementAndGet();
+        }
+    }
+
+    public LatencyHistogram getBlockSubmissionLatencyHistogram() {
+        return _blockSubmissionLatencyHistogram;
+    }
+
+    public Integer getAcceptedBlockCount() {
+        return _acceptedBlockCount.get();
+    }
+
+    public Integer getRejectedBlockCount() {
+        return _rejectedBlockCount.get();
+    }
+
+    public Integer getFailedBlockSubmissionCount() {
+        return _failedBlockSubmissionCount.get();
+    }
+
+    /**
+     * Returns the total size of the block submissions sent to the node.
+     */
+    public Long getSubmittedBlockByteCount() {
+        return _submittedBlockByteCount.get();
+    }
+}
@@ -3,13 +3,23 @@ package com.softwareverde.bitbalancer.proxy.rpc;
 import com.softwareverde.bitbalancer.proxy.rpc.connector.BitBalancerRpcConnector;
 import com.softwareverde.util.Util;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class RpcConfiguration {
+    public interface ChainHeightCallback {
+        void onChainHeightChanged(RpcConfiguration rpcConfiguration, ChainHeight chainHeight);
+    }
+
     protected final String _name;
     protected final BitBalancerRpcConnector _bitcoinRpcConnector;
     protected final Integer _hierarchy;
     protected final Long _maxTimeoutMs;
+    protected final NodeStatistics _nodeStatistics = new NodeStatistics();
+    protected final NodeHealth _nodeHealth = new NodeHealth();
+
+    protected final CopyOnWriteArrayList<ChainHeightCallback> _chainHeightCallbacks = new CopyOnWriteArrayList<>();
 
-    protected ChainHeight _chainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
+    protected volatile ChainHeight _chainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
 
     public RpcConfiguration(final String name, final BitBalancerRpcConnector bitcoinRpcConnector) {
         this(name, bitcoinRpcConnector, null);
@@ -50,14 +60,41 @@ public class RpcConfiguration {
         return _chainHeight;
     }
 
+    /**
+     * Updates the node's ChainHeight.
+     *  Registered ChainHeightCallbacks are only invoked if the ChainHeight changed.
+     */
     public void setChainHeight(final ChainHeight chainHeight) {
+        final ChainHeight previousChainHeight = _chainHeight;
         _chainHeight = chainHeight;
+
+        if (Util.areEqual(previousChainHeight, chainHeight)) { return; }
+
+        for (final ChainHeightCallback chainHeightCallback : _chainHeightCallbacks) {
+            chainHeightCallback.onChainHeightChanged(this, chainHeight);
+        }
+    }
+
+    public void addChainHeightCallback(final ChainHeightCallback chainHeightCallback) {
+        _chainHeightCallbacks.add(chainHeightCallback);
+    }
+
+    public void removeChainHeightCallback(final ChainHeightCallback chainHeightCallback) {
+        _chainHeightCallbacks.remove(chainHeightCallback);
     }
 
     public Long getMaxTimeoutMs() {
         return _maxTimeoutMs;
     }
 
+    public NodeStatistics getNodeStatistics() {
+        return _nodeStatistics;
+    }
+
+    public NodeHealth getNodeHealth() {
+        return _nodeHealth;
+    }
+
     @Override
     public boolean equals(final Object object) {
         if (! (object instanceof RpcConfiguration)) { return false; }
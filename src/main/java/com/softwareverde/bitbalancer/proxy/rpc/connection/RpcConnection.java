@@ -0,0 +1,237 @@
+package com.softwareverde.bitbalancer.proxy.rpc.connection;
+
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.util.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A persistent (keep-alive) HTTP/1.1 connection to a node's JSON-RPC port.
+ *  RpcConnections are not thread-safe; they are owned by a single request at a time via the RpcConnectionPool.
+ */
+public class RpcConnection implements AutoCloseable {
+    protected final Socket _socket;
+    protected final InputStream _inputStream;
+    protected final OutputStream _outputStream;
+
+    protected Long _lastUsedTimeMs;
+    protected Boolean _isReusable = true;
+    protected Integer _requestCount = 0;
+    protected Boolean _wasRequestWritten = false;
+    protected Boolean _wasResponseStarted = false;
+
+    protected String _readLine() throws IOException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        while (true) {
+            final int b = _inputStream.read();
+            if (b < 0) { throw new EOFException("Connection closed."); }
+            _wasResponseStarted = true;
+            if (b == '\n') { break; }
+            if (b != '\r') {
+                stringBuilder.append((char) b);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    protected void _readFully(final byte[] buffer, final int offset, final int byteCount) throws IOException {
+        int readByteCount = 0;
+        while (readByteCount < byteCount) {
+            final int count = _inputStream.read(buffer, (offset + readByteCount), (byteCount - readByteCount));
+            if (count < 0) { throw new EOFException("Connection closed."); }
+            readByteCount += count;
+        }
+    }
+
+    /**
+     * Reads each chunk directly into a single growing buffer, so the body is only copied when the buffer grows.
+     */
+    protected byte[] _readChunkedBody() throws IOException {
+        byte[] buffer = new byte[8192];
+        int byteCount = 0;
+        while (true) {
+            final String chunkSizeLine = _readLine();
+            final int extensionIndex = chunkSizeLine.indexOf(';');
+            final String chunkSizeString = (extensionIndex < 0 ? chunkSizeLine : chunkSizeLine.substring(0, extensionIndex)).trim();
+            final int chunkSize = Integer.parseInt(chunkSizeString, 16);
+            if (chunkSize == 0) {
+                while (! _readLine().isEmpty()) { } // Consume trailers...
+                break;
+            }
+
+            if ((byteCount + chunkSize) > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max((byteCount + chunkSize), (buffer.length * 2)));
+            }
+            _readFully(buffer, byteCount, chunkSize);
+            byteCount += chunkSize;
+            _readLine(); // Consume the chunk's trailing CRLF...
+        }
+        return (byteCount == buffer.length ? buffer : Arrays.copyOf(buffer, byteCount));
+    }
+
+    protected byte[] _readUntilClosed() throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        while (true) {
+            final int count = _inputStream.read(buffer);
+            if (count < 0) { break; }
+            byteArrayOutputStream.write(buffer, 0, count);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    public RpcConnection(final Socket socket) throws IOException {
+        _socket = socket;
+        _inputStream = new BufferedInputStream(socket.getInputStream());
+        _outputStream = new BufferedOutputStream(socket.getOutputStream());
+        _lastUsedTimeMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Sets the maximum duration to block on any single read; 0 disables the timeout.
+     */
+    public void setReadTimeout(final Long timeoutMs) throws IOException {
+        _socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(0L, Util.coalesce(timeoutMs))));
+    }
+
+    /**
+     * Sends the JSON-RPC payload as an HTTP POST and blocks until the complete response has been read.
+     *  Throws an IOException if the connection failed; the connection should not be reused afterwards.
+     */
+    public Response send(final String hostHeader, final String authorizationHeader, final byte[] requestPayload) throws IOException {
+        _requestCount += 1;
+        _isReusable = false; // Only set as reusable after a complete response has been read...
+        _wasRequestWritten = false;
+        _wasResponseStarted = false;
+
+        { // Write the request...
+            final StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("POST / HTTP/1.1\r\nHost: ");
+            stringBuilder.append(hostHeader);
+            stringBuilder.append("\r\nContent-Type: application/json\r\nConnection: keep-alive\r\nContent-Length: ");
+            stringBuilder.append(requestPayload.length);
+            if (authorizationHeader != null) {
+                stringBuilder.append("\r\nAuthorization: ");
+                stringBuilder.append(authorizationHeader);
+            }
+            stringBuilder.append("\r\n\r\n");
+
+            _outputStream.write(stringBuilder.toString().getBytes(StandardCharsets.US_ASCII));
+            _outputStream.write(requestPayload);
+            _outputStream.flush();
+            _wasRequestWritten = true;
+        }
+
+        final int responseCode;
+        {
+            final String statusLine = _readLine();
+            final String[] statusLineParts = statusLine.split(" ", 3);
+            if ( (statusLineParts.length < 2) || (! statusLineParts[0].startsWith("HTTP/")) ) {
+                throw new IOException("Invalid HTTP status line: " + statusLine);
+            }
+            responseCode = Integer.parseInt(statusLineParts[1]);
+        }
+
+        Long contentLength = null;
+        boolean isChunked = false;
+        boolean isKeepAlive = true;
+        while (true) {
+            final String headerLine = _readLine();
+            if (headerLine.isEmpty()) { break; }
+
+            final int separatorIndex = headerLine.indexOf(':');
+            if (separatorIndex < 1) { continue; }
+
+            final String key = headerLine.substring(0, separatorIndex).trim().toLowerCase();
+            final String value = headerLine.substring(separatorIndex + 1).trim();
+            if (Util.areEqual("content-length", key)) {
+                contentLength = Util.parseLong(value);
+            }
+            else if (Util.areEqual("transfer-encoding", key)) {
+                isChunked = value.toLowerCase().contains("chunked");
+            }
+            else if (Util.areEqual("connection", key)) {
+                isKeepAlive = (! value.toLowerCase().contains("close"));
+            }
+        }
+
+        final byte[] content;
+        if (isChunked) {
+            content = _readChunkedBody();
+        }
+        else if (contentLength != null) {
+            content = new byte[contentLength.intValue()];
+            _readFully(content, 0, content.length);
+        }
+        else {
+            content = _readUntilClosed();
+            isKeepAlive = false;
+        }
+
+        _isReusable = isKeepAlive;
+        _lastUsedTimeMs = System.currentTimeMillis();
+
+        final Response response = new Response();
+        response.setCode(responseCode);
+        response.setContent(content);
+        return response;
+    }
+
+    /**
+     * Returns true if the connection appears healthy enough to be reused.
+     *  A connection with unsolicited data or a closed socket cannot be reused.
+     */
+    public Boolean isReusable() {
+        if (! _isReusable) { return false; }
+        if (_socket.isClosed() || _socket.isInputShutdown() || _socket.isOutputShutdown()) { return false; }
+
+        try {
+            if (_inputStream.available() > 0) { return false; }
+        }
+        catch (final IOException exception) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the most recent request was completely written to the connection.
+     */
+    public Boolean wasRequestWritten() {
+        return _wasRequestWritten;
+    }
+
+    /**
+     * Returns true if any bytes of the response to the most recent request were received.
+     */
+    public Boolean wasResponseStarted() {
+        return _wasResponseStarted;
+    }
+
+    public Long getLastUsedTimeMs() {
+        return _lastUsedTimeMs;
+    }
+
+    public Integer getRequestCount() {
+        return _requestCount;
+    }
+
+    @Override
+    public void close() {
+        _isReusable = false;
+        try {
+            _socket.close();
+        }
+        catch (final Exception exception) { }
+    }
+}
@@ -0,0 +1,78 @@
+package com.softwareverde.bitbalancer.proxy.rpc.connection;
+
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+
+/**
+ * A Monitor for requests sent through an RpcConnectionPool.
+ *  Canceling the monitor closes the in-flight connection, which unblocks the requesting thread.
+ */
+public class RpcConnectionMonitor implements Monitor {
+    protected volatile Long _maxDurationMs = null;
+    protected volatile Long _startTimeNanos = null;
+    protected volatile Long _endTimeNanos = null;
+    protected volatile Boolean _isCanceled = false;
+    protected volatile RpcConnection _connection = null;
+
+    protected void _beforeRequestStart(final RpcConnection connection) {
+        _connection = connection;
+        _endTimeNanos = null;
+        if (_startTimeNanos == null) {
+            _startTimeNanos = System.nanoTime();
+        }
+
+        if (_isCanceled) {
+            connection.close();
+        }
+    }
+
+    protected void _afterRequestEnd() {
+        _connection = null;
+        _endTimeNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the remaining time allowed for the request, or null if the request has no deadline.
+     */
+    protected Long _getRemainingDurationMs() {
+        final Long maxDurationMs = _maxDurationMs;
+        if (maxDurationMs == null) { return null; }
+
+        return Math.max(1L, (maxDurationMs - this.getDurationMs()));
+    }
+
+    public RpcConnectionMonitor() { }
+
+    public Boolean isCanceled() {
+        return _isCanceled;
+    }
+
+    @Override
+    public Boolean isComplete() {
+        return (_endTimeNanos != null);
+    }
+
+    @Override
+    public Long getDurationMs() {
+        final Long startTimeNanos = _startTimeNanos;
+        if (startTimeNanos == null) { return 0L; }
+
+        final Long endTimeNanos = _endTimeNanos;
+        final long durationNanos = ((endTimeNanos != null ? endTimeNanos : System.nanoTime()) - startTimeNanos);
+        return (durationNanos / 1000000L);
+    }
+
+    @Override
+    public void setMaxDurationMs(final Long maxDurationMs) {
+        _maxDurationMs = maxDurationMs;
+    }
+
+    @Override
+    public void cancel() {
+        _isCanceled = true;
+
+        final RpcConnection connection = _connection;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.softwareverde.bitbalancer.proxy.rpc.connection;
+
+import com.softwareverde.bitbalancer.proxy.rpc.JsonRpcEnvelope;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.StringUtil;
+import com.softwareverde.util.Util;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of persistent keep-alive JSON-RPC connections to a single node.
+ *  At most maxConnectionCount connections (idle or in-use) exist at a time; requests wait for a free connection.
+ *  Idle connections are evicted after idleTimeoutMs, and are health-checked before being reused.
+ *  If a reused connection fails before the request was written, the request is retried once on a new connection.
+ *  If the request was written, it is retried only if the connection was closed before any of the response was
+ *  received (i.e. the node likely closed it while idle) and the method is idempotent, since the node may have
+ *  processed the request regardless; requests such as submitblock and sendrawtransaction are never resent.  Any other
+ *  failure (e.g. a timeout) is not retried.
+ */
+public class RpcConnectionPool {
+    public static class Defaults {
+        public static final Integer MAX_CONNECTION_COUNT = 16;
+        public static final Long IDLE_TIMEOUT_MS = 15000L; // Less than the default rpcservertimeout of Bitcoin Core derivatives (30s).
+        public static final Long CONNECT_TIMEOUT_MS = 5000L;
+        public static final Long ACQUIRE_TIMEOUT_MS = 30000L;
+    }
+
+    /**
+     * The HTTP response code of requests that failed because the node could not be reached or did not respond.
+     *  Requests that were canceled or interrupted are reported as Response.Codes.SERVER_ERROR instead.
+     */
+    public static final Integer NODE_UNAVAILABLE_RESPONSE_CODE = 503;
+
+    /**
+     * Read-only methods that may be resent after the request was written.
+     */
+    protected static final HashSet<String> IDEMPOTENT_METHODS = new HashSet<>();
+    static {
+        IDEMPOTENT_METHODS.add("getbestblockhash");
+        IDEMPOTENT_METHODS.add("getblock");
+        IDEMPOTENT_METHODS.add("getblockchaininfo");
+        IDEMPOTENT_METHODS.add("getblockcount");
+        IDEMPOTENT_METHODS.add("getblockhash");
+        IDEMPOTENT_METHODS.add("getblockheader");
+        IDEMPOTENT_METHODS.add("getblockstats");
+        IDEMPOTENT_METHODS.add("getblocktemplate");
+        IDEMPOTENT_METHODS.add("getchaintips");
+        IDEMPOTENT_METHODS.add("getdifficulty");
+        IDEMPOTENT_METHODS.add("getmempoolentry");
+        IDEMPOTENT_METHODS.add("getmempoolinfo");
+        IDEMPOTENT_METHODS.add("getmininginfo");
+        IDEMPOTENT_METHODS.add("getnetworkinfo");
+        IDEMPOTENT_METHODS.add("getrawmempool");
+        IDEMPOTENT_METHODS.add("getrawtransaction");
+        IDEMPOTENT_METHODS.add("gettxout");
+        IDEMPOTENT_METHODS.add("gettxoutproof");
+        IDEMPOTENT_METHODS.add("getzmqnotifications");
+        IDEMPOTENT_METHODS.add("verifytxoutproof");
+        IDEMPOTENT_METHODS.add("decoderawtransaction");
+        IDEMPOTENT_METHODS.add("decodescript");
+        IDEMPOTENT_METHODS.add("validateaddress");
+    }
+
+    protected static Response _createErrorResponse(final String errorMessage) {
+        return _createErrorResponse(Response.Codes.SERVER_ERROR, errorMessage);
+    }
+
+    protected static Response _createErrorResponse(final Integer responseCode, final String errorMessage) {
+        final Json errorJson = new Json(false);
+        errorJson.put("code", -1);
+        errorJson.put("message", errorMessage);
+
+        final Json responseJson = new Json(false);
+        responseJson.put("result", null);
+        responseJson.put("error", errorJson);
+        responseJson.put("id", null);
+
+        final Response response = new Response();
+        response.setCode(responseCode);
+        response.setContent(responseJson.toString());
+        return response;
+    }
+
+    protected final String _host;
+    protected final Integer _port;
+    protected final Boolean _isSecure;
+    protected final String _hostHeader;
+    protected final String _authorizationHeader;
+    protected final Integer _maxConnectionCount;
+    protected final Long _idleTimeoutMs;
+
+    protected final Semaphore _connectionPermits;
+    protected final LinkedBlockingDeque<RpcConnection> _idleConnections = new LinkedBlockingDeque<>();
+
+    protected final AtomicLong _openedConnectionCount = new AtomicLong(0L);
+    protected final AtomicLong _reusedConnectionCount = new AtomicLong(0L);
+    protected final AtomicLong _evictedConnectionCount = new AtomicLong(0L);
+
+    protected RpcConnection _openConnection() throws IOException {
+        final Socket socket = (_isSecure ? SSLSocketFactory.getDefault().createSocket() : new Socket());
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(_host, _port), Defaults.CONNECT_TIMEOUT_MS.intValue());
+            _openedConnectionCount.incrementAndGet();
+            return new RpcConnection(socket);
+        }
+        catch (final IOException exception) {
+            socket.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Closes idle connections that have exceeded the idle timeout.
+     *  The oldest connections are at the tail of the deque.
+     */
+    protected void _evictIdleConnections() {
+        final long now = System.currentTimeMillis();
+        final Iterator<RpcConnection> iterator = _idleConnections.descendingIterator();
+        while (iterator.hasNext()) {
+            final RpcConnection connection = iterator.next();
+            final long idleDurationMs = (now - connection.getLastUsedTimeMs());
+            if (idleDurationMs < _idleTimeoutMs) { break; }
+
+            if (_idleConnections.remove(connection)) {
+                connection.close();
+                _evictedConnectionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the most-recently used healthy idle connection, or null if none are available.
+     */
+    protected RpcConnection _pollIdleConnection() {
+        _evictIdleConnections();
+
+        while (true) {
+            final RpcConnection connection = _idleConnections.pollFirst();
+            if (connection == null) { return null; }
+
+            if (connection.isReusable()) {
+                return connection;
+            }
+
+            connection.close();
+            _evictedConnectionCount.incrementAndGet();
+        }
+    }
+
+    protected void _releaseConnection(final RpcConnection connection) {
+        if (connection.isReusable()) {
+            _idleConnections.addFirst(connection);
+        }
+        else {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns true if the request that failed with the exception may be safely resent: either it cannot have been
+     *  processed by the node, or it is an idempotent request whose connection was closed before the response began.
+     *  Batch requests are never resent after being written.
+     */
+    protected static Boolean _isRetryable(final RpcConnection connection, final IOException exception, final byte[] requestPayload) {
+        if (! connection.wasRequestWritten()) { return true; }
+        if ( (! (exception instanceof EOFException)) || connection.wasResponseStarted() ) { return false; }
+
+        final String methodName = JsonRpcEnvelope.parse(requestPayload).getMethodName();
+        return ( (methodName != null) && IDEMPOTENT_METHODS.contains(methodName) );
+    }
+
+    protected Response _send(final RpcConnection connection, final byte[] requestPayload, final RpcConnectionMonitor monitor) throws IOException {
+        monitor._beforeRequestStart(connection);
+        try {
+            connection.setReadTimeout(monitor._getRemainingDurationMs());
+            return connection.send(_hostHeader, _authorizationHeader, requestPayload);
+        }
+        finally {
+            monitor._afterRequestEnd();
+        }
+    }
+
+    public RpcConnectionPool(final String host, final Integer port, final Boolean isSecure, final String rpcUsername, final String rpcPassword) {
+        this(host, port, isSecure, rpcUsername, rpcPassword, Defaults.MAX_CONNECTION_COUNT, Defaults.IDLE_TIMEOUT_MS);
+    }
+
+    public RpcConnectionPool(final String host, final Integer port, final Boolean isSecure, final String rpcUsername, final String rpcPassword, final Integer maxConnectionCount, final Long idleTimeoutMs) {
+        _host = host;
+        _port = port;
+        _isSecure = Util.coalesce(isSecure, false);
+        _hostHeader = (host + ":" + port);
+        _maxConnectionCount = Math.max(1, Util.coalesce(maxConnectionCount, Defaults.MAX_CONNECTION_COUNT));
+        _idleTimeoutMs = Util.coalesce(idleTimeoutMs, Defaults.IDLE_TIMEOUT_MS);
+        _connectionPermits = new Semaphore(_maxConnectionCount, true);
+
+        if ( (! Util.isBlank(rpcUsername)) || (! Util.isBlank(rpcPassword)) ) {
+            final String credentials = (Util.coalesce(rpcUsername, "") + ":" + Util.coalesce(rpcPassword, ""));
+            _authorizationHeader = ("Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        else {
+            _authorizationHeader = null;
+        }
+    }
+
+    public RpcConnectionMonitor newMonitor() {
+        return new RpcConnectionMonitor();
+    }
+
+    /**
+     * Sends the request's post data to the node and returns its response.
+     *  Failures are returned as a JSON-RPC error Response rather than null.
+     */
+    public Response handleRequest(final Request request, final RpcConnectionMonitor monitor) {
+        final RpcConnectionMonitor rpcConnectionMonitor = (monitor != null ? monitor : this.newMonitor());
+        final byte[] requestPayload = Util.coalesce(request.getRawPostData(), new byte[0]);
+
+        final long acquireTimeoutMs = Util.coalesce(rpcConnectionMonitor._getRemainingDurationMs(), Defaults.ACQUIRE_TIMEOUT_MS);
+        try {
+            if (! _connectionPermits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                Logger.debug("Timed out waiting for a connection to " + _hostHeader + ".");
+                return _createErrorResponse(NODE_UNAVAILABLE_RESPONSE_CODE, "Connection pool exhausted.");
+            }
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return _createErrorResponse("Interrupted.");
+        }
+
+        try {
+            final RpcConnection idleConnection = _pollIdleConnection();
+            if (idleConnection != null) {
+                try {
+                    final Response response = _send(idleConnection, requestPayload, rpcConnectionMonitor);
+                    _reusedConnectionCount.incrementAndGet();
+                    _releaseConnection(idleConnection);
+                    return response;
+                }
+                catch (final IOException exception) {
+                    idleConnection.close();
+                    if (rpcConnectionMonitor.isCanceled()) {
+                        return _createErrorResponse("Request canceled.");
+                    }
+                    if (! _isRetryable(idleConnection, exception, requestPayload)) {
+                        Logger.debug("Request to " + _hostHeader + " failed: " + exception.getMessage());
+                        return _createErrorResponse(NODE_UNAVAILABLE_RESPONSE_CODE, "no response from server");
+                    }
+                    Logger.debug("Reused connection to " + _hostHeader + " failed; retrying with a new connection.");
+                }
+            }
+
+            final RpcConnection connection;
+            try {
+                connection = _openConnection();
+            }
+            catch (final IOException exception) {
+                Logger.debug("Unable to connect to " + _hostHeader + ": " + exception.getMessage());
+                return _createErrorResponse(NODE_UNAVAILABLE_RESPONSE_CODE, "couldn't connect to server");
+            }
+
+            try {
+                final Response response = _send(connection, requestPayload, rpcConnectionMonitor);
+                _releaseConnection(connection);
+                return response;
+            }
+            catch (final IOException exception) {
+                connection.close();
+                Logger.debug("Request to " + _hostHeader + " failed: " + exception.getMessage());
+                if (rpcConnectionMonitor.isCanceled()) {
+                    return _createErrorResponse("Request canceled.");
+                }
+                return _createErrorResponse(NODE_UNAVAILABLE_RESPONSE_CODE, "no response from server");
+            }
+        }
+        finally {
+            _connectionPermits.release();
+        }
+    }
+
+    public Integer getMaxConnectionCount() {
+        return _maxConnectionCount;
+    }
+
+    public Integer getIdleConnectionCount() {
+        return _idleConnections.size();
+    }
+
+    public Long getOpenedConnectionCount() {
+        return _openedConnectionCount.get();
+    }
+
+    public Long getReusedConnectionCount() {
+        return _reusedConnectionCount.get();
+    }
+
+    public Long getEvictedConnectionCount() {
+        return _evictedConnectionCount.get();
+    }
+
+    public void close() {
+        while (true) {
+            final RpcConnection connection = _idleConnections.pollFirst();
+            if (connection == null) { break; }
+            connection.close();
+        }
+    }
+}
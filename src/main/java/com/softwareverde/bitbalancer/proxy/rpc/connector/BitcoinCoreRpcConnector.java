@@ -1,12 +1,17 @@
 package com.softwareverde.bitbalancer.proxy.rpc.connector;
 
 import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import com.softwareverde.bitbalancer.proxy.rpc.connection.RpcConnectionMonitor;
+import com.softwareverde.bitbalancer.proxy.rpc.connection.RpcConnectionPool;
 import com.softwareverde.bitcoin.block.header.difficulty.work.ChainWork;
 import com.softwareverde.bitcoin.rpc.BitcoinNodeRpcAddress;
 import com.softwareverde.bitcoin.rpc.RpcCredentials;
 import com.softwareverde.bitcoin.rpc.core.MutableRequest;
 import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
@@ -14,7 +19,15 @@ import com.softwareverde.util.Container;
 import com.softwareverde.util.StringUtil;
 import com.softwareverde.util.Util;
 
+import java.nio.charset.StandardCharsets;
+
 public class BitcoinCoreRpcConnector extends com.softwareverde.bitcoin.rpc.core.BitcoinCoreRpcConnector implements BitBalancerRpcConnector {
+    protected static final byte[] ERROR_KEY = "error".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] MESSAGE_KEY = "message".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] RESULT_KEY = "result".getBytes(StandardCharsets.UTF_8);
+    protected static final Integer MAX_ERROR_STRING_LENGTH = 256;
+
+    protected RpcConnectionPool _connectionPool = null;
 
     public BitcoinCoreRpcConnector(final BitcoinNodeRpcAddress bitcoinNodeAddress) {
         this(bitcoinNodeAddress, null);
@@ -24,6 +37,39 @@ public class BitcoinCoreRpcConnector extends com.softwareverde.bitcoin.rpc.core.
         super(bitcoinNodeAddress, rpcCredentials);
     }
 
+    /**
+     * Sets the pool of keep-alive connections used for requests to the node.
+     *  If no pool is set, each request opens a new connection.
+     */
+    public void setConnectionPool(final RpcConnectionPool connectionPool) {
+        _connectionPool = connectionPool;
+    }
+
+    public RpcConnectionPool getConnectionPool() {
+        return _connectionPool;
+    }
+
+    @Override
+    public Monitor getMonitor() {
+        final RpcConnectionPool connectionPool = _connectionPool;
+        if (connectionPool == null) {
+            return super.getMonitor();
+        }
+
+        return connectionPool.newMonitor();
+    }
+
+    @Override
+    public Response handleRequest(final Request request, final Monitor monitor) {
+        final RpcConnectionPool connectionPool = _connectionPool;
+        final boolean isPoolableMonitor = ( (monitor == null) || (monitor instanceof RpcConnectionMonitor) );
+        if ( (connectionPool == null) || (! isPoolableMonitor) ) {
+            return super.handleRequest(request, monitor);
+        }
+
+        return connectionPool.handleRequest(request, (RpcConnectionMonitor) monitor);
+    }
+
     @Override
     public ChainHeight getChainHeight(final Monitor monitor) {
         final byte[] requestPayload;
@@ -68,12 +114,45 @@ public class BitcoinCoreRpcConnector extends com.softwareverde.bitcoin.rpc.core.
 
         final Long blockHeight = resultJson.getLong("blocks");
         final ChainWork chainWork = ChainWork.fromHexString(resultJson.getString("chainwork"));
+        final Sha256Hash blockHash = Sha256Hash.fromHexString(resultJson.getString("bestblockhash"));
 
-        return new ChainHeight(blockHeight, chainWork);
+        return new ChainHeight(blockHeight, chainWork, blockHash);
     }
 
+    /**
+     * Determines if the response was successful by scanning its top-level "error" member in-place, rather than parsing
+     *  the (potentially multi-megabyte) response into a Json tree.
+     *  A missing or null "error" is successful, provided the response has a "result" (JSON-RPC 2.0 responses omit "error").
+     */
     @Override
     public Boolean isSuccessfulResponse(final Response response, final Container<String> errorStringContainer) {
-        return com.softwareverde.bitcoin.rpc.core.BitcoinCoreRpcConnector.isSuccessfulResponse(response, null, errorStringContainer);
+        errorStringContainer.value = null;
+        if (response == null) { return false; }
+
+        final byte[] content = Util.coalesce(response.getContent(), new byte[0]);
+        final long errorRange = JsonScanner.findMember(content, 0, content.length, ERROR_KEY);
+        if (errorRange == JsonScanner.NOT_FOUND) {
+            final long resultRange = JsonScanner.findMember(content, 0, content.length, RESULT_KEY);
+            if (resultRange == JsonScanner.NOT_FOUND) { // Not a JSON-RPC response...
+                errorStringContainer.value = new String(content, 0, Math.min(content.length, MAX_ERROR_STRING_LENGTH), StandardCharsets.UTF_8);
+                return false;
+            }
+        }
+        else if (! JsonScanner.isLiteral(content, errorRange, "null")) {
+            final long messageRange = JsonScanner.findMember(content, JsonScanner.getStartIndex(errorRange), JsonScanner.getEndIndex(errorRange), MESSAGE_KEY);
+            final long errorStringRange = (messageRange != JsonScanner.NOT_FOUND ? messageRange : errorRange);
+            final int errorStringStartIndex = JsonScanner.getStartIndex(errorStringRange);
+            final int errorStringEndIndex = JsonScanner.getEndIndex(errorStringRange);
+            final boolean isQuoted = ( (content[errorStringStartIndex] == '"') && ((errorStringEndIndex - errorStringStartIndex) >= 2) );
+            errorStringContainer.value = (isQuoted ? JsonScanner.toString(content, JsonScanner.toRange(errorStringStartIndex + 1, errorStringEndIndex - 1)) : JsonScanner.toString(content, errorStringRange));
+            return false;
+        }
+
+        if (! Util.areEqual(Response.Codes.OK, response.getCode())) {
+            errorStringContainer.value = ("HTTP " + response.getCode());
+            return false;
+        }
+
+        return true;
     }
 }
@@ -8,6 +8,7 @@ import com.softwareverde.bitcoin.rpc.RpcCredentials;
 import com.softwareverde.bitcoin.rpc.monitor.Monitor;
 import com.softwareverde.bitcoin.util.StringUtil;
 import com.softwareverde.bitcoin.util.Util;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
@@ -28,30 +29,34 @@ public class BitcoinVerdeRpcConnector extends com.softwareverde.bitcoin.rpc.Bitc
         final Integer port = _bitcoinNodeRpcAddress.getPort();
 
         final Long blockHeight;
+        final ChainWork chainWork;
+        final Sha256Hash blockHash;
         try (final NodeJsonRpcConnection nodeJsonRpcConnection = new NodeJsonRpcConnection(host, port, _threadPool)) {
-            final Json responseJson = nodeJsonRpcConnection.getBlockHeight();
-            if (responseJson == null) {
-                Logger.warn("Unable to get block height from node.");
-                return null;
+            { // Both requests share the same connection...
+                final Json responseJson = nodeJsonRpcConnection.getBlockHeight();
+                if (responseJson == null) {
+                    Logger.warn("Unable to get block height from node.");
+                    return null;
+                }
+
+                blockHeight = responseJson.getLong("blockHeight");
             }
 
-            blockHeight = responseJson.getLong("blockHeight");
-        }
+            {
+                final Json responseJson = nodeJsonRpcConnection.getBlockHeader(blockHeight);
+                if (responseJson == null) {
+                    Logger.warn("Unable to get chain work from node.");
+                    return null;
+                }
 
-        final ChainWork chainWork;
-        try (final NodeJsonRpcConnection nodeJsonRpcConnection = new NodeJsonRpcConnection(host, port, _threadPool)) {
-            final Json responseJson = nodeJsonRpcConnection.getBlockHeader(blockHeight);
-            if (responseJson == null) {
-                Logger.warn("Unable to get chain work from node.");
-                return null;
+                final Json blockJson = responseJson.get("block");
+                final String chainWorkString = blockJson.getString("chainWork");
+                chainWork = ChainWork.fromHexString(chainWorkString);
+                blockHash = Sha256Hash.fromHexString(blockJson.getString("hash"));
             }
-
-            final Json blockJson = responseJson.get("block");
-            final String chainWorkString = blockJson.getString("chainWork");
-            chainWork = ChainWork.fromHexString(chainWorkString);
         }
 
-        return new ChainHeight(blockHeight, chainWork);
+        return new ChainHeight(blockHeight, chainWork, blockHash);
     }
 
     @Override
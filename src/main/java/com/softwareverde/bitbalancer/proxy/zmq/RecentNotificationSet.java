@@ -0,0 +1,162 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import com.softwareverde.bitcoin.block.header.BlockHeaderInflater;
+import com.softwareverde.bitcoin.rpc.RpcNotification;
+import com.softwareverde.bitcoin.rpc.RpcNotificationType;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent, size- and time-bounded set of recently relayed notifications, used to relay each notification only once
+ *  regardless of how many nodes announce it.
+ *  Notifications are identified by a 64-bit fingerprint of their type and identifying bytes: the hash for hash
+ *  notifications, the block header for block notifications, and the whole payload for transaction notifications.
+ *  Fingerprints are retained within two generations; once the current generation is full (or old), it becomes the
+ *  previous generation and the previous generation is discarded.  Therefore between half and all of the most recent
+ *  maxNotificationCount notifications are retained, for at most maxAgeMs.
+ */
+public class RecentNotificationSet {
+    public static class Defaults {
+        public static final Integer MAX_NOTIFICATION_COUNT = 262144;
+        public static final Long MAX_AGE_MS = (5L * 60L * 1000L);
+    }
+
+    protected static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    protected static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Returns the number of leading payload bytes that identify the notification, or null if the whole payload is required.
+     */
+    protected static Integer _getIdentifyingByteCount(final RpcNotificationType notificationType) {
+        switch (notificationType) {
+            case BLOCK_HASH:
+            case TRANSACTION_HASH: {
+                return Sha256Hash.BYTE_COUNT;
+            }
+            case BLOCK: { // The (hex) block header identifies the block...
+                return (BlockHeaderInflater.BLOCK_HEADER_BYTE_COUNT * 2);
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the 64-bit fingerprint of the notification.
+     *  The fingerprint is not cryptographic; however, a collision among the retained notifications is vanishingly unlikely.
+     */
+    public static Long getFingerprint(final RpcNotification notification) {
+        final ByteArray payload = notification.payload;
+        final int payloadByteCount = payload.getByteCount();
+        final Integer identifyingByteCount = _getIdentifyingByteCount(notification.rpcNotificationType);
+        final int byteCount = (identifyingByteCount != null ? Math.min(identifyingByteCount, payloadByteCount) : payloadByteCount);
+
+        long hash = FNV_OFFSET_BASIS;
+        hash = ((hash ^ notification.rpcNotificationType.ordinal()) * FNV_PRIME);
+        hash = ((hash ^ payloadByteCount) * FNV_PRIME);
+        for (int i = 0; i < byteCount; ++i) {
+            hash = ((hash ^ (payload.getByte(i) & 0xFF)) * FNV_PRIME);
+        }
+
+        { // Finalize the hash so that every input bit affects every output bit...
+            hash ^= (hash >>> 33);
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= (hash >>> 33);
+            hash *= 0xC4CEB9FE1A85EC53L;
+            hash ^= (hash >>> 33);
+        }
+        return hash;
+    }
+
+    protected final Integer _maxGenerationCount;
+    protected final Long _maxGenerationAgeMs;
+
+    protected volatile Set<Long> _currentGeneration = ConcurrentHashMap.newKeySet();
+    protected volatile Set<Long> _previousGeneration = ConcurrentHashMap.newKeySet();
+    protected volatile Long _currentGenerationStartMs;
+
+    protected final AtomicLong _uniqueCount = new AtomicLong(0L);
+    protected final AtomicLong _duplicateCount = new AtomicLong(0L);
+    protected final AtomicLong _rotationCount = new AtomicLong(0L);
+
+    protected void _rotateGenerationIfNecessary(final Long nowMs) {
+        final boolean isFull = (_currentGeneration.size() >= _maxGenerationCount);
+        final boolean isExpired = ((nowMs - _currentGenerationStartMs) >= _maxGenerationAgeMs);
+        if ( (! isFull) && (! isExpired) ) { return; }
+
+        synchronized (this) {
+            final Set<Long> currentGeneration = _currentGeneration;
+            final boolean isStillFull = (currentGeneration.size() >= _maxGenerationCount);
+            final boolean isStillExpired = ((nowMs - _currentGenerationStartMs) >= _maxGenerationAgeMs);
+            if ( (! isStillFull) && (! isStillExpired) ) { return; } // Another thread already rotated the generation...
+
+            // If the previous generation has also expired, it is discarded entirely rather than retained for another period.
+            final boolean isPreviousExpired = ((nowMs - _currentGenerationStartMs) >= (_maxGenerationAgeMs * 2L));
+            _previousGeneration = (isPreviousExpired ? ConcurrentHashMap.<Long>newKeySet() : currentGeneration);
+            _currentGeneration = ConcurrentHashMap.newKeySet();
+            _currentGenerationStartMs = nowMs;
+            _rotationCount.incrementAndGet();
+        }
+    }
+
+    public RecentNotificationSet() {
+        this(Defaults.MAX_NOTIFICATION_COUNT, Defaults.MAX_AGE_MS);
+    }
+
+    public RecentNotificationSet(final Integer maxNotificationCount, final Long maxAgeMs) {
+        _maxGenerationCount = Math.max(1, (maxNotificationCount / 2));
+        _maxGenerationAgeMs = Math.max(1L, (maxAgeMs / 2L));
+        _currentGenerationStartMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds the Notification to the set.
+     *  Returns true if the Notification was not already within the set.
+     */
+    public Boolean add(final RpcNotification notification) {
+        return this.add(notification, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds the Notification to the set, as of nowMs.
+     *  Returns true if the Notification was not already within the set.
+     */
+    public Boolean add(final RpcNotification notification, final Long nowMs) {
+        final Long fingerprint = RecentNotificationSet.getFingerprint(notification);
+
+        _rotateGenerationIfNecessary(nowMs);
+
+        final boolean isUnique = ( (! _previousGeneration.contains(fingerprint)) && _currentGeneration.add(fingerprint) );
+        if (isUnique) {
+            _uniqueCount.incrementAndGet();
+        }
+        else {
+            _duplicateCount.incrementAndGet();
+        }
+        return isUnique;
+    }
+
+    /**
+     * Returns the approximate number of retained notifications.
+     */
+    public Integer getCount() {
+        return (_currentGeneration.size() + _previousGeneration.size());
+    }
+
+    public Long getUniqueCount() {
+        return _uniqueCount.get();
+    }
+
+    public Long getDuplicateCount() {
+        return _duplicateCount.get();
+    }
+
+    public Long getRotationCount() {
+        return _rotationCount.get();
+    }
+}
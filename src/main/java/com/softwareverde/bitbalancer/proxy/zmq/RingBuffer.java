@@ -0,0 +1,99 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free FIFO queue backed by an array.
+ *  Each slot carries a sequence number that indicates whether it is ready to be written (for the current lap) or read,
+ *  so producers and consumers only contend on a single compare-and-set of the tail or head, respectively.
+ *  Multiple producers and multiple consumers are supported; the latter allows a producer to evict the oldest item
+ *  when the queue is full.
+ *  The capacity is rounded up to a power of two.
+ */
+public class RingBuffer<T> {
+    protected final int _mask;
+    protected final AtomicReferenceArray<T> _items;
+    protected final AtomicLongArray _sequences;
+    protected final AtomicLong _head = new AtomicLong(0L); // The position of the next item to be read.
+    protected final AtomicLong _tail = new AtomicLong(0L); // The position of the next item to be written.
+
+    public RingBuffer(final Integer capacity) {
+        final int roundedCapacity = Integer.highestOneBit(Math.max(2, (capacity * 2) - 1));
+        _mask = (roundedCapacity - 1);
+        _items = new AtomicReferenceArray<>(roundedCapacity);
+        _sequences = new AtomicLongArray(roundedCapacity);
+        for (int i = 0; i < roundedCapacity; ++i) {
+            _sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the item to the queue.
+     *  Returns false if the queue is full.
+     */
+    public Boolean offer(final T item) {
+        long position = _tail.get();
+        while (true) {
+            final int index = (int) (position & _mask);
+            final long sequence = _sequences.get(index);
+            final long difference = (sequence - position);
+
+            if (difference == 0L) { // The slot is free for this lap...
+                if (_tail.compareAndSet(position, position + 1L)) {
+                    _items.set(index, item);
+                    _sequences.set(index, position + 1L); // Publish the item to consumers.
+                    return true;
+                }
+                position = _tail.get();
+            }
+            else if (difference < 0L) { // The slot has not been read since the previous lap...
+                return false;
+            }
+            else {
+                position = _tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest item, or returns null if the queue is empty.
+     */
+    public T poll() {
+        long position = _head.get();
+        while (true) {
+            final int index = (int) (position & _mask);
+            final long sequence = _sequences.get(index);
+            final long difference = (sequence - (position + 1L));
+
+            if (difference == 0L) { // The slot has been published for this lap...
+                if (_head.compareAndSet(position, position + 1L)) {
+                    final T item = _items.getAndSet(index, null);
+                    _sequences.set(index, position + _mask + 1L); // Free the slot for the next lap.
+                    return item;
+                }
+                position = _head.get();
+            }
+            else if (difference < 0L) { // The slot has not been written for this lap...
+                return null;
+            }
+            else {
+                position = _head.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the approximate number of items in the queue.
+     */
+    public Integer getCount() {
+        final long head = _head.get();
+        final long tail = _tail.get();
+        return (int) Math.max(0L, Math.min((tail - head), getCapacity()));
+    }
+
+    public Integer getCapacity() {
+        return (_mask + 1);
+    }
+}
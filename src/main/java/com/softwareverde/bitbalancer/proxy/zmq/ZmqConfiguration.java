@@ -6,4 +6,20 @@ import com.softwareverde.constable.list.List;
 public interface ZmqConfiguration {
     Integer getPort(RpcNotificationType zmqNotificationType);
     List<RpcNotificationType> getSupportedMessageTypes();
+
+    /**
+     * Returns the maximum number of transaction notifications queued for publishing before the oldest are dropped.
+     */
+    Integer getMaxQueuedMessageCount();
+
+    /**
+     * Returns the maximum number of transaction notifications published within a single batch, or zero if transaction
+     *  notifications are not batched.
+     */
+    Integer getMaxTransactionBatchCount();
+
+    /**
+     * Returns the maximum duration a transaction notification is held within a batch before the batch is published.
+     */
+    Long getMaxTransactionBatchDurationMs();
 }
@@ -8,6 +8,9 @@ import java.util.HashMap;
 
 public class ZmqConfigurationCore implements ZmqConfiguration {
     protected final HashMap<RpcNotificationType, Integer> _ports = new HashMap<>();
+    protected Integer _maxQueuedMessageCount = ZmqNotificationPublisherThread.Defaults.MAX_QUEUED_MESSAGE_COUNT;
+    protected Integer _maxTransactionBatchCount = ZmqNotificationPublisherThread.Defaults.MAX_BATCH_COUNT;
+    protected Long _maxTransactionBatchDurationMs = ZmqNotificationPublisherThread.Defaults.MAX_BATCH_DURATION_MS;
 
     public ZmqConfigurationCore() { }
 
@@ -15,6 +18,18 @@ public class ZmqConfigurationCore implements ZmqConfiguration {
         _ports.put(notificationType, port);
     }
 
+    public void setMaxQueuedMessageCount(final Integer maxQueuedMessageCount) {
+        _maxQueuedMessageCount = maxQueuedMessageCount;
+    }
+
+    public void setMaxTransactionBatchCount(final Integer maxTransactionBatchCount) {
+        _maxTransactionBatchCount = maxTransactionBatchCount;
+    }
+
+    public void setMaxTransactionBatchDurationMs(final Long maxTransactionBatchDurationMs) {
+        _maxTransactionBatchDurationMs = maxTransactionBatchDurationMs;
+    }
+
     @Override
     public Integer getPort(final RpcNotificationType notificationType) {
         return _ports.get(notificationType);
@@ -24,4 +39,19 @@ public class ZmqConfigurationCore implements ZmqConfiguration {
     public List<RpcNotificationType> getSupportedMessageTypes() {
         return new MutableList<>(_ports.keySet());
     }
+
+    @Override
+    public Integer getMaxQueuedMessageCount() {
+        return _maxQueuedMessageCount;
+    }
+
+    @Override
+    public Integer getMaxTransactionBatchCount() {
+        return _maxTransactionBatchCount;
+    }
+
+    @Override
+    public Long getMaxTransactionBatchDurationMs() {
+        return _maxTransactionBatchDurationMs;
+    }
 }
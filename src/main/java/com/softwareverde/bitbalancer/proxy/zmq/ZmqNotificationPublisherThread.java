@@ -4,52 +4,185 @@ import com.softwareverde.bitcoin.rpc.RpcNotification;
 import com.softwareverde.bitcoin.rpc.RpcNotificationType;
 import com.softwareverde.bitcoin.rpc.core.zmq.ZmqMessageTypeConverter;
 import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.constable.bytearray.MutableByteArray;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.mutable.MutableList;
 import com.softwareverde.logging.Logger;
 import org.zeromq.SocketType;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ;
-import org.zeromq.ZMsg;
 
-import java.util.LinkedList;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Publishes notifications of a single type to ZMQ subscribers.
+ *  Messages are queued without locking and the publisher drains every queued message each time it wakes.
+ *  Transaction notifications are queued within a RingBuffer of bounded capacity; once it is full, the oldest queued
+ *  transaction is dropped in favor of the newest.  Block notifications are never dropped, and are therefore queued
+ *  without bound (they are infrequent).
+ *  Notifications are published as a precomputed topic frame followed by the notification's payload; the payload's
+ *  backing array is sent as-is whenever possible, so (potentially multi-megabyte) blocks are not copied when relayed.
+ *  If batching is enabled, transaction notifications are additionally published in batches (see createBatchFrame) on
+ *  the batch topic (e.g. "batchhashtx"), once maxBatchCount notifications are batched or maxBatchDurationMs has elapsed
+ *  since the first notification was batched.  The batch topic is not prefixed by the notification's topic, so existing
+ *  subscribers do not receive batches.
+ */
 public class ZmqNotificationPublisherThread extends Thread {
+    public static class Defaults {
+        public static final Integer MAX_QUEUED_MESSAGE_COUNT = 16384;
+        public static final Integer MAX_BATCH_COUNT = 0; // Batching is disabled by default.
+        public static final Long MAX_BATCH_DURATION_MS = 100L;
+    }
+
+    protected static final Long MAX_IDLE_NANOS = 1000000000L; // The publisher wakes at least this often to update its send rate.
+    protected static final Long SEND_RATE_PERIOD_NANOS = 1000000000L;
+
     public static ZmqNotificationPublisherThread newZmqNotificationPublisherThread(final RpcNotificationType notificationType, final String host, final Integer zmqPort) {
-        final LinkedList<ZMsg> messageQueue = new LinkedList<>();
+        return ZmqNotificationPublisherThread.newZmqNotificationPublisherThread(notificationType, host, zmqPort, Defaults.MAX_QUEUED_MESSAGE_COUNT);
+    }
+
+    public static ZmqNotificationPublisherThread newZmqNotificationPublisherThread(final RpcNotificationType notificationType, final String host, final Integer zmqPort, final Integer maxQueuedMessageCount) {
+        return new ZmqNotificationPublisherThread(notificationType, host, zmqPort, maxQueuedMessageCount);
+    }
+
+    /**
+     * Returns the (subscription) topic frame for notifications of the type.
+     */
+    public static byte[] getTopicFrame(final RpcNotificationType notificationType) {
+        final String messageTypeString = ZmqMessageTypeConverter.toSubscriptionString(notificationType);
+        return messageTypeString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the topic frame for batches of notifications of the type.
+     */
+    public static byte[] getBatchTopicFrame(final RpcNotificationType notificationType) {
+        final String messageTypeString = ZmqMessageTypeConverter.toSubscriptionString(notificationType);
+        return ("batch" + messageTypeString).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the frame for a batch of payloads: each payload is preceded by its byte count, as a 4-byte big-endian integer.
+     */
+    public static byte[] createBatchFrame(final List<ByteArray> payloads) {
+        int byteCount = 0;
+        for (final ByteArray payload : payloads) {
+            byteCount += (4 + payload.getByteCount());
+        }
+
+        final byte[] batchFrame = new byte[byteCount];
+        int index = 0;
+        for (final ByteArray payload : payloads) {
+            final int payloadByteCount = payload.getByteCount();
+            batchFrame[index] = (byte) (payloadByteCount >>> 24);
+            batchFrame[index + 1] = (byte) (payloadByteCount >>> 16);
+            batchFrame[index + 2] = (byte) (payloadByteCount >>> 8);
+            batchFrame[index + 3] = (byte) payloadByteCount;
+            index += 4;
+
+            System.arraycopy(ZmqNotificationPublisherThread.getPayloadFrame(payload), 0, batchFrame, index, payloadByteCount);
+            index += payloadByteCount;
+        }
+        return batchFrame;
+    }
+
+    /**
+     * Returns the bytes of the payload to be sent as a frame.
+     *  The payload's backing array is returned (without copying) if it is a MutableByteArray; otherwise the payload is
+     *  copied.  The returned array must therefore not be modified.
+     */
+    public static byte[] getPayloadFrame(final ByteArray payload) {
+        if (payload instanceof MutableByteArray) {
+            return ((MutableByteArray) payload).unwrap();
+        }
+        return payload.getBytes();
+    }
+
+    /**
+     * Sends the topic frame and payload as a single multi-part message.
+     */
+    public static Boolean sendFrames(final ZMQ.Socket socket, final byte[] topicFrame, final ByteArray payload) {
+        if (! socket.sendMore(topicFrame)) { return false; }
+        return socket.send(ZmqNotificationPublisherThread.getPayloadFrame(payload), 0);
+    }
 
-        return new ZmqNotificationPublisherThread(notificationType, host, zmqPort, messageQueue);
+    /**
+     * Returns true if notifications of the type may be dropped when the publisher falls behind.
+     */
+    public static Boolean isDroppable(final RpcNotificationType notificationType) {
+        return ( (notificationType == RpcNotificationType.TRANSACTION) || (notificationType == RpcNotificationType.TRANSACTION_HASH) );
     }
 
     protected final RpcNotificationType _notificationType;
+    protected final String _host;
     protected final Integer _port;
-    protected final LinkedList<ZMsg> _messageQueue;
+    protected final byte[] _topicFrame;
+    protected final byte[] _batchTopicFrame;
+    protected final RingBuffer<ByteArray> _boundedMessageQueue; // Null if the notification type may not be dropped.
+    protected final ConcurrentLinkedQueue<ByteArray> _unboundedMessageQueue; // Null if the notification type may be dropped.
+    protected final MutableList<ByteArray> _batch = new MutableList<>(); // Only accessed by the publisher thread.
+    protected Integer _maxBatchCount = Defaults.MAX_BATCH_COUNT;
+    protected Long _maxBatchDurationMs = Defaults.MAX_BATCH_DURATION_MS;
 
-    protected ZmqNotificationPublisherThread(final RpcNotificationType notificationType, final String host, final Integer port, final LinkedList<ZMsg> messageQueue) {
-        super(new Runnable() {
-            @Override
-            public void run() {
-                try (final ZContext context = new ZContext()) {
-                    final SocketType socketType = SocketType.type(zmq.ZMQ.ZMQ_PUB);
-                    final ZMQ.Socket socket = context.createSocket(socketType);
-
-                    socket.bind("tcp://" + host + ":" + port);
-
-                    final Thread thread = Thread.currentThread();
-                    while (! thread.isInterrupted()) {
-                        synchronized (messageQueue) {
-                            messageQueue.wait();
-
-                            final ZMsg zMsg = messageQueue.poll();
-                            if (zMsg != null) {
-                                zMsg.send(socket);
-                            }
-                        }
-                    }
-                }
-                catch (final Exception exception) {
-                    Logger.debug(exception);
+    protected final AtomicLong _queuedMessageCount = new AtomicLong(0L);
+    protected final AtomicLong _sentMessageCount = new AtomicLong(0L);
+    protected final AtomicLong _droppedMessageCount = new AtomicLong(0L);
+    protected final AtomicLong _sentBatchCount = new AtomicLong(0L);
+    protected final AtomicLong _batchedMessageCount = new AtomicLong(0L);
+    protected volatile Double _sendRate = 0D; // Messages per second.
+
+    protected ByteArray _pollMessage() {
+        if (_boundedMessageQueue != null) {
+            return _boundedMessageQueue.poll();
+        }
+        return _unboundedMessageQueue.poll();
+    }
+
+    protected void _queueMessage(final ByteArray payload) {
+        if (_boundedMessageQueue != null) {
+            while (! _boundedMessageQueue.offer(payload)) {
+                final ByteArray droppedMessage = _boundedMessageQueue.poll(); // Drop the oldest message to make room...
+                if (droppedMessage != null) {
+                    _droppedMessageCount.incrementAndGet();
                 }
             }
-        });
+        }
+        else {
+            _unboundedMessageQueue.add(payload);
+        }
+
+        _queuedMessageCount.incrementAndGet();
+    }
+
+    protected void _sendBatch(final ZMQ.Socket socket) {
+        final byte[] batchFrame = ZmqNotificationPublisherThread.createBatchFrame(_batch);
+        if (socket.sendMore(_batchTopicFrame)) {
+            socket.send(batchFrame, 0);
+        }
+
+        _sentBatchCount.incrementAndGet();
+        _batchedMessageCount.addAndGet(_batch.getCount());
+        _batch.clear();
+    }
+
+    protected ZmqNotificationPublisherThread(final RpcNotificationType notificationType, final String host, final Integer port, final Integer maxQueuedMessageCount) {
+        _notificationType = notificationType;
+        _host = host;
+        _port = port;
+        _topicFrame = ZmqNotificationPublisherThread.getTopicFrame(notificationType);
+        _batchTopicFrame = ZmqNotificationPublisherThread.getBatchTopicFrame(notificationType);
+
+        if (isDroppable(notificationType)) {
+            _boundedMessageQueue = new RingBuffer<>(maxQueuedMessageCount);
+            _unboundedMessageQueue = null;
+        }
+        else {
+            _boundedMessageQueue = null;
+            _unboundedMessageQueue = new ConcurrentLinkedQueue<>();
+        }
 
         this.setName("ZMQ Publisher Thread - " + "tcp://" + host + ":" + port);
         this.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
@@ -59,29 +192,84 @@ public class ZmqNotificationPublisherThread extends Thread {
             }
         });
         this.setDaemon(true);
-
-        _notificationType = notificationType;
-        _port = port;
-        _messageQueue = messageQueue;
     }
 
-    public void sendMessage(final RpcNotification notification) {
-        final RpcNotificationType notificationType = notification.rpcNotificationType;
-        final ByteArray payload = notification.payload;
+    @Override
+    public void run() {
+        try (final ZContext context = new ZContext()) {
+            final SocketType socketType = SocketType.type(zmq.ZMQ.ZMQ_PUB);
+            final ZMQ.Socket socket = context.createSocket(socketType);
 
-        final String messageTypeString = ZmqMessageTypeConverter.toSubscriptionString(notificationType);
-        final ZMsg zMsg = new ZMsg();
-        { // Frames are in reverse-order...
-            zMsg.push(payload.getBytes());
-            zMsg.push(messageTypeString);
-        }
+            socket.bind("tcp://" + _host + ":" + _port);
 
-        synchronized (_messageQueue) {
-            _messageQueue.add(zMsg);
-            _messageQueue.notifyAll();
+            final boolean isBatchingEnabled = ( isDroppable(_notificationType) && (_maxBatchCount > 0) ); // Only transaction notifications are batched.
+            final long maxBatchDurationNanos = (_maxBatchDurationMs * 1000000L);
+
+            long sendRatePeriodStartNanos = System.nanoTime();
+            long sendRatePeriodStartCount = 0L;
+            long batchStartNanos = 0L;
+            while (! this.isInterrupted()) {
+                ByteArray payload;
+                while ((payload = _pollMessage()) != null) {
+                    ZmqNotificationPublisherThread.sendFrames(socket, _topicFrame, payload);
+                    _sentMessageCount.incrementAndGet();
+
+                    if (isBatchingEnabled) {
+                        if (_batch.isEmpty()) {
+                            batchStartNanos = System.nanoTime();
+                        }
+                        _batch.add(payload);
+
+                        if (_batch.getCount() >= _maxBatchCount) {
+                            _sendBatch(socket);
+                        }
+                    }
+                }
+
+                final long now = System.nanoTime();
+
+                long idleNanos = MAX_IDLE_NANOS;
+                if (! _batch.isEmpty()) {
+                    final long batchElapsedNanos = (now - batchStartNanos);
+                    if (batchElapsedNanos >= maxBatchDurationNanos) {
+                        _sendBatch(socket);
+                    }
+                    else {
+                        idleNanos = Math.min(idleNanos, (maxBatchDurationNanos - batchElapsedNanos));
+                    }
+                }
+
+                final long elapsedNanos = (now - sendRatePeriodStartNanos);
+                if (elapsedNanos >= SEND_RATE_PERIOD_NANOS) {
+                    final long sentMessageCount = _sentMessageCount.get();
+                    _sendRate = ((sentMessageCount - sendRatePeriodStartCount) * 1000000000D / elapsedNanos);
+                    sendRatePeriodStartNanos = now;
+                    sendRatePeriodStartCount = sentMessageCount;
+                }
+
+                LockSupport.parkNanos(this, idleNanos); // Returns immediately if a message was queued since the queue was drained.
+            }
+        }
+        catch (final Exception exception) {
+            Logger.debug(exception);
         }
     }
 
+    /**
+     * Enables publishing transaction notifications in batches of up to maxBatchCount notifications, each published within
+     *  maxBatchDurationMs of its first notification.  A maxBatchCount of zero disables batching.
+     *  Must be invoked before the thread is started.
+     */
+    public void setBatching(final Integer maxBatchCount, final Long maxBatchDurationMs) {
+        _maxBatchCount = maxBatchCount;
+        _maxBatchDurationMs = maxBatchDurationMs;
+    }
+
+    public void sendMessage(final RpcNotification notification) {
+        _queueMessage(notification.payload);
+        LockSupport.unpark(this);
+    }
+
     public RpcNotificationType getMessageType() {
         return _notificationType;
     }
@@ -89,4 +277,52 @@ public class ZmqNotificationPublisherThread extends Thread {
     public Integer getPort() {
         return _port;
     }
+
+    /**
+     * Returns the approximate number of messages waiting to be published.
+     */
+    public Integer getQueueDepth() {
+        if (_boundedMessageQueue != null) {
+            return _boundedMessageQueue.getCount();
+        }
+        return _unboundedMessageQueue.size();
+    }
+
+    /**
+     * Returns the maximum number of messages waiting to be published, or null if messages are never dropped.
+     */
+    public Integer getQueueCapacity() {
+        if (_boundedMessageQueue == null) { return null; }
+        return _boundedMessageQueue.getCapacity();
+    }
+
+    public Long getQueuedMessageCount() {
+        return _queuedMessageCount.get();
+    }
+
+    public Long getSentMessageCount() {
+        return _sentMessageCount.get();
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue was full.
+     */
+    public Long getDroppedMessageCount() {
+        return _droppedMessageCount.get();
+    }
+
+    public Long getSentBatchCount() {
+        return _sentBatchCount.get();
+    }
+
+    public Long getBatchedMessageCount() {
+        return _batchedMessageCount.get();
+    }
+
+    /**
+     * Returns the number of messages published per second, as measured over the most recent period.
+     */
+    public Double getSendRate() {
+        return _sendRate;
+    }
 }
@@ -0,0 +1,97 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.bitcoin.block.MutableBlock;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.util.timer.NanoTimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BlockSubmissionTests {
+    protected static final Long SLOW_LATENCY_MS = 500L;
+
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final Boolean... submitBlockResults) {
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(submitBlockResults.length);
+        for (int i = 0; i < submitBlockResults.length; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            bitcoinRpcConnector.setSubmitBlockResult(submitBlockResults[i]);
+            bitcoinRpcConnector.setLatencyMs(i == 0 ? 0L : SLOW_LATENCY_MS); // Only the first node responds quickly.
+            rpcConfigurations.add(new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i));
+        }
+        return rpcConfigurations;
+    }
+
+    @Test
+    public void should_return_upon_first_acceptance_and_propagate_in_background() throws Exception {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(true, true, false);
+        final ExecutorService executorService = Executors.newFixedThreadPool(rpcConfigurations.getCount());
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        final BlockSubmission blockSubmission = new BlockSubmission(executorService, new MutableBlock(), new BlockSubmission.Callback() {
+            @Override
+            public void onComplete(final BlockSubmission blockSubmission) {
+                completionLatch.countDown();
+            }
+        });
+
+        // Action
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        final Boolean wasAccepted = blockSubmission.execute(rpcConfigurations);
+        nanoTimer.stop();
+
+        final Boolean didComplete = completionLatch.await(SLOW_LATENCY_MS * 4L, TimeUnit.MILLISECONDS);
+        executorService.shutdown();
+
+        // Assert
+        Assert.assertTrue(wasAccepted);
+        Assert.assertTrue(nanoTimer.getMillisecondsElapsed() < SLOW_LATENCY_MS);
+
+        Assert.assertTrue(didComplete);
+        Assert.assertEquals(Integer.valueOf(2), blockSubmission.getAcceptCount());
+        Assert.assertEquals(Integer.valueOf(1), blockSubmission.getRejectCount());
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            Assert.assertEquals(Long.valueOf(1L), rpcConfiguration.getNodeStatistics().getBlockSubmissionLatencyHistogram().getSampleCount());
+        }
+    }
+
+    @Test
+    public void should_wait_for_every_node_when_no_node_accepts() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(false, null, false);
+        final ExecutorService executorService = Executors.newFixedThreadPool(rpcConfigurations.getCount());
+        final BlockSubmission blockSubmission = new BlockSubmission(executorService, new MutableBlock(), null);
+
+        // Action
+        final Boolean wasAccepted = blockSubmission.execute(rpcConfigurations);
+        executorService.shutdown();
+
+        // Assert
+        Assert.assertFalse(wasAccepted);
+        Assert.assertEquals(Integer.valueOf(2), blockSubmission.getRejectCount());
+        Assert.assertEquals(Integer.valueOf(1), blockSubmission.getFailureCount());
+        Assert.assertNull(blockSubmission.getFirstAcceptMs());
+    }
+
+    @Test
+    public void should_render_submit_block_payload_from_request_hexdata() {
+        // Setup
+        final byte[] requestBytes = "{\"method\":\"submitblock\",\"params\":[\"0100AAFF\"],\"id\":7}".getBytes(StandardCharsets.UTF_8);
+        final long paramsRange = JsonScanner.findMember(requestBytes, 0, requestBytes.length, "params");
+        final long blockHexRange = JsonScanner.findElement(requestBytes, paramsRange, 0);
+
+        // Action
+        final byte[] payload = BlockSubmission.createPayload(requestBytes, blockHexRange);
+
+        // Assert
+        Assert.assertEquals("{\"jsonrpc\":\"1.0\",\"id\":\"bitbalancer\",\"method\":\"submitblock\",\"params\":[\"0100AAFF\"]}", new String(payload, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,159 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.node.selector.HashMapNodeSelector;
+import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelectorTests;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.bitcoin.rpc.BlockTemplate;
+import com.softwareverde.bitcoin.rpc.MutableBlockTemplate;
+import com.softwareverde.bitcoin.transaction.MutableTransaction;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.timer.NanoTimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockTemplateManagerTests {
+    protected static final Long LATENCY_MS = 50L;
+    protected static final Sha256Hash PREVIOUS_BLOCK_HASH = Sha256Hash.fromHexString("000000000000000001C34C2B2A6E6ACB2D2C8E60C30EEE53AEE4D5A3A4B1F1A2");
+
+    protected static MutableList<FakeBitcoinRpcConnector> _createBitcoinRpcConnectors(final Integer nodeCount) {
+        final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors = new MutableList<>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            final MutableBlockTemplate blockTemplate = new MutableBlockTemplate();
+            blockTemplate.setBlockHeight(2L);
+            bitcoinRpcConnector.setBlockTemplate(blockTemplate);
+            bitcoinRpcConnector.setLatencyMs(LATENCY_MS);
+            bitcoinRpcConnectors.add(bitcoinRpcConnector);
+        }
+        return bitcoinRpcConnectors;
+    }
+
+    protected static MutableBlockTemplate _createBlockTemplate(final Long... transactionVersions) {
+        final MutableBlockTemplate blockTemplate = new MutableBlockTemplate();
+        blockTemplate.setBlockHeight(2L);
+        blockTemplate.setPreviousBlockHash(PREVIOUS_BLOCK_HASH);
+        for (final Long transactionVersion : transactionVersions) {
+            final MutableTransaction transaction = new MutableTransaction(); // Each version produces a distinct transaction hash.
+            transaction.setVersion(transactionVersion);
+            blockTemplate.addTransaction(transaction, 0L, 0);
+        }
+        return blockTemplate;
+    }
+
+    protected static void _setBlockTemplate(final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors, final BlockTemplate blockTemplate) {
+        for (final FakeBitcoinRpcConnector bitcoinRpcConnector : bitcoinRpcConnectors) {
+            bitcoinRpcConnector.setBlockTemplate(blockTemplate);
+        }
+    }
+
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors) {
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(bitcoinRpcConnectors.getCount());
+        int i = 0;
+        for (final FakeBitcoinRpcConnector bitcoinRpcConnector : bitcoinRpcConnectors) {
+            final RpcConfiguration rpcConfiguration = new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i);
+            rpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(1L));
+            rpcConfigurations.add(rpcConfiguration);
+            i += 1;
+        }
+        return rpcConfigurations;
+    }
+
+    @Test
+    public void should_cross_validate_templates_concurrently() {
+        for (final Integer nodeCount : new Integer[]{ 3, 8, 20 }) {
+            // Setup
+            final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors = _createBitcoinRpcConnectors(nodeCount);
+            final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(bitcoinRpcConnectors);
+            final BlockTemplateManager blockTemplateManager = new BlockTemplateManager(new HashMapNodeSelector(rpcConfigurations));
+
+            // Validating every template serially (once per template) takes at least one fetch plus one validation pass per node.
+            final long serialDurationMs = (LATENCY_MS * (1L + nodeCount));
+
+            // Action
+            final NanoTimer nanoTimer = new NanoTimer();
+            nanoTimer.start();
+            final BlockTemplate blockTemplate = blockTemplateManager._onGetBlockTemplateFailure();
+            nanoTimer.stop();
+
+            // Assert
+            final double durationMs = nanoTimer.getMillisecondsElapsed();
+            Logger.info("Time-to-template with " + nodeCount + " nodes: " + durationMs + "ms.");
+            Assert.assertNotNull(blockTemplate);
+            Assert.assertTrue(durationMs < serialDurationMs);
+        }
+    }
+
+    @Test
+    public void should_not_select_template_considered_invalid() {
+        // Setup
+        final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors = _createBitcoinRpcConnectors(3);
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(bitcoinRpcConnectors);
+
+        final FakeBitcoinRpcConnector preferredBitcoinRpcConnector = bitcoinRpcConnectors.get(0);
+        final MutableBlockTemplate invalidBlockTemplate = new MutableBlockTemplate();
+        preferredBitcoinRpcConnector.setBlockTemplate(invalidBlockTemplate);
+        preferredBitcoinRpcConnector.setLatencyMs(0L); // The invalid template is received first.
+        for (final FakeBitcoinRpcConnector bitcoinRpcConnector : bitcoinRpcConnectors) {
+            bitcoinRpcConnector.addInvalidBlockTemplate(invalidBlockTemplate);
+        }
+
+        final BlockTemplateManager blockTemplateManager = new BlockTemplateManager(new HashMapNodeSelector(rpcConfigurations));
+        blockTemplateManager.setValidationQuorum(2);
+
+        // Action
+        final BlockTemplate blockTemplate = blockTemplateManager._onGetBlockTemplateFailure();
+
+        // Assert
+        Assert.assertNotNull(blockTemplate);
+        Assert.assertNotSame(invalidBlockTemplate, blockTemplate);
+    }
+
+    @Test
+    public void should_revalidate_template_with_unvalidated_transactions() {
+        // Setup
+        final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors = _createBitcoinRpcConnectors(3);
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(bitcoinRpcConnectors);
+        final BlockTemplateManager blockTemplateManager = new BlockTemplateManager(new HashMapNodeSelector(rpcConfigurations));
+
+        _setBlockTemplate(bitcoinRpcConnectors, _createBlockTemplate(1L, 2L, 3L, 4L));
+        blockTemplateManager.getBlockTemplate();
+
+        final BlockTemplate changedBlockTemplate = _createBlockTemplate(1L, 2L, 3L, 4L, 5L); // Extends the validated template with an unvalidated transaction.
+        _setBlockTemplate(bitcoinRpcConnectors, changedBlockTemplate);
+
+        // Action
+        final BlockTemplate blockTemplate = blockTemplateManager.getBlockTemplate();
+
+        // Assert
+        Assert.assertSame(changedBlockTemplate, blockTemplate);
+        for (final FakeBitcoinRpcConnector bitcoinRpcConnector : bitcoinRpcConnectors) {
+            Assert.assertEquals(Integer.valueOf(1), bitcoinRpcConnector.getValidationCount(changedBlockTemplate));
+        }
+    }
+
+    @Test
+    public void should_reuse_validation_for_subset_of_validated_template() {
+        // Setup
+        final MutableList<FakeBitcoinRpcConnector> bitcoinRpcConnectors = _createBitcoinRpcConnectors(3);
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(bitcoinRpcConnectors);
+        final BlockTemplateManager blockTemplateManager = new BlockTemplateManager(new HashMapNodeSelector(rpcConfigurations));
+
+        _setBlockTemplate(bitcoinRpcConnectors, _createBlockTemplate(1L, 2L, 3L));
+        blockTemplateManager.getBlockTemplate();
+
+        final BlockTemplate subsetBlockTemplate = _createBlockTemplate(1L, 3L); // e.g. transaction 2 was evicted from the mempool.
+        _setBlockTemplate(bitcoinRpcConnectors, subsetBlockTemplate);
+
+        // Action
+        final BlockTemplate blockTemplate = blockTemplateManager.getBlockTemplate();
+
+        // Assert
+        Assert.assertSame(subsetBlockTemplate, blockTemplate);
+        for (final FakeBitcoinRpcConnector bitcoinRpcConnector : bitcoinRpcConnectors) {
+            Assert.assertEquals(Integer.valueOf(0), bitcoinRpcConnector.getValidationCount(subsetBlockTemplate));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.cache.PrerenderedResponse;
+import com.softwareverde.bitbalancer.proxy.node.selector.HashMapNodeSelector;
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitcoin.block.header.MutableBlockHeader;
+import com.softwareverde.bitcoin.block.header.difficulty.Difficulty;
+import com.softwareverde.bitcoin.rpc.BlockTemplate;
+import com.softwareverde.bitcoin.rpc.MutableBlockTemplate;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.util.Container;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CachingBlockTemplateManagerTests {
+    protected static final Sha256Hash GENESIS_BLOCK_HASH = Sha256Hash.fromHexString("000000000000000001DA2C2A5B3D3F1C51D1A29E35A5C3D2E8CF1E6F2B6E3A9C");
+
+    /**
+     * Generates empty templates without the ASERT reference block.
+     */
+    protected static class FakeCachingBlockTemplateManager extends CachingBlockTemplateManager {
+        public FakeCachingBlockTemplateManager() {
+            super(new HashMapNodeSelector(new MutableList<RpcConfiguration>()));
+        }
+
+        @Override
+        protected BlockTemplate _generateEmptyBlock(final ChainHead chainHead) {
+            if ( (chainHead == null) || (chainHead.blockHeader == null) || (chainHead.blockHeight == null) ) { return null; }
+
+            final MutableBlockTemplate blockTemplate = new MutableBlockTemplate();
+            blockTemplate.setPreviousBlockHash(chainHead.blockHash);
+            blockTemplate.setBlockHeight(chainHead.blockHeight + 1L);
+            return blockTemplate;
+        }
+
+        /**
+         * Waits for the chain-head thread to apply the pending notifications.
+         */
+        public void waitForChainHead() throws Exception {
+            _chainHeadExecutorService.submit(new Runnable() {
+                @Override
+                public void run() { }
+            }).get();
+        }
+    }
+
+    protected static MutableBlockHeader _createBlockHeader(final Sha256Hash previousBlockHash) {
+        final MutableBlockHeader blockHeader = new MutableBlockHeader();
+        blockHeader.setPreviousBlockHash(previousBlockHash);
+        blockHeader.setDifficulty(Difficulty.BASE_DIFFICULTY);
+        blockHeader.setTimestamp(1600000000L);
+        blockHeader.setNonce(0L);
+        return blockHeader;
+    }
+
+    protected static BlockTemplateManager.LongPollCallback _createLongPollCallback(final Container<PrerenderedResponse> responseContainer, final CountDownLatch completionLatch) {
+        return new BlockTemplateManager.LongPollCallback() {
+            @Override
+            public void onBlockTemplateResponse(final PrerenderedResponse blockTemplateResponse) {
+                responseContainer.value = blockTemplateResponse;
+                completionLatch.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void should_keep_empty_template_when_block_hash_follows_block_header() throws Exception {
+        // Setup
+        final FakeCachingBlockTemplateManager blockTemplateManager = new FakeCachingBlockTemplateManager();
+        final MutableBlockHeader parentBlockHeader = _createBlockHeader(GENESIS_BLOCK_HASH);
+        blockTemplateManager._chainHead = new CachingBlockTemplateManager.ChainHead(parentBlockHeader, 100L);
+
+        final MutableBlockHeader blockHeader = _createBlockHeader(parentBlockHeader.getHash());
+
+        // Action
+        blockTemplateManager.onNewBlockHeader(blockHeader, null); // BLOCK notification...
+        blockTemplateManager.waitForChainHead();
+        final CachingBlockTemplateManager.CachedBlockTemplate emptyBlockTemplate = blockTemplateManager._cachedBlockTemplate.get();
+
+        blockTemplateManager.onNewBlock(null, new ChainHeight(101L, null, blockHeader.getHash()), null); // BLOCK_HASH notification, without its header...
+        blockTemplateManager.onNewBlock(null, new ChainHeight(101L, null), null); // BLOCK_HASH notification, without its header or hash...
+        blockTemplateManager.waitForChainHead();
+
+        // Assert
+        Assert.assertNotNull(emptyBlockTemplate);
+        Assert.assertEquals(blockHeader.getHash(), emptyBlockTemplate.blockTemplate.getPreviousBlockHash());
+        Assert.assertSame(emptyBlockTemplate, blockTemplateManager._cachedBlockTemplate.get());
+        Assert.assertSame(blockHeader, blockTemplateManager._chainHead.blockHeader);
+        Assert.assertEquals(Long.valueOf(101L), blockTemplateManager._chainHead.blockHeight);
+    }
+
+    @Test
+    public void should_apply_block_header_received_after_block_hash() throws Exception {
+        // Setup
+        final FakeCachingBlockTemplateManager blockTemplateManager = new FakeCachingBlockTemplateManager();
+        final MutableBlockHeader parentBlockHeader = _createBlockHeader(GENESIS_BLOCK_HASH);
+        blockTemplateManager._chainHead = new CachingBlockTemplateManager.ChainHead(parentBlockHeader, 100L);
+
+        final MutableBlockHeader blockHeader = _createBlockHeader(parentBlockHeader.getHash());
+
+        // Action
+        blockTemplateManager.onNewBlock(null, new ChainHeight(101L, null, blockHeader.getHash()), null); // BLOCK_HASH notification...
+        blockTemplateManager.waitForChainHead();
+        final CachingBlockTemplateManager.ChainHead hashOnlyChainHead = blockTemplateManager._chainHead;
+
+        blockTemplateManager.onNewBlockHeader(blockHeader, null); // BLOCK notification...
+        blockTemplateManager.waitForChainHead();
+
+        // Assert
+        Assert.assertEquals(blockHeader.getHash(), hashOnlyChainHead.blockHash);
+        Assert.assertEquals(Long.valueOf(101L), hashOnlyChainHead.blockHeight);
+
+        final CachingBlockTemplateManager.CachedBlockTemplate cachedBlockTemplate = blockTemplateManager._cachedBlockTemplate.get();
+        Assert.assertNotNull(cachedBlockTemplate);
+        Assert.assertEquals(blockHeader.getHash(), cachedBlockTemplate.blockTemplate.getPreviousBlockHash());
+        Assert.assertSame(blockHeader, blockTemplateManager._chainHead.blockHeader);
+        Assert.assertEquals(Long.valueOf(101L), blockTemplateManager._chainHead.blockHeight);
+    }
+    @Test
+    public void long_poll_should_wait_for_next_template_generation() throws Exception {
+        // Setup
+        final CachingBlockTemplateManager blockTemplateManager = new CachingBlockTemplateManager(new HashMapNodeSelector(new MutableList<RpcConfiguration>()));
+        blockTemplateManager.setLongPollRefreshIntervalMs(0L);
+
+        final CachingBlockTemplateManager.CachedBlockTemplate cachedBlockTemplate = blockTemplateManager._createCachedBlockTemplate(new MutableBlockTemplate(), false);
+        blockTemplateManager._cachedBlockTemplate.set(cachedBlockTemplate);
+
+        final Container<PrerenderedResponse> responseContainer = new Container<>();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        final BlockTemplateManager.LongPollCallback callback = _createLongPollCallback(responseContainer, completionLatch);
+
+        final Boolean isOutdatedLongPollWaiting = blockTemplateManager.waitForBlockTemplate("outdated", callback);
+        final Boolean isCurrentLongPollWaiting = blockTemplateManager.waitForBlockTemplate(cachedBlockTemplate.longPollId, callback);
+        final Integer waitingLongPollCount = blockTemplateManager.getLongPollCount();
+
+        // Action
+        final CachingBlockTemplateManager.CachedBlockTemplate nextCachedBlockTemplate = blockTemplateManager._createCachedBlockTemplate(new MutableBlockTemplate(), false);
+        blockTemplateManager._cachedBlockTemplate.set(nextCachedBlockTemplate);
+        blockTemplateManager._onBlockTemplateCached(nextCachedBlockTemplate);
+        final Boolean wasCompleted = completionLatch.await(5L, TimeUnit.SECONDS); // Completed on the long-poll thread...
+
+        // Assert
+        Assert.assertTrue(wasCompleted);
+        Assert.assertFalse(isOutdatedLongPollWaiting);
+        Assert.assertTrue(isCurrentLongPollWaiting);
+        Assert.assertEquals(Integer.valueOf(1), waitingLongPollCount);
+        Assert.assertNotEquals(cachedBlockTemplate.longPollId, nextCachedBlockTemplate.longPollId);
+        Assert.assertSame(nextCachedBlockTemplate.response, responseContainer.value);
+        Assert.assertEquals(Integer.valueOf(0), blockTemplateManager.getLongPollCount());
+    }
+
+    @Test
+    public void long_poll_should_be_answered_with_current_template_after_max_wait() throws Exception {
+        // Setup
+        final CachingBlockTemplateManager blockTemplateManager = new CachingBlockTemplateManager(new HashMapNodeSelector(new MutableList<RpcConfiguration>()));
+        blockTemplateManager.setLongPollMaxWaitMs(0L);
+
+        final CachingBlockTemplateManager.CachedBlockTemplate cachedBlockTemplate = blockTemplateManager._createCachedBlockTemplate(new MutableBlockTemplate(), false);
+        blockTemplateManager._cachedBlockTemplate.set(cachedBlockTemplate);
+
+        final Container<PrerenderedResponse> responseContainer = new Container<>();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        blockTemplateManager.waitForBlockTemplate(cachedBlockTemplate.longPollId, _createLongPollCallback(responseContainer, completionLatch));
+
+        // Action
+        blockTemplateManager._completeExpiredLongPolls();
+        final Boolean wasCompleted = completionLatch.await(5L, TimeUnit.SECONDS);
+
+        // Assert
+        Assert.assertTrue(wasCompleted);
+        Assert.assertSame(cachedBlockTemplate.response, responseContainer.value);
+        Assert.assertEquals(Integer.valueOf(0), blockTemplateManager.getLongPollCount());
+    }
+
+    @Test
+    public void long_poll_should_be_answered_immediately_once_max_long_poll_count_is_reached() {
+        // Setup
+        final CachingBlockTemplateManager blockTemplateManager = new CachingBlockTemplateManager(new HashMapNodeSelector(new MutableList<RpcConfiguration>()));
+        blockTemplateManager.setMaxLongPollCount(2);
+
+        final CachingBlockTemplateManager.CachedBlockTemplate cachedBlockTemplate = blockTemplateManager._createCachedBlockTemplate(new MutableBlockTemplate(), false);
+        blockTemplateManager._cachedBlockTemplate.set(cachedBlockTemplate);
+
+        final BlockTemplateManager.LongPollCallback callback = _createLongPollCallback(new Container<PrerenderedResponse>(), new CountDownLatch(1));
+
+        // Action
+        final Boolean isFirstLongPollWaiting = blockTemplateManager.waitForBlockTemplate(cachedBlockTemplate.longPollId, callback);
+        final Boolean isSecondLongPollWaiting = blockTemplateManager.waitForBlockTemplate(cachedBlockTemplate.longPollId, callback);
+        final Boolean isThirdLongPollWaiting = blockTemplateManager.waitForBlockTemplate(cachedBlockTemplate.longPollId, callback);
+
+        // Assert
+        Assert.assertTrue(isFirstLongPollWaiting);
+        Assert.assertTrue(isSecondLongPollWaiting);
+        Assert.assertFalse(isThirdLongPollWaiting);
+        Assert.assertEquals(Integer.valueOf(2), blockTemplateManager.getLongPollCount());
+    }
+}
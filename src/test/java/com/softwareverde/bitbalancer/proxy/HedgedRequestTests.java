@@ -0,0 +1,88 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.node.selector.HashMapNodeSelector;
+import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelectorTests;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.bitcoin.rpc.core.MutableRequest;
+import com.softwareverde.bitcoin.rpc.monitor.Monitor;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.http.server.servlet.response.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class HedgedRequestTests {
+    protected static RpcConfiguration _createRpcConfiguration(final String host, final Long latencyMs) {
+        final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector(host);
+        bitcoinRpcConnector.setLatencyMs(latencyMs);
+        return new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, 0);
+    }
+
+    @Test
+    public void should_not_record_health_of_canceled_request() {
+        // Setup
+        final RpcConfiguration primaryRpcConfiguration = _createRpcConfiguration("primary", 2000L);
+        final RpcConfiguration hedgeRpcConfiguration = _createRpcConfiguration("hedge", 0L);
+
+        final NodeHealth primaryNodeHealth = primaryRpcConfiguration.getNodeHealth();
+        primaryNodeHealth.onRequestFailure();
+        primaryNodeHealth.onRequestFailure();
+
+        final RpcProxyHandler rpcProxyHandler = new RpcProxyHandler(null, null, null);
+        final MutableRequest request = new MutableRequest();
+        final HedgedRequest hedgedRequest = new HedgedRequest(primaryRpcConfiguration, hedgeRpcConfiguration, new HedgedRequest.RequestHandler() {
+            @Override
+            public Response sendRequest(final RpcConfiguration rpcConfiguration, final Monitor monitor, final HedgedRequest hedgedRequest) {
+                return rpcProxyHandler._sendRequest(rpcConfiguration, request, monitor, hedgedRequest, "getblockcount", null);
+            }
+        });
+        final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+        // Action
+        final HedgedRequest.Result result = hedgedRequest.execute(executorService, 10L);
+        executorService.shutdown();
+
+        // Assert
+        Assert.assertTrue(hedgedRequest.wasHedged());
+        Assert.assertTrue(result.isSuccessful);
+        Assert.assertEquals(hedgeRpcConfiguration, result.rpcConfiguration);
+
+        // The canceled primary request neither reset nor added to the primary node's consecutive failures.
+        Assert.assertEquals(Integer.valueOf(2), primaryNodeHealth.getConsecutiveFailureCount());
+        Assert.assertEquals(Integer.valueOf(0), primaryRpcConfiguration.getNodeStatistics().getOutstandingRequestCount());
+        Assert.assertEquals(Double.valueOf(0D), primaryRpcConfiguration.getNodeStatistics().getPeakEwmaLatencyMs());
+    }
+
+    @Test
+    public void should_only_hedge_to_nodes_at_best_chain_height() {
+        // Setup
+        final RpcConfiguration primaryRpcConfiguration = _createRpcConfiguration("primary", 0L);
+        final RpcConfiguration laggingRpcConfiguration = _createRpcConfiguration("lagging", 0L);
+        final RpcConfiguration upToDateRpcConfiguration = _createRpcConfiguration("up-to-date", 0L);
+        primaryRpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(2L));
+        laggingRpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(1L));
+        upToDateRpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(2L));
+
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>();
+        rpcConfigurations.add(primaryRpcConfiguration);
+        rpcConfigurations.add(laggingRpcConfiguration);
+        rpcConfigurations.add(upToDateRpcConfiguration);
+        final RpcProxyHandler rpcProxyHandler = new RpcProxyHandler(new HashMapNodeSelector(rpcConfigurations), null, null);
+
+        final MutableList<RpcConfiguration> attemptedConfigurations = new MutableList<>();
+        attemptedConfigurations.add(primaryRpcConfiguration);
+
+        // Action
+        final RpcConfiguration hedgeRpcConfiguration = rpcProxyHandler._selectHedgeNode(attemptedConfigurations);
+        attemptedConfigurations.add(upToDateRpcConfiguration);
+        final RpcConfiguration fallbackHedgeRpcConfiguration = rpcProxyHandler._selectHedgeNode(attemptedConfigurations);
+
+        // Assert
+        Assert.assertEquals(upToDateRpcConfiguration, hedgeRpcConfiguration);
+        Assert.assertNull(fallbackHedgeRpcConfiguration); // Only the lagging node remains...
+    }
+}
@@ -0,0 +1,128 @@
+package com.softwareverde.bitbalancer.proxy;
+
+import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelectorTests;
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.bitcoin.rpc.MutableBlockTemplate;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.util.timer.NanoTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class TemplateValidationQuorumTests {
+    protected static final Long LATENCY_MS = 50L;
+    protected static final Long STRAGGLER_LATENCY_MS = 5000L;
+
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final Integer nodeCount, final ChainHeight chainHeight) {
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            bitcoinRpcConnector.setLatencyMs(LATENCY_MS);
+
+            final RpcConfiguration rpcConfiguration = new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i);
+            rpcConfiguration.setChainHeight(chainHeight);
+            rpcConfigurations.add(rpcConfiguration);
+        }
+        return rpcConfigurations;
+    }
+
+    protected static FakeBitcoinRpcConnector _getBitcoinRpcConnector(final RpcConfiguration rpcConfiguration) {
+        return (FakeBitcoinRpcConnector) rpcConfiguration.getBitcoinRpcConnector();
+    }
+
+    protected final ChainHeight _chainHeight = NodeSelectorTests.makeFakeChainHeight(1L);
+    protected final MutableBlockTemplate _blockTemplate = new MutableBlockTemplate();
+    protected ExecutorService _executorService;
+
+    protected TemplateValidationQuorum _createQuorum(final RpcConfiguration templateRpcConfiguration, final Integer requiredValidCount, final Set<RpcConfiguration> validatingRpcConfigurations) {
+        return new TemplateValidationQuorum(_executorService, _blockTemplate, templateRpcConfiguration, _chainHeight, requiredValidCount, validatingRpcConfigurations);
+    }
+
+    @Before
+    public void before() {
+        _executorService = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void after() {
+        _executorService.shutdownNow();
+    }
+
+    @Test
+    public void should_be_valid_once_quorum_is_reached_without_validating_every_node() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(6, _chainHeight);
+        final Set<RpcConfiguration> validatingRpcConfigurations = ConcurrentHashMap.newKeySet();
+        final TemplateValidationQuorum templateValidationQuorum = _createQuorum(rpcConfigurations.get(0), 2, validatingRpcConfigurations);
+
+        // Action
+        final TemplateValidationQuorum.Outcome outcome = templateValidationQuorum.execute(rpcConfigurations);
+
+        // Assert
+        Assert.assertEquals(TemplateValidationQuorum.Outcome.VALID, outcome);
+        Assert.assertEquals(Integer.valueOf(2), templateValidationQuorum.getValidCount());
+        Assert.assertEquals(2, validatingRpcConfigurations.size());
+
+        int validationCount = 0;
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            validationCount += _getBitcoinRpcConnector(rpcConfiguration).getValidationCount(_blockTemplate);
+        }
+        Assert.assertEquals(3, validationCount); // The quorum plus one spare...
+    }
+
+    @Test
+    public void should_be_invalid_on_first_rejection() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3, _chainHeight);
+        final FakeBitcoinRpcConnector rejectingBitcoinRpcConnector = _getBitcoinRpcConnector(rpcConfigurations.get(0));
+        rejectingBitcoinRpcConnector.addInvalidBlockTemplate(_blockTemplate);
+        rejectingBitcoinRpcConnector.setLatencyMs(0L);
+        for (int i = 1; i < rpcConfigurations.getCount(); ++i) {
+            _getBitcoinRpcConnector(rpcConfigurations.get(i)).setLatencyMs(STRAGGLER_LATENCY_MS);
+        }
+
+        final TemplateValidationQuorum templateValidationQuorum = _createQuorum(rpcConfigurations.get(0), 2, ConcurrentHashMap.<RpcConfiguration>newKeySet());
+
+        // Action
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        final TemplateValidationQuorum.Outcome outcome = templateValidationQuorum.execute(rpcConfigurations);
+        nanoTimer.stop();
+
+        // Assert
+        Assert.assertEquals(TemplateValidationQuorum.Outcome.INVALID, outcome);
+        Assert.assertEquals(Integer.valueOf(1), templateValidationQuorum.getInvalidCount());
+        Assert.assertTrue(nanoTimer.getMillisecondsElapsed() < STRAGGLER_LATENCY_MS);
+    }
+
+    @Test
+    public void should_cancel_straggler_without_lowering_its_validation_estimate() throws Exception {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3, _chainHeight);
+        final RpcConfiguration stragglerRpcConfiguration = rpcConfigurations.get(2);
+        _getBitcoinRpcConnector(stragglerRpcConfiguration).setLatencyMs(STRAGGLER_LATENCY_MS);
+        stragglerRpcConfiguration.getNodeStatistics().onTemplateValidated(STRAGGLER_LATENCY_MS);
+
+        final TemplateValidationQuorum templateValidationQuorum = _createQuorum(rpcConfigurations.get(0), 2, ConcurrentHashMap.<RpcConfiguration>newKeySet());
+
+        // Action
+        final TemplateValidationQuorum.Outcome outcome = templateValidationQuorum.execute(rpcConfigurations);
+        _executorService.shutdown();
+        final Boolean stragglerWasCanceled = _executorService.awaitTermination(1L, TimeUnit.SECONDS);
+
+        // Assert
+        Assert.assertEquals(TemplateValidationQuorum.Outcome.VALID, outcome);
+        Assert.assertEquals(Integer.valueOf(1), _getBitcoinRpcConnector(stragglerRpcConfiguration).getValidationCount(_blockTemplate));
+        Assert.assertTrue(stragglerWasCanceled);
+        Assert.assertEquals(Double.valueOf(STRAGGLER_LATENCY_MS.doubleValue()), stragglerRpcConfiguration.getNodeStatistics().getTemplateValidationMs());
+    }
+}
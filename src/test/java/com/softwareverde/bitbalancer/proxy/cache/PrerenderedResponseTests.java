@@ -0,0 +1,75 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class PrerenderedResponseTests {
+    protected static byte[] _gunzip(final byte[] bytes) throws Exception {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (final GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            final byte[] buffer = new byte[4096];
+            int byteCount;
+            while ((byteCount = inputStream.read(buffer)) >= 0) {
+                byteArrayOutputStream.write(buffer, 0, byteCount);
+            }
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Test
+    public void should_splice_id_into_rendered_response() {
+        // Setup
+        final PrerenderedResponse prerenderedResponse = new PrerenderedResponse("{\"height\":1}".getBytes(StandardCharsets.UTF_8), false);
+
+        // Action
+        final byte[] bytes = prerenderedResponse.getBytes("\"abc\"".getBytes(StandardCharsets.UTF_8));
+
+        // Assert
+        Assert.assertEquals("{\"result\":{\"height\":1},\"error\":null,\"id\":\"abc\"}", new String(bytes, StandardCharsets.UTF_8));
+        Assert.assertNull(prerenderedResponse.getGzipBytes("1".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void gzip_bytes_should_decompress_to_rendered_response() throws Exception {
+        // Setup
+        final StringBuilder stringBuilder = new StringBuilder("[");
+        for (int i = 0; i < 10000; ++i) {
+            stringBuilder.append(i > 0 ? "," : "");
+            stringBuilder.append("\"");
+            stringBuilder.append(Integer.toHexString(i * 7919));
+            stringBuilder.append("\"");
+        }
+        stringBuilder.append("]");
+        final PrerenderedResponse prerenderedResponse = new PrerenderedResponse(stringBuilder.toString().getBytes(StandardCharsets.UTF_8), true);
+
+        final StringBuilder longIdBuilder = new StringBuilder("\"");
+        for (int i = 0; i < 70000; ++i) {
+            longIdBuilder.append("a");
+        }
+        longIdBuilder.append("\"");
+
+        for (final String id : new String[]{ "1", "null", longIdBuilder.toString() }) {
+            final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+
+            // Action
+            final byte[] gzipBytes = prerenderedResponse.getGzipBytes(idBytes);
+
+            // Assert
+            Assert.assertArrayEquals(prerenderedResponse.getBytes(idBytes), _gunzip(gzipBytes));
+        }
+    }
+
+    @Test
+    public void should_parse_accept_encoding() {
+        Assert.assertTrue(PrerenderedResponse.acceptsGzip("gzip, deflate"));
+        Assert.assertTrue(PrerenderedResponse.acceptsGzip("deflate, GZIP;q=0.5"));
+        Assert.assertFalse(PrerenderedResponse.acceptsGzip("gzip;q=0"));
+        Assert.assertFalse(PrerenderedResponse.acceptsGzip("deflate"));
+        Assert.assertFalse(PrerenderedResponse.acceptsGzip(null));
+    }
+}
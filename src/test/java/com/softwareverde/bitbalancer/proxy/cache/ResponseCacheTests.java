@@ -0,0 +1,138 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import com.softwareverde.bitbalancer.proxy.rpc.JsonScanner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class ResponseCacheTests {
+    protected static byte[] toBytes(final String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected static String _putBlock(final ResponseCache responseCache, final Integer blockIndex, final Integer resultByteCount) {
+        final byte[] requestBytes = toBytes("{\"id\":1,\"method\":\"getblock\",\"params\":[\"" + blockIndex + "\", 0]}");
+        final long paramsRange = JsonScanner.findMember(requestBytes, "params");
+        final String cacheKey = ResponseCache.getCacheKey("getblock", requestBytes, paramsRange);
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < resultByteCount; ++i) {
+            stringBuilder.append('0');
+        }
+
+        final byte[] responseBytes = toBytes("{\"result\":\"" + stringBuilder + "\",\"error\":null,\"id\":1}");
+        responseCache.put(cacheKey, "getblock", ResponseCache.getCachePolicy("getblock", requestBytes, paramsRange), responseCache.getChainTipGeneration(), responseBytes, toBytes("1"));
+        return cacheKey;
+    }
+
+    @Test
+    public void should_return_cached_response_with_new_request_id() {
+        // Setup
+        final ResponseCache responseCache = new ResponseCache();
+        final byte[] requestBytes = toBytes("{\"jsonrpc\":\"1.0\",\"id\":1,\"method\":\"getblockhash\",\"params\":[100]}");
+        final long paramsRange = JsonScanner.findMember(requestBytes, "params");
+        final String cacheKey = ResponseCache.getCacheKey("getblockhash", requestBytes, paramsRange);
+        final ResponseCache.CachePolicy cachePolicy = ResponseCache.getCachePolicy("getblockhash", requestBytes, paramsRange);
+        final Long chainTipGeneration = responseCache.getChainTipGeneration();
+
+        responseCache.put(cacheKey, "getblockhash", cachePolicy, chainTipGeneration, toBytes("{\"result\":\"00ff\",\"error\":null,\"id\":1}\n"), toBytes("1"));
+
+        // Action
+        final byte[] cachedResponse = responseCache.get(cacheKey, toBytes("\"abc\""));
+
+        // Assert
+        Assert.assertEquals(ResponseCache.CachePolicy.CHAIN_TIP, cachePolicy);
+        Assert.assertEquals("{\"result\":\"00ff\",\"error\":null,\"id\":\"abc\"}\n", new String(cachedResponse, StandardCharsets.UTF_8));
+        Assert.assertEquals(Long.valueOf(1L), responseCache.getHitCount());
+    }
+
+    @Test
+    public void should_invalidate_chain_tip_responses_but_retain_immutable_responses() {
+        // Setup
+        final ResponseCache responseCache = new ResponseCache();
+
+        final byte[] blockHashRequestBytes = toBytes("{\"id\":1,\"method\":\"getblockhash\",\"params\":[100]}");
+        final long blockHashParamsRange = JsonScanner.findMember(blockHashRequestBytes, "params");
+        final String blockHashCacheKey = ResponseCache.getCacheKey("getblockhash", blockHashRequestBytes, blockHashParamsRange);
+
+        final byte[] blockRequestBytes = toBytes("{\"id\":2,\"method\":\"getblock\",\"params\":[\"00ff\", 0]}");
+        final long blockParamsRange = JsonScanner.findMember(blockRequestBytes, "params");
+        final String blockCacheKey = ResponseCache.getCacheKey("getblock", blockRequestBytes, blockParamsRange);
+
+        final Long chainTipGeneration = responseCache.getChainTipGeneration();
+        responseCache.put(blockHashCacheKey, "getblockhash", ResponseCache.getCachePolicy("getblockhash", blockHashRequestBytes, blockHashParamsRange), chainTipGeneration, toBytes("{\"result\":\"00ff\",\"error\":null,\"id\":1}"), toBytes("1"));
+        responseCache.put(blockCacheKey, "getblock", ResponseCache.getCachePolicy("getblock", blockRequestBytes, blockParamsRange), chainTipGeneration, toBytes("{\"result\":\"0100\",\"error\":null,\"id\":2}"), toBytes("2"));
+
+        // Action
+        responseCache.onChainTipChanged();
+
+        // Assert
+        Assert.assertNull(responseCache.get(blockHashCacheKey, toBytes("3")));
+        Assert.assertNotNull(responseCache.get(blockCacheKey, toBytes("4")));
+    }
+
+    @Test
+    public void should_not_cache_unconfirmed_transactions() {
+        // Setup
+        final ResponseCache responseCache = new ResponseCache();
+        final byte[] requestBytes = toBytes("{\"id\":1,\"method\":\"getrawtransaction\",\"params\":[\"00ff\", true]}");
+        final long paramsRange = JsonScanner.findMember(requestBytes, "params");
+        final String cacheKey = ResponseCache.getCacheKey("getrawtransaction", requestBytes, paramsRange);
+        final ResponseCache.CachePolicy cachePolicy = ResponseCache.getCachePolicy("getrawtransaction", requestBytes, paramsRange);
+
+        // Action
+        responseCache.put(cacheKey, "getrawtransaction", cachePolicy, responseCache.getChainTipGeneration(), toBytes("{\"result\":{\"txid\":\"00ff\"},\"error\":null,\"id\":1}"), toBytes("1"));
+
+        // Assert
+        Assert.assertNull(responseCache.get(cacheKey, toBytes("1")));
+        Assert.assertEquals(Integer.valueOf(0), responseCache.getEntryCount());
+    }
+
+    @Test
+    public void should_cache_response_larger_than_segment_share_of_budget() {
+        // Setup
+        final long maxByteCount = (64L * 1024L);
+        final ResponseCache responseCache = new ResponseCache(maxByteCount);
+
+        // Action
+        final String cacheKey = _putBlock(responseCache, 0, (int) (maxByteCount / 2L));
+
+        // Assert
+        Assert.assertNotNull(responseCache.get(cacheKey, toBytes("1")));
+        Assert.assertEquals(Integer.valueOf(1), responseCache.getEntryCount());
+    }
+
+    @Test
+    public void should_evict_from_other_segments_to_stay_within_budget() {
+        // Setup
+        final long maxByteCount = (64L * 1024L);
+        final ResponseCache responseCache = new ResponseCache(maxByteCount);
+        for (int i = 0; i < 32; ++i) {
+            _putBlock(responseCache, i, 1024);
+        }
+
+        // Action
+        final String cacheKey = _putBlock(responseCache, 32, (int) (maxByteCount - 1024L));
+
+        // Assert
+        Assert.assertNotNull(responseCache.get(cacheKey, toBytes("1")));
+        Assert.assertTrue(responseCache.getByteCount() <= maxByteCount);
+        Assert.assertEquals(Integer.valueOf(1), responseCache.getEntryCount()); // Every smaller entry was evicted...
+    }
+
+    @Test
+    public void should_not_cache_response_larger_than_budget() {
+        // Setup
+        final long maxByteCount = (64L * 1024L);
+        final ResponseCache responseCache = new ResponseCache(maxByteCount);
+        final String retainedCacheKey = _putBlock(responseCache, 0, 1024);
+
+        // Action
+        final String cacheKey = _putBlock(responseCache, 1, (int) maxByteCount);
+
+        // Assert
+        Assert.assertNull(responseCache.get(cacheKey, toBytes("1")));
+        Assert.assertNotNull(responseCache.get(retainedCacheKey, toBytes("1")));
+    }
+}
@@ -0,0 +1,132 @@
+package com.softwareverde.bitbalancer.proxy.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTests {
+    @Test
+    public void concurrent_identical_calls_should_share_one_execution() throws Exception {
+        // Setup
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final AtomicInteger executionCount = new AtomicInteger(0);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final int threadCount = 8;
+
+        final SingleFlight.Call<Integer> call = new SingleFlight.Call<Integer>() {
+            @Override
+            public Integer run() {
+                executionCount.incrementAndGet();
+                try {
+                    releaseLatch.await(5L, TimeUnit.SECONDS);
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return 7;
+            }
+        };
+
+        final AtomicInteger sharedCount = new AtomicInteger(0);
+        final AtomicInteger resultSum = new AtomicInteger(0);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final SingleFlight.Result<Integer> result = singleFlight.execute("getbestblockhash", call);
+                    resultSum.addAndGet(result.value);
+                    if (result.wasShared) {
+                        sharedCount.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // Action
+        while (singleFlight.getInFlightCount() < 1) {
+            Thread.sleep(1L);
+        }
+        Thread.sleep(50L); // Allow the remaining threads to join the in-flight call.
+        releaseLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        Assert.assertEquals(1, executionCount.get());
+        Assert.assertEquals((threadCount - 1), sharedCount.get());
+        Assert.assertEquals((threadCount * 7), resultSum.get());
+        Assert.assertEquals(Integer.valueOf(0), singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void calls_after_completion_should_execute_again() {
+        // Setup
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final AtomicInteger executionCount = new AtomicInteger(0);
+        final SingleFlight.Call<Integer> call = new SingleFlight.Call<Integer>() {
+            @Override
+            public Integer run() {
+                return executionCount.incrementAndGet();
+            }
+        };
+
+        // Action
+        final SingleFlight.Result<Integer> result0 = singleFlight.execute("getblockcount", call);
+        final SingleFlight.Result<Integer> result1 = singleFlight.execute("getblockcount", call);
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(1), result0.value);
+        Assert.assertEquals(Integer.valueOf(2), result1.value);
+        Assert.assertFalse(result0.wasShared);
+        Assert.assertFalse(result1.wasShared);
+        Assert.assertEquals(Long.valueOf(2L), singleFlight.getExecutedCount());
+    }
+
+    @Test
+    public void waiting_caller_should_receive_null_once_its_wait_expires() throws Exception {
+        // Setup
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final SingleFlight.Call<Integer> call = new SingleFlight.Call<Integer>() {
+            @Override
+            public Integer run() {
+                try {
+                    releaseLatch.await(5L, TimeUnit.SECONDS);
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return 7;
+            }
+        };
+
+        final AtomicInteger leaderResult = new AtomicInteger(0);
+        final Thread leaderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                leaderResult.set(singleFlight.execute("getblocktemplate", call).value);
+            }
+        });
+        leaderThread.start();
+        while (singleFlight.getInFlightCount() < 1) {
+            Thread.sleep(1L);
+        }
+
+        // Action
+        final SingleFlight.Result<Integer> result = singleFlight.execute("getblocktemplate", call, 10L);
+        releaseLatch.countDown();
+        leaderThread.join();
+
+        // Assert
+        Assert.assertNull(result.value);
+        Assert.assertTrue(result.wasShared);
+        Assert.assertEquals(7, leaderResult.get());
+        Assert.assertEquals(Long.valueOf(1L), singleFlight.getExpiredCount());
+    }
+}
@@ -0,0 +1,244 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+public class HttpConnectionTests {
+    protected static final Integer MAX_REQUEST_BYTE_COUNT = (32 * 1024 * 1024);
+
+    protected Selector _selector;
+    protected SocketChannel _clientChannel;
+    protected SocketChannel _serverChannel;
+    protected HttpConnection _httpConnection;
+
+    protected void _send(final String string) throws IOException {
+        _send(string.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    protected void _send(final byte[] bytes) throws IOException {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        while (byteBuffer.hasRemaining()) {
+            _clientChannel.write(byteBuffer);
+        }
+    }
+
+    /**
+     * Writes the bytes from a separate thread, so that the (blocking) client is not stalled by a full socket buffer.
+     */
+    protected void _sendAsync(final byte[] bytes) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _send(bytes);
+                }
+                catch (final IOException exception) { }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads from the connection until a request is parsed, or until no more bytes arrive.
+     */
+    protected HttpConnection.ParsedRequest _readRequest() throws Exception {
+        final long startMs = System.currentTimeMillis();
+        while ((System.currentTimeMillis() - startMs) < 1000L) {
+            final HttpConnection.ParsedRequest parsedRequest = _httpConnection.parseRequest();
+            if (parsedRequest != null) { return parsedRequest; }
+
+            _httpConnection.read();
+        }
+        return null;
+    }
+
+    @Before
+    public void before() throws Exception {
+        final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        _clientChannel = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        _serverChannel = serverSocketChannel.accept();
+        serverSocketChannel.close();
+
+        _selector = Selector.open();
+        _serverChannel.configureBlocking(false);
+        final SelectionKey selectionKey = _serverChannel.register(_selector, SelectionKey.OP_READ);
+        _httpConnection = new HttpConnection(_serverChannel, selectionKey, MAX_REQUEST_BYTE_COUNT);
+    }
+
+    @After
+    public void after() throws Exception {
+        _httpConnection.close();
+        _clientChannel.close();
+        _selector.close();
+    }
+
+    @Test
+    public void should_parse_request() throws Exception {
+        // Setup
+        _send("POST /path?query=1 HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 2\r\n\r\n{}");
+
+        // Action
+        final HttpConnection.ParsedRequest parsedRequest = _readRequest();
+
+        // Assert
+        Assert.assertNotNull(parsedRequest);
+        Assert.assertEquals("POST", parsedRequest.method);
+        Assert.assertEquals("/path", parsedRequest.path);
+        Assert.assertEquals("application/json", parsedRequest.headers.get("content-type"));
+        Assert.assertEquals("{}", new String(parsedRequest.body, StandardCharsets.UTF_8));
+        Assert.assertTrue(parsedRequest.keepAlive);
+        Assert.assertFalse(_httpConnection.hasBufferedBytes());
+    }
+
+    @Test
+    public void should_parse_pipelined_requests_in_order() throws Exception {
+        // Setup
+        _send("POST /first HTTP/1.1\r\nContent-Length: 1\r\n\r\n1POST /second HTTP/1.0\r\nContent-Length: 1\r\n\r\n2");
+
+        // Action
+        final HttpConnection.ParsedRequest firstRequest = _readRequest();
+        final HttpConnection.ParsedRequest secondRequest = _readRequest();
+
+        // Assert
+        Assert.assertEquals("/first", firstRequest.path);
+        Assert.assertEquals("1", new String(firstRequest.body, StandardCharsets.UTF_8));
+        Assert.assertEquals("/second", secondRequest.path);
+        Assert.assertEquals("2", new String(secondRequest.body, StandardCharsets.UTF_8));
+        Assert.assertFalse(secondRequest.keepAlive); // HTTP/1.0 without "Connection: keep-alive"...
+    }
+
+    @Test
+    public void should_not_allocate_declared_content_length_before_it_is_received() throws Exception {
+        // Setup
+        _send("POST / HTTP/1.1\r\nContent-Length: " + (MAX_REQUEST_BYTE_COUNT - 1) + "\r\n\r\n{");
+
+        // Action
+        final HttpConnection.ParsedRequest parsedRequest = _readRequest();
+
+        // Assert
+        Assert.assertNull(parsedRequest);
+        Assert.assertTrue(_httpConnection._buffer.length < (64 * 1024));
+    }
+
+    @Test
+    public void should_shrink_buffer_after_large_request() throws Exception {
+        // Setup
+        final int contentLength = (1024 * 1024);
+        final byte[] body = new byte[contentLength];
+        _send("POST / HTTP/1.1\r\nContent-Length: " + contentLength + "\r\n\r\n");
+        _sendAsync(body);
+
+        // Action
+        final HttpConnection.ParsedRequest parsedRequest = _readRequest();
+
+        // Assert
+        Assert.assertNotNull(parsedRequest);
+        Assert.assertEquals(contentLength, parsedRequest.body.length);
+        Assert.assertEquals(HttpConnection.INITIAL_BUFFER_BYTE_COUNT.intValue(), _httpConnection._buffer.length);
+    }
+
+    @Test
+    public void should_reject_content_length_beyond_max_request_byte_count() throws Exception {
+        // Setup
+        _send("POST / HTTP/1.1\r\nContent-Length: " + (MAX_REQUEST_BYTE_COUNT + 1) + "\r\n\r\n");
+
+        // Action
+        Integer responseCode = null;
+        try {
+            _readRequest();
+        }
+        catch (final HttpConnection.MalformedRequestException exception) {
+            responseCode = exception.responseCode;
+        }
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(413), responseCode);
+    }
+
+    @Test
+    public void should_reject_oversized_headers() throws Exception {
+        // Setup
+        final StringBuilder stringBuilder = new StringBuilder("POST / HTTP/1.1\r\n");
+        while (stringBuilder.length() <= HttpConnection.MAX_HEADER_BYTE_COUNT) {
+            stringBuilder.append("X-Padding: 0123456789012345678901234567890123456789\r\n");
+        }
+        _sendAsync(stringBuilder.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        // Action
+        Integer responseCode = null;
+        try {
+            _readRequest();
+        }
+        catch (final HttpConnection.MalformedRequestException exception) {
+            responseCode = exception.responseCode;
+        }
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(431), responseCode);
+    }
+
+    @Test
+    public void should_reject_transfer_encoding() throws Exception {
+        // Setup
+        _send("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+
+        // Action
+        Integer responseCode = null;
+        try {
+            _readRequest();
+        }
+        catch (final HttpConnection.MalformedRequestException exception) {
+            responseCode = exception.responseCode;
+        }
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(501), responseCode);
+    }
+
+    @Test
+    public void should_expire_partial_request_after_read_timeout() throws Exception {
+        // Setup
+        _send("POST / HTTP/1.1\r\nContent-Length: 2\r\n\r\n{");
+        _readRequest();
+        final long nowMs = System.currentTimeMillis();
+
+        // Action
+        final Boolean isExpiredBeforeReadTimeout = _httpConnection.isExpired(nowMs, 0L, 5000L);
+        final Boolean isExpiredAfterReadTimeout = _httpConnection.isExpired(nowMs + 5000L, 60000L, 5000L);
+
+        // Assert
+        Assert.assertFalse(isExpiredBeforeReadTimeout); // The idle timeout does not apply to a partial request...
+        Assert.assertTrue(isExpiredAfterReadTimeout);
+    }
+
+    @Test
+    public void should_not_expire_while_request_is_in_flight() throws Exception {
+        // Setup
+        _send("POST / HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+        _readRequest();
+        _httpConnection.setRequestInFlight(true);
+        final long nowMs = System.currentTimeMillis();
+
+        // Action
+        final Boolean isExpiredWhileInFlight = _httpConnection.isExpired(nowMs + 5000L, 1000L, 1000L);
+        _httpConnection.setRequestInFlight(false);
+        final Boolean isExpiredWhileIdle = _httpConnection.isExpired(nowMs + 5000L, 1000L, 1000L);
+
+        // Assert
+        Assert.assertFalse(isExpiredWhileInFlight);
+        Assert.assertTrue(isExpiredWhileIdle);
+    }
+}
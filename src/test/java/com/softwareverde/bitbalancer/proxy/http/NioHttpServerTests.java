@@ -0,0 +1,236 @@
+package com.softwareverde.bitbalancer.proxy.http;
+
+import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class NioHttpServerTests {
+    protected static class HttpResponse {
+        public final Integer code;
+        public final String body;
+
+        public HttpResponse(final Integer code, final String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    protected static String _readLine(final InputStream inputStream) throws IOException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        while (true) {
+            final int b = inputStream.read();
+            if (b < 0) { return null; }
+            if (b == '\n') { break; }
+            if (b != '\r') {
+                stringBuilder.append((char) b);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Reads one response from the stream, or returns null if the connection was closed.
+     */
+    protected static HttpResponse _readResponse(final InputStream inputStream) throws IOException {
+        final String statusLine = _readLine(inputStream);
+        if (statusLine == null) { return null; }
+
+        int contentLength = 0;
+        while (true) {
+            final String headerLine = _readLine(inputStream);
+            if (headerLine == null) { return null; }
+            if (headerLine.isEmpty()) { break; }
+            if (headerLine.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(headerLine.substring(15).trim());
+            }
+        }
+
+        final byte[] body = new byte[contentLength];
+        for (int i = 0; i < contentLength; ++i) {
+            body[i] = (byte) inputStream.read();
+        }
+
+        final Integer code = Integer.parseInt(statusLine.split(" ")[1]);
+        return new HttpResponse(code, new String(body, StandardCharsets.UTF_8));
+    }
+
+    protected static void _write(final Socket socket, final String string) throws IOException {
+        final OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(string.getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+    }
+
+    protected NioHttpServer _httpServer;
+
+    protected Socket _connect() throws IOException {
+        final Socket socket = new Socket("127.0.0.1", _httpServer.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    @Before
+    public void before() {
+        _httpServer = new NioHttpServer();
+        _httpServer.setPort(0);
+        _httpServer.setMaxRequestByteCount(1024);
+        _httpServer.addEndpoint("/", new Servlet() {
+            @Override
+            public Response onRequest(final Request request) {
+                final Response response = new Response();
+                response.setCode(Response.Codes.OK);
+                response.setContent(request.getRawPostData()); // Echo...
+                return response;
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        _httpServer.stop();
+    }
+
+    @Test
+    public void should_respond_to_pipelined_requests_in_order() throws Exception {
+        // Setup
+        _httpServer.start();
+
+        try (final Socket socket = _connect()) {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            // Action
+            _write(socket, "POST / HTTP/1.1\r\nContent-Length: 5\r\n\r\nfirstPOST / HTTP/1.1\r\nContent-Length: 6\r\n\r\nsecondPOST /missing HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+            final HttpResponse firstResponse = _readResponse(inputStream);
+            final HttpResponse secondResponse = _readResponse(inputStream);
+            final HttpResponse thirdResponse = _readResponse(inputStream);
+
+            // Assert
+            Assert.assertEquals(Response.Codes.OK, firstResponse.code);
+            Assert.assertEquals("first", firstResponse.body);
+            Assert.assertEquals(Response.Codes.OK, secondResponse.code);
+            Assert.assertEquals("second", secondResponse.body);
+            Assert.assertEquals(Response.Codes.NOT_FOUND, thirdResponse.code);
+        }
+    }
+
+    @Test
+    public void should_send_continue_before_body_is_received() throws Exception {
+        // Setup
+        _httpServer.start();
+
+        try (final Socket socket = _connect()) {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            // Action
+            _write(socket, "POST / HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 4\r\n\r\n");
+            final HttpResponse continueResponse = _readResponse(inputStream);
+            _write(socket, "body");
+            final HttpResponse response = _readResponse(inputStream);
+
+            // Assert
+            Assert.assertEquals(Integer.valueOf(100), continueResponse.code);
+            Assert.assertEquals(Response.Codes.OK, response.code);
+            Assert.assertEquals("body", response.body);
+        }
+    }
+
+    @Test
+    public void should_reject_malformed_requests_and_close_connection() throws Exception {
+        // Setup
+        _httpServer.start();
+
+        final String[] requests = new String[]{
+            "POST / HTTP/1.1\r\nContent-Length: 1025\r\n\r\n",
+            "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+        };
+        final Integer[] expectedResponseCodes = new Integer[]{ 413, 501 };
+
+        for (int i = 0; i < requests.length; ++i) {
+            try (final Socket socket = _connect()) {
+                final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+                // Action
+                _write(socket, requests[i]);
+                final HttpResponse response = _readResponse(inputStream);
+
+                // Assert
+                Assert.assertEquals(expectedResponseCodes[i], response.code);
+                Assert.assertEquals(-1, inputStream.read());
+            }
+        }
+    }
+
+    @Test
+    public void should_reject_connections_beyond_max_connection_count() throws Exception {
+        // Setup
+        _httpServer.setMaxConnectionCount(1);
+        _httpServer.start();
+
+        try (final Socket firstSocket = _connect()) {
+            final InputStream firstInputStream = new BufferedInputStream(firstSocket.getInputStream());
+            _write(firstSocket, "POST / HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+            _readResponse(firstInputStream); // Ensure the first connection has been accepted...
+
+            try (final Socket secondSocket = _connect()) {
+                final InputStream secondInputStream = new BufferedInputStream(secondSocket.getInputStream());
+
+                // Action
+                final HttpResponse response = _readResponse(secondInputStream);
+
+                // Assert
+                Assert.assertEquals(Integer.valueOf(503), response.code);
+                Assert.assertEquals(-1, secondInputStream.read());
+                Assert.assertEquals(Integer.valueOf(1), _httpServer.getConnectionCount());
+            }
+        }
+    }
+
+    @Test
+    public void should_close_idle_connection() throws Exception {
+        // Setup
+        _httpServer.setIdleTimeoutMs(100L);
+        _httpServer.start();
+
+        try (final Socket socket = _connect()) {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            _write(socket, "POST / HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+            _readResponse(inputStream);
+
+            // Action
+            final int readResult = inputStream.read(); // Blocks until the server closes the connection...
+
+            // Assert
+            Assert.assertEquals(-1, readResult);
+            Thread.sleep(100L);
+            Assert.assertEquals(Integer.valueOf(0), _httpServer.getConnectionCount());
+        }
+    }
+
+    @Test
+    public void should_close_connection_with_incomplete_request_after_read_timeout() throws Exception {
+        // Setup
+        _httpServer.setReadTimeoutMs(100L);
+        _httpServer.start();
+
+        try (final Socket socket = _connect()) {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            // Action
+            _write(socket, "POST / HTTP/1.1\r\nContent-Length: 10\r\n\r\n{");
+            final int readResult = inputStream.read();
+
+            // Assert
+            Assert.assertEquals(-1, readResult);
+        }
+    }
+}
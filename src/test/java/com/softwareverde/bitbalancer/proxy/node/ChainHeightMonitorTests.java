@@ -0,0 +1,148 @@
+package com.softwareverde.bitbalancer.proxy.node;
+
+import com.softwareverde.bitbalancer.proxy.node.selector.HashMapNodeSelector;
+import com.softwareverde.bitbalancer.proxy.node.selector.NodeSelectorTests;
+import com.softwareverde.bitbalancer.proxy.rpc.ChainHeight;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.util.timer.NanoTimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChainHeightMonitorTests {
+    protected static final Long LATENCY_MS = 50L;
+    protected static final Long SLOW_LATENCY_MS = 500L;
+
+    /**
+     * Creates nodeCount nodes whose ChainHeight is 1 but whose RPC reports 2; the first node is already at 2.
+     *  The last node is slow.
+     */
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final Integer nodeCount) {
+        final ChainHeight bestChainHeight = NodeSelectorTests.makeFakeChainHeight(2L);
+
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            bitcoinRpcConnector.setChainHeight(bestChainHeight);
+            bitcoinRpcConnector.setLatencyMs(i == (nodeCount - 1) ? SLOW_LATENCY_MS : LATENCY_MS);
+
+            final RpcConfiguration rpcConfiguration = new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i);
+            rpcConfiguration.setChainHeight(i == 0 ? bestChainHeight : NodeSelectorTests.makeFakeChainHeight(1L));
+            rpcConfigurations.add(rpcConfiguration);
+        }
+        return rpcConfigurations;
+    }
+
+    @Test
+    public void should_refresh_lagging_nodes_concurrently() {
+        // Setup
+        final Integer nodeCount = 10;
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(nodeCount);
+        final ChainHeightMonitor chainHeightMonitor = new ChainHeightMonitor(new HashMapNodeSelector(rpcConfigurations));
+
+        // Refreshing every lagging node serially takes the sum of their latencies.
+        final long serialDurationMs = ((LATENCY_MS * (nodeCount - 2)) + SLOW_LATENCY_MS);
+
+        // Action
+        final NanoTimer nanoTimer = new NanoTimer();
+        nanoTimer.start();
+        final Boolean chainHeightWasUpdated = chainHeightMonitor._refreshChainHeights(true, false);
+        nanoTimer.stop();
+
+        // Assert
+        Assert.assertTrue(chainHeightWasUpdated);
+        Assert.assertTrue(nanoTimer.getMillisecondsElapsed() < serialDurationMs);
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            Assert.assertEquals(Long.valueOf(2L), rpcConfiguration.getChainHeight().getBlockHeight());
+        }
+    }
+
+    @Test
+    public void should_poll_quickly_only_while_lagging_nodes_converge() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3);
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            ((FakeBitcoinRpcConnector) rpcConfiguration.getBitcoinRpcConnector()).setLatencyMs(0L);
+        }
+        final FakeBitcoinRpcConnector laggingBitcoinRpcConnector = (FakeBitcoinRpcConnector) rpcConfigurations.get(1).getBitcoinRpcConnector();
+        laggingBitcoinRpcConnector.setChainHeight(NodeSelectorTests.makeFakeChainHeight(1L));
+
+        final ChainHeightMonitor chainHeightMonitor = new ChainHeightMonitor(new HashMapNodeSelector(rpcConfigurations));
+        final long settledChangedAtMs = (System.currentTimeMillis() - (ChainHeightMonitor.RECENT_TIP_DURATION_MS * 2L));
+
+        // Action
+        chainHeightMonitor._refreshChainHeights(true, false); // The lagging node remains behind.
+        chainHeightMonitor._bestChainHeightChangedAtMs = settledChangedAtMs;
+        final Long disagreedPeriodMs = chainHeightMonitor._getPeriodMs();
+
+        chainHeightMonitor._refreshChainHeights(true, false); // The lagging node makes no progress...
+        chainHeightMonitor._tipDisagreementChangedAtMs = settledChangedAtMs;
+        final Long persistentlyDisagreedPeriodMs = chainHeightMonitor._getPeriodMs();
+
+        laggingBitcoinRpcConnector.setChainHeight(NodeSelectorTests.makeFakeChainHeight(2L));
+        chainHeightMonitor._refreshChainHeights(true, false); // The lagging node catches up.
+        chainHeightMonitor._refreshChainHeights(true, false);
+        final Long agreedPeriodMs = chainHeightMonitor._getPeriodMs();
+
+        // Assert
+        Assert.assertEquals(ChainHeightMonitor.FAST_PERIOD_MS, disagreedPeriodMs);
+        Assert.assertEquals(ChainHeightMonitor.SLOW_PERIOD_MS, persistentlyDisagreedPeriodMs);
+        Assert.assertEquals(ChainHeightMonitor.SLOW_PERIOD_MS, agreedPeriodMs);
+    }
+
+    @Test
+    public void should_not_poll_up_to_date_nodes_while_only_lagging_nodes_disagree() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3);
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            ((FakeBitcoinRpcConnector) rpcConfiguration.getBitcoinRpcConnector()).setLatencyMs(0L);
+        }
+        ((FakeBitcoinRpcConnector) rpcConfigurations.get(1).getBitcoinRpcConnector()).setChainHeight(NodeSelectorTests.makeFakeChainHeight(1L)); // The lagging node remains behind.
+
+        final RpcConfiguration upToDateRpcConfiguration = rpcConfigurations.get(2);
+        upToDateRpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(2L));
+        ((FakeBitcoinRpcConnector) upToDateRpcConfiguration.getBitcoinRpcConnector()).setChainHeight(NodeSelectorTests.makeFakeChainHeight(3L)); // Would only be discovered by polling up-to-date nodes.
+
+        final ChainHeightMonitor chainHeightMonitor = new ChainHeightMonitor(new HashMapNodeSelector(rpcConfigurations));
+        chainHeightMonitor._refreshChainHeights(true, false);
+        chainHeightMonitor._bestChainHeightChangedAtMs = (System.currentTimeMillis() - (ChainHeightMonitor.RECENT_TIP_DURATION_MS * 2L));
+
+        // Action
+        final Long periodMs = chainHeightMonitor._getPeriodMs();
+        chainHeightMonitor._run(); // A periodic refresh.
+
+        // Assert
+        Assert.assertEquals(ChainHeightMonitor.FAST_PERIOD_MS, periodMs);
+        Assert.assertEquals(Long.valueOf(2L), upToDateRpcConfiguration.getChainHeight().getBlockHeight());
+        Assert.assertEquals(Long.valueOf(1L), rpcConfigurations.get(1).getChainHeight().getBlockHeight());
+    }
+
+    @Test
+    public void should_poll_up_to_date_nodes_once_a_block_is_expected() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3);
+        final ChainHeight previousChainHeight = NodeSelectorTests.makeFakeChainHeight(1L);
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = (FakeBitcoinRpcConnector) rpcConfiguration.getBitcoinRpcConnector();
+            bitcoinRpcConnector.setLatencyMs(0L);
+            bitcoinRpcConnector.setChainHeight(previousChainHeight);
+            rpcConfiguration.setChainHeight(previousChainHeight);
+        }
+        final FakeBitcoinRpcConnector unannouncedBitcoinRpcConnector = (FakeBitcoinRpcConnector) rpcConfigurations.get(2).getBitcoinRpcConnector();
+
+        final ChainHeightMonitor chainHeightMonitor = new ChainHeightMonitor(new HashMapNodeSelector(rpcConfigurations));
+        chainHeightMonitor._refreshChainHeights(true, false); // Every node agrees on the tip.
+        chainHeightMonitor._bestChainHeightChangedAtMs = (System.currentTimeMillis() - ChainHeightMonitor.EXPECTED_BLOCK_INTERVAL_MS);
+
+        unannouncedBitcoinRpcConnector.setChainHeight(NodeSelectorTests.makeFakeChainHeight(2L)); // A new block is not announced.
+
+        // Action
+        final Long expectedBlockPeriodMs = chainHeightMonitor._getPeriodMs();
+        chainHeightMonitor._run(); // A periodic refresh.
+
+        // Assert
+        Assert.assertEquals(ChainHeightMonitor.FAST_PERIOD_MS, expectedBlockPeriodMs);
+        Assert.assertEquals(Long.valueOf(2L), rpcConfigurations.get(2).getChainHeight().getBlockHeight());
+    }
+}
@@ -0,0 +1,87 @@
+package com.softwareverde.bitbalancer.proxy.node;
+
+import com.softwareverde.bitbalancer.proxy.rpc.NodeHealth;
+import com.softwareverde.bitbalancer.proxy.rpc.NodeStatistics;
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.constable.list.mutable.MutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NodeHealthMonitorTests {
+    protected static final Long LATENCY_MS = 10L;
+    protected static final Long SLOW_LATENCY_MS = 1000L;
+
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final Integer nodeCount) {
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            rpcConfigurations.add(new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i));
+        }
+        return rpcConfigurations;
+    }
+
+    protected static void _recordRequests(final RpcConfiguration rpcConfiguration, final Integer requestCount, final Long latencyMs) {
+        final NodeStatistics nodeStatistics = rpcConfiguration.getNodeStatistics();
+        for (int i = 0; i < requestCount; ++i) {
+            nodeStatistics.onRequestStart();
+            nodeStatistics.onRequestEnd(latencyMs * 1000000L);
+        }
+    }
+
+    @Test
+    public void should_eject_latency_outlier() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(3);
+        _recordRequests(rpcConfigurations.get(0), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(1), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(2), 20, SLOW_LATENCY_MS);
+
+        final NodeHealthMonitor nodeHealthMonitor = new NodeHealthMonitor(rpcConfigurations);
+
+        // Action
+        nodeHealthMonitor._ejectLatencyOutliers();
+
+        // Assert
+        Assert.assertEquals(NodeHealth.State.CLOSED, rpcConfigurations.get(0).getNodeHealth().getState());
+        Assert.assertEquals(NodeHealth.State.CLOSED, rpcConfigurations.get(1).getNodeHealth().getState());
+        Assert.assertEquals(NodeHealth.State.OPEN, rpcConfigurations.get(2).getNodeHealth().getState());
+    }
+
+    @Test
+    public void should_not_eject_when_fewer_than_three_nodes_receive_traffic() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(5);
+        _recordRequests(rpcConfigurations.get(0), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(1), 20, SLOW_LATENCY_MS);
+        // The remaining (idle) nodes report a latency of zero, which would otherwise lower the median...
+
+        final NodeHealthMonitor nodeHealthMonitor = new NodeHealthMonitor(rpcConfigurations);
+
+        // Action
+        nodeHealthMonitor._ejectLatencyOutliers();
+
+        // Assert
+        for (final RpcConfiguration rpcConfiguration : rpcConfigurations) {
+            Assert.assertEquals(NodeHealth.State.CLOSED, rpcConfiguration.getNodeHealth().getState());
+        }
+    }
+
+    @Test
+    public void should_not_eject_node_with_too_few_recent_samples() {
+        // Setup
+        final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(4);
+        _recordRequests(rpcConfigurations.get(0), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(1), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(2), 20, LATENCY_MS);
+        _recordRequests(rpcConfigurations.get(3), 1, SLOW_LATENCY_MS); // A single (e.g. probe) request...
+
+        final NodeHealthMonitor nodeHealthMonitor = new NodeHealthMonitor(rpcConfigurations);
+
+        // Action
+        nodeHealthMonitor._ejectLatencyOutliers();
+
+        // Assert
+        Assert.assertEquals(NodeHealth.State.CLOSED, rpcConfigurations.get(3).getNodeHealth().getState());
+    }
+}
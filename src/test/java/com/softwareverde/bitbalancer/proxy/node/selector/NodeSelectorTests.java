@@ -165,4 +165,134 @@ public class NodeSelectorTests {
         // Assert
         Assert.assertNotEquals(bitcoinUnlimited01, rpcConfiguration);
     }
+
+    @Test
+    public void ranked_selector_should_follow_chain_height_updates() {
+        // Setup
+        final RpcConfiguration rpcConfiguration01 = new RpcConfiguration(
+            "host-01",
+            new FakeBitcoinRpcConnector("host-01"),
+            0
+        );
+
+        final RpcConfiguration rpcConfiguration02 = new RpcConfiguration(
+            "host-02",
+            new FakeBitcoinRpcConnector("host-02"),
+            1
+        );
+
+        final List<RpcConfiguration> rpcConfigurations = new ImmutableList<>(rpcConfiguration01, rpcConfiguration02);
+        rpcConfiguration01.setChainHeight(makeFakeChainHeight(1L));
+        rpcConfiguration02.setChainHeight(makeFakeChainHeight(1L));
+
+        final NodeSelector nodeSelector = new RankedNodeSelector(rpcConfigurations);
+        final RpcConfiguration initialRpcConfiguration = nodeSelector.selectBestNode();
+
+        // Action
+        rpcConfiguration02.setChainHeight(makeFakeChainHeight(2L)); // Preferred configuration falls behind.
+        final RpcConfiguration rpcConfiguration = nodeSelector.selectBestNode();
+        final ChainHeight bestChainHeight = nodeSelector.getBestChainHeight();
+
+        // Assert
+        Assert.assertEquals(rpcConfiguration01, initialRpcConfiguration);
+        Assert.assertEquals(rpcConfiguration02, rpcConfiguration);
+        Assert.assertEquals(makeFakeChainHeight(2L), bestChainHeight);
+    }
+
+    @Test
+    public void ranked_selector_should_skip_excluded_nodes() {
+        // Setup
+        final RpcConfiguration rpcConfiguration01 = new RpcConfiguration(
+            "host-01",
+            new FakeBitcoinRpcConnector("host-01"),
+            0
+        );
+
+        final RpcConfiguration rpcConfiguration02 = new RpcConfiguration(
+            "host-02",
+            new FakeBitcoinRpcConnector("host-02"),
+            1
+        );
+
+        final RpcConfiguration rpcConfiguration03 = new RpcConfiguration(
+            "host-03",
+            new FakeBitcoinRpcConnector("host-03"),
+            2
+        );
+
+        final List<RpcConfiguration> rpcConfigurations = new ImmutableList<>(rpcConfiguration01, rpcConfiguration02, rpcConfiguration03);
+        rpcConfiguration01.setChainHeight(makeFakeChainHeight(2L));
+        rpcConfiguration02.setChainHeight(makeFakeChainHeight(1L));
+        rpcConfiguration03.setChainHeight(makeFakeChainHeight(2L));
+
+        final NodeSelector nodeSelector = new RankedNodeSelector(rpcConfigurations);
+
+        // Action
+        final RpcConfiguration rpcConfiguration = nodeSelector.selectBestNode(new ImmutableList<>(rpcConfiguration01));
+
+        // Assert
+        Assert.assertEquals(rpcConfiguration03, rpcConfiguration);
+    }
+
+    @Test
+    public void ranked_selector_should_return_null_when_every_node_is_excluded() {
+        // Setup
+        final RpcConfiguration rpcConfiguration01 = new RpcConfiguration("host-01", new FakeBitcoinRpcConnector("host-01"), 0);
+        final RpcConfiguration rpcConfiguration02 = new RpcConfiguration("host-02", new FakeBitcoinRpcConnector("host-02"), 1);
+        rpcConfiguration01.setChainHeight(makeFakeChainHeight(1L));
+        rpcConfiguration02.setChainHeight(makeFakeChainHeight(2L));
+
+        final NodeSelector nodeSelector = new RankedNodeSelector(new ImmutableList<>(rpcConfiguration01, rpcConfiguration02));
+
+        // Action
+        final RpcConfiguration partiallyExcludedRpcConfiguration = nodeSelector.selectBestNode(new ImmutableList<>(rpcConfiguration02));
+        final RpcConfiguration fullyExcludedRpcConfiguration = nodeSelector.selectBestNode(new ImmutableList<>(rpcConfiguration02, rpcConfiguration01));
+
+        // Assert
+        Assert.assertEquals(rpcConfiguration01, partiallyExcludedRpcConfiguration);
+        Assert.assertNull(fullyExcludedRpcConfiguration);
+    }
+
+    @Test
+    public void load_balanced_selection_should_only_use_nodes_at_best_chain_height() {
+        // Setup
+        final RpcConfiguration rpcConfiguration01 = new RpcConfiguration(
+            "host-01",
+            new FakeBitcoinRpcConnector("host-01"),
+            0
+        );
+
+        final RpcConfiguration rpcConfiguration02 = new RpcConfiguration(
+            "host-02",
+            new FakeBitcoinRpcConnector("host-02"),
+            1
+        );
+
+        final RpcConfiguration rpcConfiguration03 = new RpcConfiguration(
+            "host-03",
+            new FakeBitcoinRpcConnector("host-03"),
+            2
+        );
+
+        final List<RpcConfiguration> rpcConfigurations = new ImmutableList<>(rpcConfiguration01, rpcConfiguration02, rpcConfiguration03);
+        rpcConfiguration01.setChainHeight(makeFakeChainHeight(2L));
+        rpcConfiguration02.setChainHeight(makeFakeChainHeight(2L));
+        rpcConfiguration03.setChainHeight(makeFakeChainHeight(1L));
+
+        final RankedNodeSelector nodeSelector = new RankedNodeSelector(rpcConfigurations);
+        nodeSelector.setLoadBalancingStrategy(new LeastOutstandingRequestsStrategy());
+
+        // Action
+        final RpcConfiguration firstRpcConfiguration = nodeSelector.selectLoadBalancedNode(null);
+        firstRpcConfiguration.getNodeStatistics().onRequestStart();
+        final RpcConfiguration secondRpcConfiguration = nodeSelector.selectLoadBalancedNode(null);
+        secondRpcConfiguration.getNodeStatistics().onRequestStart();
+        final RpcConfiguration thirdRpcConfiguration = nodeSelector.selectLoadBalancedNode(null);
+
+        // Assert
+        Assert.assertEquals(rpcConfiguration01, firstRpcConfiguration);
+        Assert.assertEquals(rpcConfiguration02, secondRpcConfiguration);
+        Assert.assertEquals(rpcConfiguration01, thirdRpcConfiguration);
+        Assert.assertEquals(rpcConfiguration01, nodeSelector.selectBestNode());
+    }
 }
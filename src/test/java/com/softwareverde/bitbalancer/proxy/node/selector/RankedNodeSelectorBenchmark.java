@@ -0,0 +1,97 @@
+package com.softwareverde.bitbalancer.proxy.node.selector;
+
+import com.softwareverde.bitbalancer.proxy.rpc.RpcConfiguration;
+import com.softwareverde.bitbalancer.proxy.rpc.connector.FakeBitcoinRpcConnector;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.mutable.MutableList;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Compares RankedNodeSelector::selectBestNode to the previous linear search (List::contains per ranked node) when all
+ *  but the lowest-ranked node are excluded, as during a failover across every node, for 4 to 1024 nodes.
+ *  This is not run as part of the test suite; run its main method directly.
+ */
+public class RankedNodeSelectorBenchmark {
+    public interface Selector {
+        RpcConfiguration select(List<RpcConfiguration> excludedConfigurations);
+    }
+
+    /**
+     * Returns the highest-ranked node not within excludedConfigurations via a linear search, as was done before the
+     *  snapshot indexed each node's rank.
+     */
+    protected static RpcConfiguration _selectBestNode(final RankedNodeSelector nodeSelector, final List<RpcConfiguration> excludedConfigurations) {
+        final RankedNodeSelector.Snapshot snapshot = nodeSelector._snapshot;
+        for (final RpcConfiguration rpcConfiguration : snapshot.rankedRpcConfigurations) {
+            if ( (excludedConfigurations != null) && excludedConfigurations.contains(rpcConfiguration) ) { continue; }
+            return rpcConfiguration;
+        }
+        return null;
+    }
+
+    protected static MutableList<RpcConfiguration> _createRpcConfigurations(final int nodeCount) {
+        final MutableList<RpcConfiguration> rpcConfigurations = new MutableList<>(nodeCount);
+        for (int i = 0; i < nodeCount; ++i) {
+            final FakeBitcoinRpcConnector bitcoinRpcConnector = new FakeBitcoinRpcConnector("host-" + i);
+            final RpcConfiguration rpcConfiguration = new RpcConfiguration(bitcoinRpcConnector.getHost(), bitcoinRpcConnector, i);
+            rpcConfiguration.setChainHeight(NodeSelectorTests.makeFakeChainHeight(1L));
+            rpcConfigurations.add(rpcConfiguration);
+        }
+        return rpcConfigurations;
+    }
+
+    protected static Long _getAllocatedByteCount() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (! (threadMXBean instanceof com.sun.management.ThreadMXBean)) { return null; }
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    protected static void _run(final String label, final int nodeCount, final List<RpcConfiguration> excludedConfigurations, final RpcConfiguration expectedRpcConfiguration, final Selector selector) {
+        final int iterationCount = (int) Math.max(10L, Math.min(1000000L, ((64L * 1024L * 1024L) / ((long) nodeCount * nodeCount))));
+        for (int i = 0; i < iterationCount; ++i) { // Warm-up...
+            if (selector.select(excludedConfigurations) != expectedRpcConfiguration) {
+                throw new RuntimeException("Unexpected selection.");
+            }
+        }
+
+        final Long allocatedByteCountBefore = _getAllocatedByteCount();
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < iterationCount; ++i) {
+            selector.select(excludedConfigurations);
+        }
+        final long elapsedNanos = (System.nanoTime() - startNanos);
+        final Long allocatedByteCountAfter = _getAllocatedByteCount();
+
+        final Long allocatedBytesPerOperation = ( (allocatedByteCountBefore != null) && (allocatedByteCountAfter != null) ? ((allocatedByteCountAfter - allocatedByteCountBefore) / iterationCount) : null);
+        System.out.println(String.format("%-8s %6d nodes: %14.3f us/op, %12s bytes allocated/op", label, nodeCount, ((elapsedNanos / 1000D) / iterationCount), allocatedBytesPerOperation));
+    }
+
+    public static void main(final String[] arguments) {
+        for (int nodeCount = 4; nodeCount <= 1024; nodeCount *= 4) {
+            final MutableList<RpcConfiguration> rpcConfigurations = _createRpcConfigurations(nodeCount);
+            final RankedNodeSelector nodeSelector = new RankedNodeSelector(rpcConfigurations);
+
+            final RpcConfiguration[] rankedRpcConfigurations = nodeSelector._snapshot.rankedRpcConfigurations;
+            final MutableList<RpcConfiguration> excludedConfigurations = new MutableList<>(nodeCount - 1);
+            for (int i = 0; i < (nodeCount - 1); ++i) {
+                excludedConfigurations.add(rankedRpcConfigurations[i]);
+            }
+            final RpcConfiguration expectedRpcConfiguration = rankedRpcConfigurations[nodeCount - 1];
+
+            _run("Ranked", nodeCount, excludedConfigurations, expectedRpcConfiguration, new Selector() {
+                @Override
+                public RpcConfiguration select(final List<RpcConfiguration> excludedConfigurations) {
+                    return nodeSelector.selectBestNode(excludedConfigurations);
+                }
+            });
+            _run("Linear", nodeCount, excludedConfigurations, expectedRpcConfiguration, new Selector() {
+                @Override
+                public RpcConfiguration select(final List<RpcConfiguration> excludedConfigurations) {
+                    return _selectBestNode(nodeSelector, excludedConfigurations);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import com.softwareverde.bitcoin.block.header.MutableBlockHeader;
+import com.softwareverde.bitcoin.block.header.difficulty.Difficulty;
+import com.softwareverde.bitcoin.block.header.difficulty.work.ChainWork;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class HeaderIndexTests {
+    protected static MutableBlockHeader _createBlockHeader(final Sha256Hash previousBlockHash) {
+        final MutableBlockHeader blockHeader = new MutableBlockHeader();
+        blockHeader.setPreviousBlockHash(previousBlockHash);
+        blockHeader.setDifficulty(Difficulty.BASE_DIFFICULTY);
+        blockHeader.setTimestamp(1600000000L);
+        blockHeader.setNonce(0L);
+        return blockHeader;
+    }
+
+    @Test
+    public void should_resolve_child_of_indexed_block_locally() {
+        // Setup
+        final HeaderIndex headerIndex = new HeaderIndex();
+        final Sha256Hash parentBlockHash = Sha256Hash.fromHexString("000000000000000001DA2C2A5B3D3F1C51D1A29E35A5C3D2E8CF1E6F2B6E3A9C");
+        final ChainHeight parentChainHeight = new ChainHeight(100L, ChainWork.fromBigInteger(BigInteger.valueOf(1000L)));
+        headerIndex.putChainHeight(parentBlockHash, parentChainHeight);
+
+        final MutableBlockHeader blockHeader = _createBlockHeader(parentBlockHash);
+
+        // Action
+        final ChainHeight chainHeight = headerIndex.addHeader(blockHeader);
+
+        // Assert
+        Assert.assertNotNull(chainHeight);
+        Assert.assertEquals(Long.valueOf(101L), chainHeight.getBlockHeight());
+        Assert.assertTrue(chainHeight.isBetterThan(parentChainHeight));
+        Assert.assertEquals(chainHeight, headerIndex.getChainHeight(blockHeader.getHash()));
+        Assert.assertEquals(Long.valueOf(1L), headerIndex.getLocalUpdateCount());
+    }
+
+    @Test
+    public void should_not_resolve_header_with_unknown_parent() {
+        // Setup
+        final HeaderIndex headerIndex = new HeaderIndex();
+        final Sha256Hash unknownBlockHash = Sha256Hash.fromHexString("00000000000000000330CDBCB4A0D3D6A4B7C8E2F1A9D8C7B6A5F4E3D2C1B0A9");
+        final MutableBlockHeader blockHeader = _createBlockHeader(unknownBlockHash);
+
+        // Action
+        final ChainHeight chainHeight = headerIndex.addHeader(blockHeader);
+
+        // Assert
+        Assert.assertNull(chainHeight);
+        Assert.assertEquals(Integer.valueOf(0), headerIndex.getHeaderCount());
+        Assert.assertSame(blockHeader, headerIndex.getBlockHeader(blockHeader.getHash())); // Retained for BLOCK_HASH notifications...
+    }
+
+    @Test
+    public void should_evict_oldest_headers() {
+        // Setup
+        final HeaderIndex headerIndex = new HeaderIndex(2);
+        final Sha256Hash blockHash0 = Sha256Hash.fromHexString("0000000000000000000000000000000000000000000000000000000000000001");
+        final Sha256Hash blockHash1 = Sha256Hash.fromHexString("0000000000000000000000000000000000000000000000000000000000000002");
+        final Sha256Hash blockHash2 = Sha256Hash.fromHexString("0000000000000000000000000000000000000000000000000000000000000003");
+
+        // Action
+        headerIndex.putChainHeight(blockHash0, new ChainHeight(1L, null));
+        headerIndex.putChainHeight(blockHash1, new ChainHeight(2L, null));
+        headerIndex.putChainHeight(blockHash2, new ChainHeight(3L, null));
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(2), headerIndex.getHeaderCount());
+        Assert.assertNull(headerIndex.getChainHeight(blockHash0));
+        Assert.assertNotNull(headerIndex.getChainHeight(blockHash2));
+    }
+}
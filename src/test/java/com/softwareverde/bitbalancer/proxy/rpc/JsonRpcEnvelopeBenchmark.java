@@ -0,0 +1,96 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import com.softwareverde.bitbalancer.proxy.RpcProxyHandler;
+import com.softwareverde.json.Json;
+import com.softwareverde.util.StringUtil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares JsonRpcEnvelope to Json::parse for submitblock requests of 1KB to 64MB.
+ *  This is not run as part of the test suite; run its main method directly (with a heap of at least 2GB).
+ */
+public class JsonRpcEnvelopeBenchmark {
+    public interface Parser {
+        Object parse(byte[] requestBytes);
+    }
+
+    protected static byte[] _createSubmitBlockRequest(final int byteCount) {
+        final String prefix = "{\"jsonrpc\":\"1.0\",\"id\":1,\"method\":\"submitblock\",\"params\":[\"";
+        final String suffix = "\"]}";
+        final int hexByteCount = Math.max(0, ((byteCount - prefix.length() - suffix.length()) & ~1));
+
+        final byte[] bytes = new byte[prefix.length() + hexByteCount + suffix.length()];
+        System.arraycopy(prefix.getBytes(StandardCharsets.US_ASCII), 0, bytes, 0, prefix.length());
+        for (int i = 0; i < hexByteCount; ++i) {
+            bytes[prefix.length() + i] = (byte) "0123456789abcdef".charAt(i & 0x0F);
+        }
+        System.arraycopy(suffix.getBytes(StandardCharsets.US_ASCII), 0, bytes, (prefix.length() + hexByteCount), suffix.length());
+        return bytes;
+    }
+
+    /**
+     * Returns the Method with the provided name via a linear, case-insensitive search, as was done before Method::fromBytes.
+     */
+    protected static RpcProxyHandler.Method _getMethod(final String value) {
+        for (final RpcProxyHandler.Method method : RpcProxyHandler.Method.values()) {
+            if (method.getValue().equalsIgnoreCase(value)) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+
+    protected static Long _getAllocatedByteCount() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (! (threadMXBean instanceof com.sun.management.ThreadMXBean)) { return null; }
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    protected static void _run(final String label, final byte[] requestBytes, final Parser parser) {
+        final int iterationCount = (int) Math.max(3L, Math.min(10000L, ((256L * 1024L * 1024L) / requestBytes.length)));
+        for (int i = 0; i < iterationCount; ++i) { // Warm-up...
+            parser.parse(requestBytes);
+        }
+
+        final Long allocatedByteCountBefore = _getAllocatedByteCount();
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < iterationCount; ++i) {
+            parser.parse(requestBytes);
+        }
+        final long elapsedNanos = (System.nanoTime() - startNanos);
+        final Long allocatedByteCountAfter = _getAllocatedByteCount();
+
+        final Long allocatedBytesPerOperation = ( (allocatedByteCountBefore != null) && (allocatedByteCountAfter != null) ? ((allocatedByteCountAfter - allocatedByteCountBefore) / iterationCount) : null);
+        System.out.println(String.format("%-10s %10d bytes: %14.1f us/op, %12s bytes allocated/op", label, requestBytes.length, ((elapsedNanos / 1000D) / iterationCount), allocatedBytesPerOperation));
+    }
+
+    public static void main(final String[] arguments) {
+        final Parser envelopeParser = new Parser() {
+            @Override
+            public Object parse(final byte[] requestBytes) {
+                final JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(requestBytes);
+                final long methodNameRange = envelope.getMethodNameRange();
+                return RpcProxyHandler.Method.fromBytes(requestBytes, JsonScanner.getStartIndex(methodNameRange), JsonScanner.getEndIndex(methodNameRange));
+            }
+        };
+
+        final Parser jsonParser = new Parser() {
+            @Override
+            public Object parse(final byte[] requestBytes) {
+                final Json requestJson = Json.parse(StringUtil.bytesToString(requestBytes));
+                requestJson.getLong("id");
+                return _getMethod(requestJson.getString("method"));
+            }
+        };
+
+        for (int byteCount = 1024; byteCount <= (64 * 1024 * 1024); byteCount *= 4) {
+            final byte[] requestBytes = _createSubmitBlockRequest(byteCount);
+            _run("Envelope", requestBytes, envelopeParser);
+            _run("Json", requestBytes, jsonParser);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import com.softwareverde.bitbalancer.proxy.RpcProxyHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class JsonRpcEnvelopeTests {
+    protected static byte[] toBytes(final String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void should_locate_id_method_and_params_without_parsing_nested_values() {
+        // Setup
+        final byte[] requestBytes = toBytes("{ \"params\": [\"00ff\", {\"id\": 5, \"method\": \"x\"}], \"jsonrpc\": \"1.0\", \"id\": \"abc\", \"method\": \"submitblock\" }");
+
+        // Action
+        final JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(requestBytes);
+
+        // Assert
+        Assert.assertEquals("submitblock", envelope.getMethodName());
+        Assert.assertEquals("\"abc\"", new String(envelope.getIdBytes(), StandardCharsets.UTF_8));
+        Assert.assertNull(envelope.getIdAsLong());
+        Assert.assertEquals("[\"00ff\", {\"id\": 5, \"method\": \"x\"}]", JsonScanner.toString(requestBytes, envelope.getParamsRange()));
+    }
+
+    @Test
+    public void should_return_null_id_for_missing_id() {
+        // Setup
+        final byte[] requestBytes = toBytes("{\"method\":\"getblockcount\",\"params\":[]}");
+
+        // Action
+        final JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(requestBytes);
+
+        // Assert
+        Assert.assertEquals("null", new String(envelope.getIdBytes(), StandardCharsets.UTF_8));
+        Assert.assertNull(envelope.getIdAsLong());
+        Assert.assertEquals("getblockcount", envelope.getMethodName());
+    }
+
+    @Test
+    public void should_resolve_methods_case_insensitively() {
+        // Setup
+        final byte[] requestBytes = toBytes("{\"id\":7,\"method\":\"GetBlockTemplate\"}");
+        final JsonRpcEnvelope envelope = JsonRpcEnvelope.parse(requestBytes);
+        final long methodNameRange = envelope.getMethodNameRange();
+
+        // Action
+        final RpcProxyHandler.Method method = RpcProxyHandler.Method.fromBytes(requestBytes, JsonScanner.getStartIndex(methodNameRange), JsonScanner.getEndIndex(methodNameRange));
+
+        // Assert
+        Assert.assertEquals(RpcProxyHandler.Method.GET_BLOCK_TEMPLATE, method);
+        Assert.assertEquals(Long.valueOf(7L), envelope.getIdAsLong());
+        for (final RpcProxyHandler.Method expectedMethod : RpcProxyHandler.Method.values()) {
+            final byte[] methodBytes = toBytes(expectedMethod.getValue());
+            Assert.assertEquals(expectedMethod, RpcProxyHandler.Method.fromBytes(methodBytes, 0, methodBytes.length));
+        }
+        Assert.assertNull(RpcProxyHandler.Method.fromBytes(toBytes("getblock"), 0, 8));
+    }
+}
@@ -0,0 +1,162 @@
+package com.softwareverde.bitbalancer.proxy.rpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NodeHealthTests {
+    /**
+     * Returns the remaining ejection duration, rounded to the nearest second.
+     */
+    protected static Long _getEjectionDurationMs(final NodeHealth nodeHealth) {
+        final long remainingMs = (nodeHealth._ejectedUntilMs - System.currentTimeMillis());
+        return (Math.round(remainingMs / 1000D) * 1000L);
+    }
+
+    /**
+     * Simulates the passing of the ejection period.
+     */
+    protected static void _expireEjection(final NodeHealth nodeHealth) {
+        synchronized (nodeHealth) {
+            nodeHealth._ejectedUntilMs = 0L;
+        }
+    }
+
+    @Test
+    public void should_open_after_consecutive_failures_and_close_after_successful_trial() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+
+        // Action
+        for (int i = 0; i < (NodeHealth.Defaults.CONSECUTIVE_FAILURE_THRESHOLD - 1); ++i) {
+            nodeHealth.onRequestFailure();
+        }
+        final NodeHealth.State stateBeforeThreshold = nodeHealth.getState();
+        nodeHealth.onRequestFailure();
+        final NodeHealth.State stateAfterThreshold = nodeHealth.getState();
+        final Boolean wasProbeDueBeforeEjectionPeriod = nodeHealth.isProbeDue();
+
+        _expireEjection(nodeHealth);
+        final Boolean wasProbeDueAfterEjectionPeriod = nodeHealth.isProbeDue();
+        nodeHealth.onProbeSuccess();
+        final NodeHealth.State stateAfterProbe = nodeHealth.getState();
+
+        nodeHealth.onRequestSuccess();
+
+        // Assert
+        Assert.assertEquals(NodeHealth.State.CLOSED, stateBeforeThreshold);
+        Assert.assertEquals(NodeHealth.State.OPEN, stateAfterThreshold);
+        Assert.assertFalse(wasProbeDueBeforeEjectionPeriod);
+        Assert.assertTrue(wasProbeDueAfterEjectionPeriod);
+        Assert.assertEquals(NodeHealth.State.HALF_OPEN, stateAfterProbe);
+        Assert.assertTrue(nodeHealth.isAvailable());
+        Assert.assertEquals(NodeHealth.State.CLOSED, nodeHealth.getState());
+        Assert.assertNull(nodeHealth.getEjectionReason());
+    }
+
+    @Test
+    public void should_back_off_exponentially_until_trial_succeeds() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+        final long baseEjectionDurationMs = NodeHealth.Defaults.BASE_EJECTION_DURATION_MS;
+
+        // Action
+        nodeHealth.eject("Test.");
+        final Long firstEjectionDurationMs = _getEjectionDurationMs(nodeHealth);
+
+        _expireEjection(nodeHealth);
+        nodeHealth.onProbeFailure();
+        final Long failedProbeEjectionDurationMs = _getEjectionDurationMs(nodeHealth);
+
+        _expireEjection(nodeHealth);
+        nodeHealth.onProbeSuccess();
+        nodeHealth.onRequestFailure(); // The trial request fails...
+        final NodeHealth.State stateAfterFailedTrial = nodeHealth.getState();
+        final Long failedTrialEjectionDurationMs = _getEjectionDurationMs(nodeHealth);
+
+        _expireEjection(nodeHealth);
+        nodeHealth.onProbeSuccess();
+        nodeHealth.onRequestSuccess();
+        nodeHealth.eject("Test.");
+        final Long resetEjectionDurationMs = _getEjectionDurationMs(nodeHealth);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(baseEjectionDurationMs), firstEjectionDurationMs);
+        Assert.assertEquals(Long.valueOf(baseEjectionDurationMs * 2L), failedProbeEjectionDurationMs);
+        Assert.assertEquals(NodeHealth.State.OPEN, stateAfterFailedTrial);
+        Assert.assertEquals(Long.valueOf(baseEjectionDurationMs * 4L), failedTrialEjectionDurationMs);
+        Assert.assertEquals(Long.valueOf(baseEjectionDurationMs), resetEjectionDurationMs); // A successful trial resets the backoff...
+        Assert.assertEquals(Long.valueOf(3L), nodeHealth.getEjectionCount());
+    }
+
+    @Test
+    public void should_cap_ejection_duration() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+        nodeHealth.eject("Test.");
+
+        // Action
+        for (int i = 0; i < 32; ++i) {
+            _expireEjection(nodeHealth);
+            nodeHealth.onProbeFailure();
+        }
+
+        // Assert
+        Assert.assertEquals(NodeHealth.Defaults.MAX_EJECTION_DURATION_MS, _getEjectionDurationMs(nodeHealth));
+    }
+
+    @Test
+    public void should_open_when_error_rate_within_window_exceeds_threshold() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+
+        // Action
+        for (int i = 0; i < (NodeHealth.Defaults.MIN_OUTCOME_COUNT / 2); ++i) { // Alternating outcomes never reach the consecutive failure threshold...
+            nodeHealth.onRequestSuccess();
+            nodeHealth.onRequestFailure();
+        }
+
+        // Assert
+        Assert.assertEquals(NodeHealth.State.OPEN, nodeHealth.getState());
+        Assert.assertEquals("Error rate of 50%.", nodeHealth.getEjectionReason());
+    }
+
+    @Test
+    public void should_not_consider_error_rate_until_min_outcome_count() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+
+        // Action
+        for (int i = 0; i < ((NodeHealth.Defaults.MIN_OUTCOME_COUNT / 2) - 1); ++i) {
+            nodeHealth.onRequestSuccess();
+            nodeHealth.onRequestFailure();
+        }
+
+        // Assert
+        Assert.assertEquals(NodeHealth.State.CLOSED, nodeHealth.getState());
+        Assert.assertEquals(Double.valueOf(0.5D), nodeHealth.getErrorRate());
+    }
+
+    @Test
+    public void should_forget_outcomes_outside_window() {
+        // Setup
+        final NodeHealth nodeHealth = new NodeHealth();
+        for (int i = 0; i < (NodeHealth.Defaults.CONSECUTIVE_FAILURE_THRESHOLD - 1); ++i) {
+            nodeHealth.onRequestFailure();
+        }
+
+        // Action
+        for (int i = 0; i < NodeHealth.Defaults.OUTCOME_WINDOW_SIZE; ++i) {
+            nodeHealth.onRequestSuccess();
+        }
+        final Double errorRateAfterWindow = nodeHealth.getErrorRate();
+
+        for (int i = 0; i < (NodeHealth.Defaults.CONSECUTIVE_FAILURE_THRESHOLD - 1); ++i) {
+            nodeHealth.onRequestFailure();
+        }
+
+        // Assert
+        Assert.assertEquals(Double.valueOf(0D), errorRateAfterWindow);
+        Assert.assertEquals(NodeHealth.State.CLOSED, nodeHealth.getState()); // 20% of the window; the earlier failures no longer count...
+        Assert.assertEquals(Double.valueOf(0.2D), nodeHealth.getErrorRate());
+    }
+}
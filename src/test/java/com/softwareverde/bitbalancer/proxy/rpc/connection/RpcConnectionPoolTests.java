@@ -0,0 +1,332 @@
+package com.softwareverde.bitbalancer.proxy.rpc.connection;
+
+import com.softwareverde.bitcoin.rpc.core.MutableRequest;
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.response.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RpcConnectionPoolTests {
+    public enum Behavior {
+        RESPOND,                // Responds and keeps the connection open.
+        RESPOND_AND_CLOSE,      // Responds, then closes the connection without announcing it (i.e. an idle timeout).
+        RESPOND_PARTIALLY,      // Sends only the status line, then closes the connection.
+        CLOSE,                  // Reads the request, then closes the connection without responding.
+        IGNORE                  // Reads the request but never responds.
+    }
+
+    protected static final String RESPONSE_BODY = "{\"result\":1,\"error\":null,\"id\":1}";
+
+    /**
+     * A minimal keep-alive HTTP server whose behavior is configured per request.
+     */
+    protected static class FakeRpcServer {
+        protected final ServerSocket _serverSocket;
+        protected final ConcurrentLinkedQueue<Behavior> _behaviors = new ConcurrentLinkedQueue<>();
+        protected final ConcurrentLinkedQueue<Socket> _sockets = new ConcurrentLinkedQueue<>();
+        protected final AtomicInteger _requestCount = new AtomicInteger(0);
+        protected volatile Long _responseDelayMs = 0L;
+
+        protected static String _readLine(final InputStream inputStream) throws IOException {
+            final StringBuilder stringBuilder = new StringBuilder();
+            while (true) {
+                final int b = inputStream.read();
+                if (b < 0) { return null; }
+                if (b == '\n') { break; }
+                if (b != '\r') {
+                    stringBuilder.append((char) b);
+                }
+            }
+            return stringBuilder.toString();
+        }
+
+        protected void _handleConnection(final Socket socket) throws Exception {
+            final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            final OutputStream outputStream = socket.getOutputStream();
+            while (true) {
+                if (_readLine(inputStream) == null) { return; } // Request line...
+
+                int contentLength = 0;
+                while (true) {
+                    final String headerLine = _readLine(inputStream);
+                    if (headerLine == null) { return; }
+                    if (headerLine.isEmpty()) { break; }
+                    if (headerLine.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(headerLine.substring(15).trim());
+                    }
+                }
+                for (int i = 0; i < contentLength; ++i) {
+                    inputStream.read();
+                }
+                _requestCount.incrementAndGet();
+
+                final Behavior behavior = (_behaviors.isEmpty() ? Behavior.RESPOND : _behaviors.poll());
+                if (behavior == Behavior.IGNORE) { continue; }
+                if (behavior == Behavior.CLOSE) {
+                    socket.close();
+                    return;
+                }
+
+                Thread.sleep(_responseDelayMs);
+
+                if (behavior == Behavior.RESPOND_PARTIALLY) {
+                    outputStream.write("HTTP/1.1 200 OK\r\n".getBytes(StandardCharsets.US_ASCII));
+                    outputStream.flush();
+                    socket.close();
+                    return;
+                }
+
+                final byte[] body = RESPONSE_BODY.getBytes(StandardCharsets.UTF_8);
+                outputStream.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                outputStream.write(body);
+                outputStream.flush();
+
+                if (behavior == Behavior.RESPOND_AND_CLOSE) {
+                    socket.close();
+                    return;
+                }
+            }
+        }
+
+        public FakeRpcServer() throws IOException {
+            _serverSocket = new ServerSocket(0);
+
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (! _serverSocket.isClosed()) {
+                        try {
+                            final Socket socket = _serverSocket.accept();
+                            _sockets.add(socket);
+
+                            final Thread connectionThread = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        _handleConnection(socket);
+                                    }
+                                    catch (final Exception exception) { }
+                                }
+                            });
+                            connectionThread.setDaemon(true);
+                            connectionThread.start();
+                        }
+                        catch (final IOException exception) { }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public Integer getPort() {
+            return _serverSocket.getLocalPort();
+        }
+
+        public void addBehavior(final Behavior behavior) {
+            _behaviors.add(behavior);
+        }
+
+        public void setResponseDelayMs(final Long responseDelayMs) {
+            _responseDelayMs = responseDelayMs;
+        }
+
+        public Integer getRequestCount() {
+            return _requestCount.get();
+        }
+
+        public void close() throws IOException {
+            _serverSocket.close();
+            for (final Socket socket : _sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    protected static MutableRequest _createRequest() {
+        return _createRequest("getblockcount");
+    }
+
+    protected static MutableRequest _createRequest(final String method) {
+        final MutableRequest request = new MutableRequest();
+        request.setMethod(HttpMethod.POST);
+        request.setRawPostData(("{\"method\":\"" + method + "\",\"params\":[],\"id\":1}").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    protected static RpcConnectionMonitor _createMonitor(final RpcConnectionPool connectionPool, final Long maxDurationMs) {
+        final RpcConnectionMonitor monitor = connectionPool.newMonitor();
+        monitor.setMaxDurationMs(maxDurationMs);
+        return monitor;
+    }
+
+    protected FakeRpcServer _server;
+
+    protected RpcConnectionPool _createConnectionPool(final Integer maxConnectionCount, final Long idleTimeoutMs) {
+        return new RpcConnectionPool("127.0.0.1", _server.getPort(), false, null, null, maxConnectionCount, idleTimeoutMs);
+    }
+
+    @Before
+    public void before() throws Exception {
+        _server = new FakeRpcServer();
+    }
+
+    @After
+    public void after() throws Exception {
+        _server.close();
+    }
+
+    @Test
+    public void should_reuse_idle_connection() {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+
+        // Action
+        final Response firstResponse = connectionPool.handleRequest(_createRequest(), null);
+        final Response secondResponse = connectionPool.handleRequest(_createRequest(), null);
+
+        // Assert
+        Assert.assertEquals(Response.Codes.OK, firstResponse.getCode());
+        Assert.assertEquals(Response.Codes.OK, secondResponse.getCode());
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getOpenedConnectionCount());
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getReusedConnectionCount());
+        Assert.assertEquals(Integer.valueOf(1), connectionPool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void should_evict_connections_idle_beyond_timeout() throws Exception {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 50L);
+        connectionPool.handleRequest(_createRequest(), null);
+
+        // Action
+        Thread.sleep(100L);
+        final Response response = connectionPool.handleRequest(_createRequest(), null);
+
+        // Assert
+        Assert.assertEquals(Response.Codes.OK, response.getCode());
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getEvictedConnectionCount());
+        Assert.assertEquals(Long.valueOf(2L), connectionPool.getOpenedConnectionCount());
+        Assert.assertEquals(Long.valueOf(0L), connectionPool.getReusedConnectionCount());
+    }
+
+    @Test
+    public void should_not_exceed_max_connection_count() throws Exception {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(1, 15000L);
+        _server.setResponseDelayMs(500L);
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                connectionPool.handleRequest(_createRequest(), null);
+            }
+        });
+        thread.start();
+        Thread.sleep(100L); // Allow the first request to acquire the only connection...
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest(), _createMonitor(connectionPool, 100L));
+        thread.join();
+
+        // Assert
+        Assert.assertEquals(RpcConnectionPool.NODE_UNAVAILABLE_RESPONSE_CODE, response.getCode());
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getOpenedConnectionCount());
+        Assert.assertEquals(Integer.valueOf(1), _server.getRequestCount());
+    }
+
+    @Test
+    public void should_retry_when_reused_connection_was_closed_while_idle() throws Exception {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+        _server.addBehavior(Behavior.RESPOND_AND_CLOSE);
+        connectionPool.handleRequest(_createRequest(), null);
+        Thread.sleep(50L); // Allow the close to be received...
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest(), null);
+
+        // Assert
+        Assert.assertEquals(Response.Codes.OK, response.getCode());
+        Assert.assertEquals(Long.valueOf(2L), connectionPool.getOpenedConnectionCount());
+    }
+
+    @Test
+    public void should_not_retry_after_response_started() {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+        _server.addBehavior(Behavior.RESPOND);
+        _server.addBehavior(Behavior.RESPOND_PARTIALLY);
+        connectionPool.handleRequest(_createRequest(), null);
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest(), null);
+
+        // Assert
+        Assert.assertEquals(RpcConnectionPool.NODE_UNAVAILABLE_RESPONSE_CODE, response.getCode());
+        Assert.assertEquals(Integer.valueOf(2), _server.getRequestCount());
+    }
+
+    @Test
+    public void should_not_retry_after_timeout() {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+        _server.addBehavior(Behavior.RESPOND);
+        _server.addBehavior(Behavior.IGNORE);
+        connectionPool.handleRequest(_createRequest(), null);
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest(), _createMonitor(connectionPool, 200L));
+
+        // Assert
+        Assert.assertEquals(RpcConnectionPool.NODE_UNAVAILABLE_RESPONSE_CODE, response.getCode());
+        Assert.assertEquals(Integer.valueOf(2), _server.getRequestCount());
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getOpenedConnectionCount());
+    }
+
+    @Test
+    public void should_retry_idempotent_request_when_connection_closed_after_write() {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+        _server.addBehavior(Behavior.RESPOND);
+        _server.addBehavior(Behavior.CLOSE);
+        connectionPool.handleRequest(_createRequest(), null);
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest("getblockcount"), null);
+
+        // Assert
+        Assert.assertEquals(Response.Codes.OK, response.getCode());
+        Assert.assertEquals(Integer.valueOf(3), _server.getRequestCount());
+        Assert.assertEquals(Long.valueOf(2L), connectionPool.getOpenedConnectionCount());
+    }
+
+    @Test
+    public void should_not_retry_non_idempotent_request_after_write() {
+        // Setup
+        final RpcConnectionPool connectionPool = _createConnectionPool(4, 15000L);
+        _server.addBehavior(Behavior.RESPOND);
+        _server.addBehavior(Behavior.CLOSE);
+        connectionPool.handleRequest(_createRequest(), null);
+
+        // Action
+        final Response response = connectionPool.handleRequest(_createRequest("sendrawtransaction"), null);
+
+        // Assert
+        Assert.assertEquals(RpcConnectionPool.NODE_UNAVAILABLE_RESPONSE_CODE, response.getCode());
+        Assert.assertEquals(Integer.valueOf(2), _server.getRequestCount()); // The node may have relayed the transaction...
+        Assert.assertEquals(Long.valueOf(1L), connectionPool.getOpenedConnectionCount());
+    }
+}
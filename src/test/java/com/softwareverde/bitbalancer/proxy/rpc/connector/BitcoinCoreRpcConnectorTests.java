@@ -0,0 +1,36 @@
+package com.softwareverde.bitbalancer.proxy.rpc.connector;
+
+import com.softwareverde.bitcoin.rpc.BitcoinNodeRpcAddress;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.util.Container;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BitcoinCoreRpcConnectorTests {
+    protected static Response _createResponse(final Integer code, final String content) {
+        final Response response = new Response();
+        response.setCode(code);
+        response.setContent(content);
+        return response;
+    }
+
+    @Test
+    public void should_determine_successful_responses() {
+        // Setup
+        final BitcoinCoreRpcConnector bitcoinRpcConnector = new BitcoinCoreRpcConnector(new BitcoinNodeRpcAddress("localhost", 8332, false));
+        final Container<String> errorStringContainer = new Container<>();
+
+        // Action
+        final Boolean isNullErrorSuccessful = bitcoinRpcConnector.isSuccessfulResponse(_createResponse(Response.Codes.OK, "{\"result\":1,\"error\":null,\"id\":1}"), errorStringContainer);
+        final Boolean isMissingErrorSuccessful = bitcoinRpcConnector.isSuccessfulResponse(_createResponse(Response.Codes.OK, "{\"jsonrpc\":\"2.0\",\"result\":1,\"id\":1}"), errorStringContainer);
+        final Boolean isNonJsonRpcSuccessful = bitcoinRpcConnector.isSuccessfulResponse(_createResponse(Response.Codes.OK, "{\"id\":1}"), errorStringContainer);
+        final Boolean isErrorSuccessful = bitcoinRpcConnector.isSuccessfulResponse(_createResponse(Response.Codes.SERVER_ERROR, "{\"result\":null,\"error\":{\"code\":-1,\"message\":\"Failure.\"},\"id\":1}"), errorStringContainer);
+
+        // Assert
+        Assert.assertTrue(isNullErrorSuccessful);
+        Assert.assertTrue(isMissingErrorSuccessful);
+        Assert.assertFalse(isNonJsonRpcSuccessful);
+        Assert.assertFalse(isErrorSuccessful);
+        Assert.assertEquals("Failure.", errorStringContainer.value);
+    }
+}
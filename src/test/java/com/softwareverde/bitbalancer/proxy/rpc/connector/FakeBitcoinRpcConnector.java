@@ -9,11 +9,85 @@ import com.softwareverde.bitcoin.rpc.monitor.Monitor;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.util.Container;
+import com.softwareverde.util.StringUtil;
+import com.softwareverde.util.Util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FakeBitcoinRpcConnector implements BitBalancerRpcConnector {
+    public static final String CANCELED_ERROR_MESSAGE = "Request canceled.";
+
+    public static class FakeMonitor implements Monitor {
+        protected volatile Boolean _isCanceled = false;
+
+        public Boolean isCanceled() {
+            return _isCanceled;
+        }
+
+        @Override
+        public Boolean isComplete() { return true; }
+
+        @Override
+        public Long getDurationMs() { return 0L; }
+
+        @Override
+        public void setMaxDurationMs(final Long maxDurationMs) { }
+
+        @Override
+        public void cancel() {
+            _isCanceled = true;
+        }
+    }
+
     protected final String _host;
     protected final Integer _port;
-    protected ChainHeight _chainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
+    protected volatile ChainHeight _chainHeight = ChainHeight.UNKNOWN_CHAIN_HEIGHT;
+    protected volatile BlockTemplate _blockTemplate = null;
+    protected volatile Long _latencyMs = 0L;
+    protected volatile Boolean _submitBlockResult = null;
+    protected final Set<BlockTemplate> _invalidBlockTemplates = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentHashMap<BlockTemplate, AtomicInteger> _validationCounts = new ConcurrentHashMap<>();
+
+    protected static Response _createResponse(final Integer responseCode, final String content) {
+        final Response response = new Response();
+        response.setCode(responseCode);
+        response.setContent(content);
+        return response;
+    }
+
+    protected void _simulateLatency() {
+        final long latencyMs = _latencyMs;
+        if (latencyMs < 1L) { return; }
+
+        try {
+            Thread.sleep(latencyMs);
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the simulated latency, returning early if the Monitor is canceled.
+     *  Returns false if the Monitor was canceled.
+     */
+    protected Boolean _simulateLatency(final Monitor monitor) {
+        final long endTimeMs = (System.currentTimeMillis() + _latencyMs);
+        while (System.currentTimeMillis() < endTimeMs) {
+            if ( (monitor instanceof FakeMonitor) && ((FakeMonitor) monitor).isCanceled() ) { return false; }
+
+            try {
+                Thread.sleep(1L);
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return (! ( (monitor instanceof FakeMonitor) && ((FakeMonitor) monitor).isCanceled() ));
+    }
 
     public FakeBitcoinRpcConnector(final String host) {
         _host = host;
@@ -24,6 +98,39 @@ public class FakeBitcoinRpcConnector implements BitBalancerRpcConnector {
         _chainHeight = chainHeight;
     }
 
+    public void setBlockTemplate(final BlockTemplate blockTemplate) {
+        _blockTemplate = blockTemplate;
+    }
+
+    /**
+     * Sets the duration of each getChainHeight, getBlockTemplate, validateBlockTemplate, and submitBlock call.
+     */
+    public void setLatencyMs(final Long latencyMs) {
+        _latencyMs = latencyMs;
+    }
+
+    /**
+     * Sets the result of submitBlock; null simulates a failed submission.
+     */
+    public void setSubmitBlockResult(final Boolean submitBlockResult) {
+        _submitBlockResult = submitBlockResult;
+    }
+
+    /**
+     * Causes validateBlockTemplate to consider the provided template invalid.
+     */
+    public void addInvalidBlockTemplate(final BlockTemplate blockTemplate) {
+        _invalidBlockTemplates.add(blockTemplate);
+    }
+
+    /**
+     * Returns the number of times validateBlockTemplate was invoked with the provided template.
+     */
+    public Integer getValidationCount(final BlockTemplate blockTemplate) {
+        final AtomicInteger validationCount = _validationCounts.get(blockTemplate);
+        return (validationCount != null ? validationCount.get() : 0);
+    }
+
     @Override
     public String getHost() {
         return _host;
@@ -36,49 +143,58 @@ public class FakeBitcoinRpcConnector implements BitBalancerRpcConnector {
 
     @Override
     public Monitor getMonitor() {
-        return new Monitor() {
-            @Override
-            public Boolean isComplete() { return true; }
-
-            @Override
-            public Long getDurationMs() { return 0L; }
-
-            @Override
-            public void setMaxDurationMs(final Long maxDurationMs) { }
-
-            @Override
-            public void cancel() { }
-        };
+        return new FakeMonitor();
     }
 
+    /**
+     * Responds successfully after the simulated latency, or with an error once the Monitor is canceled.
+     */
     @Override
     public Response handleRequest(final Request request, final Monitor monitor) {
-        return null;
+        if (! _simulateLatency(monitor)) {
+            return _createResponse(Response.Codes.SERVER_ERROR, "{\"result\":null,\"error\":{\"code\":-1,\"message\":\"" + CANCELED_ERROR_MESSAGE + "\"},\"id\":null}");
+        }
+
+        return _createResponse(Response.Codes.OK, "{\"result\":null,\"error\":null,\"id\":1}");
     }
 
     @Override
     public ChainHeight getChainHeight(final Monitor monitor) {
+        _simulateLatency();
         return _chainHeight;
     }
 
     @Override
     public Boolean isSuccessfulResponse(final Response response, final Container<String> errorStringContainer) {
-        return null;
+        if ( (response == null) || (! Util.areEqual(Response.Codes.OK, response.getCode())) ) {
+            errorStringContainer.value = (response != null ? StringUtil.bytesToString(response.getContent()) : null);
+            return false;
+        }
+
+        return true;
     }
 
     @Override
     public BlockTemplate getBlockTemplate(final Monitor monitor) {
-        return null;
+        _simulateLatency();
+        return _blockTemplate;
     }
 
+    /**
+     * Returns null (i.e. no verdict) if the Monitor is canceled before the simulated latency elapses.
+     */
     @Override
     public Boolean validateBlockTemplate(final BlockTemplate blockTemplate, final Monitor monitor) {
-        return null;
+        _validationCounts.putIfAbsent(blockTemplate, new AtomicInteger(0));
+        _validationCounts.get(blockTemplate).incrementAndGet();
+        if (! _simulateLatency(monitor)) { return null; }
+        return (! _invalidBlockTemplates.contains(blockTemplate));
     }
 
     @Override
     public Boolean submitBlock(final Block block, final Monitor monitor) {
-        return null;
+        _simulateLatency();
+        return _submitBlockResult;
     }
 
     @Override
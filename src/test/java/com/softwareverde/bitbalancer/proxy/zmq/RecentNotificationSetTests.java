@@ -0,0 +1,54 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import com.softwareverde.bitcoin.rpc.RpcNotification;
+import com.softwareverde.bitcoin.rpc.RpcNotificationType;
+import com.softwareverde.constable.bytearray.MutableByteArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecentNotificationSetTests {
+    protected static RpcNotification _createNotification(final RpcNotificationType notificationType, final Integer value) {
+        final MutableByteArray payload = new MutableByteArray(32);
+        payload.setByte(0, (byte) (value >> 8));
+        payload.setByte(1, (byte) (value & 0xFF));
+        return new RpcNotification(notificationType, payload);
+    }
+
+    @Test
+    public void should_only_register_each_notification_once() {
+        // Setup
+        final RecentNotificationSet recentNotificationSet = new RecentNotificationSet();
+
+        // Action
+        final Boolean wasFirstUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 1));
+        final Boolean wasDuplicateUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 1));
+        final Boolean wasOtherTypeUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.BLOCK_HASH, 1));
+
+        // Assert
+        Assert.assertTrue(wasFirstUnique);
+        Assert.assertFalse(wasDuplicateUnique);
+        Assert.assertTrue(wasOtherTypeUnique);
+        Assert.assertEquals(Long.valueOf(1L), recentNotificationSet.getDuplicateCount());
+    }
+
+    @Test
+    public void should_forget_notifications_after_two_generations() {
+        // Setup
+        final RecentNotificationSet recentNotificationSet = new RecentNotificationSet(4, 60000L); // Each generation retains 2 notifications.
+        final long nowMs = System.currentTimeMillis();
+        for (int i = 0; i < 4; ++i) {
+            recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, i), nowMs);
+        }
+
+        // Action
+        final Boolean wasPreviousGenerationUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 2), nowMs);
+        recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 4), nowMs);
+        final Boolean wasEvictedUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 0), nowMs);
+        final Boolean wasExpiredUnique = recentNotificationSet.add(_createNotification(RpcNotificationType.TRANSACTION_HASH, 4), (nowMs + 60000L));
+
+        // Assert
+        Assert.assertFalse(wasPreviousGenerationUnique);
+        Assert.assertTrue(wasEvictedUnique);
+        Assert.assertTrue(wasExpiredUnique);
+    }
+}
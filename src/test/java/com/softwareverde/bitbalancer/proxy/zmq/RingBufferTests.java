@@ -0,0 +1,40 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBufferTests {
+    @Test
+    public void should_round_capacity_up_to_power_of_two() {
+        // Setup
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>(5);
+
+        // Action
+        final Integer capacity = ringBuffer.getCapacity();
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(8), capacity);
+    }
+
+    @Test
+    public void should_return_items_in_order_and_reject_when_full() {
+        // Setup
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>(4);
+
+        // Action
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertTrue(ringBuffer.offer(i));
+        }
+        final Boolean wasOfferedWhenFull = ringBuffer.offer(4);
+
+        // Assert
+        Assert.assertFalse(wasOfferedWhenFull);
+        Assert.assertEquals(Integer.valueOf(4), ringBuffer.getCount());
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertEquals(Integer.valueOf(i), ringBuffer.poll());
+        }
+        Assert.assertNull(ringBuffer.poll());
+        Assert.assertTrue(ringBuffer.offer(5)); // The freed slots are reused for the next lap.
+        Assert.assertEquals(Integer.valueOf(5), ringBuffer.poll());
+    }
+}
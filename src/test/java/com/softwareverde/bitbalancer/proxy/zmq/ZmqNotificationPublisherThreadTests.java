@@ -0,0 +1,30 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.constable.bytearray.MutableByteArray;
+import com.softwareverde.constable.list.mutable.MutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZmqNotificationPublisherThreadTests {
+    @Test
+    public void should_prefix_each_batched_payload_with_its_byte_count() {
+        // Setup
+        final MutableByteArray firstPayload = new MutableByteArray(2);
+        firstPayload.setByte(0, (byte) 0x0A);
+        firstPayload.setByte(1, (byte) 0x0B);
+
+        final MutableByteArray secondPayload = new MutableByteArray(1);
+        secondPayload.setByte(0, (byte) 0x0C);
+
+        final MutableList<ByteArray> payloads = new MutableList<>();
+        payloads.add(firstPayload);
+        payloads.add(secondPayload);
+
+        // Action
+        final byte[] batchFrame = ZmqNotificationPublisherThread.createBatchFrame(payloads);
+
+        // Assert
+        Assert.assertArrayEquals(new byte[]{ 0x00, 0x00, 0x00, 0x02, 0x0A, 0x0B, 0x00, 0x00, 0x00, 0x01, 0x0C }, batchFrame);
+    }
+}
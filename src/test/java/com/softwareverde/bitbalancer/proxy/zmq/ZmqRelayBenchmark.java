@@ -0,0 +1,135 @@
+package com.softwareverde.bitbalancer.proxy.zmq;
+
+import com.softwareverde.bitcoin.rpc.RpcNotificationType;
+import com.softwareverde.bitcoin.rpc.core.zmq.ZmqMessageTypeConverter;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.constable.bytearray.MutableByteArray;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMsg;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares relaying raw block notifications via ZmqNotificationPublisherThread.sendFrames to the previous ZMsg-based
+ *  relay (which copied the payload and re-encoded the topic per message), for blocks of 1MB and 32MB.
+ *  Messages are published over an inproc PUB socket and the time is measured until the subscriber has received them all.
+ *  This is not run as part of the test suite; run its main method directly (with a heap of at least 2GB).
+ */
+public class ZmqRelayBenchmark {
+    public interface Relay {
+        void relay(ZMQ.Socket socket, ByteArray payload);
+    }
+
+    protected static final String ENDPOINT = "inproc://zmq-relay-benchmark";
+
+    protected static MutableByteArray _createBlockPayload(final int byteCount) {
+        final MutableByteArray payload = new MutableByteArray(byteCount);
+        for (int i = 0; i < byteCount; ++i) {
+            payload.setByte(i, (byte) i);
+        }
+        return payload;
+    }
+
+    protected static Long _getAllocatedByteCount() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (! (threadMXBean instanceof com.sun.management.ThreadMXBean)) { return null; }
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    protected static Thread _startSubscriber(final ZContext context, final int messageCount, final CountDownLatch readyLatch, final CountDownLatch completeLatch) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final ZMQ.Socket socket = context.createSocket(SocketType.type(zmq.ZMQ.ZMQ_SUB));
+                socket.setRcvHWM(0);
+                socket.subscribe(ZMQ.SUBSCRIPTION_ALL);
+                socket.connect(ENDPOINT);
+                readyLatch.countDown();
+
+                int receivedCount = 0;
+                while (receivedCount < messageCount) {
+                    socket.recv(0); // Topic...
+                    while (socket.hasReceiveMore()) {
+                        socket.recv(0);
+                    }
+                    receivedCount += 1;
+                }
+                completeLatch.countDown();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    protected static void _run(final String label, final ByteArray payload, final Relay relay) throws Exception {
+        final int iterationCount = (int) Math.max(4L, Math.min(1000L, ((512L * 1024L * 1024L) / payload.getByteCount())));
+        final int messageCount = (iterationCount * 2); // Includes the warm-up...
+
+        try (final ZContext context = new ZContext()) {
+            final ZMQ.Socket socket = context.createSocket(SocketType.type(zmq.ZMQ.ZMQ_PUB));
+            socket.setSndHWM(0);
+            socket.bind(ENDPOINT);
+
+            final CountDownLatch readyLatch = new CountDownLatch(1);
+            final CountDownLatch completeLatch = new CountDownLatch(1);
+            final Thread subscriberThread = _startSubscriber(context, messageCount, readyLatch, completeLatch);
+            readyLatch.await();
+            Thread.sleep(100L); // Allow the subscription to propagate to the publisher...
+
+            for (int i = 0; i < iterationCount; ++i) { // Warm-up...
+                relay.relay(socket, payload);
+            }
+
+            final Long allocatedByteCountBefore = _getAllocatedByteCount();
+            final long startNanos = System.nanoTime();
+            for (int i = 0; i < iterationCount; ++i) {
+                relay.relay(socket, payload);
+            }
+            final Long allocatedByteCountAfter = _getAllocatedByteCount();
+            completeLatch.await();
+            final long elapsedNanos = (System.nanoTime() - startNanos);
+            subscriberThread.join();
+
+            final double elapsedSeconds = (elapsedNanos / 1000000000D);
+            final double megabytesPerSecond = (((long) iterationCount * payload.getByteCount()) / (1024D * 1024D) / elapsedSeconds);
+            final Long allocatedBytesPerOperation = ( (allocatedByteCountBefore != null) && (allocatedByteCountAfter != null) ? ((allocatedByteCountAfter - allocatedByteCountBefore) / iterationCount) : null);
+            System.out.println(String.format("%-8s %10d bytes: %10.1f msg/s, %10.1f MB/s, %12s bytes allocated/op (publisher)", label, payload.getByteCount(), (iterationCount / elapsedSeconds), megabytesPerSecond, allocatedBytesPerOperation));
+        }
+    }
+
+    public static void main(final String[] arguments) throws Exception {
+        final RpcNotificationType notificationType = RpcNotificationType.BLOCK;
+
+        final byte[] topicFrame = ZmqNotificationPublisherThread.getTopicFrame(notificationType);
+        final Relay frameRelay = new Relay() {
+            @Override
+            public void relay(final ZMQ.Socket socket, final ByteArray payload) {
+                ZmqNotificationPublisherThread.sendFrames(socket, topicFrame, payload);
+            }
+        };
+
+        final Relay zMsgRelay = new Relay() {
+            @Override
+            public void relay(final ZMQ.Socket socket, final ByteArray payload) {
+                final String messageTypeString = ZmqMessageTypeConverter.toSubscriptionString(notificationType);
+                final ZMsg zMsg = new ZMsg();
+                { // Frames are in reverse-order...
+                    zMsg.push(payload.getBytes());
+                    zMsg.push(messageTypeString);
+                }
+                zMsg.send(socket);
+            }
+        };
+
+        for (final int byteCount : new int[]{ (1024 * 1024), (32 * 1024 * 1024) }) {
+            final MutableByteArray payload = _createBlockPayload(byteCount);
+            _run("Frames", payload, frameRelay);
+            _run("ZMsg", payload, zMsgRelay);
+        }
+    }
+}